@@ -0,0 +1,160 @@
+package chav1961.nn.api;
+
+public class HalfPrecision {
+	private static final float[]	HALF_TABLE = new float[1 << 16];
+	
+	static {
+		for(int index = 0; index < HALF_TABLE.length; index++) {
+			HALF_TABLE[index] = convertHalfToFloat(index);
+		}
+	}
+	
+	private HalfPrecision() {
+	}
+
+	public static float halfToFloat(final short value) {
+		return HALF_TABLE[value & 0xFFFF];
+	}
+	
+	public static short floatToHalf(final float value) {
+		final int	bits = Float.floatToRawIntBits(value);
+		final int	sign = (bits >>> 16) & 0x8000;
+		final int	exponent = (bits >>> 23) & 0xFF;
+		final int	mantissa = bits & 0x7FFFFF;
+		
+		if (exponent == 0xFF) {	// Infinity or NaN
+			return (short)(sign | 0x7C00 | (mantissa != 0 ? 0x200 | (mantissa >>> 13) : 0));
+		}
+		else {
+			final int	halfExponent = exponent - 127 + 15;
+			
+			if (halfExponent >= 0x1F) {	// Overflow
+				return (short)(sign | 0x7C00);
+			}
+			else if (halfExponent <= 0) {	// Subnormal or zero
+				if (halfExponent < -10) {
+					return (short)sign;
+				}
+				else {
+					final int	fullMantissa = mantissa | 0x800000;
+					final int	shift = 14 - halfExponent;
+					final int	rest = fullMantissa & ((1 << shift) - 1), half = 1 << (shift - 1);
+					int			halfMantissa = fullMantissa >> shift;
+					
+					if (rest > half || (rest == half && (halfMantissa & 1) != 0)) {
+						halfMantissa++;
+					}
+					return (short)(sign | halfMantissa);
+				}
+			}
+			else {
+				final int	rest = mantissa & 0x1FFF;
+				int			result = sign | (halfExponent << 10) | (mantissa >> 13);
+				
+				if (rest > 0x1000 || (rest == 0x1000 && (result & 1) != 0)) {
+					result++;	// Carry can move to exponent, it's correct
+				}
+				return (short)result;
+			}
+		}
+	}
+	
+	public static float bfloat16ToFloat(final short value) {
+		return Float.intBitsToFloat((value & 0xFFFF) << 16);
+	}
+	
+	public static short floatToBFloat16(final float value) {
+		final int	bits = Float.floatToRawIntBits(value);
+		
+		if (Float.isNaN(value)) {
+			return (short)((bits >>> 16) | 0x40);
+		}
+		else {
+			return (short)((bits + 0x7FFF + ((bits >>> 16) & 1)) >>> 16);
+		}
+	}
+	
+	public static float[] halfToFloat(final short[] source, final float[] target) {
+		if (source == null) {
+			throw new NullPointerException("Source array can't be null");
+		}
+		else if (target == null || target.length < source.length) {
+			throw new IllegalArgumentException("Target array is null or it's length less than source length ["+source.length+"]");
+		}
+		else {
+			for(int index = 0; index < source.length; index++) {
+				target[index] = HALF_TABLE[source[index] & 0xFFFF];
+			}
+			return target;
+		}
+	}
+
+	public static short[] floatToHalf(final float[] source, final short[] target) {
+		if (source == null) {
+			throw new NullPointerException("Source array can't be null");
+		}
+		else if (target == null || target.length < source.length) {
+			throw new IllegalArgumentException("Target array is null or it's length less than source length ["+source.length+"]");
+		}
+		else {
+			for(int index = 0; index < source.length; index++) {
+				target[index] = floatToHalf(source[index]);
+			}
+			return target;
+		}
+	}
+
+	public static float[] bfloat16ToFloat(final short[] source, final float[] target) {
+		if (source == null) {
+			throw new NullPointerException("Source array can't be null");
+		}
+		else if (target == null || target.length < source.length) {
+			throw new IllegalArgumentException("Target array is null or it's length less than source length ["+source.length+"]");
+		}
+		else {
+			for(int index = 0; index < source.length; index++) {
+				target[index] = bfloat16ToFloat(source[index]);
+			}
+			return target;
+		}
+	}
+
+	public static short[] floatToBFloat16(final float[] source, final short[] target) {
+		if (source == null) {
+			throw new NullPointerException("Source array can't be null");
+		}
+		else if (target == null || target.length < source.length) {
+			throw new IllegalArgumentException("Target array is null or it's length less than source length ["+source.length+"]");
+		}
+		else {
+			for(int index = 0; index < source.length; index++) {
+				target[index] = floatToBFloat16(source[index]);
+			}
+			return target;
+		}
+	}
+	
+	private static float convertHalfToFloat(final int value) {
+		final int	sign = (value & 0x8000) << 16;
+		int			exponent = (value >>> 10) & 0x1F;
+		int			mantissa = value & 0x3FF;
+		
+		if (exponent == 0x1F) {	// Infinity or NaN
+			return Float.intBitsToFloat(sign | 0x7F800000 | (mantissa << 13));
+		}
+		else if (exponent == 0) {
+			if (mantissa == 0) {	// Signed zero
+				return Float.intBitsToFloat(sign);
+			}
+			else {	// Subnormal, normalize it
+				exponent = 1;
+				while ((mantissa & 0x400) == 0) {
+					mantissa <<= 1;
+					exponent--;
+				}
+				mantissa &= 0x3FF;
+			}
+		}
+		return Float.intBitsToFloat(sign | ((exponent + 112) << 23) | (mantissa << 13));
+	}
+}
@@ -1,5 +1,21 @@
 package chav1961.nn.api.interfaces;
 
 public enum ActivationType {
-	SOFTMAX
+	SOFTMAX(false),
+	LOG_SOFTMAX(false),
+	RELU(true),
+	LEAKY_RELU(true),	// Optional parameter is a slope for the negative values, 0.01 by default
+	SIGMOID(true),
+	TANH(true),
+	GELU(true);			// Tanh approximation
+
+	private final boolean	elementWise;
+
+	private ActivationType(final boolean elementWise) {
+		this.elementWise = elementWise;
+	}
+
+	public boolean isElementWise() {	// Every output item depends on the same input item only
+		return elementWise;
+	}
 }
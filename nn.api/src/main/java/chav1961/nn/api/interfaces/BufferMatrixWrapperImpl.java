@@ -0,0 +1,186 @@
+package chav1961.nn.api.interfaces;
+
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+class BufferMatrixWrapperImpl implements CloseableMatrixWrapper {
+	private final MatrixClass 	clazz;
+	private final int[] 		dimensions;
+	private volatile ByteBuffer	owner;
+	private volatile Buffer		content;
+	private final int			offset;
+	private final int			rowStride;
+	private final int			columnStride;
+	private final CloseableMatrixWrapper	parent;
+	
+	BufferMatrixWrapperImpl(final MatrixClass clazz, final int[] dimensions, final ByteBuffer owner) {
+		this.clazz = clazz;
+		this.dimensions = dimensions.clone();
+		this.owner = owner;
+		this.offset = 0;
+		this.rowStride = dimensions[dimensions.length-1];
+		this.columnStride = 1;
+		this.parent = null;
+		
+		switch (clazz) {
+			case DOUBLE_BUFFER2	:
+				this.content = owner.asDoubleBuffer();
+				break;
+			case FLOAT_BUFFER2	:
+				this.content = owner.asFloatBuffer();
+				break;
+			default :
+				throw new UnsupportedOperationException("Matrix class ["+clazz+"] is not supported yet");
+		}
+	}
+
+	BufferMatrixWrapperImpl(final MatrixClass clazz, final int[] dimensions, final Buffer content) {
+		this(clazz, dimensions, content, 0, dimensions[dimensions.length-1], 1, null);
+	}
+
+	BufferMatrixWrapperImpl(final MatrixClass clazz, final int[] dimensions, final Buffer content, final int offset, final int rowStride, final int columnStride, final CloseableMatrixWrapper parent) {
+		this.clazz = clazz;
+		this.dimensions = dimensions.clone();
+		this.owner = null;
+		this.content = content;
+		this.offset = offset;
+		this.rowStride = rowStride;
+		this.columnStride = columnStride;
+		this.parent = parent;
+	}
+	
+	static ByteBuffer allocate(final MatrixClass clazz, final int size) {
+		return ByteBuffer.allocateDirect(sizeInBytes(clazz, size)).order(ByteOrder.nativeOrder());
+	}
+
+	static ByteBuffer map(final FileChannel channel, final long position, final ByteOrder order, final MatrixClass clazz, final int size) throws IOException {
+		final int	bytes = sizeInBytes(clazz, size);
+		
+		if (position + bytes > channel.size()) {
+			throw new EOFException("Matrix content at position ["+position+"] with size ["+bytes+"] bytes exceeds channel size ["+channel.size()+"]");
+		}
+		else {
+			return channel.map(MapMode.READ_ONLY, position, bytes).order(order);
+		}
+	}
+	
+	static int sizeInBytes(final MatrixClass clazz, final int size) {
+		final long	bytes = (long)size * (clazz.contentClass() == double.class ? Double.BYTES : Float.BYTES);
+		
+		if (bytes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Total matrix size ["+bytes+"] bytes is too long to be stored in the off-heap buffer");
+		}
+		else {
+			return (int)bytes;
+		}
+	}
+	
+	@Override
+	public MatrixClass getMatrixClass() {
+		return clazz;
+	}
+
+	@Override
+	public int[] getDimensions() {
+		return dimensions.clone();
+	}
+
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public int getRowStride() {
+		return rowStride;
+	}
+
+	@Override
+	public int getColumnStride() {
+		return columnStride;
+	}
+
+	@Override
+	public <T> T getContent() {
+		final Buffer	result = content;
+		
+		if (result == null || parent != null && parent.isClosed()) {
+			throw new IllegalStateException("Matrix content was already released by close() call");
+		}
+		else {
+			return (T)result;
+		}
+	}
+
+	@Override
+	public void upload(final DataOutput target) throws IOException {
+		if (target == null) {
+			throw new NullPointerException("Target can't be null");
+		}
+		else {
+			MatrixSerializer.upload(this, MatrixSerializer.sink(target));
+		}
+	}
+
+	@Override
+	public void upload(final WritableByteChannel target, final ByteOrder order) throws IOException {
+		if (target == null) {
+			throw new NullPointerException("Target can't be null");
+		}
+		else if (order == null) {
+			throw new NullPointerException("Byte order can't be null");
+		}
+		else {
+			MatrixSerializer.upload(this, MatrixSerializer.sink(target, order));
+		}
+	}
+
+	@Override
+	public boolean isClosed() {
+		return content == null || parent != null && parent.isClosed();
+	}
+
+	@Override
+	public void close() {	// Views, kernels and readers can still hold the buffer, so native memory is left to GC
+		content = null;
+		owner = null;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((clazz == null) ? 0 : clazz.hashCode());
+		result = prime * result + ((content == null) ? 0 : content.hashCode());
+		result = prime * result + Arrays.hashCode(dimensions);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		BufferMatrixWrapperImpl other = (BufferMatrixWrapperImpl) obj;
+		if (clazz != other.clazz) return false;
+		if (!isClosed() && !other.isClosed() && (!MatrixWrapper.isCompact(this) || !MatrixWrapper.isCompact(other))) return MatrixWrapper.flatten(this).equals(MatrixWrapper.flatten(other));
+		if (content == null) {
+			if (other.content != null) return false;
+		} else if (!content.equals(other.content)) return false;
+		if (!Arrays.equals(dimensions, other.dimensions)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "BufferMatrixWrapperImpl [clazz=" + clazz + ", dimensions=" + Arrays.toString(dimensions) + ", closed=" + isClosed() + "]";
+	}
+}
@@ -1,7 +1,311 @@
 package chav1961.nn.api.interfaces;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
 public enum CalculationPrecision {
-	QUICK,
-	MEDIUM,
-	PRECISE;
+	QUICK(Integer.MAX_VALUE),	// Reordered float accumulation, no blocks
+	MEDIUM(256),				// Float blocks merged pairwise
+	PRECISE(1);					// Every addend is accumulated in double
+
+	private static final int	PAIRWISE_BLOCK = 32;	// Sequence size to sum directly inside the pairwise summation
+
+	private final int	blockSize;
+
+	private CalculationPrecision(final int blockSize) {
+		this.blockSize = blockSize;
+	}
+
+	public int getBlockSize() {	// Number of addends accumulated in float before the block is merged
+		return blockSize;
+	}
+
+	public float sum(final float[] content, final int from, final int to) {
+		switch (this) {
+			case QUICK		:
+				return sumUnrolled(content, from, to);
+			case MEDIUM		:
+				return sumPairwise(content, from, to);
+			case PRECISE	:
+				double	sum = 0;
+
+				for(int index = from; index < to; index++) {
+					sum += content[index];
+				}
+				return (float)sum;
+			default :
+				throw new UnsupportedOperationException("Precision ["+this+"] is not supported yet");
+		}
+	}
+
+	public Accumulator newAccumulator(final float[] target, final int size) {
+		if (target == null) {
+			throw new NullPointerException("Target can't be null");
+		}
+		else if (size < 0 || size > target.length) {
+			throw new IllegalArgumentException("Size ["+size+"] out of range 0.."+target.length);
+		}
+		else {
+			switch (this) {
+				case QUICK		:
+					return new QuickAccumulator(target, size);
+				case MEDIUM		:
+					return new PairwiseAccumulator(target, size, blockSize);
+				case PRECISE	:
+					return new DoubleAccumulator(target, size, blockSize);
+				default :
+					throw new UnsupportedOperationException("Precision ["+this+"] is not supported yet");
+			}
+		}
+	}
+
+	public static abstract class Accumulator {	// Sums a sequence of vectors into the target. Can be reused with another target, internal buffers are kept
+		protected float[]		target;
+		protected int			size;
+		private final CalculationPrecision	precision;
+		private final int		blockSize;
+		private int				count = 0;
+
+		private Accumulator(final CalculationPrecision precision, final float[] target, final int size, final int blockSize) {
+			this.precision = precision;
+			this.target = target;
+			this.size = size;
+			this.blockSize = blockSize;
+		}
+
+		public CalculationPrecision getPrecision() {
+			return precision;
+		}
+
+		public Accumulator reset(final float[] target, final int size) throws NullPointerException, IllegalArgumentException {	// Start the next sum, no buffers are allocated when the size doesn't grow
+			if (target == null) {
+				throw new NullPointerException("Target can't be null");
+			}
+			else if (size < 0 || size > target.length) {
+				throw new IllegalArgumentException("Size ["+size+"] out of range 0.."+target.length);
+			}
+			else {
+				this.target = target;
+				this.size = size;
+				this.count = 0;
+				clear();
+				return this;
+			}
+		}
+
+		public abstract float[] next();	// Zeroed buffer for the next block of addends, the previous block is merged
+		public abstract float[] get();	// Merged sum in the target
+
+		public float[] row() {	// Buffer to add the next addend into, blocks are switched automatically
+			if (count == 0 || count == blockSize) {
+				count = 0;
+				next();
+			}
+			count++;
+			return current();
+		}
+
+		protected abstract float[] current();
+		protected abstract void clear();
+	}
+
+	private static float sumUnrolled(final float[] content, final int from, final int to) {
+		float	sum0 = 0, sum1 = 0, sum2 = 0, sum3 = 0;
+		int		index = from;
+
+		for(; index + 4 <= to; index += 4) {	// Independent sums don't wait for each other
+			sum0 += content[index];
+			sum1 += content[index + 1];
+			sum2 += content[index + 2];
+			sum3 += content[index + 3];
+		}
+		for(; index < to; index++) {
+			sum0 += content[index];
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	private static float sumPairwise(final float[] content, final int from, final int to) {
+		if (to - from <= PAIRWISE_BLOCK) {
+			return sumUnrolled(content, from, to);
+		}
+		else {
+			final int	middle = from + (to - from) / 2;
+
+			return sumPairwise(content, from, middle) + sumPairwise(content, middle, to);
+		}
+	}
+
+	private static void add(final float[] source, final float[] target, final int size) {
+		for(int index = 0; index < size; index++) {
+			target[index] += source[index];
+		}
+	}
+
+	private static class QuickAccumulator extends Accumulator {
+		private boolean	started = false;
+
+		private QuickAccumulator(final float[] target, final int size) {
+			super(QUICK, target, size, Integer.MAX_VALUE);
+		}
+
+		@Override
+		public float[] next() {	// Target itself is the only block
+			if (!started) {
+				Arrays.fill(target, 0, size, 0f);
+				started = true;
+			}
+			return target;
+		}
+
+		@Override
+		public float[] get() {
+			return next();
+		}
+
+		@Override
+		protected float[] current() {
+			return target;
+		}
+
+		@Override
+		protected void clear() {
+			started = false;
+		}
+	}
+
+	private static class PairwiseAccumulator extends Accumulator {
+		private final List<float[]>	levels = new ArrayList<>();	// Level N contains sum of 2^N blocks
+		private final Deque<float[]>	free = new ArrayDeque<>();
+		private float[]				current = null;
+
+		private PairwiseAccumulator(final float[] target, final int size, final int blockSize) {
+			super(MEDIUM, target, size, blockSize);
+		}
+
+		@Override
+		public float[] next() {
+			merge();
+			while (!free.isEmpty() && free.peek().length < size) {	// Buffers of the previous smaller sums
+				free.pop();
+			}
+			current = free.isEmpty() ? new float[size] : free.pop();
+			Arrays.fill(current, 0, size, 0f);
+			return current;
+		}
+
+		@Override
+		public float[] get() {
+			merge();
+			Arrays.fill(target, 0, size, 0f);
+			for(float[] item : levels) {	// From the smallest sums to the largest ones
+				if (item != null) {
+					add(item, target, size);
+				}
+			}
+			return target;
+		}
+
+		@Override
+		protected float[] current() {
+			return current;
+		}
+
+		@Override
+		protected void clear() {
+			if (current != null) {
+				free.push(current);
+				current = null;
+			}
+			for(int level = 0; level < levels.size(); level++) {
+				if (levels.get(level) != null) {
+					free.push(levels.get(level));
+					levels.set(level, null);
+				}
+			}
+		}
+
+		private void merge() {
+			if (current != null) {
+				float[]	carry = current;
+
+				current = null;
+				for(int level = 0;; level++) {	// Binary counter of blocks, equal-sized sums are added to each other
+					if (level == levels.size()) {
+						levels.add(null);
+					}
+					final float[]	item = levels.get(level);
+
+					if (item == null) {
+						levels.set(level, carry);
+						break;
+					}
+					else {
+						add(item, carry, size);
+						levels.set(level, null);
+						free.push(item);
+					}
+				}
+			}
+		}
+	}
+
+	private static class DoubleAccumulator extends Accumulator {
+		private double[]		sum;
+		private float[]			block;
+		private boolean			active = false;
+
+		private DoubleAccumulator(final float[] target, final int size, final int blockSize) {
+			super(PRECISE, target, size, blockSize);
+			this.sum = new double[size];
+			this.block = new float[size];
+		}
+
+		@Override
+		public float[] next() {	// Block is zeroed by the merge
+			merge();
+			active = true;
+			return block;
+		}
+
+		@Override
+		public float[] get() {
+			merge();
+			for(int index = 0; index < size; index++) {
+				target[index] = (float)sum[index];
+			}
+			return target;
+		}
+
+		@Override
+		protected float[] current() {
+			return block;
+		}
+
+		@Override
+		protected void clear() {
+			if (sum.length < size) {
+				sum = new double[size];
+				block = new float[size];
+			}
+			else {
+				Arrays.fill(sum, 0, size, 0);
+				Arrays.fill(block, 0, size, 0f);
+			}
+			active = false;
+		}
+
+		private void merge() {
+			if (active) {
+				for(int index = 0; index < size; index++) {
+					sum[index] += block[index];
+					block[index] = 0;
+				}
+				active = false;
+			}
+		}
+	}
 }
@@ -0,0 +1,8 @@
+package chav1961.nn.api.interfaces;
+
+public interface CloseableMatrixWrapper extends MatrixWrapper, AutoCloseable {
+	boolean isClosed();
+	
+	@Override
+	void close();
+}
@@ -0,0 +1,80 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.Arrays;
+
+public class CsrContent {
+	private final int[]		rowPointers;
+	private final int[]		columnIndices;
+	private final float[]	values;
+	
+	public CsrContent(final int[] rowPointers, final int[] columnIndices, final float[] values) {
+		if (rowPointers == null || rowPointers.length == 0) {
+			throw new IllegalArgumentException("Row pointers can be neither null nor empty");
+		}
+		else if (columnIndices == null) {
+			throw new NullPointerException("Column indices can't be null");
+		}
+		else if (values == null) {
+			throw new NullPointerException("Values can't be null");
+		}
+		else if (columnIndices.length != values.length) {
+			throw new IllegalArgumentException("Column indices length ["+columnIndices.length+"] is differ with values length ["+values.length+"]");
+		}
+		else if (rowPointers[0] != 0 || rowPointers[rowPointers.length-1] != values.length) {
+			throw new IllegalArgumentException("Row pointers must start with 0 and end with number of non-zero items ["+values.length+"]");
+		}
+		else {
+			for(int index = 1; index < rowPointers.length; index++) {
+				if (rowPointers[index] < rowPointers[index-1]) {
+					throw new IllegalArgumentException("Row pointers must be non-decreasing, but row pointer # ["+index+"] violates it");
+				}
+			}
+			this.rowPointers = rowPointers;
+			this.columnIndices = columnIndices;
+			this.values = values;
+		}
+	}
+	
+	public int[] getRowPointers() {
+		return rowPointers;
+	}
+	
+	public int[] getColumnIndices() {
+		return columnIndices;
+	}
+	
+	public float[] getValues() {
+		return values;
+	}
+	
+	public int nonZeros() {
+		return values.length;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(columnIndices);
+		result = prime * result + Arrays.hashCode(rowPointers);
+		result = prime * result + Arrays.hashCode(values);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		CsrContent other = (CsrContent) obj;
+		if (!Arrays.equals(columnIndices, other.columnIndices)) return false;
+		if (!Arrays.equals(rowPointers, other.rowPointers)) return false;
+		if (!Arrays.equals(values, other.values)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "CsrContent [rows=" + (rowPointers.length-1) + ", nonZeros=" + values.length + "]";
+	}
+}
@@ -0,0 +1,50 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.SplittableRandom;
+
+public enum Distribution {
+	UNIFORM(false),
+	UNIFORM_SYMMETRIC(false),
+	NORMAL(true),
+	XAVIER_UNIFORM(false),
+	XAVIER_NORMAL(true),
+	HE_UNIFORM(false),
+	HE_NORMAL(true);
+	
+	private final boolean	normal;
+	
+	private Distribution(final boolean normal) {
+		this.normal = normal;
+	}
+	
+	public boolean isNormal() {
+		return normal;
+	}
+	
+	public double scale(final int fanIn, final int fanOut) {
+		if (fanIn <= 0 || fanOut <= 0) {
+			throw new IllegalArgumentException("Fan in ["+fanIn+"] and fan out ["+fanOut+"] must be greater than 0");
+		}
+		else {
+			switch (this) {
+				case XAVIER_UNIFORM	: return Math.sqrt(6.0 / (fanIn + fanOut));
+				case XAVIER_NORMAL	: return Math.sqrt(2.0 / (fanIn + fanOut));
+				case HE_UNIFORM		: return Math.sqrt(6.0 / fanIn);
+				case HE_NORMAL		: return Math.sqrt(2.0 / fanIn);
+				default				: return 1.0;
+			}
+		}
+	}
+	
+	public double next(final SplittableRandom random, final double scale) {
+		if (this == UNIFORM) {	// [0..1) as MatrixWrapper.random(...) always did
+			return random.nextDouble();
+		}
+		else if (normal) {		// Box-Muller, SplittableRandom has no nextGaussian() in Java 9
+			return scale * Math.sqrt(-2.0 * Math.log(1.0 - random.nextDouble())) * Math.cos(2.0 * Math.PI * random.nextDouble());
+		}
+		else {
+			return scale * (2.0 * random.nextDouble() - 1.0);
+		}
+	}
+}
@@ -5,19 +5,41 @@ public enum MatrixClass {
 	FLOAT2_ARRAY(float.class, 2),
 	DOUBLE_ARRAY(double.class, 1),
 	DOUBLE2_ARRAY(double.class, 2),
+	FLOAT_FLAT2(float.class, 2),
+	DOUBLE_FLAT2(double.class, 2),
+	FLOAT_BUFFER2(float.class, 2),
+	DOUBLE_BUFFER2(double.class, 2),
+	HALF_FLAT2(float.class, short.class, 2),
+	BFLOAT16_FLAT2(float.class, short.class, 2),
+	INT8_ROW_FLAT2(float.class, byte.class, 2),
+	INT8_COLUMN_FLAT2(float.class, byte.class, 2),
+	FLOAT_SPARSE(float.class, 1),
+	FLOAT_CSR2(float.class, 2),
+	FLOAT_BATCH2(float.class, 2),
+	FLOAT_BATCH3(float.class, 3),
 	;
 	
 	private final Class<?>	clazz;
+	private final Class<?>	storageClazz;
 	private final int		dimensions;
 	
 	private MatrixClass(final Class<?> clazz, final int dimensions) {
+		this(clazz, clazz, dimensions);
+	}
+
+	private MatrixClass(final Class<?> clazz, final Class<?> storageClazz, final int dimensions) {
 		this.clazz = clazz;
+		this.storageClazz = storageClazz;
 		this.dimensions = dimensions;
 	}
 	
 	public Class<?> contentClass() {
 		return clazz;
 	}
+
+	public Class<?> storageClass() {
+		return storageClazz;
+	}
 	
 	public int numberOfDimensions() {
 		return dimensions;
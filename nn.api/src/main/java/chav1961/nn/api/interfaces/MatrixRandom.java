@@ -0,0 +1,59 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+class MatrixRandom {
+	static final int	BLOCK_SIZE = 1 << 12;	// Elements per generator, content depends on it but not on parallelism
+
+	@FunctionalInterface
+	interface Sink {
+		void put(int index, double value);
+	}
+	
+	private MatrixRandom() {
+	}
+
+	static void fill(final Distribution distribution, final long seed, final int parallelism, final int[] dimensions, final int size, final Sink sink) {
+		final int	rows = dimensions[0], columns = size / rows;
+		final int	fanIn = dimensions.length > 1 ? dimensions[dimensions.length - 2] : dimensions[0], fanOut = dimensions[dimensions.length - 1];
+		final double	scale = distribution.scale(fanIn, fanOut);
+		final int	rowsPerBlock = Math.max(1, BLOCK_SIZE / columns), blocks = (rows + rowsPerBlock - 1) / rowsPerBlock;
+		final SplittableRandom	root = new SplittableRandom(seed);
+		final SplittableRandom[]	generators = new SplittableRandom[blocks];
+		
+		for(int index = 0; index < generators.length; index++) {	// Generators are split sequentially, so every block always gets the same one
+			generators[index] = root.split();
+		}
+		
+		final int	threads = Math.min(parallelism, blocks), step = blocks / threads, rest = blocks % threads;
+		final List<ForkJoinTask<?>>	tasks = new ArrayList<>();
+		
+		for(int thread = 0, from = 0; thread < threads; thread++) {
+			final int	blockFrom = from, blockTo = from + step + (thread < rest ? 1 : 0);
+			final Runnable	r = ()->{
+								for(int block = blockFrom; block < blockTo; block++) {
+									final SplittableRandom	random = generators[block];
+									
+									for(int index = block * rowsPerBlock * columns, maxIndex = Math.min(rows, (block + 1) * rowsPerBlock) * columns; index < maxIndex; index++) {
+										sink.put(index, distribution.next(random, scale));
+									}
+								}
+							};
+			
+			if (thread == threads - 1) {
+				r.run();
+			}
+			else {
+				tasks.add(ForkJoinPool.commonPool().submit(r));
+			}
+			from = blockTo;
+		}
+		for(ForkJoinTask<?> item : tasks) {
+			item.join();
+		}
+	}
+}
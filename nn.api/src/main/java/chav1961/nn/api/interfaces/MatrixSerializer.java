@@ -0,0 +1,391 @@
+package chav1961.nn.api.interfaces;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+class MatrixSerializer {
+	static final int	BUFFER_SIZE = 1 << 16;
+
+	private MatrixSerializer() {
+	}
+
+	static void upload(final MatrixWrapper matrix, final Sink sink) throws IOException {
+		if (!MatrixWrapper.isCompact(matrix)) {	// Views are serialized as their compact copy
+			upload(MatrixWrapper.flatten(matrix), sink);
+		}
+		else {
+			switch (matrix.getMatrixClass()) {
+				case DOUBLE2_ARRAY	:
+					for(double[] item : (double[][])matrix.getContent()) {
+						sink.put(item, 0, item.length);
+					}
+					break;
+				case DOUBLE_ARRAY	:
+				case DOUBLE_FLAT2	:
+					final double[]	dContent = matrix.getContent();
+
+					sink.put(dContent, 0, dContent.length);
+					break;
+				case DOUBLE_BUFFER2	:
+					sink.put((DoubleBuffer)matrix.getContent());
+					break;
+				case FLOAT2_ARRAY	:
+					for(float[] item : (float[][])matrix.getContent()) {
+						sink.put(item, 0, item.length);
+					}
+					break;
+				case FLOAT_ARRAY	:
+				case FLOAT_FLAT2	:
+				case FLOAT_BATCH2	:
+				case FLOAT_BATCH3	:
+					final float[]	fContent = matrix.getContent();
+
+					sink.put(fContent, 0, fContent.length);
+					break;
+				case FLOAT_BUFFER2	:
+					sink.put((FloatBuffer)matrix.getContent());
+					break;
+				case HALF_FLAT2		:
+				case BFLOAT16_FLAT2	:
+					final short[]	sContent = matrix.getContent();
+
+					sink.put(sContent, 0, sContent.length);
+					break;
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+					final QuantizedContent	qContent = matrix.getContent();
+
+					sink.put(qContent.getValues(), 0, qContent.getValues().length);
+					sink.put(qContent.getScales(), 0, qContent.getScales().length);
+					break;
+				case FLOAT_CSR2			:
+					final CsrContent	cContent = matrix.getContent();
+
+					sink.put(cContent.getRowPointers(), 0, cContent.getRowPointers().length);
+					sink.put(cContent.getColumnIndices(), 0, cContent.getColumnIndices().length);
+					sink.put(cContent.getValues(), 0, cContent.getValues().length);
+					break;
+				default:
+					throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported yet");
+			}
+			sink.flush();
+		}
+	}
+
+	static Sink sink(final DataOutput target) {
+		return new Sink(ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.BIG_ENDIAN)) {
+			@Override
+			protected void write(final ByteBuffer buffer) throws IOException {
+				target.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				buffer.position(buffer.limit());
+			}
+		};
+	}
+
+	static Sink sink(final WritableByteChannel target, final ByteOrder order) {
+		return new Sink(ByteBuffer.allocate(BUFFER_SIZE).order(order)) {
+			@Override
+			protected void write(final ByteBuffer buffer) throws IOException {
+				while (buffer.hasRemaining()) {
+					target.write(buffer);
+				}
+			}
+		};
+	}
+
+	static Source source(final DataInput source, final long size) {
+		return new Source(ByteBuffer.allocate((int)Math.min(BUFFER_SIZE, size)).order(ByteOrder.BIG_ENDIAN), size) {
+			@Override
+			protected void read(final ByteBuffer buffer) throws IOException {
+				source.readFully(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				buffer.position(buffer.limit());
+			}
+		};
+	}
+
+	static Source source(final ReadableByteChannel source, final ByteOrder order, final long size) {
+		return new Source(ByteBuffer.allocate((int)Math.min(BUFFER_SIZE, size)).order(order), size) {
+			@Override
+			protected void read(final ByteBuffer buffer) throws IOException {
+				while (buffer.hasRemaining()) {
+					if (source.read(buffer) < 0) {
+						throw new EOFException("Unexpected end of channel");
+					}
+				}
+			}
+		};
+	}
+
+	abstract static class Sink {
+		private final ByteBuffer	buffer;
+
+		private Sink(final ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		void put(final float[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Float.BYTES) {
+					flush();
+				}
+				final FloatBuffer	view = buffer.asFloatBuffer();
+				final int			count = Math.min(length, view.remaining());
+
+				view.put(content, from, count);
+				buffer.position(buffer.position() + count * Float.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void put(final FloatBuffer content) throws IOException {
+			final FloatBuffer	source = content.duplicate();
+
+			source.rewind();
+			while (source.hasRemaining()) {
+				if (buffer.remaining() < Float.BYTES) {
+					flush();
+				}
+				final FloatBuffer	view = buffer.asFloatBuffer();
+				final int			count = Math.min(source.remaining(), view.remaining()), limit = source.limit();
+
+				source.limit(source.position() + count);
+				view.put(source);
+				source.limit(limit);
+				buffer.position(buffer.position() + count * Float.BYTES);
+			}
+		}
+
+		void put(final byte[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (!buffer.hasRemaining()) {
+					flush();
+				}
+				final int	count = Math.min(length, buffer.remaining());
+
+				buffer.put(content, from, count);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void put(final int[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Integer.BYTES) {
+					flush();
+				}
+				final IntBuffer	view = buffer.asIntBuffer();
+				final int		count = Math.min(length, view.remaining());
+
+				view.put(content, from, count);
+				buffer.position(buffer.position() + count * Integer.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void put(final short[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Short.BYTES) {
+					flush();
+				}
+				final ShortBuffer	view = buffer.asShortBuffer();
+				final int			count = Math.min(length, view.remaining());
+
+				view.put(content, from, count);
+				buffer.position(buffer.position() + count * Short.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void put(final double[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Double.BYTES) {
+					flush();
+				}
+				final DoubleBuffer	view = buffer.asDoubleBuffer();
+				final int			count = Math.min(length, view.remaining());
+
+				view.put(content, from, count);
+				buffer.position(buffer.position() + count * Double.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void put(final DoubleBuffer content) throws IOException {
+			final DoubleBuffer	source = content.duplicate();
+
+			source.rewind();
+			while (source.hasRemaining()) {
+				if (buffer.remaining() < Double.BYTES) {
+					flush();
+				}
+				final DoubleBuffer	view = buffer.asDoubleBuffer();
+				final int			count = Math.min(source.remaining(), view.remaining()), limit = source.limit();
+
+				source.limit(source.position() + count);
+				view.put(source);
+				source.limit(limit);
+				buffer.position(buffer.position() + count * Double.BYTES);
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			if (buffer.hasRemaining()) {
+				write(buffer);
+			}
+			buffer.clear();
+		}
+
+		protected abstract void write(ByteBuffer buffer) throws IOException;
+	}
+
+	abstract static class Source {
+		private final ByteBuffer	buffer;
+		private long				available;
+
+		private Source(final ByteBuffer buffer, final long available) {
+			this.buffer = buffer;
+			this.available = available;
+			this.buffer.limit(0);
+		}
+
+		void get(final float[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Float.BYTES) {
+					fill();
+				}
+				final FloatBuffer	view = buffer.asFloatBuffer();
+				final int			count = Math.min(length, view.remaining());
+
+				view.get(content, from, count);
+				buffer.position(buffer.position() + count * Float.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void get(final FloatBuffer content) throws IOException {
+			final FloatBuffer	target = content.duplicate();
+
+			target.rewind();
+			while (target.hasRemaining()) {
+				if (buffer.remaining() < Float.BYTES) {
+					fill();
+				}
+				final FloatBuffer	view = buffer.asFloatBuffer();
+				final int			count = Math.min(target.remaining(), view.remaining());
+
+				view.limit(count);
+				target.put(view);
+				buffer.position(buffer.position() + count * Float.BYTES);
+			}
+		}
+
+		void get(final byte[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (!buffer.hasRemaining()) {
+					fill();
+				}
+				final int	count = Math.min(length, buffer.remaining());
+
+				buffer.get(content, from, count);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void get(final int[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Integer.BYTES) {
+					fill();
+				}
+				final IntBuffer	view = buffer.asIntBuffer();
+				final int		count = Math.min(length, view.remaining());
+
+				view.get(content, from, count);
+				buffer.position(buffer.position() + count * Integer.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void get(final short[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Short.BYTES) {
+					fill();
+				}
+				final ShortBuffer	view = buffer.asShortBuffer();
+				final int			count = Math.min(length, view.remaining());
+
+				view.get(content, from, count);
+				buffer.position(buffer.position() + count * Short.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void get(final double[] content, int from, int length) throws IOException {
+			while (length > 0) {
+				if (buffer.remaining() < Double.BYTES) {
+					fill();
+				}
+				final DoubleBuffer	view = buffer.asDoubleBuffer();
+				final int			count = Math.min(length, view.remaining());
+
+				view.get(content, from, count);
+				buffer.position(buffer.position() + count * Double.BYTES);
+				from += count;
+				length -= count;
+			}
+		}
+
+		void get(final DoubleBuffer content) throws IOException {
+			final DoubleBuffer	target = content.duplicate();
+
+			target.rewind();
+			while (target.hasRemaining()) {
+				if (buffer.remaining() < Double.BYTES) {
+					fill();
+				}
+				final DoubleBuffer	view = buffer.asDoubleBuffer();
+				final int			count = Math.min(target.remaining(), view.remaining());
+
+				view.limit(count);
+				target.put(view);
+				buffer.position(buffer.position() + count * Double.BYTES);
+			}
+		}
+
+		private void fill() throws IOException {
+			buffer.compact();
+
+			final int	count = (int)Math.min(buffer.remaining(), available);
+
+			if (count <= 0) {
+				throw new EOFException("Attempt to read more content than declared");
+			}
+			else {
+				buffer.limit(buffer.position() + count);
+				read(buffer);
+				available -= count;
+				buffer.flip();
+			}
+		}
+
+		protected abstract void read(ByteBuffer buffer) throws IOException;
+	}
+}
@@ -4,17 +4,31 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.function.LongFunction;
 
+import chav1961.nn.api.HalfPrecision;
 import chav1961.purelib.basic.Utils;
 import chav1961.purelib.basic.interfaces.DoubleSequence;
 
 public interface MatrixWrapper {
 	MatrixClass getMatrixClass();
 	int[] getDimensions();
+	int getOffset();
+	int getRowStride();
+	int getColumnStride();
 	<T> T getContent();	
 	
 	void upload(DataOutput target) throws IOException;
+	void upload(WritableByteChannel target, ByteOrder order) throws IOException;
 
 	public static MatrixWrapper random(final MatrixClass clazz, final int... dimensions) throws NullPointerException, IllegalArgumentException{
 		return random(clazz, System.nanoTime(), dimensions);
@@ -79,63 +93,236 @@ public interface MatrixWrapper {
 						fResult[index] = (float)seq.next();
 					}
 					return new MatrixWrapperImpl(clazz, dimensions, fResult);
+				case DOUBLE_FLAT2	:
+					final double[]		dfResult = new double[flatSize(dimensions)];
+
+					for(int index = 0; index < dfResult.length; index++) {
+						dfResult[index] = seq.next();
+					}
+					return new MatrixWrapperImpl(clazz, dimensions, dfResult);
+				case FLOAT_FLAT2	:
+				case FLOAT_BATCH2	:
+				case FLOAT_BATCH3	:
+					final float[]		ffResult = new float[flatSize(dimensions)];
+
+					for(int index = 0; index < ffResult.length; index++) {
+						ffResult[index] = (float)seq.next();
+					}
+					return new MatrixWrapperImpl(clazz, dimensions, ffResult);
+				case DOUBLE_BUFFER2	:
+					final CloseableMatrixWrapper	dbResult = allocate(clazz, dimensions);
+					final DoubleBuffer				dbContent = dbResult.getContent();
+
+					for(int index = 0, maxIndex = dbContent.limit(); index < maxIndex; index++) {
+						dbContent.put(index, seq.next());
+					}
+					return dbResult;
+				case FLOAT_BUFFER2	:
+					final CloseableMatrixWrapper	fbResult = allocate(clazz, dimensions);
+					final FloatBuffer				fbContent = fbResult.getContent();
+
+					for(int index = 0, maxIndex = fbContent.limit(); index < maxIndex; index++) {
+						fbContent.put(index, (float)seq.next());
+					}
+					return fbResult;
+				case HALF_FLAT2		:
+					final short[]		hResult = new short[flatSize(dimensions)];
+
+					for(int index = 0; index < hResult.length; index++) {
+						hResult[index] = HalfPrecision.floatToHalf((float)seq.next());
+					}
+					return new MatrixWrapperImpl(clazz, dimensions, hResult);
+				case BFLOAT16_FLAT2	:
+					final short[]		bResult = new short[flatSize(dimensions)];
+
+					for(int index = 0; index < bResult.length; index++) {
+						bResult[index] = HalfPrecision.floatToBFloat16((float)seq.next());
+					}
+					return new MatrixWrapperImpl(clazz, dimensions, bResult);
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+					final float[]		qResult = new float[flatSize(dimensions)];
+
+					for(int index = 0; index < qResult.length; index++) {
+						qResult[index] = (float)seq.next();
+					}
+					return new MatrixWrapperImpl(clazz, dimensions, quantize(qResult, dimensions[0], dimensions[1], clazz == MatrixClass.INT8_ROW_FLAT2, 1.0f));
 				default:
 					throw new UnsupportedOperationException("Matrix class ["+clazz+"] is not supported yet");
 			}
 		}
 	}
 	
-	public static MatrixWrapper download(DataInput source, MatrixClass clazz, int... dimensions) throws IOException, NullPointerException, IllegalArgumentException{
-		if (source == null) {
-			throw new NullPointerException("Input source can't be null");
-		}
-		else if (clazz == null) {
+	public static MatrixWrapper random(final MatrixClass clazz, final Distribution distribution, final long seed, final int parallelism, final int... dimensions) throws NullPointerException, IllegalArgumentException{
+		if (clazz == null) {
 			throw new NullPointerException("Matrix class can't be null");
 		}
+		else if (distribution == null) {
+			throw new NullPointerException("Distribution can't be null");
+		}
+		else if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism ["+parallelism+"] must be greater than 0");
+		}
 		else if (dimensions == null || dimensions.length != clazz.numberOfDimensions()) {
 			throw new IllegalArgumentException("Matrix dimensions can't be null and must contain exactly ["+clazz.numberOfDimensions()+"] numbers");
 		}
 		else {
 			checkDimensions(dimensions);
 			
+			final int	size = flatSize(dimensions);
+			
 			switch (clazz) {
 				case DOUBLE2_ARRAY	:
 					final double[][]	d2Result = new double[dimensions[0]][dimensions[1]];
 					
-					for(double[] item : d2Result) {
-						for(int index = 0; index < item.length; index++) {
-							item[index] = source.readDouble();
-						}
-					}
-					break;
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->d2Result[index / dimensions[1]][index % dimensions[1]] = value);
+					return new MatrixWrapperImpl(clazz, dimensions, d2Result);
 				case DOUBLE_ARRAY	:
-					final double[]		dResult = new double[dimensions[0]];
+				case DOUBLE_FLAT2	:
+					final double[]		dResult = new double[size];
 
-					for(int index = 0; index < dResult.length; index++) {
-						dResult[index] = source.readDouble();
-					}
-					break;
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->dResult[index] = value);
+					return new MatrixWrapperImpl(clazz, dimensions, dResult);
 				case FLOAT2_ARRAY	:
 					final float[][]		f2Result = new float[dimensions[0]][dimensions[1]];
 					
-					for(float[] item : f2Result) {
-						for(int index = 0; index < item.length; index++) {
-							item[index] = source.readFloat();
-						}
-					}
-					break;
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->f2Result[index / dimensions[1]][index % dimensions[1]] = (float)value);
+					return new MatrixWrapperImpl(clazz, dimensions, f2Result);
 				case FLOAT_ARRAY	:
-					final float[]		fResult = new float[dimensions[0]];
+				case FLOAT_FLAT2	:
+				case FLOAT_BATCH2	:
+				case FLOAT_BATCH3	:
+					final float[]		fResult = new float[size];
 
-					for(int index = 0; index < fResult.length; index++) {
-						fResult[index] = source.readFloat();
-					}
-					break;
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->fResult[index] = (float)value);
+					return new MatrixWrapperImpl(clazz, dimensions, fResult);
+				case DOUBLE_BUFFER2	:
+					final CloseableMatrixWrapper	dbResult = allocate(clazz, dimensions);
+					final DoubleBuffer				dbContent = dbResult.getContent();
+
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->dbContent.put(index, value));
+					return dbResult;
+				case FLOAT_BUFFER2	:
+					final CloseableMatrixWrapper	fbResult = allocate(clazz, dimensions);
+					final FloatBuffer				fbContent = fbResult.getContent();
+
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->fbContent.put(index, (float)value));
+					return fbResult;
+				case HALF_FLAT2		:
+					final short[]		hResult = new short[size];
+
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->hResult[index] = HalfPrecision.floatToHalf((float)value));
+					return new MatrixWrapperImpl(clazz, dimensions, hResult);
+				case BFLOAT16_FLAT2	:
+					final short[]		bResult = new short[size];
+
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->bResult[index] = HalfPrecision.floatToBFloat16((float)value));
+					return new MatrixWrapperImpl(clazz, dimensions, bResult);
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+					final float[]		qResult = new float[size];
+
+					MatrixRandom.fill(distribution, seed, parallelism, dimensions, size, (index, value)->qResult[index] = (float)value);
+					return new MatrixWrapperImpl(clazz, dimensions, quantize(qResult, dimensions[0], dimensions[1], clazz == MatrixClass.INT8_ROW_FLAT2, 1.0f));
 				default:
 					throw new UnsupportedOperationException("Matrix class ["+clazz+"] is not supported yet");
 			}
 		}
-		return null;
+	}
+	
+	public static MatrixWrapper download(final DataInput source, final MatrixClass clazz, final int... dimensions) throws IOException, NullPointerException, IllegalArgumentException{
+		if (source == null) {
+			throw new NullPointerException("Input source can't be null");
+		}
+		else if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (dimensions == null || dimensions.length != clazz.numberOfDimensions()) {
+			throw new IllegalArgumentException("Matrix dimensions can't be null and must contain exactly ["+clazz.numberOfDimensions()+"] numbers");
+		}
+		else {
+			checkDimensions(dimensions);
+			return download((size)->MatrixSerializer.source(source, size), clazz, dimensions);
+		}
+	}
+
+	public static MatrixWrapper download(final ReadableByteChannel source, final ByteOrder order, final MatrixClass clazz, final int... dimensions) throws IOException, NullPointerException, IllegalArgumentException{
+		if (source == null) {
+			throw new NullPointerException("Input channel can't be null");
+		}
+		else if (order == null) {
+			throw new NullPointerException("Byte order can't be null");
+		}
+		else if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (dimensions == null || dimensions.length != clazz.numberOfDimensions()) {
+			throw new IllegalArgumentException("Matrix dimensions can't be null and must contain exactly ["+clazz.numberOfDimensions()+"] numbers");
+		}
+		else {
+			checkDimensions(dimensions);
+			return download((size)->MatrixSerializer.source(source, order, size), clazz, dimensions);
+		}
+	}
+	
+	public static CloseableMatrixWrapper map(final FileChannel channel, final long position, final MatrixClass clazz, final int... dimensions) throws IOException, NullPointerException, IllegalArgumentException {
+		return map(channel, position, ByteOrder.BIG_ENDIAN, clazz, dimensions);
+	}
+
+	public static CloseableMatrixWrapper map(final FileChannel channel, final long position, final ByteOrder order, final MatrixClass clazz, final int... dimensions) throws IOException, NullPointerException, IllegalArgumentException {
+		if (channel == null) {
+			throw new NullPointerException("File channel can't be null");
+		}
+		else if (position < 0) {
+			throw new IllegalArgumentException("Position ["+position+"] can't be negative");
+		}
+		else if (order == null) {
+			throw new NullPointerException("Byte order can't be null");
+		}
+		else if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (dimensions == null || dimensions.length != clazz.numberOfDimensions()) {
+			throw new IllegalArgumentException("Matrix dimensions can't be null and must contain exactly ["+clazz.numberOfDimensions()+"] numbers");
+		}
+		else {
+			checkDimensions(dimensions);
+			
+			switch (clazz) {
+				case DOUBLE_BUFFER2	:
+				case FLOAT_BUFFER2	:
+					return new BufferMatrixWrapperImpl(clazz, dimensions, BufferMatrixWrapperImpl.map(channel, position, order, clazz, flatSize(dimensions)));
+				default:
+					throw new IllegalArgumentException("Matrix class ["+clazz+"] can't be mapped to file");
+			}
+		}
+	}
+
+	public static long sizeOf(final MatrixClass clazz, final int... dimensions) throws NullPointerException, IllegalArgumentException {
+		if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (dimensions == null || dimensions.length != clazz.numberOfDimensions()) {
+			throw new IllegalArgumentException("Matrix dimensions can't be null and must contain exactly ["+clazz.numberOfDimensions()+"] numbers");
+		}
+		else if (clazz == MatrixClass.FLOAT_SPARSE || clazz == MatrixClass.FLOAT_CSR2) {
+			throw new IllegalArgumentException("Matrix class ["+clazz+"] size depends on it's content, not on dimensions");
+		}
+		else {
+			long	size = clazz.storageClass() == double.class ? Double.BYTES : (clazz.storageClass() == short.class ? Short.BYTES : (clazz.storageClass() == byte.class ? Byte.BYTES : Float.BYTES));
+			
+			for(int item : dimensions) {
+				size *= item;
+			}
+			switch (clazz) {
+				case INT8_ROW_FLAT2		:
+					return size + (long)Float.BYTES * dimensions[0];
+				case INT8_COLUMN_FLAT2	:
+					return size + (long)Float.BYTES * dimensions[1];
+				default :
+					return size;
+			}
+		}
 	}
 	
 	public static MatrixWrapper of(final float... content) {
@@ -156,6 +343,28 @@ public interface MatrixWrapper {
 		}
 	}
 	
+	public static MatrixWrapper of(final int size, final int[] indices, final float[] values) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("Vector size ["+size+"] must be greater than 0"); 
+		}
+		else if (indices == null) {
+			throw new NullPointerException("Indices to wrap can't be null"); 
+		}
+		else if (values == null) {
+			throw new NullPointerException("Values to wrap can't be null"); 
+		}
+		else {
+			final SparseContent	content = new SparseContent(indices, values);
+			
+			if (indices.length > 0 && (indices[0] < 0 || indices[indices.length-1] >= size)) {
+				throw new IllegalArgumentException("Indices out of range 0.."+(size-1)); 
+			}
+			else {
+				return new MatrixWrapperImpl(MatrixClass.FLOAT_SPARSE, new int[] {size}, content);
+			}
+		}
+	}
+	
 	public static MatrixWrapper of(final float[]... content) {
 		if (content == null || Utils.checkArrayContent4Nulls(content) >= 0) {
 			throw new IllegalArgumentException("Content to wrap is null or contains nulls inside"); 
@@ -180,6 +389,801 @@ public interface MatrixWrapper {
 		}
 	}
 	
+	public static MatrixWrapper of(final int rows, final int columns, final float[] content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.length != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.length+"] is differ with matrix size ["+rows+"x"+columns+"]"); 
+			}
+			else {
+				return new MatrixWrapperImpl(MatrixClass.FLOAT_FLAT2, dimensions, content);
+			}
+		}
+	}
+
+	public static MatrixWrapper of(final int rows, final int columns, final double[] content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.length != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.length+"] is differ with matrix size ["+rows+"x"+columns+"]"); 
+			}
+			else {
+				return new MatrixWrapperImpl(MatrixClass.DOUBLE_FLAT2, dimensions, content);
+			}
+		}
+	}
+	
+	public static MatrixWrapper of(final MatrixClass clazz, final int rows, final int columns, final short[] content) {
+		if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (clazz.storageClass() != short.class) {
+			throw new IllegalArgumentException("Matrix class ["+clazz+"] doesn't use 16-bit storage");
+		}
+		else if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.length != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.length+"] is differ with matrix size ["+rows+"x"+columns+"]"); 
+			}
+			else {
+				return new MatrixWrapperImpl(clazz, dimensions, content);
+			}
+		}
+	}
+	
+	public static MatrixWrapper of(final MatrixClass clazz, final int rows, final int columns, final QuantizedContent content) {
+		if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (clazz.storageClass() != byte.class) {
+			throw new IllegalArgumentException("Matrix class ["+clazz+"] doesn't use quantized storage");
+		}
+		else if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			final int	scales = clazz == MatrixClass.INT8_ROW_FLAT2 ? rows : columns;
+			
+			checkDimensions(dimensions);
+			if (content.getValues().length != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.getValues().length+"] is differ with matrix size ["+rows+"x"+columns+"]"); 
+			}
+			else if (content.getScales().length != scales) {
+				throw new IllegalArgumentException("Number of scales ["+content.getScales().length+"] is differ with awaited ["+scales+"]"); 
+			}
+			else {
+				return new MatrixWrapperImpl(clazz, dimensions, content);
+			}
+		}
+	}
+	
+	public static MatrixWrapper of(final int rows, final int columns, final CsrContent content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.getRowPointers().length != rows + 1) {
+				throw new IllegalArgumentException("Row pointers length ["+content.getRowPointers().length+"] is differ with matrix rows ["+rows+"] + 1"); 
+			}
+			else {
+				for(int index : content.getColumnIndices()) {
+					if (index < 0 || index >= columns) {
+						throw new IllegalArgumentException("Column index ["+index+"] out of range 0.."+(columns-1)); 
+					}
+				}
+				return new MatrixWrapperImpl(MatrixClass.FLOAT_CSR2, dimensions, content);
+			}
+		}
+	}
+	
+	public static MatrixWrapper of(final int rows, final int columns, final FloatBuffer content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.limit() != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.limit()+"] is differ with matrix size ["+rows+"x"+columns+"]"); 
+			}
+			else {
+				return new BufferMatrixWrapperImpl(MatrixClass.FLOAT_BUFFER2, dimensions, content);
+			}
+		}
+	}
+
+	public static MatrixWrapper of(final int rows, final int columns, final DoubleBuffer content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.limit() != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.limit()+"] is differ with matrix size ["+rows+"x"+columns+"]"); 
+			}
+			else {
+				return new BufferMatrixWrapperImpl(MatrixClass.DOUBLE_BUFFER2, dimensions, content);
+			}
+		}
+	}
+	
+	public static MatrixWrapper batch(final int batchSize, final int features, final float[] content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {batchSize, features};
+			
+			checkDimensions(dimensions);
+			if (content.length != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.length+"] is differ with batch size ["+batchSize+"x"+features+"]"); 
+			}
+			else {
+				return new MatrixWrapperImpl(MatrixClass.FLOAT_BATCH2, dimensions, content);
+			}
+		}
+	}
+
+	public static MatrixWrapper batch(final int batchSize, final int rows, final int columns, final float[] content) {
+		if (content == null) {
+			throw new NullPointerException("Content to wrap can't be null"); 
+		}
+		else {
+			final int[]	dimensions = new int[] {batchSize, rows, columns};
+			
+			checkDimensions(dimensions);
+			if (content.length != flatSize(dimensions)) {
+				throw new IllegalArgumentException("Content length ["+content.length+"] is differ with batch size ["+batchSize+"x"+rows+"x"+columns+"]"); 
+			}
+			else {
+				return new MatrixWrapperImpl(MatrixClass.FLOAT_BATCH3, dimensions, content);
+			}
+		}
+	}
+
+	public static MatrixWrapper batch(final MatrixWrapper... samples) {
+		if (samples == null || samples.length == 0 || Utils.checkArrayContent4Nulls(samples) >= 0) {
+			throw new IllegalArgumentException("Samples to batch are null, empty or contain nulls inside"); 
+		}
+		else {
+			final int[]		dimensions = samples[0].getDimensions();
+			final int		size = flatSize(dimensions);
+			final float[]	content = new float[flatSize(new int[] {samples.length, size})];
+			
+			for(int index = 0; index < samples.length; index++) {
+				final MatrixWrapper	sample = samples[index].getMatrixClass() == MatrixClass.FLOAT_ARRAY ? samples[index] : flatten(convert(samples[index], MatrixClass.FLOAT_FLAT2));
+				
+				if (sample.getMatrixClass() != MatrixClass.FLOAT_ARRAY && sample.getMatrixClass() != MatrixClass.FLOAT_FLAT2) {
+					throw new IllegalArgumentException("Sample # ["+index+"] has unsupported matrix class ["+samples[index].getMatrixClass()+"]"); 
+				}
+				else if (!Arrays.equals(dimensions, sample.getDimensions())) {
+					throw new IllegalArgumentException("Sample # ["+index+"] dimensions "+Arrays.toString(sample.getDimensions())+" differ from the first sample dimensions "+Arrays.toString(dimensions)); 
+				}
+				else {
+					System.arraycopy((float[])sample.getContent(), 0, content, index * size, size);
+				}
+			}
+			return dimensions.length == 1 ? batch(samples.length, dimensions[0], content) : batch(samples.length, dimensions[0], dimensions[1], content);
+		}
+	}
+
+	public static MatrixWrapper sample(final MatrixWrapper batch, final int index) {
+		if (batch == null) {
+			throw new NullPointerException("Batch can't be null"); 
+		}
+		else if (batch.getMatrixClass() != MatrixClass.FLOAT_BATCH2 && batch.getMatrixClass() != MatrixClass.FLOAT_BATCH3) {
+			throw new IllegalArgumentException("Matrix class ["+batch.getMatrixClass()+"] is not a batch"); 
+		}
+		else if (index < 0 || index >= batch.getDimensions()[0]) {
+			throw new IllegalArgumentException("Sample index ["+index+"] out of range 0.."+(batch.getDimensions()[0]-1)); 
+		}
+		else {
+			final int[]		dimensions = Arrays.copyOfRange(batch.getDimensions(), 1, batch.getDimensions().length);
+			final int		size = flatSize(dimensions);
+			final float[]	content = Arrays.copyOfRange((float[])batch.getContent(), index * size, (index + 1) * size);
+			
+			return dimensions.length == 1 ? of(content) : of(dimensions[0], dimensions[1], content);
+		}
+	}
+	
+	public static CloseableMatrixWrapper allocate(final MatrixClass clazz, final int... dimensions) throws NullPointerException, IllegalArgumentException {
+		if (clazz == null) {
+			throw new NullPointerException("Matrix class can't be null");
+		}
+		else if (dimensions == null || dimensions.length != clazz.numberOfDimensions()) {
+			throw new IllegalArgumentException("Matrix dimensions can't be null and must contain exactly ["+clazz.numberOfDimensions()+"] numbers");
+		}
+		else {
+			checkDimensions(dimensions);
+			
+			switch (clazz) {
+				case DOUBLE_BUFFER2	:
+				case FLOAT_BUFFER2	:
+					return new BufferMatrixWrapperImpl(clazz, dimensions, BufferMatrixWrapperImpl.allocate(clazz, flatSize(dimensions)));
+				default:
+					throw new IllegalArgumentException("Matrix class ["+clazz+"] can't be allocated off-heap");
+			}
+		}
+	}
+
+	public static CloseableMatrixWrapper toOffHeap(final MatrixWrapper matrix) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to move off-heap can't be null"); 
+		}
+		else if (!isCompact(matrix)) {
+			return toOffHeap(compact(matrix));
+		}
+		else {
+			switch (matrix.getMatrixClass()) {
+				case DOUBLE2_ARRAY	:
+				case DOUBLE_FLAT2	:
+				case DOUBLE_BUFFER2	:
+					final CloseableMatrixWrapper	dResult = allocate(MatrixClass.DOUBLE_BUFFER2, matrix.getDimensions());
+					final DoubleBuffer				dContent = dResult.getContent();
+					
+					switch (matrix.getMatrixClass()) {
+						case DOUBLE2_ARRAY	:
+							for(double[] line : (double[][])matrix.getContent()) {
+								dContent.put(line);
+							}
+							break;
+						case DOUBLE_FLAT2	:
+							dContent.put((double[])matrix.getContent());
+							break;
+						default :
+							final DoubleBuffer	dSource = ((DoubleBuffer)matrix.getContent()).duplicate();
+							
+							dSource.rewind();
+							dContent.put(dSource);
+					}
+					dContent.rewind();
+					return dResult;
+				case FLOAT2_ARRAY	:
+				case FLOAT_FLAT2	:
+				case FLOAT_BUFFER2	:
+					final CloseableMatrixWrapper	fResult = allocate(MatrixClass.FLOAT_BUFFER2, matrix.getDimensions());
+					final FloatBuffer				fContent = fResult.getContent();
+					
+					switch (matrix.getMatrixClass()) {
+						case FLOAT2_ARRAY	:
+							for(float[] line : (float[][])matrix.getContent()) {
+								fContent.put(line);
+							}
+							break;
+						case FLOAT_FLAT2	:
+							fContent.put((float[])matrix.getContent());
+							break;
+						default :
+							final FloatBuffer	fSource = ((FloatBuffer)matrix.getContent()).duplicate();
+							
+							fSource.rewind();
+							fContent.put(fSource);
+					}
+					fContent.rewind();
+					return fResult;
+				default:
+					throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] can't be moved off-heap");
+			}
+		}
+	}
+	
+	public static MatrixWrapper flatten(final MatrixWrapper matrix) {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to flatten can't be null"); 
+		}
+		else if (!isCompact(matrix)) {
+			return compact(matrix);
+		}
+		else {
+			switch (matrix.getMatrixClass()) {
+				case DOUBLE2_ARRAY	:
+					final double[][]	d2Content = matrix.getContent();
+					final int			dColumns = matrix.getDimensions()[1];
+					final double[]		dResult = new double[flatSize(matrix.getDimensions())];
+					
+					for(int index = 0; index < d2Content.length; index++) {
+						System.arraycopy(d2Content[index], 0, dResult, index * dColumns, dColumns);
+					}
+					return of(d2Content.length, dColumns, dResult);
+				case FLOAT2_ARRAY	:
+					final float[][]		f2Content = matrix.getContent();
+					final int			fColumns = matrix.getDimensions()[1];
+					final float[]		fResult = new float[flatSize(matrix.getDimensions())];
+					
+					for(int index = 0; index < f2Content.length; index++) {
+						System.arraycopy(f2Content[index], 0, fResult, index * fColumns, fColumns);
+					}
+					return of(f2Content.length, fColumns, fResult);
+				case DOUBLE_BUFFER2	:
+					final double[]		dbResult = new double[flatSize(matrix.getDimensions())];
+					
+					final DoubleBuffer	dbContent = ((DoubleBuffer)matrix.getContent()).duplicate();
+					
+					dbContent.rewind();
+					dbContent.get(dbResult);
+					return of(matrix.getDimensions()[0], matrix.getDimensions()[1], dbResult);
+				case FLOAT_BUFFER2	:
+					final float[]		fbResult = new float[flatSize(matrix.getDimensions())];
+					
+					final FloatBuffer	fbContent = ((FloatBuffer)matrix.getContent()).duplicate();
+					
+					fbContent.rewind();
+					fbContent.get(fbResult);
+					return of(matrix.getDimensions()[0], matrix.getDimensions()[1], fbResult);
+				case DOUBLE_ARRAY	:
+				case DOUBLE_FLAT2	:
+				case FLOAT_ARRAY	:
+				case FLOAT_FLAT2	:
+				case HALF_FLAT2		:
+				case BFLOAT16_FLAT2	:
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+				case FLOAT_SPARSE		:
+				case FLOAT_CSR2			:
+				case FLOAT_BATCH2		:
+				case FLOAT_BATCH3		:
+					return matrix;
+				default:
+					throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported yet");
+			}
+		}
+	}
+	
+	public static MatrixWrapper convert(final MatrixWrapper matrix, final MatrixClass target) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to convert can't be null"); 
+		}
+		else if (target == null) {
+			throw new NullPointerException("Target matrix class can't be null"); 
+		}
+		else if (matrix.getMatrixClass() == target && isCompact(matrix)) {
+			return matrix;
+		}
+		else if (matrix.getMatrixClass().contentClass() != float.class || matrix.getMatrixClass().numberOfDimensions() != 2) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] can't be converted, only 2-dimensional float matrices are supported");
+		}
+		else if (!isCompact(matrix)) {
+			return convert(compact(matrix), target);
+		}
+		else {
+			final int[]		dimensions = matrix.getDimensions();
+			final float[]	content;
+			
+			switch (matrix.getMatrixClass()) {
+				case HALF_FLAT2		:
+					content = HalfPrecision.halfToFloat((short[])matrix.getContent(), new float[flatSize(dimensions)]);
+					break;
+				case BFLOAT16_FLAT2	:
+					content = HalfPrecision.bfloat16ToFloat((short[])matrix.getContent(), new float[flatSize(dimensions)]);
+					break;
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+					content = dequantize((QuantizedContent)matrix.getContent(), dimensions[0], dimensions[1], matrix.getMatrixClass() == MatrixClass.INT8_ROW_FLAT2);
+					break;
+				case FLOAT_CSR2			:
+					content = fromCsr((CsrContent)matrix.getContent(), dimensions[0], dimensions[1]);
+					break;
+				default :
+					content = flatten(matrix).getContent();
+			}
+			
+			switch (target) {
+				case FLOAT_FLAT2	:
+					return of(dimensions[0], dimensions[1], content);
+				case FLOAT2_ARRAY	:
+					final float[][]	f2Result = new float[dimensions[0]][dimensions[1]];
+					
+					for(int index = 0; index < f2Result.length; index++) {
+						System.arraycopy(content, index * dimensions[1], f2Result[index], 0, dimensions[1]);
+					}
+					return of(f2Result);
+				case FLOAT_BUFFER2	:
+					return toOffHeap(of(dimensions[0], dimensions[1], content));
+				case HALF_FLAT2		:
+					return of(target, dimensions[0], dimensions[1], HalfPrecision.floatToHalf(content, new short[content.length]));
+				case BFLOAT16_FLAT2	:
+					return of(target, dimensions[0], dimensions[1], HalfPrecision.floatToBFloat16(content, new short[content.length]));
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+					return of(target, dimensions[0], dimensions[1], quantize(content, dimensions[0], dimensions[1], target == MatrixClass.INT8_ROW_FLAT2, 1.0f));
+				case FLOAT_CSR2			:
+					return of(dimensions[0], dimensions[1], toCsr(content, dimensions[0], dimensions[1]));
+				case FLOAT_BATCH2		:
+					return batch(dimensions[0], dimensions[1], content);
+				default:
+					throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] can't be converted to ["+target+"]");
+			}
+		}
+	}
+	
+	public static boolean isCompact(final MatrixWrapper matrix) {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to test can't be null"); 
+		}
+		else if (matrix.getMatrixClass().numberOfDimensions() != 2) {
+			return true;
+		}
+		else {
+			final int[]	dimensions = matrix.getDimensions();
+			
+			if (matrix.getOffset() != 0 || matrix.getColumnStride() != 1 || matrix.getRowStride() != dimensions[1]) {
+				return false;
+			}
+			else {
+				switch (matrix.getMatrixClass()) {
+					case FLOAT_FLAT2	:
+					case DOUBLE_FLAT2	:
+					case HALF_FLAT2		:
+					case BFLOAT16_FLAT2	:
+						return Array.getLength(matrix.getContent()) == (long)dimensions[0] * dimensions[1];
+					case FLOAT_BUFFER2	:
+					case DOUBLE_BUFFER2	:
+						return ((Buffer)matrix.getContent()).limit() == (long)dimensions[0] * dimensions[1];
+					default :
+						return true;
+				}
+			}
+		}
+	}
+
+	public static MatrixWrapper view(final MatrixWrapper matrix, final int rowFrom, final int rows, final int rowStep, final int columnFrom, final int columns, final int columnStep) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to view can't be null"); 
+		}
+		else if (matrix.getMatrixClass().numberOfDimensions() != 2) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] is not two-dimensional");
+		}
+		else if (rows <= 0 || columns <= 0) {
+			throw new IllegalArgumentException("Number of rows ["+rows+"] and columns ["+columns+"] must be greater than 0");
+		}
+		else if (rowStep <= 0 || columnStep <= 0) {
+			throw new IllegalArgumentException("Row step ["+rowStep+"] and column step ["+columnStep+"] must be greater than 0");
+		}
+		else if (rowFrom < 0 || rowFrom + (long)(rows - 1) * rowStep >= matrix.getDimensions()[0]) {
+			throw new IllegalArgumentException("Row range ["+rowFrom+"+"+rows+"*"+rowStep+"] out of matrix rows 0.."+(matrix.getDimensions()[0]-1));
+		}
+		else if (columnFrom < 0 || columnFrom + (long)(columns - 1) * columnStep >= matrix.getDimensions()[1]) {
+			throw new IllegalArgumentException("Column range ["+columnFrom+"+"+columns+"*"+columnStep+"] out of matrix columns 0.."+(matrix.getDimensions()[1]-1));
+		}
+		else {
+			return newView(matrix, rows, columns
+						, matrix.getOffset() + rowFrom * matrix.getRowStride() + columnFrom * matrix.getColumnStride()
+						, matrix.getRowStride() * rowStep
+						, matrix.getColumnStride() * columnStep);
+		}
+	}
+
+	public static MatrixWrapper rows(final MatrixWrapper matrix, final int from, final int to) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to view can't be null"); 
+		}
+		else if (from >= to) {
+			throw new IllegalArgumentException("Start row ["+from+"] must be less than end row ["+to+"]");
+		}
+		else {
+			return view(matrix, from, to - from, 1, 0, matrix.getDimensions()[matrix.getDimensions().length-1], 1);
+		}
+	}
+
+	public static MatrixWrapper columns(final MatrixWrapper matrix, final int from, final int to) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to view can't be null"); 
+		}
+		else if (from >= to) {
+			throw new IllegalArgumentException("Start column ["+from+"] must be less than end column ["+to+"]");
+		}
+		else {
+			return view(matrix, 0, matrix.getDimensions()[0], 1, from, to - from, 1);
+		}
+	}
+
+	public static MatrixWrapper transpose(final MatrixWrapper matrix) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to transpose can't be null"); 
+		}
+		else if (matrix.getMatrixClass().numberOfDimensions() != 2) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] is not two-dimensional");
+		}
+		else {
+			final int[]	dimensions = matrix.getDimensions();
+			
+			return newView(matrix, dimensions[1], dimensions[0], matrix.getOffset(), matrix.getColumnStride(), matrix.getRowStride());
+		}
+	}
+	
+	public static MatrixWrapper quantize(final MatrixWrapper matrix, final MatrixClass target, final float percentile) throws NullPointerException, IllegalArgumentException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to quantize can't be null"); 
+		}
+		else if (target == null) {
+			throw new NullPointerException("Target matrix class can't be null"); 
+		}
+		else if (target.storageClass() != byte.class) {
+			throw new IllegalArgumentException("Target matrix class ["+target+"] doesn't use quantized storage");
+		}
+		else if (!(percentile > 0 && percentile <= 1)) {
+			throw new IllegalArgumentException("Percentile ["+percentile+"] out of range (0..1]");
+		}
+		else {
+			final MatrixWrapper	source = flatten(convert(matrix, MatrixClass.FLOAT_FLAT2));
+			final int[]			dimensions = source.getDimensions();
+			
+			return of(target, dimensions[0], dimensions[1], quantize((float[])source.getContent(), dimensions[0], dimensions[1], target == MatrixClass.INT8_ROW_FLAT2, percentile));
+		}
+	}
+	
+	private static MatrixWrapper download(final LongFunction<MatrixSerializer.Source> sources, final MatrixClass clazz, final int[] dimensions) throws IOException {
+		if (clazz == MatrixClass.FLOAT_CSR2) {	// Size of the CSR content is known after reading row pointers only
+			final int[]		rowPointers = new int[dimensions[0] + 1];
+			
+			sources.apply((long)Integer.BYTES * rowPointers.length).get(rowPointers, 0, rowPointers.length);
+			
+			final int		nonZeros = rowPointers[dimensions[0]];
+			
+			if (nonZeros < 0 || nonZeros > (long)dimensions[0] * dimensions[1]) {
+				throw new IOException("Illegal number of non-zero items ["+nonZeros+"] in the CSR content");
+			}
+			else {
+				final MatrixSerializer.Source	source = sources.apply((long)(Integer.BYTES + Float.BYTES) * nonZeros); 
+				final int[]		columnIndices = new int[nonZeros];
+				final float[]	values = new float[nonZeros];
+				
+				source.get(columnIndices, 0, nonZeros);
+				source.get(values, 0, nonZeros);
+				try {
+					return of(dimensions[0], dimensions[1], new CsrContent(rowPointers, columnIndices, values));
+				} catch (IllegalArgumentException exc) {
+					throw new IOException(exc.getLocalizedMessage(), exc);
+				}
+			}
+		}
+		final MatrixSerializer.Source	source = sources.apply(sizeOf(clazz, dimensions));
+		
+		switch (clazz) {
+			case DOUBLE2_ARRAY	:
+				final double[][]	d2Result = new double[dimensions[0]][dimensions[1]];
+				
+				for(double[] item : d2Result) {
+					source.get(item, 0, item.length);
+				}
+				return new MatrixWrapperImpl(clazz, dimensions, d2Result);
+			case DOUBLE_ARRAY	:
+			case DOUBLE_FLAT2	:
+				final double[]		dResult = new double[flatSize(dimensions)];
+
+				source.get(dResult, 0, dResult.length);
+				return new MatrixWrapperImpl(clazz, dimensions, dResult);
+			case FLOAT2_ARRAY	:
+				final float[][]		f2Result = new float[dimensions[0]][dimensions[1]];
+				
+				for(float[] item : f2Result) {
+					source.get(item, 0, item.length);
+				}
+				return new MatrixWrapperImpl(clazz, dimensions, f2Result);
+			case FLOAT_ARRAY	:
+			case FLOAT_FLAT2	:
+			case FLOAT_BATCH2	:
+			case FLOAT_BATCH3	:
+				final float[]		fResult = new float[flatSize(dimensions)];
+
+				source.get(fResult, 0, fResult.length);
+				return new MatrixWrapperImpl(clazz, dimensions, fResult);
+			case DOUBLE_BUFFER2	:
+			case FLOAT_BUFFER2	:
+				final CloseableMatrixWrapper	bResult = allocate(clazz, dimensions);
+				
+				try {
+					if (clazz == MatrixClass.DOUBLE_BUFFER2) {
+						source.get((DoubleBuffer)bResult.getContent());
+					}
+					else {
+						source.get((FloatBuffer)bResult.getContent());
+					}
+					return bResult;
+				} catch (IOException | RuntimeException exc) {
+					bResult.close();
+					throw exc;
+				}
+			case HALF_FLAT2		:
+			case BFLOAT16_FLAT2	:
+				final short[]		sResult = new short[flatSize(dimensions)];
+
+				source.get(sResult, 0, sResult.length);
+				return new MatrixWrapperImpl(clazz, dimensions, sResult);
+			case INT8_ROW_FLAT2		:
+			case INT8_COLUMN_FLAT2	:
+				final QuantizedContent	qResult = new QuantizedContent(new byte[flatSize(dimensions)], new float[clazz == MatrixClass.INT8_ROW_FLAT2 ? dimensions[0] : dimensions[1]]);
+				
+				source.get(qResult.getValues(), 0, qResult.getValues().length);
+				source.get(qResult.getScales(), 0, qResult.getScales().length);
+				return new MatrixWrapperImpl(clazz, dimensions, qResult);
+			default:
+				throw new UnsupportedOperationException("Matrix class ["+clazz+"] is not supported yet");
+		}
+	}
+	
+	private static QuantizedContent quantize(final float[] content, final int rows, final int columns, final boolean perRow, final float percentile) {
+		final int		channels = perRow ? rows : columns, channelSize = perRow ? columns : rows;
+		final int		channelStep = perRow ? columns : 1, itemStep = perRow ? 1 : columns;
+		final float[]	scales = new float[channels], temp = new float[channelSize];
+		final byte[]	values = new byte[content.length];
+		
+		for(int channel = 0; channel < channels; channel++) {	// Calibrate scale: clip the given percentile of absolute values
+			for(int index = 0, pos = channel * channelStep; index < channelSize; index++, pos += itemStep) {
+				temp[index] = Math.abs(content[pos]);
+			}
+			Arrays.sort(temp);
+			
+			final float	limit = temp[Math.max(0, (int)Math.ceil(percentile * channelSize) - 1)];
+			final float	scale = limit / Byte.MAX_VALUE;
+			final float	reverse = scale == 0 ? 0 : 1 / scale;
+			
+			scales[channel] = scale;
+			for(int index = 0, pos = channel * channelStep; index < channelSize; index++, pos += itemStep) {
+				values[pos] = (byte)Math.max(-Byte.MAX_VALUE, Math.min(Byte.MAX_VALUE, Math.round(content[pos] * reverse)));
+			}
+		}
+		return new QuantizedContent(values, scales);
+	}
+
+	private static MatrixWrapper newView(final MatrixWrapper matrix, final int rows, final int columns, final int offset, final int rowStride, final int columnStride) {
+		final int[]	dimensions = new int[] {rows, columns};
+		
+		switch (matrix.getMatrixClass()) {
+			case FLOAT_FLAT2	:
+			case DOUBLE_FLAT2	:
+			case HALF_FLAT2		:
+			case BFLOAT16_FLAT2	:
+				return new MatrixWrapperImpl(matrix.getMatrixClass(), dimensions, matrix.getContent(), offset, rowStride, columnStride);
+			case FLOAT_BUFFER2	:
+			case DOUBLE_BUFFER2	:
+				return new BufferMatrixWrapperImpl(matrix.getMatrixClass(), dimensions, (Buffer)matrix.getContent(), offset, rowStride, columnStride, matrix instanceof CloseableMatrixWrapper ? (CloseableMatrixWrapper)matrix : null);
+			default :
+				throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] doesn't support views, flatten it before");
+		}
+	}
+
+	private static MatrixWrapper compact(final MatrixWrapper matrix) {
+		final int[]	dimensions = matrix.getDimensions();
+		final int	rows = dimensions[0], columns = dimensions[1];
+		final int	offset = matrix.getOffset(), rowStride = matrix.getRowStride(), columnStride = matrix.getColumnStride();
+		
+		switch (matrix.getMatrixClass()) {
+			case FLOAT_FLAT2	:
+			case FLOAT_BUFFER2	:
+				final float[]	fResult = new float[flatSize(dimensions)];
+				
+				if (matrix.getMatrixClass() == MatrixClass.FLOAT_FLAT2) {
+					final float[]	fContent = matrix.getContent();
+					
+					for(int y = 0, base = offset, where = 0; y < rows; y++, base += rowStride) {
+						for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+							fResult[where++] = fContent[pos];
+						}
+					}
+				}
+				else {
+					final FloatBuffer	fContent = matrix.getContent();
+					
+					for(int y = 0, base = offset, where = 0; y < rows; y++, base += rowStride) {
+						for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+							fResult[where++] = fContent.get(pos);
+						}
+					}
+				}
+				return of(rows, columns, fResult);
+			case DOUBLE_FLAT2	:
+			case DOUBLE_BUFFER2	:
+				final double[]	dResult = new double[flatSize(dimensions)];
+				
+				if (matrix.getMatrixClass() == MatrixClass.DOUBLE_FLAT2) {
+					final double[]	dContent = matrix.getContent();
+					
+					for(int y = 0, base = offset, where = 0; y < rows; y++, base += rowStride) {
+						for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+							dResult[where++] = dContent[pos];
+						}
+					}
+				}
+				else {
+					final DoubleBuffer	dContent = matrix.getContent();
+					
+					for(int y = 0, base = offset, where = 0; y < rows; y++, base += rowStride) {
+						for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+							dResult[where++] = dContent.get(pos);
+						}
+					}
+				}
+				return of(rows, columns, dResult);
+			case HALF_FLAT2		:
+			case BFLOAT16_FLAT2	:
+				final short[]	sContent = matrix.getContent();
+				final short[]	sResult = new short[flatSize(dimensions)];
+				
+				for(int y = 0, base = offset, where = 0; y < rows; y++, base += rowStride) {
+					for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+						sResult[where++] = sContent[pos];
+					}
+				}
+				return of(matrix.getMatrixClass(), rows, columns, sResult);
+			default :
+				throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported yet");
+		}
+	}
+	
+	private static CsrContent toCsr(final float[] content, final int rows, final int columns) {
+		final int[]	rowPointers = new int[rows + 1];
+		int			nonZeros = 0;
+		
+		for(float item : content) {
+			if (item != 0) {
+				nonZeros++;
+			}
+		}
+		final int[]		columnIndices = new int[nonZeros];
+		final float[]	values = new float[nonZeros];
+		
+		nonZeros = 0;
+		for(int y = 0, pos = 0; y < rows; y++) {
+			for(int x = 0; x < columns; x++, pos++) {
+				if (content[pos] != 0) {
+					columnIndices[nonZeros] = x;
+					values[nonZeros++] = content[pos];
+				}
+			}
+			rowPointers[y + 1] = nonZeros;
+		}
+		return new CsrContent(rowPointers, columnIndices, values);
+	}
+
+	private static float[] fromCsr(final CsrContent content, final int rows, final int columns) {
+		final int[]		rowPointers = content.getRowPointers(), columnIndices = content.getColumnIndices();
+		final float[]	values = content.getValues();
+		final float[]	result = new float[rows * columns];
+		
+		for(int y = 0; y < rows; y++) {
+			for(int index = rowPointers[y]; index < rowPointers[y + 1]; index++) {
+				result[y * columns + columnIndices[index]] = values[index];
+			}
+		}
+		return result;
+	}
+	
+	private static float[] dequantize(final QuantizedContent content, final int rows, final int columns, final boolean perRow) {
+		final byte[]	values = content.getValues();
+		final float[]	scales = content.getScales();
+		final float[]	result = new float[values.length];
+		
+		for(int y = 0, pos = 0; y < rows; y++) {
+			for(int x = 0; x < columns; x++, pos++) {
+				result[pos] = values[pos] * scales[perRow ? y : x];
+			}
+		}
+		return result;
+	}
+	
 	private static boolean areLineSizesIdentical(final Object[] content) {
 		if (content.length == 0) {
 			return true;
@@ -196,6 +1200,20 @@ public interface MatrixWrapper {
 		}
 	}
 	
+	private static int flatSize(final int[] dimensions) {
+		long	size = 1;
+		
+		for(int item : dimensions) {
+			size *= item;
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Total matrix size ["+size+"] is too long to be stored in the flat array");
+		}
+		else {
+			return (int)size;
+		}
+	}
+	
 	private static void checkDimensions(final int[] dimensions) {
 		for(int index = 0; index < dimensions.length; index++) {
 			if (dimensions[index] <= 0) {
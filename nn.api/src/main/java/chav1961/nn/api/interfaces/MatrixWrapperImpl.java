@@ -3,6 +3,8 @@ package chav1961.nn.api.interfaces;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Objects;
 
@@ -10,11 +12,21 @@ class MatrixWrapperImpl implements MatrixWrapper {
 	private final MatrixClass 	clazz;
 	private final int[] 		dimensions;
 	private final Object		content;
+	private final int			offset;
+	private final int			rowStride;
+	private final int			columnStride;
 	
 	MatrixWrapperImpl(final MatrixClass clazz, final int[] dimensions, final Object content) {
+		this(clazz, dimensions, content, 0, dimensions[dimensions.length-1], 1);
+	}
+
+	MatrixWrapperImpl(final MatrixClass clazz, final int[] dimensions, final Object content, final int offset, final int rowStride, final int columnStride) {
 		this.clazz = clazz;
 		this.dimensions = dimensions.clone();
 		this.content = content;
+		this.offset = offset;
+		this.rowStride = rowStride;
+		this.columnStride = columnStride;
 	}
 
 	@Override
@@ -27,6 +39,21 @@ class MatrixWrapperImpl implements MatrixWrapper {
 		return dimensions.clone();
 	}
 
+	@Override
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public int getRowStride() {
+		return rowStride;
+	}
+
+	@Override
+	public int getColumnStride() {
+		return columnStride;
+	}
+
 	@Override
 	public <T> T getContent() {
 		return (T)content;
@@ -38,42 +65,20 @@ class MatrixWrapperImpl implements MatrixWrapper {
 			throw new NullPointerException("Target can't be null");
 		}
 		else {
-			switch (getMatrixClass()) {
-				case DOUBLE2_ARRAY	:
-					final double[][]	d2Content = getContent();
-					
-					for(double[] item : d2Content) {
-						for(double val : item) {
-							target.writeDouble(val);
-						}
-					}
-					break;
-				case DOUBLE_ARRAY	:
-					final double[]		dContent = getContent();
-					
-					for(double val : dContent) {
-						target.writeDouble(val);
-					}
-					break;
-				case FLOAT2_ARRAY	:
-					final float[][]		f2Content = getContent();
-					
-					for(float[] item : f2Content) {
-						for(float val : item) {
-							target.writeFloat(val);
-						}
-					}
-					break;
-				case FLOAT_ARRAY	:
-					final float[]		fContent = getContent();
-					
-					for(float val : fContent) {
-						target.writeFloat(val);
-					}
-					break;
-				default:
-					throw new UnsupportedOperationException("Matrix class ["+getMatrixClass()+"] is not supported yet");
-			}
+			MatrixSerializer.upload(this, MatrixSerializer.sink(target));
+		}
+	}
+
+	@Override
+	public void upload(final WritableByteChannel target, final ByteOrder order) throws IOException {
+		if (target == null) {
+			throw new NullPointerException("Target can't be null");
+		}
+		else if (order == null) {
+			throw new NullPointerException("Byte order can't be null");
+		}
+		else {
+			MatrixSerializer.upload(this, MatrixSerializer.sink(target, order));
 		}
 	}
 
@@ -94,6 +99,7 @@ class MatrixWrapperImpl implements MatrixWrapper {
 		if (getClass() != obj.getClass()) return false;
 		MatrixWrapperImpl other = (MatrixWrapperImpl) obj;
 		if (clazz != other.clazz) return false;
+		if (!MatrixWrapper.isCompact(this) || !MatrixWrapper.isCompact(other)) return MatrixWrapper.flatten(this).equals(MatrixWrapper.flatten(other));
 		if (content == null) {
 			if (other.content != null) return false;
 		} else if (!equals(content, other.content)) return false;
@@ -113,7 +119,7 @@ class MatrixWrapperImpl implements MatrixWrapper {
 			return true;
 		}
 		else {
-			return false;
+			return left.equals(right);
 		}
 	}
 }
\ No newline at end of file
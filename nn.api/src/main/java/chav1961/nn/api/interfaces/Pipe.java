@@ -6,16 +6,90 @@ import chav1961.purelib.basic.interfaces.ProgressIndicator;
 public interface Pipe {
 	boolean isReadOnly();
 	int getParallelism();
+
+	default PipeProfiler getProfiler() {
+		return PipeProfiler.NONE;
+	}
+
+	default PipeStream stream(final int groups, final int capacity) throws IllegalArgumentException, IllegalStateException {	// Stage groups run on their own threads, several vectors are in flight at once
+		throw new UnsupportedOperationException("Pipeline-parallel streaming is not supported by this pipe");
+	}
 	
 	MatrixWrapper forward(MatrixWrapper matrix, ProgressIndicator pi) throws CalculationException;
 
 	default MatrixWrapper forward(MatrixWrapper matrix) throws CalculationException {
 		return forward(matrix, ProgressIndicator.DUMMY);
 	}
+
+	default MatrixWrapper forward(final MatrixWrapper matrix, final MatrixWrapper target, final ProgressIndicator pi) throws CalculationException {
+		if (target == null) {
+			throw new NullPointerException("Target matrix can't be null");
+		}
+		else if (target.getMatrixClass() != MatrixClass.FLOAT_ARRAY && target.getMatrixClass() != MatrixClass.DOUBLE_ARRAY) {
+			throw new IllegalArgumentException("Target matrix class ["+target.getMatrixClass()+"] is not supported, only vectors are available");
+		}
+		else {
+			final MatrixWrapper	result = forward(matrix, pi);
+			
+			if (result.getMatrixClass() != target.getMatrixClass() || result.getDimensions()[0] != target.getDimensions()[0]) {
+				throw new IllegalArgumentException("Target matrix class ["+target.getMatrixClass()+"] or size ["+target.getDimensions()[0]+"] differs from the calculated one");
+			}
+			else {
+				System.arraycopy(result.getContent(), 0, target.getContent(), 0, target.getDimensions()[0]);
+				return target;
+			}
+		}
+	}
+
+	default MatrixWrapper forward(final MatrixWrapper matrix, final MatrixWrapper target) throws CalculationException {
+		return forward(matrix, target, ProgressIndicator.DUMMY);
+	}
+	
+	default MatrixWrapper forwardBatch(final MatrixWrapper batch, final ProgressIndicator pi) throws CalculationException {
+		if (batch == null) {
+			throw new NullPointerException("Batch to process can't be null");
+		}
+		else if (batch.getMatrixClass() != MatrixClass.FLOAT_BATCH2) {
+			throw new IllegalArgumentException("Matrix class ["+batch.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_BATCH2+"] is available");
+		}
+		else {
+			final MatrixWrapper[]	result = new MatrixWrapper[batch.getDimensions()[0]];
+			
+			for(int index = 0; index < result.length; index++) {
+				result[index] = forward(MatrixWrapper.sample(batch, index), pi);
+			}
+			return MatrixWrapper.batch(result);
+		}
+	}
+
+	default MatrixWrapper forwardBatch(final MatrixWrapper batch) throws CalculationException {
+		return forwardBatch(batch, ProgressIndicator.DUMMY);
+	}
 	
 	MatrixWrapper backward(MatrixWrapper matrix, ProgressIndicator pi) throws CalculationException;
 
 	default MatrixWrapper backward(MatrixWrapper matrix) throws CalculationException {
 		return backward(matrix, ProgressIndicator.DUMMY);
 	}
+
+	default MatrixWrapper backwardBatch(final MatrixWrapper batch, final ProgressIndicator pi) throws CalculationException {
+		if (batch == null) {
+			throw new NullPointerException("Batch to process can't be null");
+		}
+		else if (batch.getMatrixClass() != MatrixClass.FLOAT_BATCH2) {
+			throw new IllegalArgumentException("Matrix class ["+batch.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_BATCH2+"] is available");
+		}
+		else {
+			final MatrixWrapper[]	result = new MatrixWrapper[batch.getDimensions()[0]];
+			
+			for(int index = 0; index < result.length; index++) {
+				result[index] = backward(MatrixWrapper.sample(batch, index), pi);
+			}
+			return MatrixWrapper.batch(result);
+		}
+	}
+
+	default MatrixWrapper backwardBatch(final MatrixWrapper batch) throws CalculationException {
+		return backwardBatch(batch, ProgressIndicator.DUMMY);
+	}
 }
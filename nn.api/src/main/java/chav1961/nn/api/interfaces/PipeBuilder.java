@@ -1,15 +1,21 @@
 package chav1961.nn.api.interfaces;
 
+import java.net.URI;
+
 public interface PipeBuilder extends Iterable<PipeBuilderStage>{
 	PipeBuilder setParallelism(int numberOfThreads);
 	PipeBuilder setReadOnly(boolean readOnly);
 	PipeBuilder setPrecision(CalculationPrecision precision);
+	PipeBuilder setWorkerTeam(WorkerTeam team);
 	PipeBuilder mul(MatrixWrapper matrix);
 	PipeBuilder activate(ActivationType type);
+	PipeBuilder activate(ActivationType type, float... parameters);
 	int getParallelism();
 	boolean isReadOnly();
 	CalculationPrecision getPrecision();
+	WorkerTeam getWorkerTeam();
 	Pipe build();
+	Pipe build(URI factory);
 	
 	public static PipeBuilder newInstance() {
 		return new PipeBuilderImpl();
@@ -1,7 +1,16 @@
 package chav1961.nn.api.interfaces;
 
+import java.net.URI;
+
 import chav1961.purelib.basic.interfaces.SpiService;
 
 public interface PipeBuilderFactory extends SpiService<Pipe> {
 	String	SCHEMA = "pipeBuilderFactory";
+	URI		DEFAULT_FACTORY = URI.create(SCHEMA+":ordinal");
+	
+	URI getFactoryURI();
+	
+	default PipeCapabilities getCapabilities() {	// Builders outside of capabilities are never passed to the factory by the automatic selection
+		return PipeCapabilities.ANY;
+	}
 }
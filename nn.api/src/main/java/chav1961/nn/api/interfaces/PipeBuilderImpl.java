@@ -1,16 +1,21 @@
 package chav1961.nn.api.interfaces;
 
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.ServiceLoader;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import chav1961.purelib.basic.exceptions.EnvironmentException;
+
 class PipeBuilderImpl implements PipeBuilder {
 	private final List<Object>		content = new ArrayList<>();
 	private MatrixWrapper			prev = null;
 	private int						numberOfThreads = 1;
 	private boolean					readOnly = false;
 	private CalculationPrecision	precision = CalculationPrecision.QUICK;
+	private WorkerTeam				team = null;
 
 	@Override
 	public PipeBuilder setParallelism(final int numberOfThreads) {
@@ -19,6 +24,22 @@ class PipeBuilderImpl implements PipeBuilder {
 		}
 		else {
 			this.numberOfThreads = numberOfThreads;
+			this.team = null;
+			return this;
+		}
+	}
+
+	@Override
+	public PipeBuilder setWorkerTeam(final WorkerTeam team) {
+		if (team == null) {
+			throw new NullPointerException("Worker team can't be null");
+		}
+		else if (team.isClosed()) {
+			throw new IllegalArgumentException("Worker team ["+team.getName()+"] is closed");
+		}
+		else {
+			this.team = team;
+			this.numberOfThreads = team.getSize();
 			return this;
 		}
 	}
@@ -53,6 +74,7 @@ class PipeBuilderImpl implements PipeBuilder {
 			}
 		}
 		else {
+			prev = matrix;
 			content.add(matrix);
 			return this;
 		}
@@ -60,14 +82,22 @@ class PipeBuilderImpl implements PipeBuilder {
 
 	@Override
 	public PipeBuilder activate(ActivationType type) {
+		return activate(type, new float[0]);
+	}
+
+	@Override
+	public PipeBuilder activate(final ActivationType type, final float... parameters) {
 		if (type == null) {
 			throw new NullPointerException("Activation type can't be null");
 		}
-		else if (!content.isEmpty() && (content.get(content.size()-1) instanceof ActivationType)) {
+		else if (parameters == null) {
+			throw new NullPointerException("Activation parameters can't be null");
+		}
+		else if (!content.isEmpty() && (content.get(content.size()-1) instanceof ActivationStage)) {
 			throw new IllegalArgumentException("Activation type to add immediately follows another activation type was added.");
 		}
 		else {
-			content.add(type);
+			content.add(new ActivationStage(type, parameters.clone()));
 			return this;
 		}
 	}
@@ -78,8 +108,29 @@ class PipeBuilderImpl implements PipeBuilder {
 			throw new IllegalStateException("No any matrices was added to builder");
 		}
 		else {
-			
-			return null;
+			return build(PipeFactorySelector.select(this));
+		}
+	}
+
+	@Override
+	public Pipe build(final URI factory) {
+		if (factory == null) {
+			throw new NullPointerException("Factory URI can't be null");
+		}
+		else if (content.isEmpty() || prev == null) {
+			throw new IllegalStateException("No any matrices was added to builder");
+		}
+		else {
+			for(PipeBuilderFactory item : ServiceLoader.load(PipeBuilderFactory.class)) {
+				if (item.canServe(factory)) {
+					try {
+						return item.newInstance(factory, this);
+					} catch (EnvironmentException exc) {
+						throw new IllegalStateException(exc.getLocalizedMessage(), exc);
+					}
+				}
+			}
+			throw new IllegalStateException("No pipe builder factory found for ["+factory+"]");
 		}
 	}
 
@@ -119,10 +170,16 @@ class PipeBuilderImpl implements PipeBuilder {
 					public ActivationType getActivationType() {
 						throw new IllegalStateException("This method can't be called for the given stage type");
 					}
+
+					@Override
+					public float[] getActivationParameters() {
+						throw new IllegalStateException("This method can't be called for the given stage type");
+					}
 				});
 			}
-			else if (item instanceof ActivationType) {
-				final ActivationType	type = (ActivationType)item;
+			else if (item instanceof ActivationStage) {
+				final ActivationType	type = ((ActivationStage)item).type;
+				final float[]			parameters = ((ActivationStage)item).parameters;
 				
 				result.add(new PipeBuilderStage() {
 					final int	stage = ai.getAndIncrement();
@@ -151,6 +208,11 @@ class PipeBuilderImpl implements PipeBuilder {
 					public ActivationType getActivationType() {
 						return type;
 					}
+
+					@Override
+					public float[] getActivationParameters() {
+						return parameters.clone();
+					}
 				});
 			}
 			else {
@@ -165,6 +227,11 @@ class PipeBuilderImpl implements PipeBuilder {
 		return numberOfThreads;
 	}
 
+	@Override
+	public WorkerTeam getWorkerTeam() {	// Pipes without explicit team share the common one with the same number of threads
+		return team != null ? team : WorkerTeam.common(numberOfThreads);
+	}
+
 	@Override
 	public boolean isReadOnly() {
 		return readOnly;
@@ -193,4 +260,14 @@ class PipeBuilderImpl implements PipeBuilder {
 	public CalculationPrecision getPrecision() {
 		return precision;
 	}
+
+	private static class ActivationStage {
+		private final ActivationType	type;
+		private final float[]			parameters;
+		
+		private ActivationStage(final ActivationType type, final float[] parameters) {
+			this.type = type;
+			this.parameters = parameters;
+		}
+	}
 }
@@ -6,4 +6,5 @@ public interface PipeBuilderStage {
 	MatrixWrapper getMatrix();
 	boolean isActivation();
 	ActivationType getActivationType();
+	float[] getActivationParameters();
 }
\ No newline at end of file
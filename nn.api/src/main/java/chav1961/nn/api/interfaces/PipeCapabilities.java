@@ -0,0 +1,76 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class PipeCapabilities {
+	public static final PipeCapabilities	ANY = new PipeCapabilities(EnumSet.allOf(MatrixClass.class), EnumSet.allOf(CalculationPrecision.class), true, Integer.MAX_VALUE);
+
+	private final Set<MatrixClass>			matrixClasses;
+	private final Set<CalculationPrecision>	precisions;
+	private final boolean					writable;
+	private final int						maxParallelism;
+
+	public PipeCapabilities(final Set<MatrixClass> matrixClasses, final Set<CalculationPrecision> precisions, final boolean writable, final int maxParallelism) throws NullPointerException, IllegalArgumentException {
+		if (matrixClasses == null) {
+			throw new NullPointerException("Matrix classes can't be null");
+		}
+		else if (matrixClasses.isEmpty()) {
+			throw new IllegalArgumentException("Matrix classes can't be empty");
+		}
+		else if (precisions == null) {
+			throw new NullPointerException("Precisions can't be null");
+		}
+		else if (precisions.isEmpty()) {
+			throw new IllegalArgumentException("Precisions can't be empty");
+		}
+		else if (maxParallelism <= 0) {
+			throw new IllegalArgumentException("Max parallelism ["+maxParallelism+"] must be greater than 0");
+		}
+		else {
+			this.matrixClasses = Collections.unmodifiableSet(EnumSet.copyOf(matrixClasses));
+			this.precisions = Collections.unmodifiableSet(EnumSet.copyOf(precisions));
+			this.writable = writable;
+			this.maxParallelism = maxParallelism;
+		}
+	}
+
+	public Set<MatrixClass> getMatrixClasses() {
+		return matrixClasses;
+	}
+
+	public Set<CalculationPrecision> getPrecisions() {
+		return precisions;
+	}
+
+	public boolean isWritable() {	// Supports pipes which are not read-only
+		return writable;
+	}
+
+	public int getMaxParallelism() {
+		return maxParallelism;
+	}
+
+	public boolean supports(final PipeBuilder builder) throws NullPointerException {
+		if (builder == null) {
+			throw new NullPointerException("Pipe builder can't be null");
+		}
+		else if (!builder.isReadOnly() && !writable || builder.getParallelism() > maxParallelism || !precisions.contains(builder.getPrecision())) {
+			return false;
+		}
+		else {
+			for(PipeBuilderStage stage : builder) {
+				if (stage.isMatrix() && !matrixClasses.contains(stage.getMatrix().getMatrixClass())) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PipeCapabilities [matrixClasses=" + matrixClasses + ", precisions=" + precisions + ", writable=" + writable + ", maxParallelism=" + maxParallelism + "]";
+	}
+}
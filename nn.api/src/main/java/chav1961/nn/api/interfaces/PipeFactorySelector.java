@@ -0,0 +1,185 @@
+package chav1961.nn.api.interfaces;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.exceptions.EnvironmentException;
+
+public class PipeFactorySelector {	// Selects the fastest pipe builder factory for the given builder content
+	public static final String	PIN_PROPERTY = "chav1961.nn.pipeFactory";	// Factory URI to use always
+	static final int			WARM_UP_CALLS = 3;
+	static final int			MAX_CALLS = 100;
+	static final long			CALIBRATION_NANOS = 20_000_000;	// Time limit for every candidate
+
+	private static final Map<String, URI>	DECISIONS = new ConcurrentHashMap<>();
+	private static final Map<URI, Throwable>	FAILURES = new ConcurrentHashMap<>();	// The last reason why the factory was dropped from calibration
+	private static final ThreadLocal<Set<String>>	CALIBRATING = ThreadLocal.withInitial(HashSet::new);	// Signatures calibrated by the current thread now
+	private static volatile URI				pinned = null;
+
+	private PipeFactorySelector() {
+	}
+
+	public static void pin(final URI factory) throws NullPointerException {
+		if (factory == null) {
+			throw new NullPointerException("Factory URI can't be null");
+		}
+		else {
+			pinned = factory;
+		}
+	}
+
+	public static void unpin() {
+		pinned = null;
+	}
+
+	public static void clearDecisions() {
+		DECISIONS.clear();
+		FAILURES.clear();
+	}
+
+	public static Map<String, URI> getDecisions() {	// Key is a signature of the builder content
+		return Collections.unmodifiableMap(DECISIONS);
+	}
+
+	public static Map<URI, Throwable> getFailures() {	// Key is a factory URI which failed to build or calculate the pipe on calibration
+		return Collections.unmodifiableMap(FAILURES);
+	}
+
+	public static URI select(final PipeBuilder builder) throws NullPointerException, IllegalStateException {
+		if (builder == null) {
+			throw new NullPointerException("Pipe builder can't be null");
+		}
+		else {
+			final URI		current = pinned;
+			final String	property = System.getProperty(PIN_PROPERTY);
+
+			if (current != null) {
+				return current;
+			}
+			else if (property != null && !property.isEmpty()) {
+				return URI.create(property);
+			}
+			else {
+				final String	key = signature(builder);
+				final URI		known = DECISIONS.get(key);
+
+				if (known != null) {
+					return known;
+				}
+				else if (!CALIBRATING.get().add(key)) {	// Factory builds the same content without explicit URI while it's calibrated
+					throw new IllegalStateException("Recursive calibration of the builder content ["+key+"]");
+				}
+				else {	// Calibration is long and can build pipes recursively, so it's not called inside the map. Concurrent calibrations of the same content are possible, the first result wins
+					try {
+						final URI	calibrated = calibrate(builder);
+						final URI	previous = DECISIONS.putIfAbsent(key, calibrated);
+
+						return previous != null ? previous : calibrated;
+					} finally {
+						CALIBRATING.get().remove(key);
+					}
+				}
+			}
+		}
+	}
+
+	static String signature(final PipeBuilder builder) {	// Everything the capabilities, layout checks and speed depend on, but not the matrix content
+		final StringBuilder	sb = new StringBuilder();
+
+		sb.append(builder.isReadOnly() ? "ro" : "rw").append(';').append(builder.getParallelism()).append(';').append(builder.getPrecision());
+		for(PipeBuilderStage stage : builder) {
+			sb.append(';');
+			if (stage.isMatrix()) {
+				final MatrixWrapper	matrix = stage.getMatrix();
+
+				sb.append(matrix.getMatrixClass()).append('[').append(matrix.getDimensions()[0]).append('x').append(matrix.getDimensions()[1]).append(']');
+				if (!MatrixWrapper.isCompact(matrix)) {	// Factories can refuse or copy strided views
+					sb.append("view(").append(matrix.getColumnStride()).append(')');
+				}
+			}
+			else {
+				sb.append(stage.getActivationType());
+			}
+		}
+		return sb.toString();
+	}
+
+	private static URI calibrate(final PipeBuilder builder) {
+		final List<PipeBuilderFactory>	candidates = new ArrayList<>();
+
+		for(PipeBuilderFactory item : ServiceLoader.load(PipeBuilderFactory.class)) {
+			if (item.getCapabilities().supports(builder)) {
+				candidates.add(item);
+			}
+		}
+		if (candidates.isEmpty()) {
+			throw new IllegalStateException("No pipe builder factory supports the builder content ["+signature(builder)+"]");
+		}
+		else if (candidates.size() == 1) {	// Nothing to compare
+			return candidates.get(0).getFactoryURI();
+		}
+		else {
+			final MatrixWrapper	source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 1L, inputSize(builder));
+			final List<Throwable>	failures = new ArrayList<>();
+			URI					best = null;
+			double				bestRate = 0;
+
+			for(PipeBuilderFactory item : candidates) {
+				try {
+					final double	rate = measure(item.newInstance(item.getFactoryURI(), builder), source);
+
+					if (best == null || rate > bestRate) {
+						best = item.getFactoryURI();
+						bestRate = rate;
+					}
+					FAILURES.remove(item.getFactoryURI());
+				} catch (EnvironmentException | CalculationException | RuntimeException exc) {	// Factory can't build the pipe in fact, skip it but keep the reason
+					FAILURES.put(item.getFactoryURI(), exc);
+					failures.add(exc);
+				}
+			}
+			if (best == null) {
+				final IllegalStateException	exc = new IllegalStateException("No pipe builder factory can build the builder content ["+signature(builder)+"]");
+
+				for(Throwable item : failures) {
+					exc.addSuppressed(item);
+				}
+				throw exc;
+			}
+			else {
+				return best;
+			}
+		}
+	}
+
+	private static int inputSize(final PipeBuilder builder) {
+		for(PipeBuilderStage stage : builder) {
+			if (stage.isMatrix()) {	// Leading activations keep the size
+				return stage.getMatrix().getDimensions()[0];
+			}
+		}
+		throw new IllegalStateException("No any matrices was added to builder");
+	}
+
+	private static double measure(final Pipe pipe, final MatrixWrapper source) throws CalculationException {
+		for(int index = 0; index < WARM_UP_CALLS; index++) {
+			pipe.forward(source);
+		}
+		final long	start = System.nanoTime();
+		int			calls = 0;
+
+		while (calls < MAX_CALLS && System.nanoTime() - start < CALIBRATION_NANOS) {
+			pipe.forward(source);
+			calls++;
+		}
+		return calls / (double)Math.max(1, System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,239 @@
+package chav1961.nn.api.interfaces;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+public class PipeProfiler {
+	public static final PipeProfiler	NONE = new PipeProfiler();	// Pipes without instrumentation
+
+	private static final com.sun.management.ThreadMXBean	THREADS = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean() : null;
+	private static final long	ALLOCATION_OVERHEAD = allocationOverhead();
+
+	private final WorkerTeam			team;
+	private final ThreadLocal<Probe>	probes = ThreadLocal.withInitial(Probe::new);
+	private volatile String[]			names = new String[0];
+	private volatile Counters[]			counters = new Counters[0];
+	private volatile boolean			enabled = false;
+
+	private PipeProfiler() {
+		this.team = null;
+	}
+
+	public PipeProfiler(final WorkerTeam team) throws NullPointerException {
+		if (team == null) {
+			throw new NullPointerException("Worker team can't be null");
+		}
+		else {
+			this.team = team;
+		}
+	}
+
+	public synchronized PipeProfiler addStage(final String name) throws IllegalArgumentException, IllegalStateException {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Stage name can't be null or empty");
+		}
+		else if (this == NONE) {
+			throw new IllegalStateException("Stages can't be added to the dummy profiler");
+		}
+		else {
+			final Counters[]	newCounters = Arrays.copyOf(counters, counters.length + 1);
+			final String[]		newNames = Arrays.copyOf(names, names.length + 1);
+
+			newCounters[newCounters.length - 1] = new Counters();
+			newNames[newNames.length - 1] = name;
+			counters = newCounters;
+			names = newNames;
+			return this;
+		}
+	}
+
+	public int getNumberOfStages() {
+		return names.length;
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public synchronized void setEnabled(final boolean enabled) throws IllegalStateException {
+		if (this == NONE) {
+			throw new IllegalStateException("Pipe doesn't support profiling");
+		}
+		else if (this.enabled != enabled) {
+			if (enabled) {
+				team.startTiming();
+			}
+			else {
+				team.stopTiming();
+			}
+			this.enabled = enabled;
+		}
+	}
+
+	public void reset() {
+		for(Counters item : counters) {
+			item.reset();
+		}
+	}
+
+	public Probe begin() {	// Null when profiling is disabled, the only cost of disabled profiler is this check
+		if (enabled) {
+			final Probe	probe = probes.get();
+
+			probe.mark();
+			return probe;
+		}
+		else {
+			return null;
+		}
+	}
+
+	public List<Stage> snapshot() {
+		final String[]		currentNames = names;
+		final Counters[]	currentCounters = counters;
+		final List<Stage>	result = new ArrayList<>();
+		final int			teamSize = team != null ? team.getSize() : 1;
+
+		for(int index = 0; index < currentNames.length; index++) {
+			final Counters	item = currentCounters[index];
+
+			result.add(new Stage(index, currentNames[index], item.calls.sum(), item.time.sum(), item.flops.sum(), item.bytes.sum(), item.busy.sum(), teamSize, item.allocated.sum()));
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	@Override
+	public String toString() {
+		return "PipeProfiler [stages=" + names.length + ", enabled=" + enabled + "]";
+	}
+
+	private static long allocationOverhead() {	// Reading the counter can allocate by itself
+		allocatedBytes();	// The first call can initialize something
+		
+		final long	before = allocatedBytes();
+		
+		return Math.max(0, allocatedBytes() - before);
+	}
+
+	private static long allocatedBytes() {
+		return THREADS != null && THREADS.isThreadAllocatedMemoryEnabled() ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+	}
+
+	public class Probe {	// Per-thread state of the current calculation, measures everything from the previous stage end
+		private long	time;
+		private long	busy;
+		private long	allocated;
+
+		private Probe() {
+		}
+
+		public void stage(final int index, final long flops, final long bytes) {
+			final long		currentTime = System.nanoTime(), currentBusy = team.getBusyTime(), currentAllocated = allocatedBytes();
+			final Counters	item = counters[index];
+
+			item.calls.increment();
+			item.time.add(currentTime - time);
+			item.flops.add(flops);
+			item.bytes.add(bytes);
+			item.busy.add(currentBusy != busy ? currentBusy - busy : currentTime - time);	// Includes concurrent calls sharing the same team. No team activity means the caller thread worked alone
+			item.allocated.add(Math.max(0, currentAllocated - allocated - ALLOCATION_OVERHEAD));	// Caller thread only
+			time = currentTime;
+			busy = currentBusy;
+			allocated = currentAllocated;
+		}
+
+		private void mark() {
+			time = System.nanoTime();
+			busy = team.getBusyTime();
+			allocated = allocatedBytes();
+		}
+	}
+
+	public static class Stage {
+		private final int		stageNumber;
+		private final String	name;
+		private final long		calls;
+		private final long		time;
+		private final long		flops;
+		private final long		bytes;
+		private final long		busy;
+		private final int		teamSize;
+		private final long		allocated;
+
+		private Stage(final int stageNumber, final String name, final long calls, final long time, final long flops, final long bytes, final long busy, final int teamSize, final long allocated) {
+			this.stageNumber = stageNumber;
+			this.name = name;
+			this.calls = calls;
+			this.time = time;
+			this.flops = flops;
+			this.bytes = bytes;
+			this.busy = busy;
+			this.teamSize = teamSize;
+			this.allocated = allocated;
+		}
+
+		public int getStageNumber() {
+			return stageNumber;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCalls() {
+			return calls;
+		}
+
+		public long getTime() {	// Total wall time, nanoseconds
+			return time;
+		}
+
+		public long getFlops() {	// Estimated, multiply-add is two operations, every exponent or tangent is one
+			return flops;
+		}
+
+		public double getGFlops() {
+			return time > 0 ? (double)flops / time : 0;
+		}
+
+		public long getBytes() {	// Estimated memory traffic of weights, inputs and outputs
+			return bytes;
+		}
+
+		public double getUtilization() {	// Busy time of the team members related to the wall time of all of them
+			return time > 0 ? Math.min(1.0, (double)busy / ((double)time * teamSize)) : 0;
+		}
+
+		public long getAllocatedBytes() {
+			return allocated;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Stage [%d %s: calls=%d, time=%.3fms, %.2f GFLOP/s, %.2f GB/s, utilization=%.0f%%, allocated=%d]",
+					stageNumber, name, calls, time / 1e6, getGFlops(), time > 0 ? (double)bytes / time : 0, 100 * getUtilization(), allocated);
+		}
+	}
+
+	private static class Counters {
+		final LongAdder	calls = new LongAdder();
+		final LongAdder	time = new LongAdder();
+		final LongAdder	flops = new LongAdder();
+		final LongAdder	bytes = new LongAdder();
+		final LongAdder	busy = new LongAdder();
+		final LongAdder	allocated = new LongAdder();
+
+		void reset() {
+			calls.reset();
+			time.reset();
+			flops.reset();
+			bytes.reset();
+			busy.reset();
+			allocated.reset();
+		}
+	}
+}
@@ -0,0 +1,11 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface PipeStream extends AutoCloseable {
+	int getNumberOfGroups();
+	CompletableFuture<MatrixWrapper> submit(MatrixWrapper vector) throws InterruptedException, NullPointerException, IllegalArgumentException, IllegalStateException;
+	
+	@Override
+	void close();	// Vectors submitted before close are processed, waits uninterruptibly
+}
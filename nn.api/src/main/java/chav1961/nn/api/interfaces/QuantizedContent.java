@@ -0,0 +1,54 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.Arrays;
+
+public class QuantizedContent {
+	private final byte[]	values;
+	private final float[]	scales;
+	
+	public QuantizedContent(final byte[] values, final float[] scales) {
+		if (values == null) {
+			throw new NullPointerException("Values can't be null");
+		}
+		else if (scales == null) {
+			throw new NullPointerException("Scales can't be null");
+		}
+		else {
+			this.values = values;
+			this.scales = scales;
+		}
+	}
+	
+	public byte[] getValues() {
+		return values;
+	}
+	
+	public float[] getScales() {
+		return scales;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(scales);
+		result = prime * result + Arrays.hashCode(values);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		QuantizedContent other = (QuantizedContent) obj;
+		if (!Arrays.equals(scales, other.scales)) return false;
+		if (!Arrays.equals(values, other.values)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "QuantizedContent [values=" + values.length + " items, scales=" + Arrays.toString(scales) + "]";
+	}
+}
@@ -0,0 +1,66 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.Arrays;
+
+public class SparseContent {
+	private final int[]		indices;
+	private final float[]	values;
+	
+	public SparseContent(final int[] indices, final float[] values) {
+		if (indices == null) {
+			throw new NullPointerException("Indices can't be null");
+		}
+		else if (values == null) {
+			throw new NullPointerException("Values can't be null");
+		}
+		else if (indices.length != values.length) {
+			throw new IllegalArgumentException("Indices length ["+indices.length+"] is differ with values length ["+values.length+"]");
+		}
+		else {
+			for(int index = 1; index < indices.length; index++) {
+				if (indices[index] <= indices[index-1]) {
+					throw new IllegalArgumentException("Indices must be sorted ascending and must not contain duplicates, but index # ["+index+"] violates it");
+				}
+			}
+			this.indices = indices;
+			this.values = values;
+		}
+	}
+	
+	public int[] getIndices() {
+		return indices;
+	}
+	
+	public float[] getValues() {
+		return values;
+	}
+	
+	public int size() {
+		return indices.length;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + Arrays.hashCode(indices);
+		result = prime * result + Arrays.hashCode(values);
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (obj == null) return false;
+		if (getClass() != obj.getClass()) return false;
+		SparseContent other = (SparseContent) obj;
+		if (!Arrays.equals(indices, other.indices)) return false;
+		if (!Arrays.equals(values, other.values)) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "SparseContent [indices=" + Arrays.toString(indices) + ", values=" + Arrays.toString(values) + "]";
+	}
+}
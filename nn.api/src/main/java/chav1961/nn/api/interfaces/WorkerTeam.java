@@ -0,0 +1,267 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+public class WorkerTeam implements AutoCloseable {
+	private static final int	SPIN_LIMIT = 1 << 12;	// Busy-wait iterations before parking, layers usually follow each other immediately
+	private static final String	COMMON_NAME = "nn-worker";
+	private static final ConcurrentMap<String, WorkerTeam>	SHARED = new ConcurrentHashMap<>();
+
+	@FunctionalInterface
+	public static interface Task {
+		void process(int part);
+	}
+
+	private final String			name;
+	private final int				size;
+	private final Thread[]			workers;
+	private final ReentrantLock		phaseLock = new ReentrantLock();
+	private final Object			monitor = new Object();
+	private final AtomicInteger		pending = new AtomicInteger();
+	private final AtomicReference<Throwable>	failure = new AtomicReference<>();
+	private final AtomicInteger		timingUsers = new AtomicInteger();
+	private final LongAdder			busyTime = new LongAdder();
+	private volatile long			generation = 0;
+	private volatile boolean		closed = false;
+	private volatile Task			task;
+	private volatile int			parts;
+
+	public WorkerTeam(final String name, final int size) throws NullPointerException, IllegalArgumentException {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Team name can't be null or empty");
+		}
+		else if (size <= 0) {
+			throw new IllegalArgumentException("Team size ["+size+"] must be greater than 0");
+		}
+		else {
+			this.name = name;
+			this.size = size;
+			this.workers = new Thread[size - 1];	// Calling thread is always the first member of the team
+
+			for(int index = 0; index < workers.length; index++) {
+				final int	participant = index + 1;
+
+				workers[index] = new Thread(()->work(participant), name+"-"+participant);
+				workers[index].setDaemon(true);
+				workers[index].start();
+			}
+		}
+	}
+
+	public static WorkerTeam shared(final String name, final int size) throws NullPointerException, IllegalArgumentException {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Team name can't be null or empty");
+		}
+		else if (size <= 0) {
+			throw new IllegalArgumentException("Team size ["+size+"] must be greater than 0");
+		}
+		else {
+			final WorkerTeam	team = SHARED.computeIfAbsent(name, (key)->new WorkerTeam(key, size));
+
+			if (team.getSize() != size) {
+				throw new IllegalArgumentException("Shared team ["+name+"] already exists with size ["+team.getSize()+"], requested size is ["+size+"]");
+			}
+			else {
+				return team;
+			}
+		}
+	}
+
+	public static WorkerTeam common(final int size) throws IllegalArgumentException {
+		return shared(COMMON_NAME+"-"+size, size);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	public void startTiming() {	// Busy time is accounted while at least one user needs it
+		timingUsers.incrementAndGet();
+	}
+
+	public void stopTiming() throws IllegalStateException {
+		if (timingUsers.getAndUpdate((value)->Math.max(0, value - 1)) <= 0) {
+			throw new IllegalStateException("Timing of the team ["+name+"] was not started");
+		}
+	}
+
+	public long getBusyTime() {	// Total time of all the team members spent in the tasks, nanoseconds
+		return busyTime.sum();
+	}
+
+	public void execute(final int parts, final Task task) throws CalculationException, IllegalArgumentException, NullPointerException, IllegalStateException {
+		if (parts < 0) {
+			throw new IllegalArgumentException("Number of parts ["+parts+"] can't be negative");
+		}
+		else if (task == null) {
+			throw new NullPointerException("Task to execute can't be null");
+		}
+		else if (closed) {
+			throw new IllegalStateException("Team ["+name+"] is closed");
+		}
+		else if (parts <= 1 || workers.length == 0 || phaseLock.isHeldByCurrentThread() || !phaseLock.tryLock()) {	// Team is busy with another caller or nested call, process on the caller thread
+			final long	started = timingUsers.get() > 0 ? System.nanoTime() : 0;
+
+			try {
+				for(int part = 0; part < parts; part++) {
+					task.process(part);
+				}
+			} catch (RuntimeException | Error exc) {
+				throw new CalculationException(exc);
+			} finally {
+				if (started != 0) {
+					busyTime.add(System.nanoTime() - started);
+				}
+			}
+		}
+		else {
+			try {
+				if (closed) {
+					throw new IllegalStateException("Team ["+name+"] is closed");
+				}
+				failure.set(null);
+				this.task = task;
+				this.parts = parts;
+				pending.set(workers.length);
+				synchronized (monitor) {	// Start the next phase
+					generation++;
+					monitor.notifyAll();
+				}
+				process(0);
+				awaitPhase();
+				this.task = null;
+
+				final Throwable	exc = failure.getAndSet(null);
+
+				if (exc != null) {
+					throw new CalculationException(exc);
+				}
+			} finally {
+				phaseLock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public void close() {	// Waits for the workers uninterruptibly, interrupt flag is restored on exit
+		boolean	interrupted = false;
+
+		phaseLock.lock();
+		try {
+			if (!closed) {
+				closed = true;
+				SHARED.remove(name, this);
+				synchronized (monitor) {
+					monitor.notifyAll();
+				}
+				for(Thread item : workers) {
+					while (item.isAlive()) {
+						try {
+							item.join();
+						} catch (InterruptedException exc) {
+							interrupted = true;
+						}
+					}
+				}
+			}
+		} finally {
+			phaseLock.unlock();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "WorkerTeam [name=" + name + ", size=" + size + ", closed=" + closed + "]";
+	}
+
+	private void work(final int participant) {
+		long	seen = 0;
+
+		for(;;) {
+			long	current = generation;
+
+			for(int spin = 0; current == seen && !closed && spin < SPIN_LIMIT; spin++) {
+				Thread.onSpinWait();
+				current = generation;
+			}
+			if (current == seen && !closed) {
+				synchronized (monitor) {
+					while ((current = generation) == seen && !closed) {
+						try {
+							monitor.wait();
+						} catch (InterruptedException exc) {	// Only close() can stop the worker
+						}
+					}
+				}
+			}
+			if (closed) {
+				return;
+			}
+			else {
+				seen = current;
+				process(participant);
+				if (pending.decrementAndGet() == 0) {
+					synchronized (monitor) {
+						monitor.notifyAll();
+					}
+				}
+			}
+		}
+	}
+
+	private void process(final int participant) {
+		final Task	current = task;
+		final long	started = timingUsers.get() > 0 ? System.nanoTime() : 0;
+
+		for(int part = participant, maxPart = parts; part < maxPart; part += size) {	// Every member always gets the same parts
+			try {
+				current.process(part);
+			} catch (RuntimeException | Error exc) {
+				failure.compareAndSet(null, exc);
+			}
+		}
+		if (started != 0) {
+			busyTime.add(System.nanoTime() - started);
+		}
+	}
+
+	private void awaitPhase() {
+		boolean	interrupted = false;
+
+		for(int spin = 0; pending.get() > 0 && spin < SPIN_LIMIT; spin++) {
+			Thread.onSpinWait();
+		}
+		if (pending.get() > 0) {
+			synchronized (monitor) {
+				while (pending.get() > 0) {	// Workers write into the caller's buffers, so the phase can't be abandoned
+					try {
+						monitor.wait();
+					} catch (InterruptedException exc) {
+						interrupted = true;
+					}
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
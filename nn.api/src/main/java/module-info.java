@@ -1,6 +1,7 @@
 module nn.api {
 	requires transitive chav1961.purelib;
 	requires java.base;
+	requires jdk.management;
 	
 	exports chav1961.nn.api;
 	exports chav1961.nn.api.interfaces;
@@ -0,0 +1,64 @@
+package chav1961.nn.api;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HalfPrecisionTest {
+	@Test
+	public void halfTest() {
+		Assert.assertEquals((short)0x0000, HalfPrecision.floatToHalf(0.0f));
+		Assert.assertEquals((short)0x8000, HalfPrecision.floatToHalf(-0.0f));
+		Assert.assertEquals((short)0x3C00, HalfPrecision.floatToHalf(1.0f));
+		Assert.assertEquals((short)0xC000, HalfPrecision.floatToHalf(-2.0f));
+		Assert.assertEquals((short)0x7BFF, HalfPrecision.floatToHalf(65504.0f));
+		Assert.assertEquals((short)0x7C00, HalfPrecision.floatToHalf(65520.0f));
+		Assert.assertEquals((short)0x7C00, HalfPrecision.floatToHalf(Float.POSITIVE_INFINITY));
+		Assert.assertEquals((short)0x0001, HalfPrecision.floatToHalf(5.9604645e-8f));
+		Assert.assertEquals((short)0x0000, HalfPrecision.floatToHalf(2.9802322e-8f));	// Tie to even
+		Assert.assertEquals((short)0x3C00, HalfPrecision.floatToHalf(1.00048828125f));	// Tie to even
+		Assert.assertEquals((short)0x3C02, HalfPrecision.floatToHalf(1.00146484375f));	// Tie to even
+		Assert.assertTrue(Float.isNaN(HalfPrecision.halfToFloat(HalfPrecision.floatToHalf(Float.NaN))));
+		
+		for(int index = 0; index < 0x10000; index++) {	// Every non-NaN value must survive round trip
+			final float	value = HalfPrecision.halfToFloat((short)index);
+			
+			if (!Float.isNaN(value)) {
+				Assert.assertEquals((short)index, HalfPrecision.floatToHalf(value));
+			}
+		}
+		Assert.assertEquals(5.9604645e-8f, HalfPrecision.halfToFloat((short)0x0001), 0.0f);
+		Assert.assertEquals(-65504.0f, HalfPrecision.halfToFloat((short)0xFBFF), 0.0f);
+		
+		final float[]	source = new float[] {0.1f, -0.5f, 3.14159f};
+		final float[]	target = HalfPrecision.halfToFloat(HalfPrecision.floatToHalf(source, new short[source.length]), new float[source.length]);
+
+		Assert.assertArrayEquals(source, target, 0.001f);
+		
+		try{HalfPrecision.floatToHalf(null, new short[1]);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{HalfPrecision.floatToHalf(source, new short[1]);
+			Assert.fail("Mandatory exception was not detected (too short 2-nd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void bfloat16Test() {
+		Assert.assertEquals((short)0x3F80, HalfPrecision.floatToBFloat16(1.0f));
+		Assert.assertEquals((short)0xC000, HalfPrecision.floatToBFloat16(-2.0f));
+		Assert.assertEquals((short)0x3F80, HalfPrecision.floatToBFloat16(Float.intBitsToFloat(0x3F808000)));	// Tie to even
+		Assert.assertEquals((short)0x3F82, HalfPrecision.floatToBFloat16(Float.intBitsToFloat(0x3F818000)));	// Tie to even
+		Assert.assertEquals((short)0x7F80, HalfPrecision.floatToBFloat16(Float.POSITIVE_INFINITY));
+		Assert.assertTrue(Float.isNaN(HalfPrecision.bfloat16ToFloat(HalfPrecision.floatToBFloat16(Float.NaN))));
+		Assert.assertEquals(1.0f, HalfPrecision.bfloat16ToFloat((short)0x3F80), 0.0f);
+
+		final float[]	source = new float[] {0.1f, -0.5f, 3.14159f, 1e30f};
+		final float[]	target = HalfPrecision.bfloat16ToFloat(HalfPrecision.floatToBFloat16(source, new short[source.length]), new float[source.length]);
+
+		for(int index = 0; index < source.length; index++) {
+			Assert.assertEquals(source[index], target[index], Math.abs(source[index]) / 128);
+		}
+	}
+}
@@ -1,5 +1,24 @@
 package chav1961.nn.api.interfaces;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -76,4 +95,600 @@ public class MatrixWrapperTest {
 		} catch (IllegalArgumentException exc) {
 		}
 	}	
+
+	@Test
+	public void flatTest() {
+		final MatrixWrapper	mw = MatrixWrapper.of(2, 3, new float[] {1,2,3,4,5,6});
+		
+		Assert.assertEquals(MatrixClass.FLOAT_FLAT2, mw.getMatrixClass());
+		Assert.assertArrayEquals(new int[] {2, 3}, mw.getDimensions());
+		Assert.assertEquals(3, mw.getRowStride());
+		Assert.assertArrayEquals(new float[] {1, 2, 3, 4, 5, 6}, mw.getContent(), 0.001f);
+
+		final MatrixWrapper	mwd = MatrixWrapper.of(3, 2, new double[] {1,2,3,4,5,6});
+		
+		Assert.assertEquals(MatrixClass.DOUBLE_FLAT2, mwd.getMatrixClass());
+		Assert.assertArrayEquals(new int[] {3, 2}, mwd.getDimensions());
+		Assert.assertEquals(2, mwd.getRowStride());
+		
+		try{MatrixWrapper.of(2, 3, (float[])null);
+			Assert.fail("Mandatory exception was not detected (null 3-rd argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.of(2, 3, new float[] {1,2,3});
+			Assert.fail("Mandatory exception was not detected (3-rd argument length is not corresponding with dimensions)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(0, 3, new float[0]);
+			Assert.fail("Mandatory exception was not detected (1-st argument out of range)");
+		} catch (IllegalArgumentException exc) {
+		}
+		
+		final MatrixWrapper	flat = MatrixWrapper.flatten(MatrixWrapper.of(new float[][] {new float[] {1,2,3}, new float[] {4,5,6}}));
+		
+		Assert.assertEquals(mw, flat);
+		Assert.assertSame(flat, MatrixWrapper.flatten(flat));
+
+		final MatrixWrapper	random = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 4, 5);
+		
+		Assert.assertArrayEquals(new int[] {4, 5}, random.getDimensions());
+		Assert.assertEquals(20, ((float[])random.getContent()).length);
+		
+		try{MatrixWrapper.flatten(null);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+	}
+
+	@Test
+	public void offHeapTest() throws IOException {
+		final MatrixWrapper	heap = MatrixWrapper.of(2, 3, new float[] {1,2,3,4,5,6});
+		
+		try(final CloseableMatrixWrapper	mw = MatrixWrapper.toOffHeap(heap)) {
+			Assert.assertEquals(MatrixClass.FLOAT_BUFFER2, mw.getMatrixClass());
+			Assert.assertArrayEquals(new int[] {2, 3}, mw.getDimensions());
+			Assert.assertEquals(3, mw.getRowStride());
+			Assert.assertTrue(((FloatBuffer)mw.getContent()).isDirect());
+			Assert.assertEquals(5f, ((FloatBuffer)mw.getContent()).get(4), 0.001f);
+			Assert.assertEquals(heap, MatrixWrapper.flatten(mw));
+			Assert.assertFalse(mw.isClosed());
+			
+			final ByteArrayOutputStream	baos = new ByteArrayOutputStream();
+			
+			try(final DataOutputStream	dos = new DataOutputStream(baos)) {
+				mw.upload(dos);
+			}
+			try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+				final MatrixWrapper	loaded = MatrixWrapper.download(dis, MatrixClass.FLOAT_BUFFER2, 2, 3);
+				
+				Assert.assertEquals(mw, loaded);
+				((CloseableMatrixWrapper)loaded).close();
+			}
+			mw.close();
+			Assert.assertTrue(mw.isClosed());
+			
+			try{mw.getContent();
+				Assert.fail("Mandatory exception was not detected (content of the closed wrapper)");
+			} catch (IllegalStateException exc) {
+			}
+		}
+		
+		try(final CloseableMatrixWrapper	mw = MatrixWrapper.allocate(MatrixClass.DOUBLE_BUFFER2, 3, 2)) {
+			Assert.assertEquals(MatrixClass.DOUBLE_BUFFER2, mw.getMatrixClass());
+			Assert.assertEquals(6, ((DoubleBuffer)mw.getContent()).limit());
+		}
+		
+		final CloseableMatrixWrapper	parent = MatrixWrapper.allocate(MatrixClass.FLOAT_BUFFER2, 1024, 1024);	// Large enough to be unmapped when freed
+		final MatrixWrapper				view = MatrixWrapper.rows(parent, 512, 1024);
+		final FloatBuffer				held = view.getContent();
+		
+		held.put(view.getOffset() + 1, 5f);
+		parent.close();
+		Assert.assertEquals(5f, held.get(view.getOffset() + 1), 0.001f);	// Buffer held by consumers must survive close()
+		try{view.getContent();
+			Assert.fail("Mandatory exception was not detected (content of the view of closed wrapper)");
+		} catch (IllegalStateException exc) {
+		}
+		
+		try{MatrixWrapper.allocate(MatrixClass.FLOAT_FLAT2, 3, 2);
+			Assert.fail("Mandatory exception was not detected (1-st argument is not an off-heap class)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.toOffHeap(null);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+	}
+
+	@Test
+	public void mappedTest() throws IOException {
+		final File	temp = File.createTempFile("matrix", ".bin");
+		
+		try {
+			try(final OutputStream		os = new FileOutputStream(temp);
+				final DataOutputStream	dos = new DataOutputStream(os)) {
+				
+				dos.writeInt(0x12345678);
+				MatrixWrapper.of(2, 3, new float[] {1,2,3,4,5,6}).upload(dos);
+				MatrixWrapper.of(1, 2, new double[] {7,8}).upload(dos);
+			}
+			Assert.assertEquals(24, MatrixWrapper.sizeOf(MatrixClass.FLOAT_BUFFER2, 2, 3));
+			
+			try(final FileChannel	fc = FileChannel.open(temp.toPath(), StandardOpenOption.READ)) {
+				try(final CloseableMatrixWrapper	mw = MatrixWrapper.map(fc, 4, MatrixClass.FLOAT_BUFFER2, 2, 3);
+					final CloseableMatrixWrapper	mwd = MatrixWrapper.map(fc, 28, MatrixClass.DOUBLE_BUFFER2, 1, 2)) {
+					
+					Assert.assertEquals(MatrixClass.FLOAT_BUFFER2, mw.getMatrixClass());
+					Assert.assertArrayEquals(new int[] {2, 3}, mw.getDimensions());
+					Assert.assertEquals(MatrixWrapper.of(2, 3, new float[] {1,2,3,4,5,6}), MatrixWrapper.flatten(mw));
+					Assert.assertEquals(MatrixWrapper.of(1, 2, new double[] {7,8}), MatrixWrapper.flatten(mwd));
+				}
+				
+				try{MatrixWrapper.map(fc, 8, MatrixClass.DOUBLE_BUFFER2, 2, 3);
+					Assert.fail("Mandatory exception was not detected (content out of channel size)");
+				} catch (EOFException exc) {
+				}
+				try{MatrixWrapper.map(fc, 4, MatrixClass.FLOAT_FLAT2, 2, 3);
+					Assert.fail("Mandatory exception was not detected (3-rd argument can't be mapped)");
+				} catch (IllegalArgumentException exc) {
+				}
+				try{MatrixWrapper.map(null, 4, MatrixClass.FLOAT_BUFFER2, 2, 3);
+					Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+				} catch (NullPointerException exc) {
+				}
+			}
+		} finally {
+			temp.delete();
+		}
+	}
+
+	@Test
+	public void channelTest() throws IOException {
+		final MatrixWrapper[]	matrices = new MatrixWrapper[] {
+									MatrixWrapper.random(MatrixClass.FLOAT2_ARRAY, 1L, 100, 300),
+									MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 100, 300),
+									MatrixWrapper.random(MatrixClass.DOUBLE2_ARRAY, 3L, 100, 300),
+									MatrixWrapper.random(MatrixClass.DOUBLE_FLAT2, 4L, 100, 300),
+									MatrixWrapper.random(MatrixClass.FLOAT_BUFFER2, 5L, 100, 300),
+									MatrixWrapper.random(MatrixClass.DOUBLE_BUFFER2, 6L, 100, 300),
+									MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 7L, 3),
+									MatrixWrapper.random(MatrixClass.HALF_FLAT2, 8L, 100, 300),
+									MatrixWrapper.random(MatrixClass.BFLOAT16_FLAT2, 9L, 100, 300),
+									MatrixWrapper.random(MatrixClass.INT8_ROW_FLAT2, 10L, 100, 300),
+									MatrixWrapper.random(MatrixClass.INT8_COLUMN_FLAT2, 11L, 100, 300),
+								};
+		
+		for(MatrixWrapper item : matrices) {
+			final ByteArrayOutputStream	streamed = new ByteArrayOutputStream();
+			final ByteArrayOutputStream	channeled = new ByteArrayOutputStream();
+			
+			try(final DataOutputStream	dos = new DataOutputStream(streamed)) {
+				item.upload(dos);
+			}
+			try(final WritableByteChannel	wbc = Channels.newChannel(channeled)) {
+				item.upload(wbc, ByteOrder.BIG_ENDIAN);
+				item.upload(wbc, ByteOrder.LITTLE_ENDIAN);
+			}
+			Assert.assertArrayEquals(streamed.toByteArray(), Arrays.copyOf(channeled.toByteArray(), streamed.size()));
+			
+			try(final ReadableByteChannel	rbc = Channels.newChannel(new ByteArrayInputStream(channeled.toByteArray()))) {
+				final MatrixWrapper	big = MatrixWrapper.download(rbc, ByteOrder.BIG_ENDIAN, item.getMatrixClass(), item.getDimensions());
+				final MatrixWrapper	little = MatrixWrapper.download(rbc, ByteOrder.LITTLE_ENDIAN, item.getMatrixClass(), item.getDimensions());
+				
+				Assert.assertEquals(MatrixWrapper.flatten(item), MatrixWrapper.flatten(big));
+				Assert.assertEquals(MatrixWrapper.flatten(item), MatrixWrapper.flatten(little));
+				
+				try{MatrixWrapper.download(rbc, ByteOrder.BIG_ENDIAN, item.getMatrixClass(), item.getDimensions());
+					Assert.fail("Mandatory exception was not detected (end of channel)");
+				} catch (EOFException exc) {
+				}
+			}
+			try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+				Assert.assertEquals(MatrixWrapper.flatten(item), MatrixWrapper.flatten(MatrixWrapper.download(dis, item.getMatrixClass(), item.getDimensions())));
+			}
+		}
+		
+		try{matrices[0].upload(null, ByteOrder.BIG_ENDIAN);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{matrices[0].upload(Channels.newChannel(new ByteArrayOutputStream()), null);
+			Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+		} catch (NullPointerException exc) {
+		}
+	}
+
+	@Test
+	public void halfTest() throws IOException {
+		final MatrixWrapper	source = MatrixWrapper.of(2, 3, new float[] {1, 0.5f, -2, 0.1f, 1000, 3.14159f});
+		final MatrixWrapper	half = MatrixWrapper.convert(source, MatrixClass.HALF_FLAT2);
+		final MatrixWrapper	bfloat = MatrixWrapper.convert(source, MatrixClass.BFLOAT16_FLAT2);
+		
+		Assert.assertEquals(MatrixClass.HALF_FLAT2, half.getMatrixClass());
+		Assert.assertEquals(short.class, half.getMatrixClass().storageClass());
+		Assert.assertEquals(float.class, half.getMatrixClass().contentClass());
+		Assert.assertArrayEquals(new int[] {2, 3}, half.getDimensions());
+		Assert.assertEquals(3, half.getRowStride());
+		Assert.assertEquals(12, MatrixWrapper.sizeOf(MatrixClass.HALF_FLAT2, 2, 3));
+		Assert.assertSame(half, MatrixWrapper.convert(half, MatrixClass.HALF_FLAT2));
+		Assert.assertSame(half, MatrixWrapper.flatten(half));
+		
+		Assert.assertArrayEquals((float[])source.getContent(), (float[])MatrixWrapper.convert(half, MatrixClass.FLOAT_FLAT2).getContent(), 0.001f);
+		Assert.assertArrayEquals((float[])source.getContent(), (float[])MatrixWrapper.convert(bfloat, MatrixClass.FLOAT_FLAT2).getContent(), 0.02f);
+		Assert.assertEquals(MatrixWrapper.convert(half, MatrixClass.FLOAT_FLAT2), MatrixWrapper.flatten(MatrixWrapper.convert(half, MatrixClass.FLOAT2_ARRAY)));
+		Assert.assertEquals(half, MatrixWrapper.convert(MatrixWrapper.convert(half, MatrixClass.FLOAT_FLAT2), MatrixClass.HALF_FLAT2));
+		
+		try(final CloseableMatrixWrapper	offHeap = (CloseableMatrixWrapper)MatrixWrapper.convert(half, MatrixClass.FLOAT_BUFFER2)) {
+			Assert.assertEquals(half, MatrixWrapper.convert(offHeap, MatrixClass.HALF_FLAT2));
+		}
+		
+		final ByteArrayOutputStream	baos = new ByteArrayOutputStream();
+		
+		try(final DataOutputStream	dos = new DataOutputStream(baos)) {
+			half.upload(dos);
+		}
+		Assert.assertEquals(12, baos.size());
+		try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			Assert.assertEquals(half, MatrixWrapper.download(dis, MatrixClass.HALF_FLAT2, 2, 3));
+		}
+		
+		try{MatrixWrapper.convert(null, MatrixClass.HALF_FLAT2);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.convert(half, null);
+			Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.convert(half, MatrixClass.DOUBLE_FLAT2);
+			Assert.fail("Mandatory exception was not detected (illegal 2-nd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.convert(MatrixWrapper.of(1.0, 2.0), MatrixClass.HALF_FLAT2);
+			Assert.fail("Mandatory exception was not detected (illegal 1-st argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(MatrixClass.FLOAT_FLAT2, 1, 2, new short[2]);
+			Assert.fail("Mandatory exception was not detected (illegal 1-st argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(MatrixClass.HALF_FLAT2, 1, 2, new short[3]);
+			Assert.fail("Mandatory exception was not detected (illegal 4-th argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void quantizeTest() throws IOException {
+		final MatrixWrapper	source = MatrixWrapper.of(2, 3, new float[] {1, -0.5f, 0.25f, 100, -50, 10});
+		final MatrixWrapper	rows = MatrixWrapper.convert(source, MatrixClass.INT8_ROW_FLAT2);
+		final MatrixWrapper	columns = MatrixWrapper.convert(source, MatrixClass.INT8_COLUMN_FLAT2);
+		final QuantizedContent	rowContent = rows.getContent();
+		
+		Assert.assertEquals(byte.class, rows.getMatrixClass().storageClass());
+		Assert.assertEquals(float.class, rows.getMatrixClass().contentClass());
+		Assert.assertArrayEquals(new float[] {1f/127, 100f/127}, rowContent.getScales(), 0.0001f);
+		Assert.assertArrayEquals(new byte[] {127, -63, 32, 127, -63, 13}, rowContent.getValues());
+		Assert.assertEquals(3, ((QuantizedContent)columns.getContent()).getScales().length);
+		Assert.assertEquals(14, MatrixWrapper.sizeOf(MatrixClass.INT8_ROW_FLAT2, 2, 3));
+		Assert.assertEquals(18, MatrixWrapper.sizeOf(MatrixClass.INT8_COLUMN_FLAT2, 2, 3));
+		Assert.assertSame(rows, MatrixWrapper.flatten(rows));
+		
+		Assert.assertArrayEquals((float[])source.getContent(), (float[])MatrixWrapper.convert(rows, MatrixClass.FLOAT_FLAT2).getContent(), 0.4f);
+		Assert.assertArrayEquals((float[])source.getContent(), (float[])MatrixWrapper.convert(columns, MatrixClass.FLOAT_FLAT2).getContent(), 0.4f);
+		Assert.assertEquals(rows, MatrixWrapper.quantize(MatrixWrapper.convert(source, MatrixClass.FLOAT2_ARRAY), MatrixClass.INT8_ROW_FLAT2, 1.0f));
+		
+		final MatrixWrapper	clipped = MatrixWrapper.quantize(MatrixWrapper.of(1, 4, new float[] {0.1f, 0.2f, 0.3f, 10}), MatrixClass.INT8_ROW_FLAT2, 0.75f);
+		
+		Assert.assertArrayEquals(new float[] {0.3f/127}, ((QuantizedContent)clipped.getContent()).getScales(), 0.00001f);
+		Assert.assertArrayEquals(new byte[] {42, 85, 127, 127}, ((QuantizedContent)clipped.getContent()).getValues());
+		
+		final ByteArrayOutputStream	baos = new ByteArrayOutputStream();
+		
+		try(final DataOutputStream	dos = new DataOutputStream(baos)) {
+			columns.upload(dos);
+		}
+		Assert.assertEquals(18, baos.size());
+		try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			Assert.assertEquals(columns, MatrixWrapper.download(dis, MatrixClass.INT8_COLUMN_FLAT2, 2, 3));
+		}
+		
+		try{MatrixWrapper.quantize(null, MatrixClass.INT8_ROW_FLAT2, 1.0f);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.quantize(source, null, 1.0f);
+			Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.quantize(source, MatrixClass.HALF_FLAT2, 1.0f);
+			Assert.fail("Mandatory exception was not detected (illegal 2-nd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.quantize(source, MatrixClass.INT8_ROW_FLAT2, 0.0f);
+			Assert.fail("Mandatory exception was not detected (illegal 3-rd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(MatrixClass.INT8_ROW_FLAT2, 2, 3, new QuantizedContent(new byte[6], new float[3]));
+			Assert.fail("Mandatory exception was not detected (illegal 4-th argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void sparseTest() {
+		final MatrixWrapper	sparse = MatrixWrapper.of(10, new int[] {1, 5, 7}, new float[] {1, 2, 3});
+		final SparseContent	content = sparse.getContent();
+		
+		Assert.assertEquals(MatrixClass.FLOAT_SPARSE, sparse.getMatrixClass());
+		Assert.assertArrayEquals(new int[] {10}, sparse.getDimensions());
+		Assert.assertEquals(3, content.size());
+		Assert.assertArrayEquals(new int[] {1, 5, 7}, content.getIndices());
+		Assert.assertEquals(sparse, MatrixWrapper.of(10, new int[] {1, 5, 7}, new float[] {1, 2, 3}));
+		Assert.assertSame(sparse, MatrixWrapper.flatten(sparse));
+		Assert.assertEquals(0, ((SparseContent)MatrixWrapper.of(10, new int[0], new float[0]).getContent()).size());
+		
+		try{MatrixWrapper.of(0, new int[0], new float[0]);
+			Assert.fail("Mandatory exception was not detected (illegal 1-st argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(10, null, new float[0]);
+			Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.of(10, new int[0], null);
+			Assert.fail("Mandatory exception was not detected (null 3-rd argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.of(10, new int[] {1, 2}, new float[1]);
+			Assert.fail("Mandatory exception was not detected (different lengths)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(10, new int[] {2, 1}, new float[2]);
+			Assert.fail("Mandatory exception was not detected (unsorted indices)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(10, new int[] {1, 10}, new float[2]);
+			Assert.fail("Mandatory exception was not detected (index out of range)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.sizeOf(MatrixClass.FLOAT_SPARSE, 10);
+			Assert.fail("Mandatory exception was not detected (unsized class)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void csrTest() throws IOException {
+		final MatrixWrapper	dense = MatrixWrapper.of(3, 4, new float[] {1,0,0,2, 0,0,0,0, 0,3,0,4});
+		final MatrixWrapper	csr = MatrixWrapper.convert(dense, MatrixClass.FLOAT_CSR2);
+		final CsrContent	content = csr.getContent();
+		
+		Assert.assertEquals(MatrixClass.FLOAT_CSR2, csr.getMatrixClass());
+		Assert.assertArrayEquals(new int[] {3, 4}, csr.getDimensions());
+		Assert.assertEquals(4, content.nonZeros());
+		Assert.assertArrayEquals(new int[] {0, 2, 2, 4}, content.getRowPointers());
+		Assert.assertArrayEquals(new int[] {0, 3, 1, 3}, content.getColumnIndices());
+		Assert.assertArrayEquals(new float[] {1, 2, 3, 4}, content.getValues(), 0.0f);
+		Assert.assertEquals(dense, MatrixWrapper.convert(csr, MatrixClass.FLOAT_FLAT2));
+		Assert.assertSame(csr, MatrixWrapper.flatten(csr));
+		
+		final ByteArrayOutputStream	streamed = new ByteArrayOutputStream();
+		final ByteArrayOutputStream	channeled = new ByteArrayOutputStream();
+		
+		try(final DataOutputStream	dos = new DataOutputStream(streamed)) {
+			csr.upload(dos);
+			csr.upload(dos);
+		}
+		Assert.assertEquals(2 * (4 * 4 + 4 * 4 + 4 * 4), streamed.size());
+		try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+			Assert.assertEquals(csr, MatrixWrapper.download(dis, MatrixClass.FLOAT_CSR2, 3, 4));
+			Assert.assertEquals(csr, MatrixWrapper.download(dis, MatrixClass.FLOAT_CSR2, 3, 4));
+		}
+		try(final WritableByteChannel	wbc = Channels.newChannel(channeled)) {
+			csr.upload(wbc, ByteOrder.LITTLE_ENDIAN);
+		}
+		try(final ReadableByteChannel	rbc = Channels.newChannel(new ByteArrayInputStream(channeled.toByteArray()))) {
+			Assert.assertEquals(csr, MatrixWrapper.download(rbc, ByteOrder.LITTLE_ENDIAN, MatrixClass.FLOAT_CSR2, 3, 4));
+		}
+		try(final ReadableByteChannel	rbc = Channels.newChannel(new ByteArrayInputStream(channeled.toByteArray(), 0, 20))) {
+			MatrixWrapper.download(rbc, ByteOrder.LITTLE_ENDIAN, MatrixClass.FLOAT_CSR2, 3, 4);
+			Assert.fail("Mandatory exception was not detected (end of channel)");
+		} catch (EOFException exc) {
+		}
+		
+		try{new CsrContent(new int[] {0, 2}, new int[] {0}, new float[] {1});
+			Assert.fail("Mandatory exception was not detected (row pointers and values mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{new CsrContent(new int[] {0, 1, 0, 1}, new int[] {0}, new float[] {1});
+			Assert.fail("Mandatory exception was not detected (decreasing row pointers)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(2, 4, content);
+			Assert.fail("Mandatory exception was not detected (rows mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.of(3, 3, content);
+			Assert.fail("Mandatory exception was not detected (column index out of range)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void viewTest() throws IOException {
+		final MatrixWrapper	matrix = MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12});
+		final MatrixWrapper	rows = MatrixWrapper.rows(matrix, 1, 3);
+		final MatrixWrapper	columns = MatrixWrapper.columns(matrix, 1, 3);
+		final MatrixWrapper	transposed = MatrixWrapper.transpose(matrix);
+		final MatrixWrapper	strided = MatrixWrapper.view(matrix, 0, 2, 2, 0, 2, 3);
+		
+		Assert.assertTrue(MatrixWrapper.isCompact(matrix));
+		Assert.assertTrue(MatrixWrapper.isCompact(MatrixWrapper.rows(matrix, 0, 3)));
+		Assert.assertFalse(MatrixWrapper.isCompact(rows));
+		Assert.assertSame(matrix.getContent(), rows.getContent());
+		Assert.assertArrayEquals(new int[] {2, 4}, rows.getDimensions());
+		Assert.assertEquals(4, rows.getOffset());
+		Assert.assertEquals(MatrixWrapper.of(2, 4, new float[] {5,6,7,8, 9,10,11,12}), rows);
+		Assert.assertEquals(MatrixWrapper.of(3, 2, new float[] {2,3, 6,7, 10,11}), columns);
+		Assert.assertEquals(MatrixWrapper.of(4, 3, new float[] {1,5,9, 2,6,10, 3,7,11, 4,8,12}), transposed);
+		Assert.assertEquals(4, transposed.getColumnStride());
+		Assert.assertEquals(1, transposed.getRowStride());
+		Assert.assertEquals(matrix, MatrixWrapper.transpose(transposed));
+		Assert.assertEquals(MatrixWrapper.of(2, 2, new float[] {1,4, 9,12}), strided);
+		Assert.assertEquals(MatrixWrapper.of(1, 2, new float[] {6,7}), MatrixWrapper.rows(columns, 1, 2));
+		Assert.assertTrue(MatrixWrapper.isCompact(MatrixWrapper.flatten(transposed)));
+		Assert.assertEquals(MatrixWrapper.convert(MatrixWrapper.of(2, 4, new float[] {5,6,7,8, 9,10,11,12}), MatrixClass.HALF_FLAT2), MatrixWrapper.convert(rows, MatrixClass.HALF_FLAT2));
+		Assert.assertEquals(MatrixWrapper.of(MatrixClass.HALF_FLAT2, 4, 3, new short[] {0x3C00,0x4500,0x4880, 0x4000,0x4600,0x4900, 0x4200,0x4700,0x4980, 0x4400,0x4800,0x4A00}), MatrixWrapper.transpose(MatrixWrapper.convert(matrix, MatrixClass.HALF_FLAT2)));
+		
+		final ByteArrayOutputStream	streamed = new ByteArrayOutputStream();
+		
+		try(final DataOutputStream	dos = new DataOutputStream(streamed)) {
+			transposed.upload(dos);
+		}
+		Assert.assertEquals(4 * 3 * 4, streamed.size());
+		try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+			Assert.assertEquals(transposed, MatrixWrapper.download(dis, MatrixClass.FLOAT_FLAT2, 4, 3));
+		}
+		
+		try(final CloseableMatrixWrapper	offHeap = MatrixWrapper.toOffHeap(matrix)) {
+			final MatrixWrapper	view = MatrixWrapper.transpose(MatrixWrapper.rows(offHeap, 1, 3));
+			
+			Assert.assertEquals(MatrixClass.FLOAT_BUFFER2, view.getMatrixClass());
+			Assert.assertSame(offHeap.getContent(), view.getContent());
+			Assert.assertEquals(MatrixWrapper.of(4, 2, new float[] {5,9, 6,10, 7,11, 8,12}), MatrixWrapper.flatten(view));
+			try(final CloseableMatrixWrapper	copy = MatrixWrapper.toOffHeap(view)) {
+				Assert.assertTrue(MatrixWrapper.isCompact(copy));
+				Assert.assertEquals(view, copy);
+			}
+			
+			offHeap.close();
+			try{view.getContent();
+				Assert.fail("Mandatory exception was not detected (parent matrix closed)");
+			} catch (IllegalStateException exc) {
+			}
+		}
+		
+		try{MatrixWrapper.rows(matrix, 2, 4);
+			Assert.fail("Mandatory exception was not detected (row out of range)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.columns(matrix, 2, 2);
+			Assert.fail("Mandatory exception was not detected (empty column range)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.view(matrix, 0, 2, 0, 0, 2, 1);
+			Assert.fail("Mandatory exception was not detected (zero step)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.transpose(MatrixWrapper.of(new float[] {1, 2}));
+			Assert.fail("Mandatory exception was not detected (one-dimensional matrix)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.transpose(MatrixWrapper.convert(matrix, MatrixClass.FLOAT2_ARRAY));
+			Assert.fail("Mandatory exception was not detected (views are not supported)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.rows(null, 0, 1);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+	}
+
+	@Test
+	public void batchTest() throws IOException {
+		final MatrixWrapper	batch = MatrixWrapper.batch(MatrixWrapper.of(new float[] {1,2,3}), MatrixWrapper.of(new float[] {4,5,6}));
+		final MatrixWrapper	batch3 = MatrixWrapper.batch(MatrixWrapper.of(2, 2, new float[] {1,2,3,4}), MatrixWrapper.of(new float[] {5,6}, new float[] {7,8}));
+		
+		Assert.assertEquals(MatrixClass.FLOAT_BATCH2, batch.getMatrixClass());
+		Assert.assertArrayEquals(new int[] {2, 3}, batch.getDimensions());
+		Assert.assertArrayEquals(new float[] {1,2,3,4,5,6}, (float[])batch.getContent(), 0.0f);
+		Assert.assertEquals(MatrixWrapper.batch(2, 3, new float[] {1,2,3,4,5,6}), batch);
+		Assert.assertEquals(MatrixWrapper.of(new float[] {4,5,6}), MatrixWrapper.sample(batch, 1));
+		Assert.assertEquals(MatrixClass.FLOAT_BATCH3, batch3.getMatrixClass());
+		Assert.assertArrayEquals(new int[] {2, 2, 2}, batch3.getDimensions());
+		Assert.assertEquals(MatrixWrapper.of(2, 2, new float[] {5,6,7,8}), MatrixWrapper.sample(batch3, 1));
+		Assert.assertEquals(MatrixWrapper.of(2, 3, new float[] {1,2,3,4,5,6}), MatrixWrapper.convert(batch, MatrixClass.FLOAT_FLAT2));
+		Assert.assertEquals(batch, MatrixWrapper.convert(MatrixWrapper.of(2, 3, new float[] {1,2,3,4,5,6}), MatrixClass.FLOAT_BATCH2));
+		Assert.assertSame(batch3, MatrixWrapper.flatten(batch3));
+		Assert.assertEquals(2 * 2 * 2 * Float.BYTES, MatrixWrapper.sizeOf(MatrixClass.FLOAT_BATCH3, 2, 2, 2));
+		Assert.assertArrayEquals(new int[] {4, 2, 3}, MatrixWrapper.random(MatrixClass.FLOAT_BATCH3, 4, 2, 3).getDimensions());
+		
+		final ByteArrayOutputStream	streamed = new ByteArrayOutputStream();
+		
+		try(final DataOutputStream	dos = new DataOutputStream(streamed)) {
+			batch.upload(dos);
+			batch3.upload(dos);
+		}
+		try(final DataInputStream	dis = new DataInputStream(new ByteArrayInputStream(streamed.toByteArray()))) {
+			Assert.assertEquals(batch, MatrixWrapper.download(dis, MatrixClass.FLOAT_BATCH2, 2, 3));
+			Assert.assertEquals(batch3, MatrixWrapper.download(dis, MatrixClass.FLOAT_BATCH3, 2, 2, 2));
+		}
+		
+		try{MatrixWrapper.batch(2, 3, new float[5]);
+			Assert.fail("Mandatory exception was not detected (content size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.batch(MatrixWrapper.of(new float[2]), MatrixWrapper.of(new float[3]));
+			Assert.fail("Mandatory exception was not detected (different sample sizes)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.batch();
+			Assert.fail("Mandatory exception was not detected (empty samples)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.sample(batch, 2);
+			Assert.fail("Mandatory exception was not detected (sample index out of range)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{MatrixWrapper.sample(MatrixWrapper.of(new float[2]), 0);
+			Assert.fail("Mandatory exception was not detected (not a batch)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void distributionTest() {
+		final MatrixWrapper	single = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.HE_NORMAL, 1L, 1, 300, 100);
+		
+		for(int parallelism : new int[] {2, 3, 8}) {	// Content doesn't depend on number of threads
+			Assert.assertEquals(single, MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.HE_NORMAL, 1L, parallelism, 300, 100));
+		}
+		Assert.assertNotEquals(single, MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.HE_NORMAL, 2L, 1, 300, 100));
+		Assert.assertArrayEquals((float[])single.getContent(), (float[])MatrixWrapper.convert(MatrixWrapper.random(MatrixClass.FLOAT_BUFFER2, Distribution.HE_NORMAL, 1L, 4, 300, 100), MatrixClass.FLOAT_FLAT2).getContent(), 0.0f);
+		
+		final float[]		normal = single.getContent();
+		double				sum = 0, sum2 = 0;
+		
+		for(float item : normal) {
+			sum += item;
+			sum2 += item * item;
+		}
+		Assert.assertEquals(0, sum / normal.length, 0.01);
+		Assert.assertEquals(Math.sqrt(2.0 / 300), Math.sqrt(sum2 / normal.length), 0.005);
+		
+		final double		limit = Math.sqrt(6.0 / (300 + 100));
+		final MatrixWrapper	xavier = MatrixWrapper.random(MatrixClass.DOUBLE_FLAT2, Distribution.XAVIER_UNIFORM, 3L, 4, 300, 100);
+		double				min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		
+		for(double item : (double[])xavier.getContent()) {
+			min = Math.min(min, item);
+			max = Math.max(max, item);
+		}
+		Assert.assertTrue(min >= -limit && min < -0.9 * limit);
+		Assert.assertTrue(max < limit && max > 0.9 * limit);
+		
+		for(float item : (float[])MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, Distribution.UNIFORM, 4L, 2, 10000).getContent()) {
+			Assert.assertTrue(item >= 0 && item < 1);
+		}
+		
+		try{MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, null, 1L, 1, 3, 3);
+			Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.NORMAL, 1L, 0, 3, 3);
+			Assert.fail("Mandatory exception was not detected (illegal 4-th argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
 }
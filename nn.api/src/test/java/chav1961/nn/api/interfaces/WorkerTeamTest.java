@@ -0,0 +1,104 @@
+package chav1961.nn.api.interfaces;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+public class WorkerTeamTest {
+
+	@Test
+	public void phasesTest() throws CalculationException, InterruptedException {
+		try(final WorkerTeam	team = new WorkerTeam("test", 3)) {
+			final int[]			content = new int[10];
+			final Thread[]		owners = new Thread[10];
+
+			Assert.assertEquals("test", team.getName());
+			Assert.assertEquals(3, team.getSize());
+
+			for(int phase = 0; phase < 1000; phase++) {	// Workers survive between phases
+				team.execute(content.length, (part)->{
+					content[part]++;
+					owners[part] = Thread.currentThread();
+				});
+			}
+			for(int value : content) {
+				Assert.assertEquals(1000, value);
+			}
+			final Set<Thread>	threads = new HashSet<>();
+
+			for(Thread item : owners) {
+				threads.add(item);
+			}
+			Assert.assertEquals(3, threads.size());
+			Assert.assertTrue(threads.contains(Thread.currentThread()));
+
+			team.execute(4, (part)->{
+				try {
+					team.execute(2, (nested)->content[nested] = -1);	// Nested calls are processed on the calling thread
+				} catch (CalculationException exc) {
+					throw new IllegalStateException(exc);
+				}
+			});
+			Assert.assertEquals(-1, content[0]);
+
+			try{team.execute(5, (part)->{
+					if (part == 4) {
+						throw new ArithmeticException("test");
+					}
+				});
+				Assert.fail("Mandatory exception was not detected (failed part)");
+			} catch (CalculationException exc) {
+				Assert.assertTrue(exc.getCause() instanceof ArithmeticException);
+			}
+			team.execute(0, (part)->Assert.fail("Empty execution can't call task"));
+
+			try{team.execute(-1, (part)->{});
+				Assert.fail("Mandatory exception was not detected (illegal 1-st argument)");
+			} catch (IllegalArgumentException exc) {
+			}
+			try{team.execute(1, null);
+				Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+			} catch (NullPointerException exc) {
+			}
+
+			team.close();
+			Assert.assertTrue(team.isClosed());
+			try{team.execute(1, (part)->{});
+				Assert.fail("Mandatory exception was not detected (closed team)");
+			} catch (IllegalStateException exc) {
+			}
+		}
+		try{new WorkerTeam("test", 0);
+			Assert.fail("Mandatory exception was not detected (illegal 2-nd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void sharedTest() throws InterruptedException {
+		final WorkerTeam	team = WorkerTeam.shared("shared", 2);
+
+		Assert.assertSame(team, WorkerTeam.shared("shared", 2));
+		Assert.assertSame(WorkerTeam.common(2), WorkerTeam.common(2));
+		Assert.assertNotSame(team, WorkerTeam.common(2));
+		Assert.assertEquals(2, PipeBuilder.newInstance().setWorkerTeam(team).getParallelism());
+		Assert.assertSame(team, PipeBuilder.newInstance().setWorkerTeam(team).getWorkerTeam());
+		Assert.assertSame(WorkerTeam.common(3), PipeBuilder.newInstance().setWorkerTeam(team).setParallelism(3).getWorkerTeam());
+
+		try{WorkerTeam.shared("shared", 3);
+			Assert.fail("Mandatory exception was not detected (size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		team.close();
+		Assert.assertNotSame(team, WorkerTeam.shared("shared", 2));
+
+		try{PipeBuilder.newInstance().setWorkerTeam(team);
+			Assert.fail("Mandatory exception was not detected (closed team)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package chav1961.nn.ordinal;
+
+import java.util.Arrays;
+
+import chav1961.nn.api.interfaces.CalculationPrecision;
+
+class ActivationArena {	// Per-thread buffers of the forward calculation, reused between calls
+	private float[][]	stages = new float[0][];
+	private float[][]	temps = new float[0][];
+	private CalculationPrecision.Accumulator[]	accumulators = new CalculationPrecision.Accumulator[0];
+
+	float[] stage(final int stage, final int size) {
+		if (stage >= stages.length) {
+			stages = Arrays.copyOf(stages, stage + 1);
+		}
+		if (stages[stage] == null || stages[stage].length != size) {
+			stages[stage] = new float[size];
+		}
+		return stages[stage];
+	}
+	
+	float[][] temps(final int count, final int size) {
+		if (count > temps.length) {
+			temps = Arrays.copyOf(temps, count);
+		}
+		for(int index = 0; index < count; index++) {
+			if (temps[index] == null || temps[index].length < size) {
+				temps[index] = new float[size];
+			}
+		}
+		return temps;
+	}
+
+	CalculationPrecision.Accumulator accumulator(final int index, final CalculationPrecision precision, final float[] target, final int size) {	// Block buffers of MEDIUM and PRECISE sums are reused between calls
+		if (index >= accumulators.length) {
+			accumulators = Arrays.copyOf(accumulators, index + 1);
+		}
+		if (accumulators[index] == null || accumulators[index].getPrecision() != precision) {
+			accumulators[index] = precision.newAccumulator(target, size);
+			return accumulators[index];
+		}
+		else {
+			return accumulators[index].reset(target, size);
+		}
+	}
+}
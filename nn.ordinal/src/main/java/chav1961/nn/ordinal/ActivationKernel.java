@@ -0,0 +1,273 @@
+package chav1961.nn.ordinal;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.WorkerTeam;
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+class ActivationKernel {	// Activation type with resolved parameters. All the kernels can work in-place
+	static final float			DEFAULT_SLOPE = 0.01f;
+	static final int			PARALLEL_THRESHOLD = 1 << 14;	// Minimal vector size to split element-wise calculation between team members
+	private static final float	GELU_SCALE = (float)Math.sqrt(2 / Math.PI);
+	private static final float	GELU_CUBIC = 0.044715f;
+
+	final ActivationType	type;
+	final float				parameter;
+
+	ActivationKernel(final ActivationType type, final Object... parameters) {
+		if (type == null) {
+			throw new NullPointerException("Activation type can't be null");
+		}
+		else if (parameters == null) {
+			throw new NullPointerException("Activation parameters can't be null");
+		}
+		else if (type == ActivationType.LEAKY_RELU && parameters.length > 0 && !(parameters[0] instanceof Number)) {
+			throw new IllegalArgumentException("Slope ["+parameters[0]+"] of the ["+type+"] activation must be a number");
+		}
+		else {
+			this.type = type;
+			this.parameter = type == ActivationType.LEAKY_RELU ? (parameters.length > 0 ? ((Number)parameters[0]).floatValue() : DEFAULT_SLOPE) : 0;
+		}
+	}
+
+	ActivationKernel(final ActivationType type, final float[] parameters) {
+		this(type, box(parameters));
+	}
+
+	float[] getParameters() {	// Parameters to restore the same kernel
+		return type == ActivationType.LEAKY_RELU ? new float[] {parameter} : new float[0];
+	}
+
+	long flops(final int size) {	// Exponent and tangent are counted as a single operation
+		switch (type) {
+			case RELU			: return size;
+			case LEAKY_RELU		: return 2L * size;
+			case SIGMOID		: case TANH	: return 3L * size;
+			case SOFTMAX		: case LOG_SOFTMAX	: return 4L * size;
+			case GELU			: return 9L * size;
+			default : throw new UnsupportedOperationException("Activation type ["+type+"] is not supported yet");
+		}
+	}
+
+	boolean isElementWise() {
+		return type.isElementWise();
+	}
+
+	float[] forward(final float[] content, final float[] result, final CalculationPrecision precision, final WorkerTeam team) throws CalculationException {
+		switch (type) {
+			case SOFTMAX		:
+				return OrdinalFloatPipe.activateSoftMax(content, result, precision, team);
+			case LOG_SOFTMAX	:
+				return activateLogSoftMax(content, result, team);
+			default :
+				execute(content.length, team, (from, to)->apply(content, result, from, to));
+				return result;
+		}
+	}
+
+	float[] forward(final float[] content, final int batchSize, final float[] result, final CalculationPrecision precision, final WorkerTeam team) throws CalculationException {
+		switch (type) {
+			case SOFTMAX		:
+				return OrdinalFloatPipe.activateSoftMax(content, batchSize, result, precision, team);
+			case LOG_SOFTMAX	:
+				final int	size = content.length / batchSize;
+				final int[]	ranges = OrdinalFloatPipe.splitRows(batchSize, team.getSize());
+
+				// Every part processes contiguous range of samples
+				team.execute(ranges.length - 1, (part)->{
+					for(int sample = ranges[part], from = sample * size; sample < ranges[part + 1]; sample++, from += size) {
+						final float	shift = logSumExp(content, from, from + size);
+
+						for(int index = from; index < from + size; index++) {
+							result[index] = content[index] - shift;
+						}
+					}
+				});
+				return result;
+			default :	// Samples are not important for element-wise activations
+				return forward(content, result, precision, team);
+		}
+	}
+
+	float[] backward(final float[] input, final float[] output, final float[] gradient, final float[] result, final CalculationPrecision precision, final WorkerTeam team) throws CalculationException {
+		switch (type) {
+			case SOFTMAX		:	// dx[i] = y[i] * (g[i] - sum(g[j] * y[j]))
+				final float	dot = reduce(gradient.length, precision, team, (from, to, temp)->{
+								for(int index = from; index < to; index++) {
+									temp[index - from] = gradient[index] * output[index];
+								}
+							});
+
+				execute(gradient.length, team, (from, to)->{
+					for(int index = from; index < to; index++) {
+						result[index] = output[index] * (gradient[index] - dot);
+					}
+				});
+				return result;
+			case LOG_SOFTMAX	:	// dx[i] = g[i] - exp(y[i]) * sum(g[j])
+				final float	total = reduce(gradient.length, precision, team, (from, to, temp)->System.arraycopy(gradient, from, temp, 0, to - from));
+
+				execute(gradient.length, team, (from, to)->{
+					for(int index = from; index < to; index++) {
+						result[index] = gradient[index] - (float)Math.exp(output[index]) * total;
+					}
+				});
+				return result;
+			default :
+				execute(gradient.length, team, (from, to)->derivative(input, output, gradient, result, from, to));
+				return result;
+		}
+	}
+
+	void apply(final float[] content, final float[] result, final int from, final int to) {
+		switch (type) {
+			case RELU		:
+				for(int index = from; index < to; index++) {
+					result[index] = Math.max(content[index], 0f);
+				}
+				break;
+			case LEAKY_RELU	:
+				for(int index = from; index < to; index++) {
+					final float	value = content[index];
+
+					result[index] = value > 0 ? value : parameter * value;
+				}
+				break;
+			case SIGMOID	:
+				for(int index = from; index < to; index++) {
+					result[index] = (float)(1 / (1 + Math.exp(-content[index])));
+				}
+				break;
+			case TANH		:
+				for(int index = from; index < to; index++) {
+					result[index] = (float)Math.tanh(content[index]);
+				}
+				break;
+			case GELU		:	// 0.5 * x * (1 + tanh(sqrt(2/PI) * (x + 0.044715 * x^3)))
+				for(int index = from; index < to; index++) {
+					final float	value = content[index];
+
+					result[index] = 0.5f * value * (1 + (float)Math.tanh(GELU_SCALE * (value + GELU_CUBIC * value * value * value)));
+				}
+				break;
+			default :
+				throw new UnsupportedOperationException("Activation type ["+type+"] is not element-wise");
+		}
+	}
+
+	void derivative(final float[] input, final float[] output, final float[] gradient, final float[] result, final int from, final int to) {
+		switch (type) {
+			case RELU		:
+				for(int index = from; index < to; index++) {
+					result[index] = input[index] > 0 ? gradient[index] : 0f;
+				}
+				break;
+			case LEAKY_RELU	:
+				for(int index = from; index < to; index++) {
+					result[index] = input[index] > 0 ? gradient[index] : parameter * gradient[index];
+				}
+				break;
+			case SIGMOID	:	// y * (1 - y)
+				for(int index = from; index < to; index++) {
+					final float	value = output[index];
+
+					result[index] = gradient[index] * value * (1 - value);
+				}
+				break;
+			case TANH		:	// 1 - y^2
+				for(int index = from; index < to; index++) {
+					final float	value = output[index];
+
+					result[index] = gradient[index] * (1 - value * value);
+				}
+				break;
+			case GELU		:	// Tanh can't be restored from the output, so it is calculated again
+				for(int index = from; index < to; index++) {
+					final float	value = input[index], square = value * value;
+					final float	tanh = (float)Math.tanh(GELU_SCALE * (value + GELU_CUBIC * square * value));
+
+					result[index] = gradient[index] * (0.5f * (1 + tanh) + 0.5f * value * (1 - tanh * tanh) * GELU_SCALE * (1 + 3 * GELU_CUBIC * square));
+				}
+				break;
+			default :
+				throw new UnsupportedOperationException("Activation type ["+type+"] is not element-wise");
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ActivationKernel [type=" + type + ", parameter=" + parameter + "]";
+	}
+
+	private static Object[] box(final float[] parameters) {
+		if (parameters == null) {
+			throw new NullPointerException("Activation parameters can't be null");
+		}
+		else {
+			final Object[]	result = new Object[parameters.length];
+			
+			for(int index = 0; index < result.length; index++) {
+				result[index] = parameters[index];
+			}
+			return result;
+		}
+	}
+
+	private static float[] activateLogSoftMax(final float[] content, final float[] result, final WorkerTeam team) throws CalculationException {
+		final float	shift = logSumExp(content, 0, content.length);	// Subtracting maximum keeps exponents in range
+
+		execute(content.length, team, (from, to)->{
+			for(int index = from; index < to; index++) {
+				result[index] = content[index] - shift;
+			}
+		});
+		return result;
+	}
+
+	private static float logSumExp(final float[] content, final int from, final int to) {
+		float	max = Float.NEGATIVE_INFINITY;
+		double	sum = 0;
+
+		for(int index = from; index < to; index++) {
+			max = Math.max(max, content[index]);
+		}
+		for(int index = from; index < to; index++) {	// Exponent is much more expensive than the double accumulation
+			sum += Math.exp(content[index] - max);
+		}
+		return max + (float)Math.log(sum);
+	}
+
+	private static void execute(final int size, final WorkerTeam team, final RangeProcessor processor) throws CalculationException {
+		if (size < PARALLEL_THRESHOLD || team.getSize() <= 1) {	// Process on the caller thread, splitting is more expensive than calculation
+			processor.process(0, size);
+		}
+		else {
+			final int[]	ranges = OrdinalFloatPipe.splitRows(size, team.getSize());
+
+			team.execute(ranges.length - 1, (part)->processor.process(ranges[part], ranges[part + 1]));
+		}
+	}
+
+	private static float reduce(final int size, final CalculationPrecision precision, final WorkerTeam team, final RangeFiller filler) throws CalculationException {
+		final int[]		ranges = OrdinalFloatPipe.splitRows(size, size < PARALLEL_THRESHOLD ? 1 : team.getSize());
+		final float[]	sum = new float[ranges.length - 1];
+
+		team.execute(sum.length, (part)->{
+			final float[]	temp = new float[ranges[part + 1] - ranges[part]];
+
+			filler.fill(ranges[part], ranges[part + 1], temp);
+			sum[part] = precision.sum(temp, 0, temp.length);
+		});
+		return precision.sum(sum, 0, sum.length);
+	}
+
+	@FunctionalInterface
+	private static interface RangeProcessor {
+		void process(int from, int to);
+	}
+
+	@FunctionalInterface
+	private static interface RangeFiller {
+		void fill(int from, int to, float[] temp);
+	}
+}
@@ -0,0 +1,345 @@
+package chav1961.nn.ordinal;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.CsrContent;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderStage;
+import chav1961.nn.api.interfaces.PipeProfiler;
+import chav1961.nn.api.interfaces.PipeStream;
+import chav1961.nn.api.interfaces.QuantizedContent;
+import chav1961.nn.api.interfaces.WorkerTeam;
+import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.interfaces.ProgressIndicator;
+
+class OrdinalCompiledPipe implements Pipe {	// Immutable execution plan compiled from the pipe builder content
+	private final boolean 		readOnly;
+	private final int			parallelism;
+	private final WorkerTeam	team;
+	private final CalculationPrecision	precision;
+	private final int			inputSize;
+	private final int			outputSize;
+	private final int			tempSize;
+	private final Step[]		steps;
+	private final ThreadLocal<ActivationArena>	arenas;
+	private final PipeProfiler	profiler;
+
+	OrdinalCompiledPipe(final PipeBuilder builder) {
+		final List<Step>	compiled = new ArrayList<>();
+		int					inputSize = -1, currentSize = -1, maxSize = 0;
+
+		this.readOnly = builder.isReadOnly();
+		this.parallelism = builder.getParallelism();
+		this.team = builder.getWorkerTeam();
+		this.precision = builder.getPrecision();
+		for(PipeBuilderStage stage : builder) {
+			if (stage.isMatrix()) {
+				final MatrixWrapper	matrix = stage.getMatrix();
+
+				if (matrix.getMatrixClass().contentClass() != float.class) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: matrix content class ["+matrix.getMatrixClass().contentClass()+"] is incompatible with awaited content ["+float.class+"]");
+				}
+				else if (matrix.getDimensions().length != 2) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: matrix must be two-dimensional matrix");
+				}
+				else if (matrix.getMatrixClass().storageClass() != float.class && !readOnly) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: matrix class ["+matrix.getMatrixClass()+"] with reduced storage precision can be used in the read-only pipes only");
+				}
+				else if (currentSize >= 0 && currentSize != matrix.getDimensions()[0]) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: number of rows ["+matrix.getDimensions()[0]+"] conflicts with the previous stage output size ["+currentSize+"]");
+				}
+				else {
+					if (inputSize < 0) {
+						inputSize = matrix.getDimensions()[0];
+					}
+					currentSize = matrix.getDimensions()[1];
+					maxSize = Math.max(maxSize, currentSize);
+					compiled.add(new Step(matrix, resolve(matrix, precision), currentSize, null, null));
+				}
+			}
+			else if (!compiled.isEmpty() && compiled.get(compiled.size() - 1).type == null) {	// Fuse activation into the previous multiplication
+				final Step	last = compiled.get(compiled.size() - 1);
+
+				compiled.set(compiled.size() - 1, new Step(last.matrix, last.kernel, last.size, stage.getActivationType(), stage.getActivationParameters()));
+			}
+			else {
+				compiled.add(new Step(null, null, -1, stage.getActivationType(), stage.getActivationParameters()));
+			}
+		}
+		if (inputSize < 0) {
+			throw new IllegalArgumentException("Pipe builder doesn't contain any matrices");
+		}
+		else {
+			for(int index = 0; index < compiled.size(); index++) {	// Leading activations keep size of the input
+				final Step	item = compiled.get(index);
+
+				if (item.size < 0) {
+					compiled.set(index, new Step(null, null, inputSize, item.type, item.parameters));
+				}
+			}
+			final int	tempSize = Math.max(maxSize, inputSize);
+
+			this.tempSize = tempSize;
+			this.inputSize = inputSize;
+			this.outputSize = currentSize;
+			this.steps = compiled.toArray(new Step[compiled.size()]);
+			this.profiler = new PipeProfiler(team);
+			for(Step item : steps) {
+				profiler.addStage(item.name);
+			}
+			this.arenas = ThreadLocal.withInitial(()->{	// All the buffers are allocated on the first call in the thread
+				final ActivationArena	arena = new ActivationArena();
+
+				for(int index = 0; index < steps.length - 1; index++) {
+					arena.stage(index + 1, steps[index].size);
+				}
+				arena.temps(parallelism, tempSize);
+				return arena;
+			});
+		}
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	@Override
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@Override
+	public PipeProfiler getProfiler() {	// Every step is a separate stage
+		return profiler;
+	}
+
+	@Override
+	public PipeStream stream(final int groups, final int capacity) throws IllegalArgumentException {
+		if (groups <= 0) {
+			throw new IllegalArgumentException("Number of groups ["+groups+"] must be greater than 0");
+		}
+		else if (capacity <= 0) {
+			throw new IllegalArgumentException("Queue capacity ["+capacity+"] must be greater than 0");
+		}
+		else {
+			return new OrdinalPipeStream(this, groups, capacity);
+		}
+	}
+
+	@Override
+	public MatrixWrapper forward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+		return forward(matrix, MatrixWrapper.of(new float[outputSize]), pi);
+	}
+
+	@Override
+	public MatrixWrapper forward(final MatrixWrapper matrix, final MatrixWrapper target, final ProgressIndicator pi) throws CalculationException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to process can't be null");
+		}
+		else if (matrix.getMatrixClass() != MatrixClass.FLOAT_ARRAY && matrix.getMatrixClass() != MatrixClass.FLOAT_SPARSE) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_ARRAY+"] and ["+MatrixClass.FLOAT_SPARSE+"] are available");
+		}
+		else if (matrix.getDimensions()[0] != inputSize) {
+			throw new IllegalArgumentException("Matrix size ["+matrix.getDimensions()[0]+"] differs from pipe input size ["+inputSize+"]");
+		}
+		else if (target == null) {
+			throw new NullPointerException("Target matrix can't be null");
+		}
+		else if (target.getMatrixClass() != MatrixClass.FLOAT_ARRAY || target.getDimensions()[0] != outputSize) {
+			throw new IllegalArgumentException("Target matrix class ["+target.getMatrixClass()+"] or size ["+target.getDimensions()[0]+"] differs from awaited ["+MatrixClass.FLOAT_ARRAY+"] and ["+outputSize+"]");
+		}
+		else if (target.getContent() == matrix.getContent()) {
+			throw new IllegalArgumentException("Target matrix can't share content with the matrix to process");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else {
+			final ActivationArena	arena = arenas.get();
+			final float[]			result = target.getContent();
+			final PipeProfiler.Probe	probe = profiler.begin();
+			float[]					current = matrix.getMatrixClass() == MatrixClass.FLOAT_SPARSE ? OrdinalFloatPipe.toDense(matrix, arena.stage(0, inputSize)) : matrix.getContent();
+
+			pi.start("Forward calculation", steps.length);
+			for(int index = 0; index < steps.length; index++) {
+				final Step		step = steps[index];
+				final float[]	output = index == steps.length - 1 ? result : arena.stage(index + 1, step.size);
+
+				current = process(step, current, output, arena, team);
+				if (probe != null) {
+					probe.stage(index, step.flops, step.weights + step.sampleBytes);
+				}
+				pi.processed(index + 1);
+			}
+			pi.end();
+			return target;
+		}
+	}
+
+	@Override
+	public MatrixWrapper forwardBatch(final MatrixWrapper batch, final ProgressIndicator pi) throws CalculationException {
+		if (batch == null) {
+			throw new NullPointerException("Batch to process can't be null");
+		}
+		else if (batch.getMatrixClass() != MatrixClass.FLOAT_BATCH2) {
+			throw new IllegalArgumentException("Matrix class ["+batch.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_BATCH2+"] is available");
+		}
+		else if (batch.getDimensions()[1] != inputSize) {
+			throw new IllegalArgumentException("Batch sample size ["+batch.getDimensions()[1]+"] differs from pipe input size ["+inputSize+"]");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else {
+			final int	batchSize = batch.getDimensions()[0];
+			final PipeProfiler.Probe	probe = profiler.begin();
+			float[]		current = batch.getContent();
+
+			pi.start("Forward batch calculation", steps.length);
+			for(int index = 0; index < steps.length; index++) {
+				final Step		step = steps[index];
+
+				if (step.kernel != null) {
+					current = OrdinalFloatPipe.forwardMutiply(current, batchSize, step.matrix, new float[batchSize * step.size], step.epilogue, team);
+				}
+				if (step.activation != null) {
+					current = step.activation.forward(current, batchSize, step.kernel != null ? current : new float[current.length], precision, team);
+				}
+				if (probe != null) {
+					probe.stage(index, batchSize * step.flops, step.weights + batchSize * step.sampleBytes);
+				}
+				pi.processed(index + 1);
+			}
+			pi.end();
+			return MatrixWrapper.batch(batchSize, outputSize, current);
+		}
+	}
+
+	@Override
+	public MatrixWrapper backward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to process can't be null");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else if (isReadOnly()) {
+			throw new IllegalStateException("Attempt to call this method on read-only pipe");
+		}
+		else {
+			throw new UnsupportedOperationException("Backward calculation is not supported by compiled pipes yet");
+		}
+	}
+
+	int getInputSize() {
+		return inputSize;
+	}
+
+	int getOutputSize() {
+		return outputSize;
+	}
+
+	int getNumberOfSteps() {
+		return steps.length;
+	}
+
+	int getTempSize() {
+		return tempSize;
+	}
+
+	Step getStep(final int index) {
+		return steps[index];
+	}
+
+	float[] process(final Step step, final float[] current, final float[] output, final ActivationArena arena, final WorkerTeam team) throws CalculationException {
+		float[]	result = current;
+		
+		if (step.kernel != null) {	// Element-wise activation is applied in the multiplication epilogue
+			result = step.kernel.multiply(result, output, arena, step.epilogue, team);
+		}
+		if (step.activation != null) {	// Fused activation works in-place on the multiplication result
+			result = step.activation.forward(result, output, precision, team);
+		}
+		return result;
+	}
+
+	private static Kernel resolve(final MatrixWrapper matrix, final CalculationPrecision precision) {	// Matrix class, content and strides are resolved once at the compile time
+		final int	offset = matrix.getOffset(), columns = matrix.getDimensions()[1], rowStride = matrix.getRowStride(), columnStride = matrix.getColumnStride();
+
+		switch (matrix.getMatrixClass()) {
+			case FLOAT2_ARRAY	:
+				final float[][]		f2Content = matrix.getContent();
+
+				return (source, result, arena, epilogue, team)->OrdinalFloatPipe.forwardMutiply(source, f2Content, result, arena, precision, epilogue, team);
+			case FLOAT_FLAT2	:
+				final float[]		fContent = matrix.getContent();
+
+				return (source, result, arena, epilogue, team)->OrdinalFloatPipe.forwardMutiply(source, fContent, offset, columns, rowStride, columnStride, result, arena, precision, epilogue, team);
+			case FLOAT_BUFFER2	:
+				final FloatBuffer	bContent = matrix.getContent();
+
+				return (source, result, arena, epilogue, team)->OrdinalFloatPipe.forwardMutiply(source, bContent, offset, columns, rowStride, columnStride, result, arena, precision, epilogue, team);
+			case HALF_FLAT2		:
+			case BFLOAT16_FLAT2	:
+				final short[]		sContent = matrix.getContent();
+				final boolean		bfloat16 = matrix.getMatrixClass() == MatrixClass.BFLOAT16_FLAT2;
+
+				return (source, result, arena, epilogue, team)->OrdinalFloatPipe.forwardMutiply(source, sContent, bfloat16, offset, columns, rowStride, columnStride, result, arena, precision, epilogue, team);
+			case FLOAT_CSR2		:
+				final CsrContent	csr = matrix.getContent();
+
+				return (source, result, arena, epilogue, team)->OrdinalFloatPipe.forwardMutiply(source, csr.getRowPointers(), csr.getColumnIndices(), csr.getValues(), columns, result, arena, precision, epilogue, team);
+			case INT8_ROW_FLAT2		:
+			case INT8_COLUMN_FLAT2	:
+				final QuantizedContent	quantized = matrix.getContent();
+				final boolean			perRow = matrix.getMatrixClass() == MatrixClass.INT8_ROW_FLAT2;
+
+				return (source, result, arena, epilogue, team)->OrdinalFloatPipe.forwardMutiply(source, quantized.getValues(), quantized.getScales(), perRow, columns, rowStride, result, arena, precision, epilogue, team);
+			default :
+				throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported yet");
+		}
+	}
+
+	@FunctionalInterface
+	private static interface Kernel {
+		float[] multiply(float[] source, float[] result, ActivationArena arena, ActivationKernel epilogue, WorkerTeam team) throws CalculationException;
+	}
+
+	static class Step {
+		final MatrixWrapper		matrix;
+		final Kernel			kernel;
+		final int				size;
+		final ActivationType	type;
+		final float[]			parameters;
+		final ActivationKernel	epilogue;
+		final ActivationKernel	activation;
+		final String			name;
+		final long				flops;			// Per sample
+		final long				weights;
+		final long				sampleBytes;	// Inputs and outputs per sample
+
+		private Step(final MatrixWrapper matrix, final Kernel kernel, final int size, final ActivationType type, final float[] parameters) {
+			final ActivationKernel	activation = type != null ? new ActivationKernel(type, parameters) : null;
+			
+			this.matrix = matrix;
+			this.kernel = kernel;
+			this.size = size;
+			this.type = type;
+			this.parameters = parameters;
+			this.epilogue = kernel != null && activation != null && activation.isElementWise() ? activation : null;
+			this.activation = epilogue == null ? activation : null;
+			this.name = matrix != null ? OrdinalFloatPipe.describe(matrix) + (type != null ? " + " + type : "") : String.valueOf(type);
+			this.flops = (matrix != null ? OrdinalFloatPipe.flopsOf(matrix) : 0) + (activation != null && size > 0 ? activation.flops(size) : 0);
+			this.weights = matrix != null ? OrdinalFloatPipe.bytesOf(matrix) : 0;
+			this.sampleBytes = (long)Float.BYTES * ((matrix != null ? matrix.getDimensions()[0] + size : 0) + (this.activation != null ? 2 * size : 0));	// Epilogue doesn't read the result again
+		}
+	}
+}
@@ -2,30 +2,53 @@ package chav1961.nn.ordinal;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
 
+import chav1961.nn.api.HalfPrecision;
 import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.CsrContent;
 import chav1961.nn.api.interfaces.MatrixClass;
 import chav1961.nn.api.interfaces.MatrixWrapper;
 import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeProfiler;
+import chav1961.nn.api.interfaces.PipeStream;
+import chav1961.nn.api.interfaces.QuantizedContent;
+import chav1961.nn.api.interfaces.SparseContent;
+import chav1961.nn.api.interfaces.WorkerTeam;
 import chav1961.purelib.basic.Utils;
 import chav1961.purelib.basic.exceptions.CalculationException;
 import chav1961.purelib.basic.interfaces.ProgressIndicator;
 
 public class OrdinalFloatPipe implements Pipe {
+	static final int			BATCH_BLOCK_SIZE = 1 << 14;	// Number of matrix items to keep in cache while processing batch samples
+	static final int			EPILOGUE_BLOCK_SIZE = 1 << 10;	// Number of result items to sum and activate at once
+	
 	private final boolean 		readOnly;
 	private final int			parallelism;
+	private final WorkerTeam	team;
+	private final CalculationPrecision	precision;
 	private final List<Object>	content = new ArrayList<>();
+	private final ThreadLocal<ActivationArena>	arenas = ThreadLocal.withInitial(ActivationArena::new);
+	private final PipeProfiler	profiler;
+	private int[]				outputs = new int[0];	// Output size of every stage, 0 means the same size as input
+	private long[]				flops = new long[0];	// Estimated number of operations of every matrix stage per sample
+	private long[]				traffic = new long[0];	// Size of the matrix and its input for every matrix stage
 	
 	OrdinalFloatPipe(final boolean readOnly, final int parallelism, final MatrixClass clazz) {
+		this(readOnly, parallelism, clazz, CalculationPrecision.QUICK);
+	}
+
+	OrdinalFloatPipe(final boolean readOnly, final int parallelism, final MatrixClass clazz, final CalculationPrecision precision) {
 		this.readOnly = readOnly;
 		this.parallelism = parallelism;
+		this.team = WorkerTeam.common(parallelism);
+		this.precision = precision;
+		this.profiler = new PipeProfiler(team);
 	}
 
 	@Override
@@ -38,44 +61,132 @@ public class OrdinalFloatPipe implements Pipe {
 		return parallelism;
 	}
 
+	@Override
+	public PipeProfiler getProfiler() {	// Every added item is a separate stage, fused activation is accounted in the multiplication
+		return profiler;
+	}
+
 	@Override
 	public MatrixWrapper forward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to process can't be null");
+		}
+		else {
+			return forward(matrix, MatrixWrapper.of(new float[getOutputSize(matrix.getDimensions()[0])]), pi);
+		}
+	}
+
+	@Override
+	public MatrixWrapper forward(final MatrixWrapper matrix, final MatrixWrapper target, final ProgressIndicator pi) throws CalculationException {
 		if (matrix == null) {
 			throw new NullPointerException("Matrix to process can't be null");
 		}
 		else if (matrix.getMatrixClass().contentClass() != float.class) {
 			throw new IllegalArgumentException("Matrix content class ["+matrix.getMatrixClass().contentClass()+"] is incompatible with awaited content ["+float.class+"]");
 		}
-		else if (matrix.getDimensions().length != 1) {
+		else if (matrix.getMatrixClass().numberOfDimensions() != 1) {
 			throw new IllegalArgumentException("Matrix is not a vector, but two-dimensional matrix");
 		}
+		else if (target == null) {
+			throw new NullPointerException("Target matrix can't be null");
+		}
+		else if (target.getMatrixClass() != MatrixClass.FLOAT_ARRAY) {
+			throw new IllegalArgumentException("Target matrix class ["+target.getMatrixClass()+"] is incompatible with awaited class ["+MatrixClass.FLOAT_ARRAY+"]");
+		}
+		else if (target.getContent() == matrix.getContent()) {
+			throw new IllegalArgumentException("Target matrix can't share content with the matrix to process");
+		}
 		else if (pi == null) {
 			throw new NullPointerException("Progress indicator can't be null");
 		}
 		else {
-			float[]	current = matrix.getContent();
-			int		step = 0;
+			final int		inputSize = matrix.getMatrixClass() == MatrixClass.FLOAT_SPARSE ? matrix.getDimensions()[0] : ((float[])matrix.getContent()).length;
+			final float[]	result = target.getContent();
 			
-			pi.start("Forward calculation", content.size());
-			for(Object item : content) {
-				if (item instanceof MatrixWrapper) {
-					final MatrixWrapper	wrapper = (MatrixWrapper)item;
+			if (result.length != getOutputSize(inputSize)) {
+				throw new IllegalArgumentException("Target matrix size ["+result.length+"] differs from pipe output size ["+getOutputSize(inputSize)+"]");
+			}
+			else {
+				final ActivationArena	arena = arenas.get();
+				final PipeProfiler.Probe	probe = profiler.begin();
+				float[]	current = matrix.getMatrixClass() == MatrixClass.FLOAT_SPARSE ? toDense(matrix, arena.stage(0, inputSize)) : matrix.getContent();
+				
+				pi.start("Forward calculation", content.size());
+				for(int index = 0, maxIndex = content.size(); index < maxIndex; index++) {
+					final Object			item = content.get(index);
+					final ActivationKernel	epilogue = item instanceof MatrixWrapper ? getEpilogue(index + 1) : null;
+					final int				last = epilogue != null ? index + 1 : index;
+					final int				size = outputs[index] > 0 ? outputs[index] : current.length;
+					final float[]			output = last == maxIndex - 1 ? result : arena.stage(index + 1, size);
 					
-					current = forwardMutiply(current, wrapper.getContent(), getParallelism());
+					if (item instanceof MatrixWrapper) {
+						current = forwardMutiply(current, (MatrixWrapper)item, output, arena, precision, epilogue, team);
+						if (probe != null) {
+							probe.stage(index, flops[index] + (epilogue != null ? epilogue.flops(size) : 0), traffic[index] + (long)Float.BYTES * size);
+						}
+					}
+					else if (item instanceof ActivationKeeper) {
+						current = ((ActivationKeeper)item).kernel.forward(current, output, precision, team);
+						if (probe != null) {
+							probe.stage(index, ((ActivationKeeper)item).kernel.flops(size), 2L * Float.BYTES * size);
+						}
+					}
+					index = last;
+					pi.processed(index + 1);
+				}
+				if (current != result) {	// Empty pipe
+					System.arraycopy(current, 0, result, 0, result.length);
+				}
+				pi.end();
+				return target;
+			}
+		}
+	}
+
+	@Override
+	public MatrixWrapper forwardBatch(final MatrixWrapper batch, final ProgressIndicator pi) throws CalculationException {
+		if (batch == null) {
+			throw new NullPointerException("Batch to process can't be null");
+		}
+		else if (batch.getMatrixClass() != MatrixClass.FLOAT_BATCH2) {
+			throw new IllegalArgumentException("Matrix class ["+batch.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_BATCH2+"] is available");
+		}
+		else if (batch.getDimensions()[1] != getInputSize(batch.getDimensions()[1])) {
+			throw new IllegalArgumentException("Batch sample size ["+batch.getDimensions()[1]+"] differs from pipe input size ["+getInputSize(batch.getDimensions()[1])+"]");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else {
+			final int	batchSize = batch.getDimensions()[0];
+			final PipeProfiler.Probe	probe = profiler.begin();
+			float[]		current = batch.getContent();
+			
+			pi.start("Forward batch calculation", content.size());
+			for(int index = 0, maxIndex = content.size(); index < maxIndex; index++) {
+				final Object	item = content.get(index);
+				
+				if (item instanceof MatrixWrapper) {	// Every stage is a single matrix-matrix multiplication
+					final ActivationKernel	epilogue = getEpilogue(index + 1);
+					
+					current = forwardMutiply(current, batchSize, (MatrixWrapper)item, new float[batchSize * outputs[index]], epilogue, team);
+					if (probe != null) {
+						probe.stage(index, batchSize * (flops[index] + (epilogue != null ? epilogue.flops(outputs[index]) : 0)), traffic[index] + (long)Float.BYTES * (batchSize * outputs[index] + (batchSize - 1) * ((MatrixWrapper)item).getDimensions()[0]));
+					}
+					if (epilogue != null) {
+						index++;
+					}
 				}
 				else if (item instanceof ActivationKeeper) {
-					switch (((ActivationKeeper)item).type) {
-						case SOFTMAX	:
-							current = activateSoftMax(current, getParallelism());
-							break;
-						default	:
-							throw new UnsupportedOperationException("Activation type ["+item+"] is not supported yet");
+					current = ((ActivationKeeper)item).kernel.forward(current, batchSize, new float[current.length], precision, team);
+					if (probe != null) {
+						probe.stage(index, ((ActivationKeeper)item).kernel.flops(current.length), 2L * Float.BYTES * current.length);
 					}
 				}
-				pi.processed(++step);
+				pi.processed(index + 1);
 			}
 			pi.end();
-			return MatrixWrapper.of(current);
+			return MatrixWrapper.batch(batchSize, current.length / batchSize, current == batch.getContent() ? current.clone() : current);
 		}
 	}
 
@@ -107,6 +218,9 @@ public class OrdinalFloatPipe implements Pipe {
 		else if (matrix.getDimensions().length != 2) {
 			throw new IllegalArgumentException("Matrix to add must be two-dimensional matrix");
 		}
+		else if (matrix.getMatrixClass().storageClass() != float.class && !isReadOnly()) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] with reduced storage precision can be used in the read-only pipes only");
+		}
 		else {
 			int	currentSize = matrix.getDimensions()[0];
 					
@@ -123,6 +237,13 @@ public class OrdinalFloatPipe implements Pipe {
 				}
 			}
 			content.add(matrix);
+			outputs = Arrays.copyOf(outputs, content.size());
+			outputs[outputs.length - 1] = matrix.getDimensions()[1];
+			flops = Arrays.copyOf(flops, content.size());
+			flops[flops.length - 1] = flopsOf(matrix);
+			traffic = Arrays.copyOf(traffic, content.size());
+			traffic[traffic.length - 1] = bytesOf(matrix) + (long)Float.BYTES * matrix.getDimensions()[0];
+			profiler.addStage(describe(matrix));
 		}
 	}
 
@@ -135,141 +256,522 @@ public class OrdinalFloatPipe implements Pipe {
 		}
 		else {
 			content.add(new ActivationKeeper(activation, parameters));
+			outputs = Arrays.copyOf(outputs, content.size());
+			flops = Arrays.copyOf(flops, content.size());
+			traffic = Arrays.copyOf(traffic, content.size());
+			profiler.addStage(activation.name());
+		}
+	}
+	
+	public Pipe freeze() {	// Immutable snapshot of the current content, safe for concurrent forward calls
+		if (!isReadOnly()) {
+			throw new IllegalStateException("Only read-only pipes can be frozen");
+		}
+		else {
+			return new OrdinalCompiledPipe(toBuilder());
+		}
+	}
+
+	@Override
+	public PipeStream stream(final int groups, final int capacity) throws IllegalArgumentException, IllegalStateException {	// Streams run on the frozen snapshot of the current content
+		return freeze().stream(groups, capacity);
+	}
+
+	public PipeBuilder toBuilder() {	// Builder with the same content and settings, matrices are shared, not copied
+		if (content.isEmpty()) {
+			throw new IllegalStateException("Pipe doesn't contain any stages");
+		}
+		else {
+			final PipeBuilder	builder = PipeBuilder.newInstance().setReadOnly(isReadOnly()).setWorkerTeam(team).setPrecision(precision);
+			
+			for(Object item : content) {
+				if (item instanceof MatrixWrapper) {
+					builder.mul((MatrixWrapper)item);
+				}
+				else {
+					builder.activate(((ActivationKeeper)item).type, ((ActivationKeeper)item).kernel.getParameters());
+				}
+			}
+			return builder;
+		}
+	}
+	
+	static String describe(final MatrixWrapper matrix) {
+		return matrix.getMatrixClass()+" ["+matrix.getDimensions()[0]+"x"+matrix.getDimensions()[1]+"]";
+	}
+
+	static long flopsOf(final MatrixWrapper matrix) {	// Every multiply-add is two operations
+		if (matrix.getMatrixClass() == MatrixClass.FLOAT_CSR2) {
+			return 2L * ((CsrContent)matrix.getContent()).getValues().length;
+		}
+		else {
+			return 2L * matrix.getDimensions()[0] * matrix.getDimensions()[1];
+		}
+	}
+
+	static long bytesOf(final MatrixWrapper matrix) {	// Size of the matrix content to read
+		if (matrix.getMatrixClass() == MatrixClass.FLOAT_CSR2) {
+			final CsrContent	csr = matrix.getContent();
+
+			return (long)Integer.BYTES * (csr.getRowPointers().length + csr.getColumnIndices().length) + (long)Float.BYTES * csr.getValues().length;
+		}
+		else {
+			return MatrixWrapper.sizeOf(matrix.getMatrixClass(), matrix.getDimensions());
+		}
+	}
+
+	static float[] forwardMutiply(final float[] source, final MatrixWrapper matrix, final int parellelism) throws CalculationException {
+		return forwardMutiply(source, matrix, new float[matrix.getDimensions()[1]], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final MatrixWrapper matrix, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		switch (matrix.getMatrixClass()) {
+			case FLOAT2_ARRAY	:
+				return forwardMutiply(source, (float[][])matrix.getContent(), result, arena, precision, epilogue, team);
+			case FLOAT_FLAT2	:
+				return forwardMutiply(source, (float[])matrix.getContent(), matrix.getOffset(), result.length, matrix.getRowStride(), matrix.getColumnStride(), result, arena, precision, epilogue, team);
+			case FLOAT_BUFFER2	:
+				return forwardMutiply(source, (FloatBuffer)matrix.getContent(), matrix.getOffset(), result.length, matrix.getRowStride(), matrix.getColumnStride(), result, arena, precision, epilogue, team);
+			case HALF_FLAT2		:
+			case BFLOAT16_FLAT2	:
+				return forwardMutiply(source, (short[])matrix.getContent(), matrix.getMatrixClass() == MatrixClass.BFLOAT16_FLAT2, matrix.getOffset(), result.length, matrix.getRowStride(), matrix.getColumnStride(), result, arena, precision, epilogue, team);
+			case FLOAT_CSR2		:
+				final CsrContent	csr = matrix.getContent();
+				
+				return forwardMutiply(source, csr.getRowPointers(), csr.getColumnIndices(), csr.getValues(), result.length, result, arena, precision, epilogue, team);
+			case INT8_ROW_FLAT2		:
+			case INT8_COLUMN_FLAT2	:
+				final QuantizedContent	quantized = matrix.getContent();
+				
+				return forwardMutiply(source, quantized.getValues(), quantized.getScales(), matrix.getMatrixClass() == MatrixClass.INT8_ROW_FLAT2, result.length, matrix.getRowStride(), result, arena, precision, epilogue, team);
+			default :
+				throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported yet");
 		}
 	}
 	
 	static float[] forwardMutiply(final float[] source, final float[][] matrix, final int parellelism) throws CalculationException {
-		final float[]			result = new float[matrix[0].length];
-		final int				effectiveParellelism = Math.min(source.length, parellelism); 
-		final Future<float[]>[]	subtasks = new Future[effectiveParellelism];
+		return forwardMutiply(source, matrix, new float[matrix[0].length], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final float[][] matrix, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		final int	columns = matrix[0].length;
 		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	start = index;	// Prepare subtasks
+		if (precision == CalculationPrecision.QUICK && Math.min(source.length, team.getSize()) <= 1) {	// Process on the caller thread, no subtasks and temporary buffers need
+			Arrays.fill(result, 0, columns, 0f);
+			accumulate(source, 0, matrix, columns, 0, source.length, result, 0);
+			epilogue(epilogue, result, 0, columns);
+			return result;
+		}
+		else {
+			return forwardMutiply(splitRows(source.length, team.getSize()), columns, result, arena, precision, epilogue, team, (from, to, target)->accumulate(source, 0, matrix, columns, from, to, target, 0));
+		}
+	}
+
+	static float[] forwardMutiply(final float[] source, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parellelism) throws CalculationException {
+		return forwardMutiply(source, matrix, offset, columns, rowStride, columnStride, new float[columns], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		if (precision == CalculationPrecision.QUICK && Math.min(source.length, team.getSize()) <= 1) {	// Process on the caller thread, no subtasks and temporary buffers need
+			Arrays.fill(result, 0, columns, 0f);
+			accumulate(source, 0, matrix, offset, columns, rowStride, columnStride, 0, source.length, result, 0);
+			epilogue(epilogue, result, 0, columns);
+			return result;
+		}
+		else {
+			return forwardMutiply(splitRows(source.length, team.getSize()), columns, result, arena, precision, epilogue, team, (from, to, target)->accumulate(source, 0, matrix, offset, columns, rowStride, columnStride, from, to, target, 0));
+		}
+	}
+
+	static float[] forwardMutiply(final float[] source, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parellelism) throws CalculationException {
+		return forwardMutiply(source, matrix, offset, columns, rowStride, columnStride, new float[columns], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		if (precision == CalculationPrecision.QUICK && Math.min(source.length, team.getSize()) <= 1) {	// Process on the caller thread, no subtasks and temporary buffers need
+			Arrays.fill(result, 0, columns, 0f);
+			accumulate(source, 0, matrix, offset, columns, rowStride, columnStride, 0, source.length, result, 0);
+			epilogue(epilogue, result, 0, columns);
+			return result;
+		}
+		else {
+			return forwardMutiply(splitRows(source.length, team.getSize()), columns, result, arena, precision, epilogue, team, (from, to, target)->accumulate(source, 0, matrix, offset, columns, rowStride, columnStride, from, to, target, 0));
+		}
+	}
+
+	static float[] forwardMutiply(final float[] source, final short[] matrix, final boolean bfloat16, final int offset, final int columns, final int rowStride, final int columnStride, final int parellelism) throws CalculationException {
+		return forwardMutiply(source, matrix, bfloat16, offset, columns, rowStride, columnStride, new float[columns], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final short[] matrix, final boolean bfloat16, final int offset, final int columns, final int rowStride, final int columnStride, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		if (precision == CalculationPrecision.QUICK && Math.min(source.length, team.getSize()) <= 1) {	// Process on the caller thread, no subtasks and temporary buffers need
+			Arrays.fill(result, 0, columns, 0f);
+			accumulate(source, 0, matrix, bfloat16, offset, columns, rowStride, columnStride, 0, source.length, result, 0);
+			epilogue(epilogue, result, 0, columns);
+			return result;
+		}
+		else {
+			return forwardMutiply(splitRows(source.length, team.getSize()), columns, result, arena, precision, epilogue, team, (from, to, target)->accumulate(source, 0, matrix, bfloat16, offset, columns, rowStride, columnStride, from, to, target, 0));
+		}
+	}
+
+	static float[] forwardMutiply(final float[] source, final byte[] matrix, final float[] scales, final boolean perRow, final int columns, final int stride, final int parellelism) throws CalculationException {
+		return forwardMutiply(source, matrix, scales, perRow, columns, stride, new float[columns], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final byte[] matrix, final float[] scales, final boolean perRow, final int columns, final int stride, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		if (precision == CalculationPrecision.QUICK && Math.min(source.length, team.getSize()) <= 1) {	// Process on the caller thread, no subtasks and temporary buffers need
+			Arrays.fill(result, 0, columns, 0f);
+			accumulate(source, 0, matrix, scales, perRow, columns, stride, 0, source.length, result, 0);
+		}
+		else if (perRow) {	// Epilogue can be fused only when no column scales need to be applied
+			return forwardMutiply(splitRows(source.length, team.getSize()), columns, result, arena, precision, epilogue, team, (from, to, target)->accumulate(source, 0, matrix, scales, perRow, columns, stride, from, to, target, 0));
+		}
+		else {
+			forwardMutiply(splitRows(source.length, team.getSize()), columns, result, arena, precision, null, team, (from, to, target)->accumulate(source, 0, matrix, scales, perRow, columns, stride, from, to, target, 0));
+		}
+		if (!perRow) {
+			for(int index = 0; index < columns; index++) {	// Column scales are applied once to the accumulated sums
+				result[index] *= scales[index];
+			}
+		}
+		epilogue(epilogue, result, 0, columns);
+		return result;
+	}
+
+	static float[] forwardMutiply(final float[] source, final int[] rowPointers, final int[] columnIndices, final float[] values, final int columns, final int parellelism) throws CalculationException {
+		return forwardMutiply(source, rowPointers, columnIndices, values, columns, new float[columns], null, CalculationPrecision.QUICK, null, WorkerTeam.common(parellelism));
+	}
+
+	static float[] forwardMutiply(final float[] source, final int[] rowPointers, final int[] columnIndices, final float[] values, final int columns, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		if (precision == CalculationPrecision.QUICK && team.getSize() <= 1) {	// Process on the caller thread, no subtasks and temporary buffers need
+			Arrays.fill(result, 0, columns, 0f);
+			accumulate(source, 0, rowPointers, columnIndices, values, 0, source.length, result, 0);
+			epilogue(epilogue, result, 0, columns);
+			return result;
+		}
+		else {	// Row ranges have the same number of non-zero items
+			return forwardMutiply(splitRows(rowPointers, team.getSize()), columns, result, arena, precision, epilogue, team, (from, to, target)->accumulate(source, 0, rowPointers, columnIndices, values, from, to, target, 0));
+		}
+	}
+
+	private static float[] forwardMutiply(final int[] ranges, final int columns, final float[] result, final ActivationArena arena, final CalculationPrecision precision, final ActivationKernel epilogue, final WorkerTeam team, final RowRangeProcessor processor) throws CalculationException {
+		final float[][]	partial = arena != null ? arena.temps(ranges.length - 1, columns) : new float[ranges.length - 1][columns];	// Every part has it's own accumulator
+		final CalculationPrecision.Accumulator[]	accumulators = new CalculationPrecision.Accumulator[ranges.length - 1];
+		
+		for(int index = 0; index < accumulators.length; index++) {	// Accumulators are prepared on the caller thread, arena is not thread-safe
+			accumulators[index] = arena != null ? arena.accumulator(index, precision, partial[index], columns) : precision.newAccumulator(partial[index], columns);
+		}
+		team.execute(accumulators.length, (part)->{
+			final CalculationPrecision.Accumulator	accumulator = accumulators[part];
 			
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-					()->{
-						final float[] temp = new float[matrix[0].length];
-						
-						for(int y = start, maxY = source.length; y < maxY; y += effectiveParellelism) {
-							final float		val = source[y];
-							final float[]	line = matrix[y];
-							
-							for(int x = 0, maxX = temp.length; x < maxX; x++) {
-								temp[x] += val*line[x];
-							}
+			for(int from = ranges[part], to = ranges[part + 1], step; from < to; from += step) {	// Row blocks are accumulated separately and then merged
+				step = Math.min(to - from, precision.getBlockSize());
+				processor.process(from, from + step, accumulator.next());
+			}
+			accumulator.get();
+		});
+		for(int from = 0, to; from < columns; from = to) {	// Block of the result is summed and activated while it stays in cache
+			to = Math.min(from + EPILOGUE_BLOCK_SIZE, columns);
+			Arrays.fill(result, from, to, 0f);
+			for(int part = 0; part < accumulators.length; part++) {	// Sum accumulators in the fixed order
+				final float[]	temp = partial[part];
+
+				for(int index = from; index < to; index++) {
+					result[index] += temp[index];
+				}
+			}
+			epilogue(epilogue, result, from, to);
+		}
+		return result;
+	}
+
+	static float[] forwardMutiply(final float[] source, final int batchSize, final MatrixWrapper matrix, final float[] result, final WorkerTeam team) throws CalculationException {
+		return forwardMutiply(source, batchSize, matrix, result, null, team);
+	}
+
+	static float[] forwardMutiply(final float[] source, final int batchSize, final MatrixWrapper matrix, final float[] result, final ActivationKernel epilogue, final WorkerTeam team) throws CalculationException {
+		final int	rows = source.length / batchSize, columns = result.length / batchSize;
+		
+		switch (matrix.getMatrixClass()) {
+			case FLOAT2_ARRAY	:
+				final float[][]		f2Content = matrix.getContent();
+				
+				return forwardMutiply(source, rows, columns, batchSize, result, epilogue, team, (fromSample, toSample, from, to)->{
+					for(int sample = fromSample; sample < toSample; sample++) {
+						accumulate(source, sample * rows, f2Content, columns, from, to, result, sample * columns);
+					}
+				});
+			case FLOAT_FLAT2	:
+				final float[]		fContent = matrix.getContent();
+				final int			fOffset = matrix.getOffset(), fRowStride = matrix.getRowStride(), fColumnStride = matrix.getColumnStride();
+				
+				return forwardMutiply(source, rows, columns, batchSize, result, epilogue, team, (fromSample, toSample, from, to)->{
+					int	sample = fromSample;
+					
+					if (fColumnStride == 1) {	// Every matrix item loaded is used for 4 samples at once
+						for(; sample + 4 <= toSample; sample += 4) {
+							accumulate4(source, sample, rows, fContent, fOffset, columns, fRowStride, from, to, result);
 						}
-						return temp;
 					}
-				);
-		}		
-		for(Future<float[]> item : subtasks) {	// Await subtasks termination
-			try {
-				final float[]	temp = item.get();
+					for(; sample < toSample; sample++) {
+						accumulate(source, sample * rows, fContent, fOffset, columns, fRowStride, fColumnStride, from, to, result, sample * columns);
+					}
+				});
+			case FLOAT_BUFFER2	:
+				final FloatBuffer	bContent = matrix.getContent();
+				final int			bOffset = matrix.getOffset(), bRowStride = matrix.getRowStride(), bColumnStride = matrix.getColumnStride();
 				
-				for(int index = 0; index < temp.length; index++) {
-					result[index] += temp[index];
+				return forwardMutiply(source, rows, columns, batchSize, result, epilogue, team, (fromSample, toSample, from, to)->{
+					for(int sample = fromSample; sample < toSample; sample++) {
+						accumulate(source, sample * rows, bContent, bOffset, columns, bRowStride, bColumnStride, from, to, result, sample * columns);
+					}
+				});
+			case HALF_FLAT2		:
+			case BFLOAT16_FLAT2	:
+				final short[]		sContent = matrix.getContent();
+				final boolean		bfloat16 = matrix.getMatrixClass() == MatrixClass.BFLOAT16_FLAT2;
+				final int			sOffset = matrix.getOffset(), sRowStride = matrix.getRowStride(), sColumnStride = matrix.getColumnStride();
+				
+				return forwardMutiply(source, rows, columns, batchSize, result, epilogue, team, (fromSample, toSample, from, to)->{
+					for(int sample = fromSample; sample < toSample; sample++) {
+						accumulate(source, sample * rows, sContent, bfloat16, sOffset, columns, sRowStride, sColumnStride, from, to, result, sample * columns);
+					}
+				});
+			case FLOAT_CSR2		:
+				final CsrContent	csr = matrix.getContent();
+				
+				return forwardMutiply(source, rows, columns, batchSize, result, epilogue, team, (fromSample, toSample, from, to)->{
+					for(int sample = fromSample; sample < toSample; sample++) {
+						accumulate(source, sample * rows, csr.getRowPointers(), csr.getColumnIndices(), csr.getValues(), from, to, result, sample * columns);
+					}
+				});
+			case INT8_ROW_FLAT2		:
+			case INT8_COLUMN_FLAT2	:
+				final QuantizedContent	quantized = matrix.getContent();
+				final boolean			perRow = matrix.getMatrixClass() == MatrixClass.INT8_ROW_FLAT2;
+				final int				stride = matrix.getRowStride();
+				
+				forwardMutiply(source, rows, columns, batchSize, result, perRow ? epilogue : null, team, (fromSample, toSample, from, to)->{
+					for(int sample = fromSample; sample < toSample; sample++) {
+						accumulate(source, sample * rows, quantized.getValues(), quantized.getScales(), perRow, columns, stride, from, to, result, sample * columns);
+					}
+				});
+				if (!perRow) {
+					final float[]	scales = quantized.getScales();
+					
+					for(int from = 0; from < result.length; from += columns) {
+						for(int index = 0; index < columns; index++) {	// Column scales are applied once to the accumulated sums
+							result[from + index] *= scales[index];
+						}
+						epilogue(epilogue, result, from, from + columns);
+					}
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
-			}
+				return result;
+			default :
+				throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported yet");
+		}
+	}
+
+	private static float[] forwardMutiply(final float[] source, final int rows, final int columns, final int batchSize, final float[] result, final ActivationKernel epilogue, final WorkerTeam team, final BatchRangeProcessor processor) throws CalculationException {
+		final int	effectiveParellelism = Math.max(1, Math.min(batchSize, team.getSize()));
+		final int	blockSize = Math.max(1, BATCH_BLOCK_SIZE / columns);
+		
+		Arrays.fill(result, 0f);
+		if (effectiveParellelism == 1) {	// Process on the caller thread
+			processBatch(0, batchSize, rows, columns, blockSize, result, epilogue, processor);
+		}
+		else {
+			final int[]	ranges = splitRows(batchSize, effectiveParellelism);
+			
+			// Every part processes contiguous range of samples and writes into it's own part of the result
+			team.execute(ranges.length - 1, (part)->processBatch(ranges[part], ranges[part + 1], rows, columns, blockSize, result, epilogue, processor));
 		}
 		return result;
 	}
 
+	private static void processBatch(final int fromSample, final int toSample, final int rows, final int columns, final int blockSize, final float[] result, final ActivationKernel epilogue, final BatchRangeProcessor processor) {
+		for(int from = 0; from < rows; from += blockSize) {	// Matrix rows block stays in cache while all the samples are processed
+			final int	to = Math.min(from + blockSize, rows);
+			
+			processor.process(fromSample, toSample, from, to);
+		}
+		epilogue(epilogue, result, fromSample * columns, toSample * columns);
+	}
+
+	private static void accumulate4(final float[] source, final int sample, final int rows, final float[] matrix, final int offset, final int columns, final int rowStride, final int from, final int to, final float[] target) {
+		final int	source0 = sample * rows, source1 = source0 + rows, source2 = source1 + rows, source3 = source2 + rows;
+		final int	target0 = sample * columns, target1 = target0 + columns, target2 = target1 + columns, target3 = target2 + columns;
+		
+		for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+			final float		val0 = source[source0 + y], val1 = source[source1 + y], val2 = source[source2 + y], val3 = source[source3 + y];
+			
+			for(int x = 0; x < columns; x++) {
+				final float	item = matrix[base + x];
+				
+				target[target0 + x] += val0*item;
+				target[target1 + x] += val1*item;
+				target[target2 + x] += val2*item;
+				target[target3 + x] += val3*item;
+			}
+		}
+	}
+
+	private static void accumulate(final float[] source, final int sourceOffset, final float[][] matrix, final int columns, final int from, final int to, final float[] target, final int targetOffset) {
+		for(int y = from; y < to; y++) {
+			final float		val = source[sourceOffset + y];
+			final float[]	line = matrix[y];
+			
+			for(int x = 0; x < columns; x++) {
+				target[targetOffset + x] += val*line[x];
+			}
+		}
+	}
+
+	private static void accumulate(final float[] source, final int sourceOffset, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int from, final int to, final float[] target, final int targetOffset) {
+		for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+			final float		val = source[sourceOffset + y];
+			
+			if (columnStride == 1) {
+				for(int x = 0; x < columns; x++) {
+					target[targetOffset + x] += val*matrix[base + x];
+				}
+			}
+			else {
+				for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+					target[targetOffset + x] += val*matrix[pos];
+				}
+			}
+		}
+	}
+
+	private static void accumulate(final float[] source, final int sourceOffset, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int from, final int to, final float[] target, final int targetOffset) {
+		for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+			final float		val = source[sourceOffset + y];
+			
+			for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+				target[targetOffset + x] += val*matrix.get(pos);
+			}
+		}
+	}
+
+	private static void accumulate(final float[] source, final int sourceOffset, final short[] matrix, final boolean bfloat16, final int offset, final int columns, final int rowStride, final int columnStride, final int from, final int to, final float[] target, final int targetOffset) {
+		for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+			final float		val = source[sourceOffset + y];
+			
+			if (bfloat16) {	// Widen values to float on the fly, accumulate in float
+				for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+					target[targetOffset + x] += val*Float.intBitsToFloat(matrix[pos] << 16);
+				}
+			}
+			else {
+				for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+					target[targetOffset + x] += val*HalfPrecision.halfToFloat(matrix[pos]);
+				}
+			}
+		}
+	}
+
+	private static void accumulate(final float[] source, final int sourceOffset, final byte[] matrix, final float[] scales, final boolean perRow, final int columns, final int stride, final int from, final int to, final float[] target, final int targetOffset) {
+		for(int y = from, base = from * stride; y < to; y++, base += stride) {
+			final float		val = perRow ? source[sourceOffset + y] * scales[y] : source[sourceOffset + y];	// Row scale is folded into the vector value
+			
+			for(int x = 0; x < columns; x++) {
+				target[targetOffset + x] += val*matrix[base + x];
+			}
+		}
+	}
+
+	private static void accumulate(final float[] source, final int sourceOffset, final int[] rowPointers, final int[] columnIndices, final float[] values, final int from, final int to, final float[] target, final int targetOffset) {
+		for(int y = from; y < to; y++) {
+			final float		val = source[sourceOffset + y];
+			
+			if (val != 0) {
+				for(int item = rowPointers[y], maxItem = rowPointers[y + 1]; item < maxItem; item++) {
+					target[targetOffset + columnIndices[item]] += val*values[item];
+				}
+			}
+		}
+	}
+
 	static float[] backwardMutiply(final float[] source, final float[][] matrix, final int parellelism) throws CalculationException {
 		final float[]			result = new float[matrix.length];
 		final int				effectiveParellelism = Math.min(source.length, parellelism); 
-		final Future<float[]>[]	subtasks = new Future[effectiveParellelism];
+		final float[][]			partial = new float[effectiveParellelism][matrix.length];
 		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	start = index;	// Prepare subtasks
+		WorkerTeam.common(parellelism).execute(effectiveParellelism, (start)->{
+			final float[] temp = partial[start];
 			
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-					()->{
-						final float[] temp = new float[matrix.length];
-						
-						for(int y = start, maxY = source.length; y < maxY; y += effectiveParellelism) {
-							final float		val = source[y];
-							
-							for(int x = 0, maxX = temp.length; x < maxX; x++) {
-								temp[x] += val*matrix[x][y];
-							}
-						}
-						return temp;
-					}
-				);
-		}		
-		for(Future<float[]> item : subtasks) {	// Await subtasks termination
-			try {
-				final float[]	temp = item.get();
+			for(int y = start, maxY = source.length; y < maxY; y += effectiveParellelism) {
+				final float		val = source[y];
 				
-				for(int index = 0; index < temp.length; index++) {
-					result[index] += temp[index];
+				for(int x = 0, maxX = temp.length; x < maxX; x++) {
+					temp[x] += val*matrix[x][y];
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
+			}
+		});
+		for(float[] temp : partial) {	// Sum accumulators in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
 			}
 		}
 		return result;
 	}
 	
-	static float[] activateSoftMax(final float[] content, final int parellelism) throws CalculationException {
-		final int			effectiveParellelism = Math.min(content.length, parellelism); 
-		final int			piece = (content.length + effectiveParellelism - 1) / effectiveParellelism;
-		final float[]		result = new float[content.length];
-		final float[]		sum = new float[effectiveParellelism];
-		final int[]			ranges = new int[2*(effectiveParellelism+1)];
-		final Future<?>[]	subtasks = new Future[effectiveParellelism];
-		int		where = 1;
-
-		ranges[0] = 0;	// Split data to subtasks
-		for(int index = 0, maxIndex = content.length; index < maxIndex; index+= piece) {
-			ranges[where++] = Math.min(index + piece - 1, content.length-1);
-			ranges[where++] = Math.min(index + piece, content.length);
-		}
-		ranges[where++] = content.length;
+	static int[] splitRows(final int rows, final int parellelism) {
+		final int	effectiveParellelism = Math.max(1, Math.min(rows, parellelism));
+		final int	piece = (rows + effectiveParellelism - 1) / effectiveParellelism;
+		final int[]	result = new int[effectiveParellelism + 1];
 		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	pos = index;	// Start subtasks
-			final int	from = ranges[2*index];
-			final int	to = ranges[2*index + 1];
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-				()->{
-					float[]	temp = new float[to-from+1];
-					
-					for(int current = from; current <= to; current++) {
-						temp[current-from] = result[current] = (float) Math.exp(content[current]);
-					}
-					float 	currentSum = 0;
-					
-					Arrays.sort(temp);
-					for(float item : temp) {
-						currentSum += item;
-					}
-					sum[pos] = currentSum;
-				});
+		for(int index = 1; index < effectiveParellelism; index++) {	// Contiguous row ranges with the same number of rows
+			result[index] = Math.min(index * piece, rows);
 		}
-		for(Future<?> item : subtasks) {	// Await subtasks termination
-			try {
-				item.get();
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
+		result[effectiveParellelism] = rows;
+		return result;
+	}
+
+	static int[] splitRows(final int[] rowPointers, final int parellelism) {
+		final int	rows = rowPointers.length - 1, nonZeros = rowPointers[rows];
+		final int	effectiveParellelism = Math.max(1, Math.min(Math.min(rows, nonZeros), parellelism));
+		final int[]	result = new int[effectiveParellelism + 1];
+		
+		for(int index = 1; index < effectiveParellelism; index++) {	// Row boundaries balance number of non-zero items, not number of rows
+			final long	limit = (long)nonZeros * index / effectiveParellelism;
+			int			low = result[index - 1], high = rows;
+			
+			while (low < high) {
+				final int	mid = (low + high) >>> 1;
+				
+				if (rowPointers[mid] < limit) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
 			}
+			result[index] = low;
 		}
-		float	total = 0;
+		result[effectiveParellelism] = rows;
+		return result;
+	}
+
+	static float[] activateSoftMax(final float[] content, final int parellelism) throws CalculationException {
+		return activateSoftMax(content, new float[content.length], CalculationPrecision.QUICK, WorkerTeam.common(parellelism));
+	}
+
+	static float[] activateSoftMax(final float[] content, final float[] result, final CalculationPrecision precision, final WorkerTeam team) throws CalculationException {
+		final int	effectiveParellelism = Math.max(1, Math.min(content.length, team.getSize()));
+		float		total;
 		
-		Arrays.sort(sum);
-		for(float item : sum) {	// Calculate total sum
-			total += item;
+		if (effectiveParellelism == 1) {	// Process on the caller thread, no subtasks need
+			total = exponent(content, result, 0, content.length, precision);
+		}
+		else {
+			final int[]		ranges = splitRows(content.length, effectiveParellelism);
+			final float[]	sum = new float[effectiveParellelism];
+	
+			team.execute(effectiveParellelism, (part)->sum[part] = exponent(content, result, ranges[part], ranges[part + 1], precision));
+			total = precision.sum(sum, 0, sum.length);
 		}
 		total = 1/total;
 		for(int index = 0, maxIndex = content.length; index < maxIndex; index++) {
@@ -278,13 +780,101 @@ public class OrdinalFloatPipe implements Pipe {
 		return result;
 	}
 
+	static float[] activateSoftMax(final float[] content, final int batchSize, final float[] result, final CalculationPrecision precision, final WorkerTeam team) throws CalculationException {
+		final int	size = content.length / batchSize;
+		final int	effectiveParellelism = Math.max(1, Math.min(batchSize, team.getSize()));
+		
+		if (effectiveParellelism == 1) {	// Process on the caller thread
+			activateSoftMax(content, result, 0, batchSize, size, precision);
+		}
+		else {
+			final int[]	ranges = splitRows(batchSize, effectiveParellelism);
+			
+			// Every part processes contiguous range of samples
+			team.execute(ranges.length - 1, (part)->activateSoftMax(content, result, ranges[part], ranges[part + 1], size, precision));
+		}
+		return result;
+	}
+
+	private static void activateSoftMax(final float[] content, final float[] result, final int fromSample, final int toSample, final int size, final CalculationPrecision precision) {
+		for(int sample = fromSample, from = fromSample * size; sample < toSample; sample++, from += size) {
+			final float	total = 1/exponent(content, result, from, from + size, precision);
+			
+			for(int index = from; index < from + size; index++) {
+				result[index] *= total; 	// Calculate softmax
+			}
+		}
+	}
+
+	private static float exponent(final float[] content, final float[] result, final int from, final int to, final CalculationPrecision precision) {
+		for(int current = from; current < to; current++) {
+			result[current] = (float) Math.exp(content[current]);
+		}
+		return precision.sum(result, from, to);
+	}
+
+	private static void epilogue(final ActivationKernel epilogue, final float[] result, final int from, final int to) {
+		if (epilogue != null) {	// Element-wise activation is applied in-place to the multiplication result
+			epilogue.apply(result, result, from, to);
+		}
+	}
+
+	private ActivationKernel getEpilogue(final int index) {	// Element-wise activation immediately after the multiplication is fused into it
+		if (index < content.size() && content.get(index) instanceof ActivationKeeper && ((ActivationKeeper)content.get(index)).kernel.isElementWise()) {
+			return ((ActivationKeeper)content.get(index)).kernel;
+		}
+		else {
+			return null;
+		}
+	}
+
+	private int getInputSize(final int inputSize) {
+		for(Object item : content) {
+			if (item instanceof MatrixWrapper) {
+				return ((MatrixWrapper)item).getDimensions()[0];
+			}
+		}
+		return inputSize;
+	}
+
+	private int getOutputSize(final int inputSize) {
+		for(int index = outputs.length - 1; index >= 0; index--) {
+			if (outputs[index] > 0) {
+				return outputs[index];
+			}
+		}
+		return inputSize;
+	}
+
+	static float[] toDense(final MatrixWrapper matrix, final float[] result) {
+		final SparseContent	content = matrix.getContent();
+		
+		Arrays.fill(result, 0f);
+		for(int index = 0; index < content.size(); index++) {
+			result[content.getIndices()[index]] = content.getValues()[index];
+		}
+		return result;
+	}
+
+	@FunctionalInterface
+	private static interface RowRangeProcessor {
+		void process(int from, int to, float[] target);
+	}
+
+	@FunctionalInterface
+	private static interface BatchRangeProcessor {
+		void process(int fromSample, int toSample, int from, int to);
+	}
+
 	private static class ActivationKeeper {
 		final ActivationType	type;
 		final Object[]			parameters;
+		final ActivationKernel	kernel;
 		
 		private ActivationKeeper(final ActivationType type, final Object... parameters) {
 			this.type = type;
 			this.parameters = parameters;
+			this.kernel = new ActivationKernel(type, parameters);
 		}
 
 		@Override
@@ -0,0 +1,166 @@
+package chav1961.nn.ordinal;
+
+import java.util.concurrent.CompletableFuture;
+
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.PipeStream;
+import chav1961.nn.api.interfaces.WorkerTeam;
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+class OrdinalPipeStream implements PipeStream {	// Every group of steps is owned by its own thread, groups are connected with the bounded rings
+	private static final Job			STOP = new Job(null);
+
+	private final OrdinalCompiledPipe	pipe;
+	private final int[]					bounds;
+	private final SpscRing<Job>[]		queues;
+	private final Thread[]				workers;
+	private final Object				entry = new Object();	// The first ring has the only producer, so submitters are serialized
+	private volatile boolean			closed = false;
+
+	@SuppressWarnings("unchecked")
+	OrdinalPipeStream(final OrdinalCompiledPipe pipe, final int groups, final int capacity) {
+		this.pipe = pipe;
+		this.bounds = split(pipe, Math.min(groups, pipe.getNumberOfSteps()));
+		this.queues = (SpscRing<Job>[])new SpscRing<?>[bounds.length - 1];
+		this.workers = new Thread[bounds.length - 1];
+
+		for(int index = 0; index < queues.length; index++) {
+			queues[index] = new SpscRing<>(capacity);
+		}
+		for(int index = 0; index < workers.length; index++) {
+			final int	group = index;
+
+			workers[index] = new Thread(()->work(group), "nn-stream-"+index);
+			workers[index].setDaemon(true);
+			workers[index].start();
+		}
+	}
+
+	@Override
+	public int getNumberOfGroups() {
+		return workers.length;
+	}
+
+	@Override
+	public CompletableFuture<MatrixWrapper> submit(final MatrixWrapper vector) throws InterruptedException, NullPointerException, IllegalArgumentException, IllegalStateException {
+		if (vector == null) {
+			throw new NullPointerException("Vector to process can't be null");
+		}
+		else if (vector.getMatrixClass() != MatrixClass.FLOAT_ARRAY && vector.getMatrixClass() != MatrixClass.FLOAT_SPARSE) {
+			throw new IllegalArgumentException("Matrix class ["+vector.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_ARRAY+"] and ["+MatrixClass.FLOAT_SPARSE+"] are available");
+		}
+		else if (vector.getDimensions()[0] != pipe.getInputSize()) {
+			throw new IllegalArgumentException("Vector size ["+vector.getDimensions()[0]+"] differs from pipe input size ["+pipe.getInputSize()+"]");
+		}
+		else {	// Dense content is not copied and must not be changed until the result is completed
+			final Job	job = new Job(vector.getMatrixClass() == MatrixClass.FLOAT_SPARSE ? OrdinalFloatPipe.toDense(vector, new float[pipe.getInputSize()]) : vector.getContent());
+
+			synchronized (entry) {	// Blocks while the first group is behind
+				if (closed) {
+					throw new IllegalStateException("Pipe stream is closed");
+				}
+				queues[0].put(job);
+			}
+			return job.future;
+		}
+	}
+
+	@Override
+	public void close() {	// Waits uninterruptibly, interrupt flag is restored on exit
+		boolean	interrupted = false;
+
+		synchronized (entry) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			for(;;) {
+				try {
+					queues[0].put(STOP);	// Passes through all the groups after the last submitted vector
+					break;
+				} catch (InterruptedException exc) {
+					interrupted = true;
+				}
+			}
+		}
+		for(Thread item : workers) {
+			while (item.isAlive()) {
+				try {
+					item.join();
+				} catch (InterruptedException exc) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void work(final int group) {
+		final ActivationArena	arena = new ActivationArena();
+		final WorkerTeam		team = WorkerTeam.common(1);	// Group is processed on its own thread only
+		final SpscRing<Job>		input = queues[group], output = group < queues.length - 1 ? queues[group + 1] : null;
+
+		try {
+			for(;;) {
+				final Job	job = input.take();
+
+				if (job == STOP) {
+					if (output != null) {
+						output.put(STOP);
+					}
+					return;
+				}
+				try {
+					float[]	current = job.content;
+
+					for(int index = bounds[group]; index < bounds[group + 1]; index++) {
+						final OrdinalCompiledPipe.Step	step = pipe.getStep(index);
+						final float[]	target = index == bounds[group + 1] - 1 ? new float[step.size] : arena.stage(index + 1, step.size);	// Group result is owned by the next group
+
+						current = pipe.process(step, current, target, arena, team);
+					}
+					if (output != null) {
+						job.content = current;
+						output.put(job);
+					}
+					else {
+						job.future.complete(MatrixWrapper.of(current));
+					}
+				} catch (CalculationException | RuntimeException | Error exc) {	// Group thread must survive to complete the rest of the jobs
+					job.future.completeExceptionally(exc);
+				}
+			}
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static int[] split(final OrdinalCompiledPipe pipe, final int groups) {	// Contiguous groups with near the same number of operations
+		final int[]	result = new int[groups + 1];
+		long		total = 0, current = 0;
+
+		for(int index = 0; index < pipe.getNumberOfSteps(); index++) {
+			total += Math.max(1, pipe.getStep(index).flops);
+		}
+		for(int index = 0, group = 1; index < pipe.getNumberOfSteps() && group < groups; index++) {
+			current += Math.max(1, pipe.getStep(index).flops);
+			if (current * groups >= total * group || pipe.getNumberOfSteps() - index - 1 == groups - group) {	// Every group must contain at least one step
+				result[group++] = index + 1;
+			}
+		}
+		result[groups] = pipe.getNumberOfSteps();
+		return result;
+	}
+
+	private static class Job {
+		private float[]									content;
+		private final CompletableFuture<MatrixWrapper>	future = new CompletableFuture<>();
+
+		private Job(final float[] content) {
+			this.content = content;
+		}
+	}
+}
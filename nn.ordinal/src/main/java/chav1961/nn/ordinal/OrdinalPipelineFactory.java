@@ -1,20 +1,35 @@
 package chav1961.nn.ordinal;
 
 import java.net.URI;
+import java.util.EnumSet;
 
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.MatrixClass;
 import chav1961.nn.api.interfaces.Pipe;
 import chav1961.nn.api.interfaces.PipeBuilder;
 import chav1961.nn.api.interfaces.PipeBuilderFactory;
+import chav1961.nn.api.interfaces.PipeCapabilities;
 import chav1961.purelib.basic.URIUtils;
 import chav1961.purelib.basic.Utils;
 import chav1961.purelib.basic.exceptions.EnvironmentException;
 
 public class OrdinalPipelineFactory implements PipeBuilderFactory {
 	private static final URI	RESOURCE = URI.create(PipeBuilderFactory.SCHEMA+":ordinal");
+	private static final PipeCapabilities	CAPABILITIES = new PipeCapabilities(EnumSet.of(MatrixClass.FLOAT2_ARRAY, MatrixClass.FLOAT_FLAT2, MatrixClass.FLOAT_BUFFER2, MatrixClass.HALF_FLAT2, MatrixClass.BFLOAT16_FLAT2, MatrixClass.FLOAT_CSR2, MatrixClass.INT8_ROW_FLAT2, MatrixClass.INT8_COLUMN_FLAT2), EnumSet.allOf(CalculationPrecision.class), true, Integer.MAX_VALUE);
 
 	public OrdinalPipelineFactory() {
 	}
 	
+	@Override
+	public URI getFactoryURI() {
+		return RESOURCE;
+	}
+
+	@Override
+	public PipeCapabilities getCapabilities() {	// Reduced storage precision is checked on build, it's available for read-only pipes only
+		return CAPABILITIES;
+	}
+
 	@Override
 	public boolean canServe(final URI resource) throws NullPointerException {
 		if (resource == null) {
@@ -38,17 +53,14 @@ public class OrdinalPipelineFactory implements PipeBuilderFactory {
 		else if (!canServe(resource)) {
 			throw new IllegalArgumentException("Resource ["+resource+"] can't be servied with this provider");
 		}
-		else if (parameters == null || parameters.length != 1 || Utils.checkArrayContent4Nulls(null) >= 0) {
+		else if (parameters == null || parameters.length != 1 || Utils.checkArrayContent4Nulls(parameters) >= 0) {
 			throw new IllegalArgumentException("Parameters nust contain exactly one non-null value");
 		}
 		else if (!(parameters[0] instanceof PipeBuilder)) {
 			throw new IllegalArgumentException("Parameter must be PipeBuilder instance");
 		}
 		else {
-			final PipeBuilder	pb = (PipeBuilder)parameters[0];
-			// TODO Auto-generated method stub
-			
-			return null;
+			return new OrdinalCompiledPipe((PipeBuilder)parameters[0]);
 		}
 	}
 
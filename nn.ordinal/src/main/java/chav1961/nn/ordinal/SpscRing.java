@@ -0,0 +1,93 @@
+package chav1961.nn.ordinal;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+class SpscRing<T> {	// Bounded lock-free queue for exactly one producer thread and one consumer thread
+	private static final int	SPIN_LIMIT = 1 << 10;
+	private static final int	YIELD_LIMIT = SPIN_LIMIT + (1 << 6);
+
+	private final Object[]		items;
+	private final int			mask;
+	private final AtomicLong	head = new AtomicLong();	// Next item to take, changed by consumer only
+	private final AtomicLong	tail = new AtomicLong();	// Next item to put, changed by producer only
+	private volatile Thread		parkedProducer = null;		// Producer waiting for the free slot
+	private volatile Thread		parkedConsumer = null;		// Consumer waiting for the item
+
+	SpscRing(final int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Capacity ["+capacity+"] must be greater than 0");
+		}
+		else {
+			final int	size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;	// Power of two to replace modulo with mask
+
+			this.items = new Object[size];
+			this.mask = size - 1;
+		}
+	}
+
+	int capacity() {
+		return items.length;
+	}
+
+	void put(final T item) throws InterruptedException {
+		final long	current = tail.get();
+
+		for(int attempt = 0; current - head.get() >= items.length; attempt++) {
+			if (await(attempt)) {
+				parkedProducer = Thread.currentThread();
+				if (current - head.get() >= items.length) {	// Consumer checks the parked producer after it's own volatile store, so the wake up can't be lost
+					LockSupport.park(this);
+				}
+				parkedProducer = null;
+			}
+		}
+		items[(int)current & mask] = item;
+		tail.set(current + 1);	// Volatile store publishes the item and orders it before the parked consumer check
+		wake(parkedConsumer);
+	}
+
+	@SuppressWarnings("unchecked")
+	T take() throws InterruptedException {
+		final long	current = head.get();
+
+		for(int attempt = 0; current >= tail.get(); attempt++) {
+			if (await(attempt)) {
+				parkedConsumer = Thread.currentThread();
+				if (current >= tail.get()) {
+					LockSupport.park(this);
+				}
+				parkedConsumer = null;
+			}
+		}
+		final T		item = (T)items[(int)current & mask];
+
+		items[(int)current & mask] = null;
+		head.set(current + 1);
+		wake(parkedProducer);
+		return item;
+	}
+
+	private static boolean await(final int attempt) throws InterruptedException {	// Neighbour stage usually answers soon, so spin first and park last. True means park until wake up
+		if (Thread.interrupted()) {
+			throw new InterruptedException();
+		}
+		else if (attempt < SPIN_LIMIT) {
+			Thread.onSpinWait();
+			return false;
+		}
+		else if (attempt < YIELD_LIMIT) {
+			Thread.yield();
+			return false;
+		}
+		else {
+			return true;
+		}
+	}
+
+	private static void wake(final Thread parked) {
+		if (parked != null) {
+			LockSupport.unpark(parked);
+		}
+	}
+}
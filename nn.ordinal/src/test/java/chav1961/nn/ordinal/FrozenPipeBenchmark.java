@@ -0,0 +1,71 @@
+package chav1961.nn.ordinal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+// Throughput of the frozen pipe shared by 1..N request threads. Usage: FrozenPipeBenchmark [<maxThreads> [<seconds>]]
+public class FrozenPipeBenchmark {
+	public static void main(final String[] args) throws CalculationException, InterruptedException {
+		final int	maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		final int	seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, 1, MatrixClass.FLOAT_FLAT2);	// Every request thread calculates on it's own
+
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 512, 256));
+		pipe.add(ActivationType.SOFTMAX);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 256, 64));
+
+		final Pipe			frozen = pipe.freeze();
+		final MatrixWrapper	source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 3L, 512);
+		double				single = 0;
+
+		for(int index = 0; index < 1000; index++) {	// Warm up
+			frozen.forward(source);
+		}
+		System.out.println("threads\tcalls/s\tspeedup");
+		for(int threads = 1; threads <= maxThreads; threads++) {
+			final double	rate = measure(frozen, source, threads, seconds);
+
+			if (threads == 1) {
+				single = rate;
+			}
+			System.out.println(String.format("%d\t%.0f\t%.2f", threads, rate, rate / single));
+		}
+	}
+
+	private static double measure(final Pipe pipe, final MatrixWrapper source, final int threads, final int seconds) throws InterruptedException {
+		final AtomicLong		calls = new AtomicLong();
+		final CountDownLatch	start = new CountDownLatch(1);
+		final Thread[]			workers = new Thread[threads];
+		final long				duration = TimeUnit.SECONDS.toNanos(seconds);
+
+		for(int index = 0; index < workers.length; index++) {
+			workers[index] = new Thread(()->{
+				final MatrixWrapper	target = MatrixWrapper.of(new float[64]);
+				long	count = 0;
+
+				try {
+					start.await();
+					for(final long end = System.nanoTime() + duration; System.nanoTime() < end; count++) {
+						pipe.forward(source, target);
+					}
+				} catch (InterruptedException | CalculationException exc) {
+					throw new IllegalStateException(exc);
+				}
+				calls.addAndGet(count);
+			});
+			workers[index].start();
+		}
+		start.countDown();
+		for(Thread item : workers) {
+			item.join();
+		}
+		return calls.get() / (double)seconds;
+	}
+}
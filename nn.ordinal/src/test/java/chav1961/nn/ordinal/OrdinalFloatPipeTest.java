@@ -1,9 +1,32 @@
 package chav1961.nn.ordinal;
 
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderFactory;
+import chav1961.nn.api.interfaces.PipeCapabilities;
+import chav1961.nn.api.interfaces.PipeFactorySelector;
+import chav1961.nn.api.interfaces.PipeProfiler;
+import chav1961.nn.api.interfaces.PipeStream;
+import chav1961.nn.api.interfaces.WorkerTeam;
 import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.interfaces.ProgressIndicator;
 
 public class OrdinalFloatPipeTest {
 
@@ -32,6 +55,96 @@ public class OrdinalFloatPipeTest {
 		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, matrix2, 4), 0.001f);
 	}
 
+	@Test
+	public void flatMuptiplyTest() throws CalculationException {
+		final float[]	source = new float[] {1,2,3};
+		final float[] 	matrix = new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12};
+		
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, matrix, 0, 4, 4, 1, 1), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, matrix, 0, 4, 4, 1, 2), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, matrix, 0, 4, 4, 1, 3), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, matrix, 0, 4, 4, 1, 4), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, MatrixWrapper.of(3, 4, matrix), 2), 0.001f);
+	}
+
+	@Test
+	public void viewMuptiplyTest() throws CalculationException {
+		final float[]		matrix = new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12};
+		final float[]		delta = new float[] {1,2,3,4};
+		final MatrixWrapper	transposed = MatrixWrapper.transpose(MatrixWrapper.of(3, 4, matrix));
+		
+		Assert.assertArrayEquals(new float[] {30, 70, 110}, OrdinalFloatPipe.forwardMutiply(delta, transposed, 2), 0.001f);
+		Assert.assertArrayEquals(new float[] {14, 16, 18, 20}, OrdinalFloatPipe.forwardMutiply(new float[] {1,1}, MatrixWrapper.rows(MatrixWrapper.of(3, 4, matrix), 1, 3), 2), 0.001f);
+	}
+
+	@Test
+	public void offHeapMuptiplyTest() throws CalculationException {
+		final float[]	source = new float[] {1,2,3};
+		
+		try(final CloseableMatrixWrapper	matrix = MatrixWrapper.toOffHeap(MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12}))) {
+			Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, (FloatBuffer)matrix.getContent(), 0, 4, 4, 1, 1), 0.001f);
+			Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, (FloatBuffer)matrix.getContent(), 0, 4, 4, 1, 3), 0.001f);
+			Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, matrix, 2), 0.001f);
+		}
+	}
+
+	@Test
+	public void halfMuptiplyTest() throws CalculationException {
+		final float[]		source = new float[] {1,2,3};
+		final MatrixWrapper	matrix = MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12});
+		final MatrixWrapper	half = MatrixWrapper.convert(matrix, MatrixClass.HALF_FLAT2);
+		final MatrixWrapper	bfloat = MatrixWrapper.convert(matrix, MatrixClass.BFLOAT16_FLAT2);
+		
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, (short[])half.getContent(), false, 0, 4, 4, 1, 1), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, (short[])bfloat.getContent(), true, 0, 4, 4, 1, 3), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, half, 2), 0.001f);
+		
+		final OrdinalFloatPipe	readOnly = new OrdinalFloatPipe(true, 2, MatrixClass.HALF_FLAT2);
+		
+		readOnly.add(half);
+		Assert.assertEquals(MatrixWrapper.of(new float[] {38, 44, 50, 56}), readOnly.forward(MatrixWrapper.of(source), ProgressIndicator.DUMMY));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {28, 32, 36, 40}), readOnly.forward(MatrixWrapper.of(3, new int[] {0, 2}, new float[] {1, 3}), ProgressIndicator.DUMMY));
+		
+		try{new OrdinalFloatPipe(false, 2, MatrixClass.HALF_FLAT2).add(bfloat);
+			Assert.fail("Mandatory exception was not detected (16-bit matrix in the trainable pipe)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void quantizedMuptiplyTest() throws CalculationException {
+		final float[]		source = new float[] {1,2,3};
+		final MatrixWrapper	matrix = MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12});
+		final MatrixWrapper	rows = MatrixWrapper.convert(matrix, MatrixClass.INT8_ROW_FLAT2);
+		final MatrixWrapper	columns = MatrixWrapper.convert(matrix, MatrixClass.INT8_COLUMN_FLAT2);
+		
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, rows, 1), 0.2f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(source, columns, 3), 0.2f);
+		
+		final OrdinalFloatPipe	readOnly = new OrdinalFloatPipe(true, 2, MatrixClass.INT8_ROW_FLAT2);
+		
+		readOnly.add(rows);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, (float[])readOnly.forward(MatrixWrapper.of(source), ProgressIndicator.DUMMY).getContent(), 0.2f);
+		
+		try{new OrdinalFloatPipe(false, 2, MatrixClass.INT8_ROW_FLAT2).add(columns);
+			Assert.fail("Mandatory exception was not detected (quantized matrix in the trainable pipe)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void csrMuptiplyTest() throws CalculationException {
+		final MatrixWrapper	csr = MatrixWrapper.convert(MatrixWrapper.of(3, 4, new float[] {1,0,0,2, 0,0,0,0, 0,3,0,4}), MatrixClass.FLOAT_CSR2);
+		
+		Assert.assertArrayEquals(new float[] {1, 9, 0, 14}, OrdinalFloatPipe.forwardMutiply(new float[] {1, 2, 3}, csr, 1), 0.001f);
+		Assert.assertArrayEquals(new float[] {1, 9, 0, 14}, OrdinalFloatPipe.forwardMutiply(new float[] {1, 2, 3}, csr, 3), 0.001f);
+		
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(false, 2, MatrixClass.FLOAT_CSR2);
+		
+		pipe.add(csr);
+		Assert.assertEquals(MatrixWrapper.of(new float[] {1, 9, 0, 14}), pipe.forward(MatrixWrapper.of(new float[] {1, 2, 3}), ProgressIndicator.DUMMY));
+	}
+
 	@Test
 	public void softMaxTest() throws CalculationException {
 		final float[]	source = new float[] {0.5f,0.6f,0.7f};
@@ -41,4 +154,479 @@ public class OrdinalFloatPipeTest {
 		Assert.assertArrayEquals(new float[] {0.30061f, 0.332225f, 0.367165f}, OrdinalFloatPipe.activateSoftMax(source, 3), 0.001f);
 		Assert.assertArrayEquals(new float[] {0.30061f, 0.332225f, 0.367165f}, OrdinalFloatPipe.activateSoftMax(source, 4), 0.001f);
 	}
+
+	@Test
+	public void activationTest() throws CalculationException {
+		final float[]		source = new float[] {-2f, -0.5f, 0f, 1.5f};
+		final WorkerTeam	team = WorkerTeam.common(2);
+
+		Assert.assertArrayEquals(new float[] {0f, 0f, 0f, 1.5f}, new ActivationKernel(ActivationType.RELU).forward(source, new float[4], CalculationPrecision.QUICK, team), 0.0001f);
+		Assert.assertArrayEquals(new float[] {-0.02f, -0.005f, 0f, 1.5f}, new ActivationKernel(ActivationType.LEAKY_RELU).forward(source, new float[4], CalculationPrecision.QUICK, team), 0.0001f);
+		Assert.assertArrayEquals(new float[] {-0.2f, -0.05f, 0f, 1.5f}, new ActivationKernel(ActivationType.LEAKY_RELU, 0.1f).forward(source, new float[4], CalculationPrecision.QUICK, team), 0.0001f);
+		Assert.assertArrayEquals(new float[] {0.1192f, 0.3775f, 0.5f, 0.8176f}, new ActivationKernel(ActivationType.SIGMOID).forward(source, new float[4], CalculationPrecision.QUICK, team), 0.001f);
+		Assert.assertArrayEquals(new float[] {-0.9640f, -0.4621f, 0f, 0.9051f}, new ActivationKernel(ActivationType.TANH).forward(source, new float[4], CalculationPrecision.QUICK, team), 0.001f);
+		Assert.assertArrayEquals(new float[] {-0.0454f, -0.1543f, 0f, 1.3998f}, new ActivationKernel(ActivationType.GELU).forward(source, new float[4], CalculationPrecision.QUICK, team), 0.001f);
+		Assert.assertArrayEquals(new float[] {-0.6931f, -0.6931f}, new ActivationKernel(ActivationType.LOG_SOFTMAX).forward(new float[] {1000f, 1000f}, new float[2], CalculationPrecision.QUICK, team), 0.0001f);
+
+		final float[]	big = new float[ActivationKernel.PARALLEL_THRESHOLD * 2];
+		final float[]	gradient = new float[big.length];
+
+		for(int index = 0; index < big.length; index++) {
+			big[index] = (index % 97 - 48) / 16f;
+			gradient[index] = (index % 13 - 6) / 8f;
+		}
+		for(ActivationType type : ActivationType.values()) {	// Analytic derivatives against the numeric ones
+			final ActivationKernel	kernel = new ActivationKernel(type);
+			final float[]			small = Arrays.copyOf(big, 7), smallGradient = Arrays.copyOf(gradient, 7);
+			final float[]			output = kernel.forward(small, new float[small.length], CalculationPrecision.PRECISE, team);
+			final float[]			derivative = kernel.backward(small, output, smallGradient, new float[small.length], CalculationPrecision.PRECISE, team);
+
+			for(int index = 0; index < small.length; index++) {
+				final float[]	plus = small.clone(), minus = small.clone();
+				final float		delta = 0.01f;
+
+				plus[index] += delta;
+				minus[index] -= delta;
+				Assert.assertEquals(type.name(), (dot(kernel.forward(plus, new float[small.length], CalculationPrecision.PRECISE, team), smallGradient) - dot(kernel.forward(minus, new float[small.length], CalculationPrecision.PRECISE, team), smallGradient)) / (2 * delta), derivative[index], 0.01f);
+			}
+			if (type.isElementWise()) {	// Parallel in-place calculation gives the same results
+				final float[]	sequential = new float[big.length], parallel = big.clone();
+
+				kernel.apply(big, sequential, 0, big.length);
+				Assert.assertSame(parallel, kernel.forward(parallel, parallel, CalculationPrecision.QUICK, team));
+				Assert.assertArrayEquals(sequential, parallel, 0f);
+			}
+		}
+
+		for(MatrixClass clazz : new MatrixClass[] {MatrixClass.FLOAT_FLAT2, MatrixClass.FLOAT2_ARRAY, MatrixClass.INT8_ROW_FLAT2, MatrixClass.INT8_COLUMN_FLAT2, MatrixClass.FLOAT_CSR2}) {
+			for(int parallelism : new int[] {1, 3}) {	// Activations fused into multiplications give the same results as standalone ones
+				final MatrixWrapper		first = MatrixWrapper.convert(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 30, 2000), clazz);
+				final MatrixWrapper		second = MatrixWrapper.convert(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 2000, 10), clazz);
+				final MatrixWrapper		batch = MatrixWrapper.random(MatrixClass.FLOAT_BATCH2, 3L, 5, 30);
+				final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, parallelism, clazz);
+				final OrdinalFloatPipe	firstPipe = new OrdinalFloatPipe(true, parallelism, clazz), secondPipe = new OrdinalFloatPipe(true, parallelism, clazz);
+				final PipeBuilder		builder = PipeBuilder.newInstance().setReadOnly(true).setParallelism(parallelism);
+
+				pipe.add(first);
+				pipe.add(ActivationType.GELU);
+				pipe.add(second);
+				pipe.add(ActivationType.TANH);
+				firstPipe.add(first);
+				secondPipe.add(second);
+				builder.mul(first).activate(ActivationType.GELU).mul(second).activate(ActivationType.TANH);
+
+				final Pipe				compiled = builder.build();
+				final ActivationKernel	gelu = new ActivationKernel(ActivationType.GELU), tanh = new ActivationKernel(ActivationType.TANH);
+
+				for(int index = 0; index < 5; index++) {
+					final MatrixWrapper	sample = MatrixWrapper.sample(batch, index);
+					final float[]		hidden = firstPipe.forward(sample).getContent();
+
+					gelu.apply(hidden, hidden, 0, hidden.length);
+
+					final float[]		expected = secondPipe.forward(MatrixWrapper.of(hidden)).getContent();
+
+					tanh.apply(expected, expected, 0, expected.length);
+					Assert.assertArrayEquals(expected, (float[])pipe.forward(sample).getContent(), 0.0001f);
+					Assert.assertArrayEquals(expected, (float[])compiled.forward(sample).getContent(), 0.0001f);
+					Assert.assertArrayEquals(expected, (float[])MatrixWrapper.sample(pipe.forwardBatch(batch), index).getContent(), 0.0001f);
+					Assert.assertArrayEquals(expected, (float[])MatrixWrapper.sample(compiled.forwardBatch(batch), index).getContent(), 0.0001f);
+				}
+			}
+		}
+
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, 1, MatrixClass.FLOAT_FLAT2);
+
+		pipe.add(MatrixWrapper.of(2, 2, new float[] {1,0, 0,1}));
+		pipe.add(ActivationType.LEAKY_RELU, 0.5f);
+		Assert.assertArrayEquals(new float[] {-0.5f, 1f}, (float[])pipe.forward(MatrixWrapper.of(new float[] {-1f, 1f})).getContent(), 0.0001f);
+
+		Assert.assertArrayEquals(new float[] {-0.5f, 1f}, (float[])pipe.freeze().forward(MatrixWrapper.of(new float[] {-1f, 1f})).getContent(), 0.0001f);	// Parameters survive freezing
+
+		try{pipe.add(ActivationType.LEAKY_RELU, "slope");
+			Assert.fail("Mandatory exception was not detected (illegal 2-nd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	private static float dot(final float[] first, final float[] second) {
+		double	sum = 0;
+
+		for(int index = 0; index < first.length; index++) {
+			sum += first[index] * second[index];
+		}
+		return (float)sum;
+	}
+
+	@Test
+	public void arenaTest() throws CalculationException {
+		for(int parallelism : new int[] {1, 3}) {
+			final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(false, parallelism, MatrixClass.FLOAT_FLAT2);
+			final MatrixWrapper		source = MatrixWrapper.of(new float[] {1,2,3});
+			final MatrixWrapper		target = MatrixWrapper.of(new float[2]);
+			final ActivationArena	arena = new ActivationArena();
+			
+			pipe.add(MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12}));
+			pipe.add(MatrixWrapper.of(4, 2, new float[] {1,0, 0,1, 1,0, 0,1}));
+			
+			Assert.assertSame(target, pipe.forward(source, target, ProgressIndicator.DUMMY));
+			Assert.assertArrayEquals(new float[] {88, 100}, (float[])target.getContent(), 0.001f);
+			Assert.assertEquals(target, pipe.forward(source));
+			Assert.assertSame(target, pipe.forward(MatrixWrapper.of(3, new int[] {0, 2}, new float[] {1, 3}), target));
+			Assert.assertArrayEquals(new float[] {64, 72}, (float[])target.getContent(), 0.001f);
+			
+			pipe.add(ActivationType.SOFTMAX);
+			Assert.assertSame(target, pipe.forward(MatrixWrapper.of(new float[] {0, 0, 0}), target));
+			Assert.assertArrayEquals(new float[] {0.5f, 0.5f}, (float[])target.getContent(), 0.001f);
+			Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, OrdinalFloatPipe.forwardMutiply(new float[] {1,2,3}, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12}, 0, 4, 4, 1, new float[4], arena, CalculationPrecision.QUICK, null, WorkerTeam.common(parallelism)), 0.001f);
+			Assert.assertArrayEquals(new float[] {0.30061f, 0.332225f, 0.367165f}, OrdinalFloatPipe.activateSoftMax(new float[] {0.5f,0.6f,0.7f}, new float[3], CalculationPrecision.QUICK, WorkerTeam.common(parallelism)), 0.001f);
+
+			final float[]	tall = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 5L, 600, 5).getContent(), tallSource = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 6L, 600).getContent();
+			
+			for(CalculationPrecision precision : CalculationPrecision.values()) {	// Reused accumulators must start every sum from zero, whatever the previous size was
+				final float[]	awaited = OrdinalFloatPipe.forwardMutiply(tallSource, tall, 0, 5, 5, 1, new float[5], null, precision, null, WorkerTeam.common(parallelism));
+				
+				Assert.assertArrayEquals(precision.name(), awaited, OrdinalFloatPipe.forwardMutiply(tallSource, tall, 0, 5, 5, 1, new float[5], arena, precision, null, WorkerTeam.common(parallelism)), 0f);
+				OrdinalFloatPipe.forwardMutiply(tallSource, tall, 0, 3, 5, 1, new float[3], arena, precision, null, WorkerTeam.common(parallelism));
+				Assert.assertArrayEquals(precision.name(), awaited, OrdinalFloatPipe.forwardMutiply(tallSource, tall, 0, 5, 5, 1, new float[5], arena, precision, null, WorkerTeam.common(parallelism)), 0f);
+				Assert.assertSame(arena.accumulator(0, precision, new float[5], 5), arena.accumulator(0, precision, new float[5], 5));
+			}
+			
+			try{pipe.forward(source, MatrixWrapper.of(new float[3]));
+				Assert.fail("Mandatory exception was not detected (target size mismatch)");
+			} catch (IllegalArgumentException exc) {
+			}
+			try{pipe.forward(source, MatrixWrapper.of(new double[2]));
+				Assert.fail("Mandatory exception was not detected (target class mismatch)");
+			} catch (IllegalArgumentException exc) {
+			}
+			try{pipe.forward(source, source);
+				Assert.fail("Mandatory exception was not detected (target shares content with source)");
+			} catch (IllegalArgumentException exc) {
+			}
+			try{pipe.forward(source, (MatrixWrapper)null);
+				Assert.fail("Mandatory exception was not detected (null 2-nd argument)");
+			} catch (NullPointerException exc) {
+			}
+		}
+	}
+
+	@Test
+	public void batchTest() throws CalculationException {
+		final MatrixWrapper	first = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 300, 100);
+		final MatrixWrapper	second = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 100, 20);
+		final MatrixWrapper	batch = MatrixWrapper.random(MatrixClass.FLOAT_BATCH2, 3L, 5, 300);
+		
+		for(MatrixClass clazz : new MatrixClass[] {MatrixClass.FLOAT_FLAT2, MatrixClass.FLOAT2_ARRAY, MatrixClass.HALF_FLAT2, MatrixClass.INT8_ROW_FLAT2, MatrixClass.INT8_COLUMN_FLAT2, MatrixClass.FLOAT_CSR2}) {
+			for(int parallelism : new int[] {1, 3}) {
+				final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, parallelism, clazz);
+				
+				pipe.add(MatrixWrapper.convert(first, clazz));
+				pipe.add(MatrixWrapper.convert(second, clazz));
+				pipe.add(ActivationType.SOFTMAX);
+				
+				final MatrixWrapper	result = pipe.forwardBatch(batch, ProgressIndicator.DUMMY);
+				
+				Assert.assertEquals(MatrixClass.FLOAT_BATCH2, result.getMatrixClass());
+				Assert.assertArrayEquals(new int[] {5, 20}, result.getDimensions());
+				for(int index = 0; index < 5; index++) {
+					Assert.assertArrayEquals((float[])pipe.forward(MatrixWrapper.sample(batch, index)).getContent(), (float[])MatrixWrapper.sample(result, index).getContent(), 0.0001f);
+				}
+			}
+		}
+		
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(false, 2, MatrixClass.FLOAT_FLAT2);
+		
+		pipe.add(MatrixWrapper.transpose(MatrixWrapper.of(4, 3, new float[] {1,5,9, 2,6,10, 3,7,11, 4,8,12})));
+		Assert.assertEquals(MatrixWrapper.batch(2, 4, new float[] {38,44,50,56, 1,2,3,4}), pipe.forwardBatch(MatrixWrapper.batch(2, 3, new float[] {1,2,3, 1,0,0})));
+		
+		try{pipe.forwardBatch(MatrixWrapper.batch(2, 4, new float[8]));
+			Assert.fail("Mandatory exception was not detected (sample size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{pipe.forwardBatch(MatrixWrapper.of(new float[3]));
+			Assert.fail("Mandatory exception was not detected (not a batch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{pipe.forwardBatch(null);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+	}
+
+	@Test
+	public void compiledTest() throws CalculationException {
+		final MatrixWrapper	first = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 300, 100);
+		final MatrixWrapper	second = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 100, 20);
+		final MatrixWrapper	source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 3L, 300);
+		final MatrixWrapper	batch = MatrixWrapper.random(MatrixClass.FLOAT_BATCH2, 4L, 5, 300);
+		
+		for(MatrixClass clazz : new MatrixClass[] {MatrixClass.FLOAT_FLAT2, MatrixClass.FLOAT_BUFFER2, MatrixClass.HALF_FLAT2, MatrixClass.INT8_COLUMN_FLAT2, MatrixClass.FLOAT_CSR2}) {
+			for(int parallelism : new int[] {1, 3}) {
+				final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, parallelism, clazz);
+				final PipeBuilder		builder = PipeBuilder.newInstance().setReadOnly(true).setParallelism(parallelism);
+				
+				pipe.add(MatrixWrapper.convert(first, clazz));
+				pipe.add(ActivationType.SOFTMAX);
+				pipe.add(MatrixWrapper.convert(second, clazz));
+				pipe.add(ActivationType.SOFTMAX);
+				builder.mul(MatrixWrapper.convert(first, clazz)).activate(ActivationType.SOFTMAX).mul(MatrixWrapper.convert(second, clazz)).activate(ActivationType.SOFTMAX);
+				
+				final Pipe	compiled = builder.build();
+				
+				Assert.assertTrue(compiled instanceof OrdinalCompiledPipe);
+				Assert.assertEquals(2, ((OrdinalCompiledPipe)compiled).getNumberOfSteps());	// Activations are fused into multiplications
+				Assert.assertEquals(300, ((OrdinalCompiledPipe)compiled).getInputSize());
+				Assert.assertEquals(20, ((OrdinalCompiledPipe)compiled).getOutputSize());
+				Assert.assertArrayEquals((float[])pipe.forward(source).getContent(), (float[])compiled.forward(source).getContent(), 0.00001f);
+				Assert.assertArrayEquals((float[])pipe.forwardBatch(batch).getContent(), (float[])compiled.forwardBatch(batch).getContent(), 0.00001f);
+			}
+		}
+		
+		final Pipe			leading = PipeBuilder.newInstance().activate(ActivationType.SOFTMAX).mul(MatrixWrapper.of(2, 2, new float[] {1,0, 0,1})).build();
+		final MatrixWrapper	target = MatrixWrapper.of(new float[2]);
+		
+		Assert.assertSame(target, leading.forward(MatrixWrapper.of(new float[] {1, 1}), target));
+		Assert.assertArrayEquals(new float[] {0.5f, 0.5f}, (float[])target.getContent(), 0.0001f);
+		
+		try{PipeBuilder.newInstance().mul(MatrixWrapper.convert(first, MatrixClass.HALF_FLAT2)).build();
+			Assert.fail("Mandatory exception was not detected (reduced precision in writable pipe)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{leading.forward(MatrixWrapper.of(new float[3]));
+			Assert.fail("Mandatory exception was not detected (input size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{leading.forward(MatrixWrapper.of(new float[2]), MatrixWrapper.of(new float[3]));
+			Assert.fail("Mandatory exception was not detected (target size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{PipeBuilder.newInstance().build();
+			Assert.fail("Mandatory exception was not detected (empty builder)");
+		} catch (IllegalStateException exc) {
+		}
+	}
+
+	@Test
+	public void frozenTest() throws CalculationException, InterruptedException {
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, 3, MatrixClass.FLOAT_FLAT2);
+		final MatrixWrapper[]	sources = new MatrixWrapper[16];
+		final float[][]			expected = new float[sources.length][];
+		
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 200, 100));
+		pipe.add(ActivationType.SOFTMAX);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 100, 10));
+		
+		final Pipe				frozen = pipe.freeze();
+		final Thread[]			threads = new Thread[8];
+		final AtomicInteger		failures = new AtomicInteger();
+		
+		for(int index = 0; index < sources.length; index++) {	// Reference results of the single thread
+			sources[index] = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 10L + index, 200);
+			expected[index] = frozen.forward(sources[index]).getContent();
+			Assert.assertArrayEquals((float[])pipe.forward(sources[index]).getContent(), expected[index], 0.00001f);
+		}
+		pipe.add(ActivationType.SOFTMAX);	// Changes of the source pipe don't affect frozen one
+		Assert.assertArrayEquals(expected[0], (float[])frozen.forward(sources[0]).getContent(), 0f);
+		for(int thread = 0; thread < threads.length; thread++) {
+			final int	start = thread;
+			
+			threads[thread] = new Thread(()->{
+				try {
+					for(int iteration = 0; iteration < 200; iteration++) {
+						final int	index = (start + iteration) % sources.length;
+						
+						if (!Arrays.equals(expected[index], (float[])frozen.forward(sources[index]).getContent())) {
+							failures.incrementAndGet();
+						}
+					}
+				} catch (CalculationException | RuntimeException exc) {
+					failures.incrementAndGet();
+				}
+			});
+			threads[thread].start();
+		}
+		for(Thread item : threads) {
+			item.join();
+		}
+		Assert.assertEquals(0, failures.get());
+		
+		try{new OrdinalFloatPipe(false, 1, MatrixClass.FLOAT_FLAT2).freeze();
+			Assert.fail("Mandatory exception was not detected (writable pipe)");
+		} catch (IllegalStateException exc) {
+		}
+		try{new OrdinalFloatPipe(true, 1, MatrixClass.FLOAT_FLAT2).freeze();
+			Assert.fail("Mandatory exception was not detected (empty pipe)");
+		} catch (IllegalStateException exc) {
+		}
+	}
+
+	@Test
+	public void profilingTest() throws CalculationException {
+		final MatrixWrapper		first = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 64, 32);
+		final MatrixWrapper		second = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 32, 8);
+		final MatrixWrapper		source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 3L, 64);
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, 2, MatrixClass.FLOAT_FLAT2);
+
+		pipe.add(first);
+		pipe.add(ActivationType.RELU);
+		pipe.add(second);
+		pipe.add(ActivationType.SOFTMAX);
+		
+		final PipeProfiler		profiler = pipe.getProfiler();
+		
+		Assert.assertEquals(4, profiler.getNumberOfStages());
+		Assert.assertNull(profiler.begin());
+		pipe.forward(source);
+		Assert.assertEquals(0, profiler.snapshot().get(0).getCalls());
+		
+		profiler.setEnabled(true);
+		for(int index = 0; index < 10; index++) {
+			pipe.forward(source);
+		}
+		pipe.forwardBatch(MatrixWrapper.batch(source, source));
+		profiler.setEnabled(false);
+		
+		final List<PipeProfiler.Stage>	stages = profiler.snapshot();
+		
+		Assert.assertEquals(11, stages.get(0).getCalls());
+		Assert.assertEquals(0, stages.get(1).getCalls());	// Fused into the multiplication
+		Assert.assertEquals(11, stages.get(3).getCalls());
+		Assert.assertEquals(12 * (2L * 64 * 32 + 32), stages.get(0).getFlops());
+		Assert.assertEquals(12 * 4L * 8, stages.get(3).getFlops());
+		for(PipeProfiler.Stage item : stages) {
+			Assert.assertTrue(item.getUtilization() >= 0 && item.getUtilization() <= 1);
+			Assert.assertTrue(item.getCalls() == 0 || item.getTime() > 0 && item.getBytes() > 0);
+		}
+		profiler.reset();
+		Assert.assertEquals(0, profiler.snapshot().get(0).getCalls());
+		
+		final Pipe				frozen = pipe.freeze();
+		
+		Assert.assertEquals(2, frozen.getProfiler().getNumberOfStages());
+		frozen.getProfiler().setEnabled(true);
+		frozen.forward(source);
+		frozen.getProfiler().setEnabled(false);
+		Assert.assertEquals("FLOAT_FLAT2 [64x32] + RELU", frozen.getProfiler().snapshot().get(0).getName());
+		Assert.assertEquals(2L * 64 * 32 + 32, frozen.getProfiler().snapshot().get(0).getFlops());
+		Assert.assertEquals(1, frozen.getProfiler().snapshot().get(1).getCalls());
+		
+		try{PipeProfiler.NONE.setEnabled(true);
+			Assert.fail("Mandatory exception was not detected (dummy profiler)");
+		} catch (IllegalStateException exc) {
+		}
+		try{WorkerTeam.common(2).stopTiming();
+			Assert.fail("Mandatory exception was not detected (timing is not started)");
+		} catch (IllegalStateException exc) {
+		}
+	}
+
+	@Test
+	public void streamTest() throws CalculationException, InterruptedException, ExecutionException {
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, 2, MatrixClass.FLOAT_FLAT2);
+
+		pipe.add(ActivationType.TANH);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 64, 32));
+		pipe.add(ActivationType.RELU);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 32, 32));
+		pipe.add(ActivationType.SOFTMAX);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 3L, 32, 8));
+		
+		final MatrixWrapper[]	sources = new MatrixWrapper[50];
+		final float[][]			expected = new float[sources.length][];
+		
+		for(int index = 0; index < sources.length; index++) {
+			sources[index] = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 10L + index, 64);
+			expected[index] = pipe.forward(sources[index]).getContent();
+		}
+		for(int groups = 1; groups <= 5; groups++) {	// Pipe has 4 steps only
+			try(final PipeStream	stream = pipe.stream(groups, 4)) {
+				final List<CompletableFuture<MatrixWrapper>>	results = new ArrayList<>();
+				
+				Assert.assertEquals(Math.min(groups, 4), stream.getNumberOfGroups());
+				for(MatrixWrapper item : sources) {
+					results.add(stream.submit(item));
+				}
+				for(int index = 0; index < sources.length; index++) {
+					Assert.assertArrayEquals(expected[index], (float[])results.get(index).get().getContent(), 0.0001f);
+				}
+				Assert.assertArrayEquals(pipe.forward(MatrixWrapper.of(64, new int[] {3}, new float[] {1f})).getContent(), (float[])stream.submit(MatrixWrapper.of(64, new int[] {3}, new float[] {1f})).get().getContent(), 0.0001f);
+
+				try{stream.submit(MatrixWrapper.of(new float[10]));
+					Assert.fail("Mandatory exception was not detected (wrong vector size)");
+				} catch (IllegalArgumentException exc) {
+				}
+				stream.close();
+				try{stream.submit(sources[0]);
+					Assert.fail("Mandatory exception was not detected (closed stream)");
+				} catch (IllegalStateException exc) {
+				}
+			}
+		}
+		try{pipe.stream(0, 4);
+			Assert.fail("Mandatory exception was not detected (non-positive groups)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{new OrdinalFloatPipe(false, 1, MatrixClass.FLOAT_FLAT2).stream(1, 4);
+			Assert.fail("Mandatory exception was not detected (writable pipe)");
+		} catch (IllegalStateException exc) {
+		}
+	}
+
+	@Test
+	public void factorySelectionTest() throws CalculationException {
+		final MatrixWrapper	flat = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 128, 64);
+		final PipeBuilder	readOnly = PipeBuilder.newInstance().setReadOnly(true).mul(flat).activate(ActivationType.RELU);
+		final PipeBuilder	writable = PipeBuilder.newInstance().mul(flat).activate(ActivationType.RELU);
+		
+		PipeFactorySelector.clearDecisions();
+		Assert.assertFalse(new SlowPipelineFactory().getCapabilities().supports(writable));
+		Assert.assertTrue(new SlowPipelineFactory().getCapabilities().supports(readOnly));
+		Assert.assertFalse(new SlowPipelineFactory().getCapabilities().supports(PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.convert(flat, MatrixClass.HALF_FLAT2))));
+
+		Assert.assertEquals(PipeBuilderFactory.DEFAULT_FACTORY, PipeFactorySelector.select(readOnly));	// Calibrated between two factories
+		Assert.assertEquals(PipeBuilderFactory.DEFAULT_FACTORY, PipeFactorySelector.select(writable));	// The only candidate
+		Assert.assertEquals(2, PipeFactorySelector.getDecisions().size());
+		Assert.assertTrue(readOnly.build() instanceof OrdinalCompiledPipe);
+		Assert.assertEquals(2, PipeFactorySelector.getDecisions().size());
+		Assert.assertTrue(PipeFactorySelector.getFailures().isEmpty());
+		
+		final PipeBuilder	recursive = PipeBuilder.newInstance().setReadOnly(true).setParallelism(SlowPipelineFactory.RECURSIVE_PARALLELISM).mul(flat);
+		
+		Assert.assertEquals(PipeBuilderFactory.DEFAULT_FACTORY, PipeFactorySelector.select(recursive));	// Recursive build is dropped with the reason kept
+		Assert.assertTrue(PipeFactorySelector.getFailures().get(SlowPipelineFactory.RESOURCE) instanceof IllegalStateException);
+		Assert.assertEquals(3, PipeFactorySelector.getDecisions().size());
+		
+		final PipeBuilder	transposed = PipeBuilder.newInstance().mul(MatrixWrapper.transpose(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 64, 128))).activate(ActivationType.RELU);
+		
+		Assert.assertEquals(PipeBuilderFactory.DEFAULT_FACTORY, PipeFactorySelector.select(transposed));
+		Assert.assertEquals(4, PipeFactorySelector.getDecisions().size());	// Strided view with the same dimensions is decided separately
+
+		PipeFactorySelector.pin(SlowPipelineFactory.RESOURCE);
+		try {
+			Assert.assertTrue(readOnly.build() instanceof SlowPipelineFactory.SlowPipe);
+			Assert.assertArrayEquals((float[])readOnly.build(PipeBuilderFactory.DEFAULT_FACTORY).forward(MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 2L, 128)).getContent(), 
+									 (float[])readOnly.build().forward(MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 2L, 128)).getContent(), 0f);
+		} finally {
+			PipeFactorySelector.unpin();
+		}
+		System.setProperty(PipeFactorySelector.PIN_PROPERTY, SlowPipelineFactory.RESOURCE.toString());
+		try {
+			Assert.assertEquals(SlowPipelineFactory.RESOURCE, PipeFactorySelector.select(writable));
+		} finally {
+			System.clearProperty(PipeFactorySelector.PIN_PROPERTY);
+		}
+		PipeFactorySelector.clearDecisions();
+		Assert.assertEquals(0, PipeFactorySelector.getDecisions().size());
+		Assert.assertEquals(0, PipeFactorySelector.getFailures().size());
+		
+		try{PipeFactorySelector.select(null);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+		try{new PipeCapabilities(EnumSet.noneOf(MatrixClass.class), EnumSet.allOf(CalculationPrecision.class), true, 1);
+			Assert.fail("Mandatory exception was not detected (empty matrix classes)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
 }
@@ -0,0 +1,71 @@
+package chav1961.nn.ordinal;
+
+import java.util.concurrent.TimeUnit;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+// Cost and error of every calculation precision on the same pipe. Usage: PrecisionBenchmark [<rows> [<seconds>]]
+public class PrecisionBenchmark {
+	public static void main(final String[] args) throws CalculationException {
+		final int			rows = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+		final int			seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		final MatrixWrapper	matrix = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, rows, 256);
+		final MatrixWrapper	source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 2L, rows);
+		final float[]		vector = source.getContent();
+
+		for(int index = 0; index < vector.length; index++) {	// Centered inputs keep exponents in range and make the sums cancel
+			vector[index] -= 0.5f;
+		}
+		final double[]		reference = reference(vector, (float[])matrix.getContent(), rows, 256);
+
+		System.out.println("precision\tcalls/s\tmax error");
+		for(CalculationPrecision precision : CalculationPrecision.values()) {
+			final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, 1, MatrixClass.FLOAT_FLAT2, precision);
+
+			pipe.add(matrix);
+			pipe.add(ActivationType.SOFTMAX);
+
+			final float[]	result = pipe.forward(source).getContent();
+			double			error = 0;
+
+			for(int index = 0; index < result.length; index++) {
+				error = Math.max(error, Math.abs(result[index] - reference[index]));
+			}
+			for(int index = 0; index < 200; index++) {	// Warm up
+				pipe.forward(source);
+			}
+			final long	end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+			long		calls = 0;
+
+			for(; System.nanoTime() < end; calls++) {
+				pipe.forward(source);
+			}
+			System.out.println(String.format("%s\t%.0f\t%.3e", precision, calls / (double)seconds, error));
+		}
+	}
+
+	private static double[] reference(final float[] vector, final float[] matrix, final int rows, final int columns) {
+		final double[]	result = new double[columns];
+		double			max = Double.NEGATIVE_INFINITY, sum = 0;
+
+		for(int y = 0; y < rows; y++) {
+			for(int x = 0; x < columns; x++) {
+				result[x] += (double)vector[y] * matrix[y * columns + x];
+			}
+		}
+		for(double value : result) {
+			max = Math.max(max, value);
+		}
+		for(int x = 0; x < columns; x++) {
+			sum += result[x] = Math.exp(result[x] - max);
+		}
+		for(int x = 0; x < columns; x++) {
+			result[x] /= sum;
+		}
+		return result;
+	}
+}
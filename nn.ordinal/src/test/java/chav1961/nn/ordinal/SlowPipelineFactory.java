@@ -0,0 +1,79 @@
+package chav1961.nn.ordinal;
+
+import java.net.URI;
+import java.util.EnumSet;
+import java.util.concurrent.locks.LockSupport;
+
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderFactory;
+import chav1961.nn.api.interfaces.PipeCapabilities;
+import chav1961.purelib.basic.URIUtils;
+import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.interfaces.ProgressIndicator;
+
+// Test provider which waits before every calculation to be the slowest one
+public class SlowPipelineFactory implements PipeBuilderFactory {
+	static final URI	RESOURCE = URI.create(PipeBuilderFactory.SCHEMA+":slow");
+	static final int	RECURSIVE_PARALLELISM = 5;	// Builders with this parallelism are built with the selected factory inside newInstance
+	static final long	DELAY_NANOS = 1_000_000;
+
+	@Override
+	public URI getFactoryURI() {
+		return RESOURCE;
+	}
+
+	@Override
+	public PipeCapabilities getCapabilities() {
+		return new PipeCapabilities(EnumSet.of(MatrixClass.FLOAT_FLAT2), EnumSet.allOf(CalculationPrecision.class), false, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public boolean canServe(final URI resource) throws NullPointerException {
+		return URIUtils.canServeURI(resource, RESOURCE);
+	}
+
+	@Override
+	public Pipe newInstance(final URI resource) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public Pipe newInstance(final URI resource, final Object... parameters) {
+		final PipeBuilder	builder = (PipeBuilder)parameters[0];
+		
+		return new SlowPipe(builder.getParallelism() == RECURSIVE_PARALLELISM ? builder.build() : new OrdinalCompiledPipe(builder));	// Recursive build must be dropped from calibration
+	}
+
+	static class SlowPipe implements Pipe {
+		private final Pipe	nested;
+
+		private SlowPipe(final Pipe nested) {
+			this.nested = nested;
+		}
+
+		@Override
+		public boolean isReadOnly() {
+			return nested.isReadOnly();
+		}
+
+		@Override
+		public int getParallelism() {
+			return nested.getParallelism();
+		}
+
+		@Override
+		public MatrixWrapper forward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+			LockSupport.parkNanos(DELAY_NANOS);	// Much slower than any real backend, calibration result doesn't depend on timing noise
+			return nested.forward(matrix, pi);
+		}
+
+		@Override
+		public MatrixWrapper backward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+			return nested.backward(matrix, pi);
+		}
+	}
+}
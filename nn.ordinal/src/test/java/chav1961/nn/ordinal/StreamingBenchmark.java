@@ -0,0 +1,84 @@
+package chav1961.nn.ordinal;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeStream;
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+// Throughput of the 4-layer pipe with data-parallel layers and with pipeline-parallel stream. Usage: StreamingBenchmark [<threads> [<seconds>]]
+public class StreamingBenchmark {
+	private static final int	WINDOW = 64;	// Vectors in flight for the stream
+	
+	public static void main(final String[] args) throws CalculationException, InterruptedException, ExecutionException {
+		final int			threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		final int			seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+		final MatrixWrapper	source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 9L, 512);
+
+		System.out.println("mode\tthreads\tcalls/s");
+		for(int count = 1; count <= threads; count++) {
+			final Pipe			pipe = build(count).freeze();
+			
+			System.out.println(String.format("data-parallel\t%d\t%.0f", count, measure(pipe, source, seconds)));
+			try(final PipeStream	stream = build(1).stream(count, WINDOW)) {
+				System.out.println(String.format("pipeline\t%d\t%.0f", stream.getNumberOfGroups(), measure(stream, source, seconds)));
+			}
+		}
+	}
+
+	private static OrdinalFloatPipe build(final int parallelism) {
+		final OrdinalFloatPipe	pipe = new OrdinalFloatPipe(true, parallelism, MatrixClass.FLOAT_FLAT2);
+
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 512, 512));
+		pipe.add(ActivationType.RELU);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 512, 512));
+		pipe.add(ActivationType.RELU);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 3L, 512, 512));
+		pipe.add(ActivationType.RELU);
+		pipe.add(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 4L, 512, 128));
+		pipe.add(ActivationType.SOFTMAX);
+		return pipe;
+	}
+
+	private static double measure(final Pipe pipe, final MatrixWrapper source, final int seconds) throws CalculationException {
+		for(int index = 0; index < 500; index++) {	// Warm up
+			pipe.forward(source);
+		}
+		final long	end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		long		calls = 0;
+
+		for(; System.nanoTime() < end; calls++) {
+			pipe.forward(source);
+		}
+		return calls / (double)seconds;
+	}
+
+	private static double measure(final PipeStream stream, final MatrixWrapper source, final int seconds) throws InterruptedException, ExecutionException {
+		final Deque<CompletableFuture<MatrixWrapper>>	window = new ArrayDeque<>();
+
+		for(int index = 0; index < 500; index++) {	// Warm up
+			stream.submit(source).get();
+		}
+		final long	end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		long		calls = 0;
+
+		while (System.nanoTime() < end) {	// Keeps window of vectors in flight
+			if (window.size() == WINDOW) {
+				window.removeFirst().get();
+				calls++;
+			}
+			window.addLast(stream.submit(source));
+		}
+		for(CompletableFuture<MatrixWrapper> item : window) {
+			item.get();
+		}
+		return calls / (double)seconds;
+	}
+}
@@ -0,0 +1,170 @@
+package chav1961.nn.utils;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import chav1961.nn.api.interfaces.MatrixClass;
+
+class ContainerFormat {
+	static final int	FILE_MAGIC = 0x4E4E4D43;	// "NNMC"
+	static final int	ENTRY_MAGIC = 0x4E4E4D45;	// "NNME"
+	static final int	COMPRESSED_ENTRY_MAGIC = 0x4E4E4D5A;	// "NNMZ"
+	static final int	INDEX_MAGIC = 0x4E4E4D49;	// "NNMI"
+	static final short	VERSION = 1;
+	static final int	FILE_HEADER_SIZE = Integer.BYTES + 2 * Short.BYTES;
+	static final int	TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+	static final int	CHUNK_HEADER_SIZE = Integer.BYTES;
+	static final int	CHUNK_TRAILER_SIZE = Integer.BYTES;
+	static final int	MAX_STRING_LENGTH = Short.MAX_VALUE;
+
+	private ContainerFormat() {
+	}
+
+	static int crc(final ByteBuffer buffer) {
+		final CRC32C	crc = new CRC32C();
+
+		crc.update(buffer.duplicate());
+		return (int)crc.getValue();
+	}
+
+	static void putString(final ByteBuffer buffer, final String value) {
+		final byte[]	content = value.getBytes(StandardCharsets.UTF_8);
+
+		buffer.putShort((short)content.length).put(content);
+	}
+
+	static String getString(final ByteBuffer buffer) throws IOException {
+		final int	length = buffer.getShort();
+
+		if (length < 0) {
+			throw new IOException("Illegal string length ["+length+"] in the container");
+		}
+		else if (length > buffer.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		else {
+			final byte[]	content = new byte[length];
+
+			buffer.get(content);
+			return new String(content, StandardCharsets.UTF_8);
+		}
+	}
+
+	static int sizeOf(final String value) {
+		return Short.BYTES + value.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	static byte toByte(final ByteOrder order) {
+		return (byte)(order == ByteOrder.BIG_ENDIAN ? 0 : 1);
+	}
+
+	static ByteOrder toOrder(final byte order) throws IOException {
+		switch (order) {
+			case 0	: return ByteOrder.BIG_ENDIAN;
+			case 1	: return ByteOrder.LITTLE_ENDIAN;
+			default : throw new IOException("Illegal byte order ["+order+"] in the container");
+		}
+	}
+
+	static boolean isRowMajor(final MatrixClass clazz) {	// Serialized content of these classes is a plain row-major array
+		switch (clazz) {
+			case FLOAT_ARRAY : case FLOAT2_ARRAY : case FLOAT_FLAT2 : case FLOAT_BUFFER2 : case FLOAT_BATCH2 : case FLOAT_BATCH3 :
+			case DOUBLE_ARRAY : case DOUBLE2_ARRAY : case DOUBLE_FLAT2 : case DOUBLE_BUFFER2 :
+			case HALF_FLAT2 : case BFLOAT16_FLAT2 :
+				return true;
+			default :
+				return false;
+		}
+	}
+
+	static int elementSize(final MatrixClass clazz) {
+		return clazz.storageClass() == double.class ? Double.BYTES : (clazz.storageClass() == short.class ? Short.BYTES : Float.BYTES);
+	}
+
+	static int rowSize(final MatrixClass clazz, final int[] dimensions) {
+		int	size = elementSize(clazz);
+
+		for(int index = 1; index < dimensions.length; index++) {
+			size *= dimensions[index];
+		}
+		return size;
+	}
+
+	static byte[] shuffle(final byte[] content, final int from, final int length, final int elementSize) {
+		final byte[]	result = new byte[length];
+		final int		elements = length / elementSize;
+
+		for(int element = 0, source = from; element < elements; element++) {
+			for(int item = 0, target = element; item < elementSize; item++, target += elements) {
+				result[target] = content[source++];
+			}
+		}
+		return result;
+	}
+
+	static void unshuffle(final byte[] content, final byte[] target, int to, final int elementSize) {
+		final int		elements = content.length / elementSize;
+
+		for(int element = 0; element < elements; element++) {
+			for(int item = 0, source = element; item < elementSize; item++, source += elements) {
+				target[to++] = content[source];
+			}
+		}
+	}
+
+	static byte[] deflate(final byte[] content) {
+		final Deflater	deflater = new Deflater();
+
+		try {
+			byte[]	buffer = new byte[content.length / 2 + 64];
+			int		length = 0;
+
+			deflater.setInput(content);
+			deflater.finish();
+			while (!deflater.finished()) {
+				if (length == buffer.length) {
+					buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+				}
+				length += deflater.deflate(buffer, length, buffer.length - length);
+			}
+			return Arrays.copyOf(buffer, length);
+		} finally {
+			deflater.end();
+		}
+	}
+
+	static byte[] inflate(final byte[] content, final int length) throws IOException {
+		final Inflater	inflater = new Inflater();
+
+		try {
+			final byte[]	result = new byte[length];
+			int				count = 0;
+
+			inflater.setInput(content);
+			while (count < length && !inflater.finished()) {
+				final int	step = inflater.inflate(result, count, length - count);
+
+				if (step == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				count += step;
+			}
+			if (count != length || !inflater.finished()) {
+				throw new IOException("Inflated block size differs from the declared one ["+length+"]");
+			}
+			return result;
+		} catch (DataFormatException exc) {
+			throw new IOException(exc.getLocalizedMessage(), exc);
+		} finally {
+			inflater.end();
+		}
+	}
+}
@@ -0,0 +1,475 @@
+package chav1961.nn.utils;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+
+public class MatrixContainerReader implements Closeable {
+	private static final int	HEADER_PROBE_SIZE = 512;
+
+	private final FileChannel			channel;
+	private final Map<String, long[]>	index = new LinkedHashMap<>();
+	private final long					indexOffset;
+	private boolean						closed = false;
+
+	public MatrixContainerReader(final FileChannel channel) throws IOException, NullPointerException {
+		if (channel == null) {
+			throw new NullPointerException("File channel can't be null");
+		}
+		else {
+			final long	size = channel.size();
+
+			this.channel = channel;
+			if (size < ContainerFormat.FILE_HEADER_SIZE + ContainerFormat.TRAILER_SIZE) {
+				throw new IOException("Container is too short ["+size+"] bytes");
+			}
+			else {
+				final ByteBuffer	header = readAt(0, ContainerFormat.FILE_HEADER_SIZE);
+				final ByteBuffer	trailer = readAt(size - ContainerFormat.TRAILER_SIZE, ContainerFormat.TRAILER_SIZE);
+
+				if (header.getInt() != ContainerFormat.FILE_MAGIC) {
+					throw new IOException("Illegal container magic");
+				}
+				else if (header.getShort() != ContainerFormat.VERSION) {
+					throw new IOException("Unsupported container version");
+				}
+				this.indexOffset = trailer.getLong();
+				if (trailer.getInt() != ContainerFormat.FILE_MAGIC) {
+					throw new IOException("Illegal container trailer, file is probably truncated");
+				}
+				else if (indexOffset < ContainerFormat.FILE_HEADER_SIZE || indexOffset > size - ContainerFormat.TRAILER_SIZE - 3 * Integer.BYTES) {
+					throw new IOException("Illegal index offset ["+indexOffset+"] in the container");
+				}
+				else {
+					final ByteBuffer	content = readAt(indexOffset, (int)(size - ContainerFormat.TRAILER_SIZE - indexOffset));
+					final int			crc = content.getInt(content.limit() - Integer.BYTES);
+
+					content.limit(content.limit() - Integer.BYTES);
+					if (ContainerFormat.crc(content) != crc) {
+						throw new IOException("Container index is corrupted (CRC mismatch)");
+					}
+					else if (content.getInt() != ContainerFormat.INDEX_MAGIC) {
+						throw new IOException("Illegal index magic in the container");
+					}
+					else {
+						try {
+							for(int item = 0, maxItem = content.getInt(); item < maxItem; item++) {
+								final String	name = ContainerFormat.getString(content);
+								final long		offset = content.getLong(), payloadSize = content.getLong();
+
+								if (offset < ContainerFormat.FILE_HEADER_SIZE || offset >= indexOffset || payloadSize < 0) {
+									throw new IOException("Illegal index entry for matrix ["+name+"]");
+								}
+								else {
+									index.put(name, new long[] {offset, payloadSize});
+								}
+							}
+						} catch (BufferUnderflowException exc) {
+							throw new IOException("Container index is truncated");
+						}
+					}
+				}
+			}
+		}
+	}
+
+	public Set<String> names() {
+		return Collections.unmodifiableSet(index.keySet());
+	}
+
+	public boolean contains(final String name) {
+		if (name == null || name.isEmpty()) {
+			throw new IllegalArgumentException("Matrix name can't be null or empty");
+		}
+		else {
+			return index.containsKey(name);
+		}
+	}
+
+	public long getPayloadSize(final String name) {
+		if (!contains(name)) {
+			throw new IllegalArgumentException("Matrix name ["+name+"] is not exists in the container");
+		}
+		else {
+			return index.get(name)[1];
+		}
+	}
+
+	public MatrixWrapper read(final String name) throws IOException {
+		if (!contains(name)) {
+			throw new IllegalArgumentException("Matrix name ["+name+"] is not exists in the container");
+		}
+		else if (closed) {
+			throw new IllegalStateException("Container reader is closed");
+		}
+		else {
+			final long		offset = index.get(name)[0];
+			final Entry		entry = readEntry(name, offset);
+			
+			if (entry.compressed) {
+				return decompress(name, entry, 0, entry.dimensions[0]);
+			}
+			final ChunkChannel	chunks = new ChunkChannel(name, entry.payloadOffset, entry.chunkSize);
+			final MatrixWrapper	result;
+
+			try {
+				result = MatrixWrapper.download(chunks, entry.order, entry.clazz, entry.dimensions);
+			} catch (IOException | RuntimeException exc) {
+				chunks.validate();	// CRC mismatch is more informative than the exception itself
+				throw exc;
+			}
+			try {
+				chunks.complete();
+				chunks.validate();
+				return result;
+			} catch (IOException | RuntimeException exc) {
+				if (result instanceof CloseableMatrixWrapper) {
+					((CloseableMatrixWrapper)result).close();
+				}
+				throw exc;
+			}
+		}
+	}
+
+	public MatrixWrapper readRows(final String name, final int from, final int to) throws IOException {
+		if (!contains(name)) {
+			throw new IllegalArgumentException("Matrix name ["+name+"] is not exists in the container");
+		}
+		else if (closed) {
+			throw new IllegalStateException("Container reader is closed");
+		}
+		else {
+			final Entry		entry = readEntry(name, index.get(name)[0]);
+			
+			if (!entry.compressed) {
+				throw new IllegalArgumentException("Matrix ["+name+"] is not compressed, row ranges can be read from compressed matrices only");
+			}
+			else if (from < 0 || from >= to || to > entry.dimensions[0]) {
+				throw new IllegalArgumentException("Illegal row range ["+from+".."+to+"), must be inside [0.."+entry.dimensions[0]+")");
+			}
+			else {
+				return decompress(name, entry, from, to);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {	// Doesn't close the channel
+		closed = true;
+	}
+
+	private Entry readEntry(final String name, final long offset) throws IOException {
+		int		probe = HEADER_PROBE_SIZE;
+
+		for (;;) {
+			final int			size = (int)Math.min(probe, indexOffset - offset);
+			final ByteBuffer	buffer = readAt(offset, size);
+
+			try {
+				final int	magic = buffer.getInt();
+				
+				if (magic != ContainerFormat.ENTRY_MAGIC && magic != ContainerFormat.COMPRESSED_ENTRY_MAGIC) {
+					throw new IOException("Illegal entry magic for matrix ["+name+"]");
+				}
+				else if (!name.equals(ContainerFormat.getString(buffer))) {
+					throw new IOException("Entry name for matrix ["+name+"] differs from the index");
+				}
+				else {
+					final String		clazzName = ContainerFormat.getString(buffer);
+					final ByteOrder		order = ContainerFormat.toOrder(buffer.get());
+					final String		dtype = ContainerFormat.getString(buffer);
+					final int[]			dimensions = new int[buffer.get()];
+
+					for(int index = 0; index < dimensions.length; index++) {
+						dimensions[index] = buffer.getInt();
+					}
+					final int			chunkSize = buffer.getInt();
+					final int			blockCount = magic == ContainerFormat.COMPRESSED_ENTRY_MAGIC ? buffer.getInt() : 0;
+
+					if (blockCount < 0) {
+						throw new IOException("Illegal number of blocks ["+blockCount+"] for matrix ["+name+"]");
+					}
+					else if (blockCount > buffer.remaining() / (3 * Integer.BYTES)) {
+						throw new BufferUnderflowException();
+					}
+					final int[][]		blocks = new int[blockCount][];
+
+					for(int index = 0; index < blocks.length; index++) {
+						blocks[index] = new int[] {buffer.getInt(), buffer.getInt(), buffer.getInt()};
+					}
+					final int			headerSize = buffer.position();
+					final int			crc = buffer.getInt();
+
+					buffer.flip().limit(headerSize);
+					if (ContainerFormat.crc(buffer) != crc) {
+						throw new IOException("Entry header for matrix ["+name+"] is corrupted (CRC mismatch)");
+					}
+					else {
+						final MatrixClass	clazz;
+
+						try {
+							clazz = MatrixClass.valueOf(clazzName);
+						} catch (IllegalArgumentException exc) {
+							throw new IOException("Unsupported matrix class ["+clazzName+"] for matrix ["+name+"]");
+						}
+						if (!clazz.storageClass().getName().equals(dtype)) {
+							throw new IOException("Data type ["+dtype+"] is not compatible with matrix class ["+clazz+"] for matrix ["+name+"]");
+						}
+						else if (dimensions.length != clazz.numberOfDimensions()) {
+							throw new IOException("Illegal number of dimensions ["+dimensions.length+"] for matrix ["+name+"]");
+						}
+						else if (chunkSize <= 0) {
+							throw new IOException("Illegal chunk or block size ["+chunkSize+"] for matrix ["+name+"]");
+						}
+						else if (magic == ContainerFormat.COMPRESSED_ENTRY_MAGIC && (!ContainerFormat.isRowMajor(clazz) || blocks.length != (dimensions[0] + chunkSize - 1) / chunkSize)) {
+							throw new IOException("Illegal compressed block layout for matrix ["+name+"]");
+						}
+						else {
+							return new Entry(clazz, order, dimensions, chunkSize, blocks, offset + headerSize + Integer.BYTES);
+						}
+					}
+				}
+			} catch (BufferUnderflowException exc) {
+				if (size == indexOffset - offset) {
+					throw new IOException("Entry header for matrix ["+name+"] is truncated");
+				}
+				else {
+					probe *= 2;
+				}
+			}
+		}
+	}
+
+	private MatrixWrapper decompress(final String name, final Entry entry, final int from, final int to) throws IOException {
+		final int		rowSize = ContainerFormat.rowSize(entry.clazz, entry.dimensions);
+		final int		elementSize = ContainerFormat.elementSize(entry.clazz);
+		final int		firstBlock = from / entry.chunkSize, lastBlock = (to - 1) / entry.chunkSize;
+		final byte[]	content = new byte[rowSize * (to - from)];
+		final List<Future<?>>	tasks = new ArrayList<>();
+
+		for(int block = firstBlock; block <= lastBlock; block++) {	// Only blocks containing the rows required are inflated, all in parallel
+			final int	current = block, blockFrom = block * entry.chunkSize;
+			final int	rowFrom = Math.max(from, blockFrom), rowTo = Math.min(to, blockFrom + entry.chunkSize);
+
+			tasks.add(ForkJoinPool.commonPool().submit(()->{
+				final int[]			descriptor = entry.blocks[current];
+				final ByteBuffer	packed = readAt(entry.blockOffsets[current], descriptor[1]);
+
+				if (ContainerFormat.crc(packed) != descriptor[2]) {
+					throw new IOException("Block ["+current+"] of matrix ["+name+"] is corrupted (CRC mismatch)");
+				}
+				else if (descriptor[0] != rowSize * (Math.min(entry.dimensions[0], blockFrom + entry.chunkSize) - blockFrom)) {
+					throw new IOException("Illegal raw size ["+descriptor[0]+"] of block ["+current+"] of matrix ["+name+"]");
+				}
+				else {
+					final byte[]	raw = new byte[descriptor[0]];
+
+					ContainerFormat.unshuffle(ContainerFormat.inflate(packed.array(), descriptor[0]), raw, 0, elementSize);
+					System.arraycopy(raw, (rowFrom - blockFrom) * rowSize, content, (rowFrom - from) * rowSize, (rowTo - rowFrom) * rowSize);
+					return null;
+				}
+			}));
+		}
+		for(Future<?> item : tasks) {
+			try {
+				item.get();
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Decompression of matrix ["+name+"] was interrupted", exc);
+			} catch (ExecutionException exc) {
+				if (exc.getCause() instanceof IOException) {
+					throw (IOException)exc.getCause();
+				}
+				else {
+					throw new IOException(exc.getCause().getLocalizedMessage(), exc.getCause());
+				}
+			}
+		}
+		final int[]		dimensions = entry.dimensions.clone();
+
+		dimensions[0] = to - from;
+		return MatrixWrapper.download(new ReadableByteChannel() {
+			final ByteBuffer	source = ByteBuffer.wrap(content);
+			
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() throws IOException {
+			}
+
+			@Override
+			public int read(final ByteBuffer dst) throws IOException {
+				if (!source.hasRemaining()) {
+					return -1;
+				}
+				else {
+					final int	count = Math.min(dst.remaining(), source.remaining());
+					final int	limit = source.limit();
+
+					source.limit(source.position() + count);
+					dst.put(source);
+					source.limit(limit);
+					return count;
+				}
+			}
+		}, entry.order, entry.clazz, dimensions);
+	}
+
+	private ByteBuffer readAt(long position, final int size) throws IOException {
+		final ByteBuffer	buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			final int	count = channel.read(buffer, position);
+
+			if (count < 0) {
+				throw new EOFException("Unexpected end of container");
+			}
+			else {
+				position += count;
+			}
+		}
+		return buffer.flip();
+	}
+
+	private static class Entry {
+		private final MatrixClass	clazz;
+		private final ByteOrder		order;
+		private final int[]			dimensions;
+		private final int			chunkSize;		// Rows per block for compressed entries
+		private final boolean		compressed;
+		private final int[][]		blocks;			// Raw length, compressed length and CRC of every compressed block
+		private final long[]		blockOffsets;
+		private final long			payloadOffset;
+
+		private Entry(final MatrixClass clazz, final ByteOrder order, final int[] dimensions, final int chunkSize, final int[][] blocks, final long payloadOffset) {
+			this.clazz = clazz;
+			this.order = order;
+			this.dimensions = dimensions;
+			this.chunkSize = chunkSize;
+			this.compressed = blocks.length > 0;
+			this.blocks = blocks;
+			this.blockOffsets = new long[blocks.length];
+			this.payloadOffset = payloadOffset;
+			
+			long	position = payloadOffset;
+			
+			for(int index = 0; index < blocks.length; index++) {
+				blockOffsets[index] = position;
+				position += blocks[index][1];
+			}
+		}
+	}
+
+	private class ChunkChannel implements ReadableByteChannel {
+		private final String				name;
+		private final int					chunkSize;
+		private final List<Future<Boolean>>	checks = new ArrayList<>();
+		private long						position;
+		private ByteBuffer					chunk = ByteBuffer.allocate(0);
+		private boolean						terminated = false;
+
+		private ChunkChannel(final String name, final long position, final int chunkSize) {
+			this.name = name;
+			this.position = position;
+			this.chunkSize = chunkSize;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+		}
+
+		@Override
+		public int read(final ByteBuffer dst) throws IOException {
+			if (!chunk.hasRemaining() && !nextChunk()) {
+				return -1;
+			}
+			else {
+				final int	count = Math.min(dst.remaining(), chunk.remaining());
+				final int	limit = chunk.limit();
+
+				chunk.limit(chunk.position() + count);
+				dst.put(chunk);
+				chunk.limit(limit);
+				return count;
+			}
+		}
+
+		private boolean nextChunk() throws IOException {
+			if (terminated) {
+				return false;
+			}
+			else {
+				final int	length = readAt(position, ContainerFormat.CHUNK_HEADER_SIZE).getInt();
+
+				if (length == 0) {
+					position += ContainerFormat.CHUNK_HEADER_SIZE;
+					terminated = true;
+					return false;
+				}
+				else if (length < 0 || length > chunkSize || position + ContainerFormat.CHUNK_HEADER_SIZE + length + ContainerFormat.CHUNK_TRAILER_SIZE > indexOffset) {
+					throw new IOException("Illegal chunk length ["+length+"] in the chunk ["+checks.size()+"] of matrix ["+name+"]");
+				}
+				else {
+					final ByteBuffer	content = readAt(position + ContainerFormat.CHUNK_HEADER_SIZE, length + ContainerFormat.CHUNK_TRAILER_SIZE);
+					final int			crc = content.getInt(length);
+
+					content.limit(length);
+
+					final ByteBuffer	payload = content.duplicate();	// Decoding moves position of the content
+					
+					checks.add(ForkJoinPool.commonPool().submit(()->ContainerFormat.crc(payload) == crc));	// Validation runs in parallel with decoding
+					position += ContainerFormat.CHUNK_HEADER_SIZE + length + ContainerFormat.CHUNK_TRAILER_SIZE;
+					chunk = content;
+					return true;
+				}
+			}
+		}
+
+		private void complete() throws IOException {
+			if (chunk.hasRemaining() || nextChunk()) {
+				throw new IOException("Matrix ["+name+"] content is longer than its declared dimensions");
+			}
+		}
+
+		private void validate() throws IOException {
+			for(int index = 0; index < checks.size(); index++) {
+				try {
+					if (!checks.get(index).get()) {
+						throw new IOException("Chunk ["+index+"] of matrix ["+name+"] is corrupted (CRC mismatch)");
+					}
+				} catch (InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Validation of matrix ["+name+"] was interrupted", exc);
+				} catch (ExecutionException exc) {
+					throw new IOException(exc.getCause().getLocalizedMessage(), exc.getCause());
+				}
+			}
+		}
+	}
+}
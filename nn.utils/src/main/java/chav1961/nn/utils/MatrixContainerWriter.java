@@ -0,0 +1,286 @@
+package chav1961.nn.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+
+public class MatrixContainerWriter implements Closeable {
+	public static final int		DEFAULT_CHUNK_SIZE = 1 << 20;
+	public static final int		DEFAULT_BLOCK_SIZE = 1 << 18;
+
+	private final WritableByteChannel	channel;
+	private final ByteOrder				order;
+	private final int					chunkSize;
+	private final Map<String, long[]>	index = new LinkedHashMap<>();
+	private long						position = 0;
+	private boolean						closed = false;
+
+	public MatrixContainerWriter(final WritableByteChannel channel) throws IOException, NullPointerException {
+		this(channel, ByteOrder.nativeOrder(), DEFAULT_CHUNK_SIZE);
+	}
+
+	public MatrixContainerWriter(final WritableByteChannel channel, final ByteOrder order, final int chunkSize) throws IOException, NullPointerException, IllegalArgumentException {
+		if (channel == null) {
+			throw new NullPointerException("Output channel can't be null");
+		}
+		else if (order == null) {
+			throw new NullPointerException("Byte order can't be null");
+		}
+		else if (chunkSize < Double.BYTES) {
+			throw new IllegalArgumentException("Chunk size ["+chunkSize+"] must be at least ["+Double.BYTES+"]");
+		}
+		else {
+			final ByteBuffer	header = ByteBuffer.allocate(ContainerFormat.FILE_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+
+			this.channel = channel;
+			this.order = order;
+			this.chunkSize = chunkSize;
+			header.putInt(ContainerFormat.FILE_MAGIC).putShort(ContainerFormat.VERSION).putShort((short)0).flip();
+			write(header);
+		}
+	}
+
+	public void write(final String name, final MatrixWrapper matrix) throws IOException, NullPointerException, IllegalArgumentException {
+		checkEntry(name, matrix);
+
+		final long			offset = position;
+		final int[]			dimensions = matrix.getDimensions();
+		final ByteBuffer	header = entryHeader(ContainerFormat.ENTRY_MAGIC, name, matrix.getMatrixClass(), dimensions, Integer.BYTES);
+
+		header.putInt(chunkSize);
+		write(sealHeader(header));
+
+		final ChunkChannel	chunks = new ChunkChannel();
+
+		matrix.upload(chunks, order);
+		chunks.close();
+		index.put(name, new long[] {offset, chunks.size});
+	}
+
+	public void writeCompressed(final String name, final MatrixWrapper matrix) throws IOException, NullPointerException, IllegalArgumentException {
+		checkEntry(name, matrix);
+		writeCompressed(name, matrix, Math.max(1, DEFAULT_BLOCK_SIZE / Math.max(1, ContainerFormat.rowSize(matrix.getMatrixClass(), matrix.getDimensions()))));
+	}
+
+	public void writeCompressed(final String name, final MatrixWrapper matrix, final int rowsPerBlock) throws IOException, NullPointerException, IllegalArgumentException {
+		checkEntry(name, matrix);
+		if (!ContainerFormat.isRowMajor(matrix.getMatrixClass())) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] can't be compressed, only dense row-major matrices are supported");
+		}
+		else if (rowsPerBlock <= 0) {
+			throw new IllegalArgumentException("Rows per block ["+rowsPerBlock+"] must be greater than 0");
+		}
+		else {
+			final long		offset = position;
+			final int[]		dimensions = matrix.getDimensions();
+			final int		elementSize = ContainerFormat.elementSize(matrix.getMatrixClass());
+			final long		rowSize = ContainerFormat.rowSize(matrix.getMatrixClass(), dimensions);
+			final byte[]	raw = serialize(matrix);
+			final int		blocks = (dimensions[0] + rowsPerBlock - 1) / rowsPerBlock;
+			final List<Future<byte[]>>	packed = new ArrayList<>();
+
+			for(int block = 0; block < blocks; block++) {	// Blocks are independent, so they are shuffled and deflated in parallel
+				final int	from = (int)(rowSize * block * rowsPerBlock), length = (int)(rowSize * Math.min(rowsPerBlock, dimensions[0] - block * rowsPerBlock));
+
+				packed.add(ForkJoinPool.commonPool().submit(()->ContainerFormat.deflate(ContainerFormat.shuffle(raw, from, length, elementSize))));
+			}
+			final byte[][]		content = new byte[blocks][];
+			final ByteBuffer	header = entryHeader(ContainerFormat.COMPRESSED_ENTRY_MAGIC, name, matrix.getMatrixClass(), dimensions, 2 * Integer.BYTES + 3 * Integer.BYTES * blocks);
+
+			header.putInt(rowsPerBlock).putInt(blocks);
+			try {
+				for(int block = 0; block < blocks; block++) {
+					content[block] = packed.get(block).get();
+					header.putInt((int)(rowSize * Math.min(rowsPerBlock, dimensions[0] - block * rowsPerBlock))).putInt(content[block].length).putInt(ContainerFormat.crc(ByteBuffer.wrap(content[block])));
+				}
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Compression of matrix ["+name+"] was interrupted", exc);
+			} catch (ExecutionException exc) {
+				throw new IOException(exc.getCause().getLocalizedMessage(), exc.getCause());
+			}
+			write(sealHeader(header));
+			for(byte[] item : content) {
+				write(ByteBuffer.wrap(item));
+			}
+			index.put(name, new long[] {offset, raw.length});
+		}
+	}
+
+	@Override
+	public void close() throws IOException {	// Writes index and trailer, but doesn't close the channel
+		if (!closed) {
+			int	size = 3 * Integer.BYTES;
+
+			for(String item : index.keySet()) {
+				size += ContainerFormat.sizeOf(item) + 2 * Long.BYTES;
+			}
+			final ByteBuffer	buffer = ByteBuffer.allocate(size + ContainerFormat.TRAILER_SIZE).order(ByteOrder.BIG_ENDIAN);
+			final long			indexOffset = position;
+
+			buffer.putInt(ContainerFormat.INDEX_MAGIC).putInt(index.size());
+			for(Map.Entry<String, long[]> item : index.entrySet()) {
+				ContainerFormat.putString(buffer, item.getKey());
+				buffer.putLong(item.getValue()[0]).putLong(item.getValue()[1]);
+			}
+			buffer.flip();
+
+			final int	crc = ContainerFormat.crc(buffer);
+
+			buffer.limit(buffer.capacity()).position(size - Integer.BYTES);
+			buffer.putInt(crc).putLong(indexOffset).putInt(ContainerFormat.FILE_MAGIC).flip();
+			write(buffer);
+			closed = true;
+		}
+	}
+
+	private void checkEntry(final String name, final MatrixWrapper matrix) {
+		if (name == null || name.isEmpty() || ContainerFormat.sizeOf(name) > ContainerFormat.MAX_STRING_LENGTH) {
+			throw new IllegalArgumentException("Matrix name can't be null, empty or too long");
+		}
+		else if (matrix == null) {
+			throw new NullPointerException("Matrix to write can't be null");
+		}
+		else if (index.containsKey(name)) {
+			throw new IllegalArgumentException("Duplicate matrix name ["+name+"]");
+		}
+		else if (closed) {
+			throw new IllegalStateException("Container writer is closed");
+		}
+	}
+
+	private ByteBuffer entryHeader(final int magic, final String name, final MatrixClass clazz, final int[] dimensions, final int extraSize) {
+		final String		dtype = clazz.storageClass().getName();
+		final ByteBuffer	header = ByteBuffer.allocate(Integer.BYTES + ContainerFormat.sizeOf(name) + ContainerFormat.sizeOf(clazz.name()) + 2 * Byte.BYTES + ContainerFormat.sizeOf(dtype) + Integer.BYTES * dimensions.length + extraSize + Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+
+		header.putInt(magic);
+		ContainerFormat.putString(header, name);
+		ContainerFormat.putString(header, clazz.name());
+		header.put(ContainerFormat.toByte(order));
+		ContainerFormat.putString(header, dtype);
+		header.put((byte)dimensions.length);
+		for(int item : dimensions) {
+			header.putInt(item);
+		}
+		return header;
+	}
+
+	private static ByteBuffer sealHeader(final ByteBuffer header) {	// Appends CRC of the header content
+		header.flip();
+
+		final int	crc = ContainerFormat.crc(header);
+
+		header.limit(header.capacity()).position(header.capacity() - Integer.BYTES);
+		return header.putInt(crc).flip();
+	}
+
+	private byte[] serialize(final MatrixWrapper matrix) throws IOException {
+		final long	size = MatrixWrapper.sizeOf(matrix.getMatrixClass(), matrix.getDimensions());
+
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Matrix is too large ["+size+"] to be compressed");
+		}
+		else {
+			final ByteBuffer	buffer = ByteBuffer.allocate((int)size);
+
+			matrix.upload(new WritableByteChannel() {
+				@Override
+				public boolean isOpen() {
+					return true;
+				}
+				
+				@Override
+				public void close() throws IOException {
+				}
+				
+				@Override
+				public int write(final ByteBuffer src) throws IOException {
+					final int	count = src.remaining();
+					
+					buffer.put(src);
+					return count;
+				}
+			}, order);
+			return buffer.array();
+		}
+	}
+
+	private void write(final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer);
+		}
+	}
+
+	private class ChunkChannel implements WritableByteChannel {
+		private final ByteBuffer	chunk = ByteBuffer.allocate(ContainerFormat.CHUNK_HEADER_SIZE + chunkSize + ContainerFormat.CHUNK_TRAILER_SIZE).order(ByteOrder.BIG_ENDIAN);
+		private long				size = 0;
+		private boolean				open = true;
+
+		private ChunkChannel() {
+			chunk.position(ContainerFormat.CHUNK_HEADER_SIZE);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+			final int	total = src.remaining();
+
+			while (src.hasRemaining()) {
+				final int	count = Math.min(src.remaining(), ContainerFormat.CHUNK_HEADER_SIZE + chunkSize - chunk.position());
+				final int	limit = src.limit();
+
+				src.limit(src.position() + count);
+				chunk.put(src);
+				src.limit(limit);
+				if (chunk.position() == ContainerFormat.CHUNK_HEADER_SIZE + chunkSize) {
+					flushChunk();
+				}
+			}
+			size += total;
+			return total;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (open) {
+				if (chunk.position() > ContainerFormat.CHUNK_HEADER_SIZE) {
+					flushChunk();
+				}
+				final ByteBuffer	terminator = ByteBuffer.allocate(ContainerFormat.CHUNK_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+
+				terminator.putInt(0).flip();	// Empty chunk terminates matrix content
+				MatrixContainerWriter.this.write(terminator);
+				open = false;
+			}
+		}
+
+		private void flushChunk() throws IOException {
+			final int	length = chunk.position() - ContainerFormat.CHUNK_HEADER_SIZE;
+
+			chunk.flip().position(ContainerFormat.CHUNK_HEADER_SIZE);
+
+			final int	crc = ContainerFormat.crc(chunk);
+
+			chunk.limit(chunk.capacity()).position(ContainerFormat.CHUNK_HEADER_SIZE + length);
+			chunk.putInt(crc).putInt(0, length).flip();
+			MatrixContainerWriter.this.write(chunk);
+			chunk.clear().position(ContainerFormat.CHUNK_HEADER_SIZE);
+		}
+	}
+}
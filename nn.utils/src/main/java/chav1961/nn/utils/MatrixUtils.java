@@ -1,17 +1,24 @@
 package chav1961.nn.utils;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.Future;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 
+import chav1961.nn.api.HalfPrecision;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.CsrContent;
+import chav1961.nn.api.interfaces.MatrixClass;
 import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.QuantizedContent;
+import chav1961.nn.api.interfaces.SparseContent;
+import chav1961.nn.api.interfaces.WorkerTeam;
 import chav1961.purelib.basic.exceptions.CalculationException;
-import chav1961.purelib.cdb.CompilerUtils;
 import chav1961.purelib.sql.util.Temp;
 
 public class MatrixUtils {
-	private MatrixUtils() {
-		
+	private final CalculationPrecision	precision;
+	
+	private MatrixUtils(final CalculationPrecision precision) {
+		this.precision = precision;
 	}
 
 	public MatrixWrapper multiplyVectorAndMatrix(final MatrixWrapper vector, final MatrixWrapper matrix) throws CalculationException {
@@ -40,99 +47,612 @@ public class MatrixUtils {
 		else if (parallelism <= 0) {
 			throw new IllegalArgumentException("Parallelism ["+parallelism+"] must be greater than 0");
 		}
+		else if (vector.getMatrixClass() == MatrixClass.FLOAT_SPARSE) {
+			final SparseContent	sparse = vector.getContent();
+			
+			switch (matrix.getMatrixClass()) {
+				case FLOAT2_ARRAY	:
+					return MatrixWrapper.of(multiplySparseVectorAndMatrix(sparse.getIndices(), sparse.getValues(), (float[][])matrix.getContent(), precision, parallelism));
+				case FLOAT_FLAT2	:
+					return MatrixWrapper.of(multiplySparseVectorAndMatrix(sparse.getIndices(), sparse.getValues(), (float[])matrix.getContent(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), precision, parallelism));
+				case FLOAT_BUFFER2	:
+					return MatrixWrapper.of(multiplySparseVectorAndMatrix(sparse.getIndices(), sparse.getValues(), (FloatBuffer)matrix.getContent(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), precision, parallelism));
+				default :
+					throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported for sparse vectors");
+			}
+		}
 		else {
-			switch (CompilerUtils.defineClassType(vector.getMatrixClass().contentClass())) {
-				case CompilerUtils.CLASSTYPE_FLOAT 	:
-					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), (float[][])matrix.getContent(), parallelism));
-				case CompilerUtils.CLASSTYPE_DOUBLE :
+			switch (matrix.getMatrixClass()) {
+				case FLOAT2_ARRAY	:
+					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), (float[][])matrix.getContent(), precision, parallelism));
+				case FLOAT_FLAT2	:
+					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), (float[])matrix.getContent(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), precision, parallelism));
+				case FLOAT_BUFFER2	:
+					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), (FloatBuffer)matrix.getContent(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), precision, parallelism));
+				case HALF_FLAT2		:
+				case BFLOAT16_FLAT2	:
+					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), (short[])matrix.getContent(), matrix.getMatrixClass(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), precision, parallelism));
+				case FLOAT_CSR2		:
+					final CsrContent	csr = matrix.getContent();
+					
+					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), csr.getRowPointers(), csr.getColumnIndices(), csr.getValues(), matrix.getDimensions()[1], precision, parallelism));
+				case INT8_ROW_FLAT2		:
+				case INT8_COLUMN_FLAT2	:
+					final QuantizedContent	quantized = matrix.getContent();
+					
+					return MatrixWrapper.of(multiplyFloatVectorAndMatrix((float[])vector.getContent(), quantized.getValues(), quantized.getScales(), matrix.getMatrixClass() == MatrixClass.INT8_ROW_FLAT2, matrix.getDimensions()[1], matrix.getRowStride(), precision, parallelism));
+				case DOUBLE2_ARRAY	:
 					return MatrixWrapper.of(multiplyDoubleVectorAndMatrix((double[])vector.getContent(), (double[][])matrix.getContent(), parallelism));
+				case DOUBLE_FLAT2	:
+					return MatrixWrapper.of(multiplyDoubleVectorAndMatrix((double[])vector.getContent(), (double[])matrix.getContent(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), parallelism));
+				case DOUBLE_BUFFER2	:
+					return MatrixWrapper.of(multiplyDoubleVectorAndMatrix((double[])vector.getContent(), (DoubleBuffer)matrix.getContent(), matrix.getOffset(), matrix.getDimensions()[1], matrix.getRowStride(), matrix.getColumnStride(), parallelism));
 				default :
-					throw new UnsupportedOperationException("Class type ["+vector.getMatrixClass().contentClass()+"] is not supported");
+					throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported");
 			}
 		}
 	}
 	
+	public MatrixWrapper multiplyMatrixAndVector(final MatrixWrapper matrix, final MatrixWrapper vector) throws CalculationException {
+		return multiplyMatrixAndVector(matrix, vector, Runtime.getRuntime().availableProcessors());
+	}	
+	
+	public MatrixWrapper multiplyMatrixAndVector(final MatrixWrapper matrix, final MatrixWrapper vector, final int parallelism) throws CalculationException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to process can't be null");
+		}
+		else if (matrix.getMatrixClass() != MatrixClass.FLOAT_CSR2) {
+			throw new UnsupportedOperationException("Matrix class ["+matrix.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_CSR2+"] can be used");
+		}
+		else if (vector == null) {
+			throw new NullPointerException("Vector to process can't be null");
+		}
+		else if (vector.getMatrixClass() != MatrixClass.FLOAT_ARRAY) {
+			throw new IllegalArgumentException("Vector class ["+vector.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_ARRAY+"] can be used");
+		}
+		else if (vector.getDimensions()[0] != matrix.getDimensions()[1]) {
+			throw new IllegalArgumentException("Vector size ["+vector.getDimensions()[0]+"] is not corresponding with matrix column size ["+matrix.getDimensions()[1]+"]");
+		}
+		else if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism ["+parallelism+"] must be greater than 0");
+		}
+		else {
+			final CsrContent	csr = matrix.getContent();
+			
+			return MatrixWrapper.of(multiplyFloatMatrixAndVector(csr.getRowPointers(), csr.getColumnIndices(), csr.getValues(), (float[])vector.getContent(), parallelism));
+		}
+	}
+
+	public MatrixWrapper multiplyMatrixAndMatrix(final MatrixWrapper left, final MatrixWrapper right) throws CalculationException {
+		return multiplyMatrixAndMatrix(left, right, Runtime.getRuntime().availableProcessors());
+	}	
+	
+	public MatrixWrapper multiplyMatrixAndMatrix(final MatrixWrapper left, final MatrixWrapper right, final int parallelism) throws CalculationException {
+		if (left == null) {
+			throw new NullPointerException("Left matrix to process can't be null");
+		}
+		else if (left.getMatrixClass() != MatrixClass.FLOAT_CSR2) {
+			throw new UnsupportedOperationException("Left matrix class ["+left.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_CSR2+"] can be used");
+		}
+		else if (right == null) {
+			throw new NullPointerException("Right matrix to process can't be null");
+		}
+		else if (right.getMatrixClass().contentClass() != float.class || right.getDimensions().length != 2) {
+			throw new IllegalArgumentException("Right matrix must be two-dimensional float matrix");
+		}
+		else if (left.getDimensions()[1] != right.getDimensions()[0]) {
+			throw new IllegalArgumentException("Left matrix column size ["+left.getDimensions()[1]+"] is not corresponding with right matrix row size ["+right.getDimensions()[0]+"]");
+		}
+		else if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism ["+parallelism+"] must be greater than 0");
+		}
+		else {
+			final CsrContent	csr = left.getContent();
+			final int			columns = right.getDimensions()[1];
+			
+			return MatrixWrapper.of(left.getDimensions()[0], columns, multiplyFloatMatrixAndMatrix(csr.getRowPointers(), csr.getColumnIndices(), csr.getValues(), (float[])MatrixWrapper.convert(right, MatrixClass.FLOAT_FLAT2).getContent(), columns, parallelism));
+		}
+	}
+	
 	public static MatrixUtils getDefaultInstance() {
-		return new MatrixUtils();
+		return new MatrixUtils(CalculationPrecision.QUICK);
+	}
+
+	public static MatrixUtils getInstance(final CalculationPrecision precision) {
+		if (precision == null) {
+			throw new NullPointerException("Calculation precision can't be null");
+		}
+		else {
+			return new MatrixUtils(precision);
+		}
+	}
+
+	public CalculationPrecision getPrecision() {
+		return precision;
 	}
 
 	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final float[][] matrix, final int parallelism) throws CalculationException {
+		return multiplyFloatVectorAndMatrix(vector, matrix, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final float[][] matrix, final CalculationPrecision precision, final int parallelism) throws CalculationException {
 		final float[]			result = new float[matrix[0].length];
 		final int				effectiveParellelism = Math.min(vector.length, parallelism); 
-		final Future<float[]>[]	subtasks = new Future[effectiveParellelism];
-		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	start = index;	// Prepare subtasks
-			
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-					()->{
-						final float[] temp = new float[matrix[0].length];
-						
-						for(int y = start, maxY = vector.length; y < maxY; y += effectiveParellelism) {
-							final float		val = vector[y];
-							final float[]	line = matrix[y];
-							
-							for(int x = 0, maxX = temp.length; x < maxX; x++) {
-								temp[x] += val*line[x];
-							}
-						}
-						return temp;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (start)->{
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[matrix[0].length], matrix[0].length);
+			
+			for(int y = start, maxY = vector.length; y < maxY; y += effectiveParellelism) {
+				final float[]	temp = accumulator.row();
+				final float		val = vector[y];
+				final float[]	line = matrix[y];
+				
+				for(int x = 0, maxX = temp.length; x < maxX; x++) {
+					temp[x] += val*line[x];
+				}
+			}
+			partial[start] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+	
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		return multiplyFloatVectorAndMatrix(vector, matrix, offset, columns, rowStride, columnStride, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		final int				effectiveParellelism = Math.min(vector.length, parallelism); 
+		final int				piece = (vector.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous row range
+			final int	to = Math.min(from + piece, vector.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+				final float[]	temp = accumulator.row();
+				final float		val = vector[y];
+				
+				if (columnStride == 1) {
+					for(int x = 0; x < columns; x++) {
+						temp[x] += val*matrix[base + x];
 					}
-				);
-		}		
-		for(Future<float[]> item : subtasks) {	// Await subtasks termination
-			try {
-				final float[]	temp = item.get();
+				}
+				else {
+					for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+						temp[x] += val*matrix[pos];
+					}
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+	
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		return multiplyFloatVectorAndMatrix(vector, matrix, offset, columns, rowStride, columnStride, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		final int				effectiveParellelism = Math.min(vector.length, parallelism); 
+		final int				piece = (vector.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous row range
+			final int	to = Math.min(from + piece, vector.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+				final float[]	temp = accumulator.row();
+				final float		val = vector[y];
 				
-				for(int index = 0; index < temp.length; index++) {
-					result[index] += temp[index];
+				for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+					temp[x] += val*matrix.get(pos);
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
 			}
 		}
 		return result;
 	}
 	
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final short[] matrix, final MatrixClass storage, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		return multiplyFloatVectorAndMatrix(vector, matrix, storage, offset, columns, rowStride, columnStride, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final short[] matrix, final MatrixClass storage, final int offset, final int columns, final int rowStride, final int columnStride, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		final boolean			bfloat16 = storage == MatrixClass.BFLOAT16_FLAT2;
+		final int				effectiveParellelism = Math.min(vector.length, parallelism); 
+		final int				piece = (vector.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous row range
+			final int	to = Math.min(from + piece, vector.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+				final float[]	temp = accumulator.row();
+				final float		val = vector[y];
+				
+				if (bfloat16) {	// Widen values to float on the fly, accumulate in float
+					for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+						temp[x] += val*Float.intBitsToFloat(matrix[pos] << 16);
+					}
+				}
+				else {
+					for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+						temp[x] += val*HalfPrecision.halfToFloat(matrix[pos]);
+					}
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+	
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final byte[] matrix, final float[] scales, final boolean perRow, final int columns, final int stride, final int parallelism) throws CalculationException {
+		return multiplyFloatVectorAndMatrix(vector, matrix, scales, perRow, columns, stride, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final byte[] matrix, final float[] scales, final boolean perRow, final int columns, final int stride, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		final int				effectiveParellelism = Math.min(vector.length, parallelism); 
+		final int				piece = (vector.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous row range
+			final int	to = Math.min(from + piece, vector.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int y = from, base = from * stride; y < to; y++, base += stride) {
+				final float[]	temp = accumulator.row();
+				final float		val = perRow ? vector[y] * scales[y] : vector[y];	// Row scale is folded into the vector value
+				
+				for(int x = 0; x < columns; x++) {
+					temp[x] += val*matrix[base + x];
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		if (!perRow) {
+			for(int index = 0; index < result.length; index++) {	// Column scales are applied once to the accumulated sums
+				result[index] *= scales[index];
+			}
+		}
+		return result;
+	}
+
+	static float[] multiplySparseVectorAndMatrix(final int[] indices, final float[] values, final float[][] matrix, final int parallelism) throws CalculationException {
+		return multiplySparseVectorAndMatrix(indices, values, matrix, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplySparseVectorAndMatrix(final int[] indices, final float[] values, final float[][] matrix, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[matrix[0].length];
+		
+		if (indices.length == 0) {
+			return result;
+		}
+		final int				effectiveParellelism = Math.min(indices.length, parallelism); 
+		final int				piece = (indices.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous range of non-zero items
+			final int	to = Math.min(from + piece, indices.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[matrix[0].length], matrix[0].length);
+			
+			for(int item = from; item < to; item++) {	// Only rows referenced by the sparse vector are touched
+				final float[]	temp = accumulator.row();
+				final float		val = values[item];
+				final float[]	line = matrix[indices[item]];
+
+				for(int x = 0, maxX = temp.length; x < maxX; x++) {
+					temp[x] += val*line[x];
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+
+	static float[] multiplySparseVectorAndMatrix(final int[] indices, final float[] values, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		return multiplySparseVectorAndMatrix(indices, values, matrix, offset, columns, rowStride, columnStride, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplySparseVectorAndMatrix(final int[] indices, final float[] values, final float[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		
+		if (indices.length == 0) {
+			return result;
+		}
+		final int				effectiveParellelism = Math.min(indices.length, parallelism); 
+		final int				piece = (indices.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous range of non-zero items
+			final int	to = Math.min(from + piece, indices.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int item = from; item < to; item++) {	// Only rows referenced by the sparse vector are touched
+				final float[]	temp = accumulator.row();
+				final float		val = values[item];
+				final int		base = offset + indices[item] * rowStride;
+
+				for(int x = 0, pos = base, maxX = temp.length; x < maxX; x++, pos += columnStride) {
+					temp[x] += val*matrix[pos];
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+
+	static float[] multiplySparseVectorAndMatrix(final int[] indices, final float[] values, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		return multiplySparseVectorAndMatrix(indices, values, matrix, offset, columns, rowStride, columnStride, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplySparseVectorAndMatrix(final int[] indices, final float[] values, final FloatBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		
+		if (indices.length == 0) {
+			return result;
+		}
+		final int				effectiveParellelism = Math.min(indices.length, parallelism); 
+		final int				piece = (indices.length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][]			partial = new float[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous range of non-zero items
+			final int	to = Math.min(from + piece, indices.length);
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int item = from; item < to; item++) {	// Only rows referenced by the sparse vector are touched
+				final float[]	temp = accumulator.row();
+				final float		val = values[item];
+				final int		base = offset + indices[item] * rowStride;
+
+				for(int x = 0, pos = base, maxX = temp.length; x < maxX; x++, pos += columnStride) {
+					temp[x] += val*matrix.get(pos);
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final int[] rowPointers, final int[] columnIndices, final float[] values, final int columns, final int parallelism) throws CalculationException {
+		return multiplyFloatVectorAndMatrix(vector, rowPointers, columnIndices, values, columns, CalculationPrecision.QUICK, parallelism);
+	}
+
+	static float[] multiplyFloatVectorAndMatrix(final float[] vector, final int[] rowPointers, final int[] columnIndices, final float[] values, final int columns, final CalculationPrecision precision, final int parallelism) throws CalculationException {
+		final float[]			result = new float[columns];
+		final int[]				ranges = splitRows(rowPointers, parallelism);
+		final float[][]			partial = new float[ranges.length - 1][];
+		
+		WorkerTeam.common(parallelism).execute(ranges.length - 1, (index)->{
+			final int	from = ranges[index];	// Every part processes row range with the same number of non-zero items
+			final int	to = ranges[index + 1];
+			final CalculationPrecision.Accumulator	accumulator = precision.newAccumulator(new float[columns], columns);
+			
+			for(int y = from; y < to; y++) {
+				final float[]	temp = accumulator.row();
+				final float		val = vector[y];
+				
+				if (val != 0) {
+					for(int item = rowPointers[y], maxItem = rowPointers[y + 1]; item < maxItem; item++) {
+						temp[columnIndices[item]] += val*values[item];
+					}
+				}
+			}
+			partial[index] = accumulator.get();
+		});
+		for(float[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+
+	static float[] multiplyFloatMatrixAndVector(final int[] rowPointers, final int[] columnIndices, final float[] values, final float[] vector, final int parallelism) throws CalculationException {
+		final float[]			result = new float[rowPointers.length - 1];
+		final int[]				ranges = splitRows(rowPointers, parallelism);
+		
+		WorkerTeam.common(parallelism).execute(ranges.length - 1, (index)->{
+			final int	from = ranges[index];	// Every part fills it's own part of the result
+			final int	to = ranges[index + 1];
+			
+			for(int y = from; y < to; y++) {
+				float	sum = 0;
+				
+				for(int item = rowPointers[y], maxItem = rowPointers[y + 1]; item < maxItem; item++) {
+					sum += values[item]*vector[columnIndices[item]];
+				}
+				result[y] = sum;
+			}
+		});
+		return result;
+	}
+
+	static float[] multiplyFloatMatrixAndMatrix(final int[] rowPointers, final int[] columnIndices, final float[] values, final float[] matrix, final int columns, final int parallelism) throws CalculationException {
+		final float[]			result = new float[(rowPointers.length - 1) * columns];
+		final int[]				ranges = splitRows(rowPointers, parallelism);
+		
+		WorkerTeam.common(parallelism).execute(ranges.length - 1, (index)->{
+			final int	from = ranges[index];	// Every part fills it's own rows of the result
+			final int	to = ranges[index + 1];
+			
+			for(int y = from, target = from * columns; y < to; y++, target += columns) {
+				for(int item = rowPointers[y], maxItem = rowPointers[y + 1]; item < maxItem; item++) {
+					final float	val = values[item];
+					final int	base = columnIndices[item] * columns;
+					
+					for(int x = 0; x < columns; x++) {
+						result[target + x] += val*matrix[base + x];
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	static int[] splitRows(final int[] rowPointers, final int parallelism) {
+		final int	rows = rowPointers.length - 1, nonZeros = rowPointers[rows];
+		final int	effectiveParellelism = Math.max(1, Math.min(Math.min(rows, nonZeros), parallelism));
+		final int[]	result = new int[effectiveParellelism + 1];
+		
+		for(int index = 1; index < effectiveParellelism; index++) {	// Row boundaries balance number of non-zero items, not number of rows
+			final long	limit = (long)nonZeros * index / effectiveParellelism;
+			int			low = result[index - 1], high = rows;
+			
+			while (low < high) {
+				final int	mid = (low + high) >>> 1;
+				
+				if (rowPointers[mid] < limit) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			result[index] = low;
+		}
+		result[effectiveParellelism] = rows;
+		return result;
+	}
+
 	static double[] multiplyDoubleVectorAndMatrix(final double[] vector, final double[][] matrix, final int parallelism) throws CalculationException {
 		final double[]				result = new double[matrix[0].length];
 		final int					effectiveParellelism = Math.min(vector.length, parallelism); 
-		final Future<double[]>[]	subtasks = new Future[effectiveParellelism];
-		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	start = index;	// Prepare subtasks
-			
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-					()->{
-						final double[] temp = new double[matrix[0].length];
-						
-						for(int y = start, maxY = vector.length; y < maxY; y += effectiveParellelism) {
-							final double	val = vector[y];
-							final double[]	line = matrix[y];
-							
-							for(int x = 0, maxX = temp.length; x < maxX; x++) {
-								temp[x] += val*line[x];
-							}
-						}
-						return temp;
+		final double[][]			partial = new double[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (start)->{
+			final double[] temp = new double[matrix[0].length];
+			
+			for(int y = start, maxY = vector.length; y < maxY; y += effectiveParellelism) {
+				final double	val = vector[y];
+				final double[]	line = matrix[y];
+				
+				for(int x = 0, maxX = temp.length; x < maxX; x++) {
+					temp[x] += val*line[x];
+				}
+			}
+			partial[start] = temp;
+		});
+		for(double[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+
+	static double[] multiplyDoubleVectorAndMatrix(final double[] vector, final double[] matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		final double[]				result = new double[columns];
+		final int					effectiveParellelism = Math.min(vector.length, parallelism); 
+		final int					piece = (vector.length + effectiveParellelism - 1) / effectiveParellelism;
+		final double[][]			partial = new double[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous row range
+			final int	to = Math.min(from + piece, vector.length);
+			final double[] temp = new double[columns];
+			
+			for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+				final double	val = vector[y];
+				
+				if (columnStride == 1) {
+					for(int x = 0; x < columns; x++) {
+						temp[x] += val*matrix[base + x];
+					}
+				}
+				else {
+					for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+						temp[x] += val*matrix[pos];
 					}
-				);
-		}		
-		for(Future<double[]> item : subtasks) {	// Await subtasks termination
-			try {
-				final double[]	temp = item.get();
+				}
+			}
+			partial[index] = temp;
+		});
+		for(double[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
+			}
+		}
+		return result;
+	}
+
+	static double[] multiplyDoubleVectorAndMatrix(final double[] vector, final DoubleBuffer matrix, final int offset, final int columns, final int rowStride, final int columnStride, final int parallelism) throws CalculationException {
+		final double[]				result = new double[columns];
+		final int					effectiveParellelism = Math.min(vector.length, parallelism); 
+		final int					piece = (vector.length + effectiveParellelism - 1) / effectiveParellelism;
+		final double[][]			partial = new double[effectiveParellelism][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = index * piece;	// Every part processes contiguous row range
+			final int	to = Math.min(from + piece, vector.length);
+			final double[] temp = new double[columns];
+			
+			for(int y = from, base = offset + from * rowStride; y < to; y++, base += rowStride) {
+				final double	val = vector[y];
 				
-				for(int index = 0; index < temp.length; index++) {
-					result[index] += temp[index];
+				for(int x = 0, pos = base; x < columns; x++, pos += columnStride) {
+					temp[x] += val*matrix.get(pos);
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
+			}
+			partial[index] = temp;
+		});
+		for(double[] temp : partial) {	// Sum partial results in the fixed order
+			for(int index = 0; index < temp.length; index++) {
+				result[index] += temp[index];
 			}
 		}
 		return result;
@@ -140,40 +660,30 @@ public class MatrixUtils {
 
 	static float[][] transposeFloatMatrix(final float[][] matrix, final int parallelism) throws CalculationException {
 		final float[][]			result = new float[matrix[0].length][];
-		final int				effectiveParellelism = Math.min(matrix[0].length, parallelism); 
-		final Future<float[][]>[]	subtasks = new Future[effectiveParellelism];
-		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	start = index;	// Prepare subtasks
-			
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-					()->{
-						final float[][] temp = new float[Math.min(matrix[0].length/effectiveParellelism, matrix[0].length-start*effectiveParellelism)][];
-						
-						for(int y = 0, maxY = temp.length; y < maxY; y++) {
-							final float[] line = new float[matrix.length];
-							
-							for(int x = 0, maxX = temp.length; x < maxX; x++) {
-								line[x] = matrix[x][start*parallelism+y];
-							}
-							temp[y] = line;
-						}
-						return temp;
-					}
-				);
-		}
-		int where = 0;
+		final int				effectiveParellelism = Math.min(matrix[0].length, parallelism);
+		final int				piece = (matrix[0].length + effectiveParellelism - 1) / effectiveParellelism;
+		final float[][][]		partial = new float[effectiveParellelism][][];
 		
-		for(Future<float[][]> item : subtasks) {	// Await subtasks termination
-			try {
-				for(float[] line : item.get()) {
-					result[where++] = line; 
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = Math.min(index * piece, matrix[0].length), to = Math.min(from + piece, matrix[0].length);
+			
+			final float[][] temp = new float[to - from][];
+			
+			for(int y = 0, maxY = temp.length; y < maxY; y++) {
+				final float[] line = new float[matrix.length];
+				
+				for(int x = 0, maxX = line.length; x < maxX; x++) {
+					line[x] = matrix[x][from + y];
 				}
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
+				temp[y] = line;
+			}
+			partial[index] = temp;
+		});
+		int where = 0;
+		
+		for(float[][] temp : partial) {	// Collect partial results in the fixed order
+			for(float[] line : temp) {
+				result[where++] = line; 
 			}
 		}
 		return result;
@@ -181,36 +691,32 @@ public class MatrixUtils {
 
 	static double[][] transposeDoubleMatrix(final double[][] matrix, final int parallelism) throws CalculationException {
 		final double[][]			result = new double[matrix[0].length][];
-		final int					effectiveParellelism = Math.min(matrix[0].length, parallelism); 
-		final Future<double[]>[]	subtasks = new Future[effectiveParellelism];
-		
-		for(int index = 0, maxIndex = effectiveParellelism; index < maxIndex; index++) {
-			final int	start = index;	// Prepare subtasks
-			
-			subtasks[index] = ForkJoinPool.commonPool().submit( 
-					()->{
-						final double[] temp = new double[matrix.length];
-						
-						for(int x = 0, maxX = temp.length; x < maxX; x++) {
-							temp[x] = matrix[x][start];
-						}
-						return temp;
-					}
-				);
-		}
+		final int					effectiveParellelism = Math.min(matrix[0].length, parallelism);
+		final int					piece = (matrix[0].length + effectiveParellelism - 1) / effectiveParellelism;
+		final double[][][]			partial = new double[effectiveParellelism][][];
+		
+		WorkerTeam.common(parallelism).execute(effectiveParellelism, (index)->{
+			final int	from = Math.min(index * piece, matrix[0].length), to = Math.min(from + piece, matrix[0].length);
+			
+			final double[][] temp = new double[to - from][];
+			
+			for(int y = 0, maxY = temp.length; y < maxY; y++) {
+				final double[] line = new double[matrix.length];
+				
+				for(int x = 0, maxX = line.length; x < maxX; x++) {
+					line[x] = matrix[x][from + y];
+				}
+				temp[y] = line;
+			}
+			partial[index] = temp;
+		});
 		int where = 0;
 		
-		for(Future<double[]> item : subtasks) {	// Await subtasks termination
-			try {
-				result[where++] = item.get();
-			} catch (InterruptedException e) {
-				Thread.currentThread().interrupt();
-				throw new CalculationException(e);
-			} catch (ExecutionException e) {
-				throw new CalculationException(e.getCause());
+		for(double[][] temp : partial) {	// Collect partial results in the fixed order
+			for(double[] line : temp) {
+				result[where++] = line; 
 			}
 		}
 		return result;
 	}
 }
-
@@ -0,0 +1,236 @@
+package chav1961.nn.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+
+public class PipeBatcher implements AutoCloseable {
+	private static final Request			STOP = new Request(null);
+
+	private final Pipe						pipe;
+	private final int						maxBatchSize;
+	private final long						maxWaitNanos;
+	private final BlockingQueue<Request>	queue = new LinkedBlockingQueue<>();
+	private final Thread					dispatcher;
+	private final Object					entry = new Object();	// Serializes enqueueing with close, nothing can be queued after the stop marker
+	private final AtomicLong				batches = new AtomicLong();
+	private final AtomicLong				requests = new AtomicLong();
+	private final AtomicLong				totalDelay = new AtomicLong();
+	private final AtomicLong				maxDelay = new AtomicLong();
+	private volatile boolean				closed = false;
+
+	public PipeBatcher(final Pipe pipe, final int maxBatchSize, final long maxWait, final TimeUnit unit) throws NullPointerException, IllegalArgumentException {
+		if (pipe == null) {
+			throw new NullPointerException("Pipe can't be null");
+		}
+		else if (maxBatchSize <= 0) {
+			throw new IllegalArgumentException("Max batch size ["+maxBatchSize+"] must be greater than 0");
+		}
+		else if (maxWait < 0) {
+			throw new IllegalArgumentException("Max wait time ["+maxWait+"] can't be negative");
+		}
+		else if (unit == null) {
+			throw new NullPointerException("Time unit can't be null");
+		}
+		else {
+			this.pipe = pipe;
+			this.maxBatchSize = maxBatchSize;
+			this.maxWaitNanos = unit.toNanos(maxWait);
+			this.dispatcher = new Thread(this::dispatch, "PipeBatcher");
+			this.dispatcher.setDaemon(true);
+			this.dispatcher.start();
+		}
+	}
+
+	public CompletableFuture<MatrixWrapper> submit(final MatrixWrapper vector) throws NullPointerException, IllegalArgumentException {
+		if (vector == null) {
+			throw new NullPointerException("Vector to process can't be null");
+		}
+		else if (vector.getMatrixClass() != MatrixClass.FLOAT_ARRAY) {
+			throw new IllegalArgumentException("Matrix class ["+vector.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_ARRAY+"] is available");
+		}
+		else {
+			final Request	request = new Request(vector);
+
+			synchronized (entry) {
+				if (closed) {
+					throw new IllegalStateException("Batcher is closed");
+				}
+				queue.add(request);
+			}
+			return request.future;
+		}
+	}
+
+	public Statistics getStatistics() {
+		return new Statistics(batches.get(), requests.get(), maxBatchSize, totalDelay.get(), maxDelay.get());
+	}
+
+	@Override
+	public void close() {	// Requests submitted before close are processed
+		boolean	interrupted = false;
+
+		synchronized (entry) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			queue.add(STOP);
+		}
+		while (dispatcher.isAlive()) {	// Requests in the queue must be completed before return
+			try {
+				dispatcher.join();
+			} catch (InterruptedException exc) {
+				interrupted = true;
+			}
+		}
+		for(Request item = queue.poll(); item != null; item = queue.poll()) {	// Dispatcher was interrupted before the stop marker
+			item.future.completeExceptionally(new IllegalStateException("Batcher is closed"));
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void dispatch() {
+		final List<Request>	batch = new ArrayList<>();
+		boolean				stop = false;
+
+		try {
+			while (!stop) {
+				final Request	first = queue.take();
+
+				if (first == STOP) {
+					return;
+				}
+				final long		deadline = first.submitted + maxWaitNanos;
+
+				batch.add(first);
+				while (batch.size() < maxBatchSize) {	// Collect requests until batch is full or the first request waited enough
+					final long		rest = deadline - System.nanoTime();
+					final Request	next = rest > 0 ? queue.poll(rest, TimeUnit.NANOSECONDS) : queue.poll();
+
+					if (next == null) {
+						break;
+					}
+					else if (next == STOP) {
+						stop = true;
+						break;
+					}
+					else {
+						batch.add(next);
+					}
+				}
+				process(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException exc) {
+			for(Request item : batch) {
+				item.future.completeExceptionally(exc);
+			}
+		}
+	}
+
+	private void process(final List<Request> batch) {
+		final long		now = System.nanoTime();
+
+		for(Request item : batch) {
+			final long	delay = now - item.submitted;
+
+			totalDelay.addAndGet(delay);
+			maxDelay.accumulateAndGet(delay, Math::max);
+		}
+		batches.incrementAndGet();
+		requests.addAndGet(batch.size());
+
+		final MatrixWrapper[]	samples = new MatrixWrapper[batch.size()];
+
+		for(int index = 0; index < samples.length; index++) {
+			samples[index] = batch.get(index).vector;
+		}
+		final MatrixWrapper		input;
+
+		try {
+			input = MatrixWrapper.batch(samples);
+		} catch (IllegalArgumentException exc) {	// Samples with different sizes, process them one by one to isolate failures
+			for(Request item : batch) {
+				try {
+					item.future.complete(pipe.forward(item.vector));
+				} catch (Exception | Error e) {
+					item.future.completeExceptionally(e);
+				}
+			}
+			return;
+		}
+		try {
+			final MatrixWrapper	result = pipe.forwardBatch(input);
+
+			for(int index = 0; index < samples.length; index++) {
+				batch.get(index).future.complete(MatrixWrapper.sample(result, index));
+			}
+		} catch (Exception | Error exc) {
+			for(Request item : batch) {
+				item.future.completeExceptionally(exc);
+			}
+		}
+	}
+
+	public static class Statistics {
+		private final long	batches;
+		private final long	requests;
+		private final int	maxBatchSize;
+		private final long	totalDelay;
+		private final long	maxDelay;
+
+		private Statistics(final long batches, final long requests, final int maxBatchSize, final long totalDelay, final long maxDelay) {
+			this.batches = batches;
+			this.requests = requests;
+			this.maxBatchSize = maxBatchSize;
+			this.totalDelay = totalDelay;
+			this.maxDelay = maxDelay;
+		}
+
+		public long getBatches() {
+			return batches;
+		}
+
+		public long getRequests() {
+			return requests;
+		}
+
+		public double getFillRate() {
+			return batches == 0 ? 0 : (double)requests / (batches * maxBatchSize);
+		}
+
+		public long getAverageQueueingDelay(final TimeUnit unit) {
+			return unit.convert(requests == 0 ? 0 : totalDelay / requests, TimeUnit.NANOSECONDS);
+		}
+
+		public long getMaxQueueingDelay(final TimeUnit unit) {
+			return unit.convert(maxDelay, TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public String toString() {
+			return "Statistics [batches=" + batches + ", requests=" + requests + ", fillRate=" + getFillRate() + ", averageDelay=" + getAverageQueueingDelay(TimeUnit.MICROSECONDS) + "us, maxDelay=" + getMaxQueueingDelay(TimeUnit.MICROSECONDS) + "us]";
+		}
+	}
+
+	private static class Request {
+		private final MatrixWrapper						vector;
+		private final long								submitted = System.nanoTime();
+		private final CompletableFuture<MatrixWrapper>	future = new CompletableFuture<>();
+
+		private Request(final MatrixWrapper vector) {
+			this.vector = vector;
+		}
+	}
+}
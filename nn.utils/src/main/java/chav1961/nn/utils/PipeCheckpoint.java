@@ -0,0 +1,396 @@
+package chav1961.nn.utils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderStage;
+
+// Single-file pipeline checkpoint:
+// [magic, version, flags] [page-aligned matrix payloads in the byte order from flags...] [big-endian stage header, CRC] [header offset, magic]
+public class PipeCheckpoint {
+	public static final int		PAGE_SIZE = 4096;
+	static final int			FILE_MAGIC = 0x4E4E5043;	// "NNPC"
+	static final int			HEADER_MAGIC = 0x4E4E5048;	// "NNPH"
+	static final short			VERSION = 1;
+	static final short			LITTLE_ENDIAN_FLAG = 1;	// Payloads are little-endian, otherwise big-endian
+	static final byte			MATRIX_STAGE = 0;
+	static final byte			ACTIVATION_STAGE = 1;
+	private static final int	VERIFY_BUFFER_SIZE = 1 << 20;
+
+	private PipeCheckpoint() {
+	}
+
+	public static void save(final PipeBuilder builder, final WritableByteChannel channel) throws IOException, NullPointerException, IllegalArgumentException {
+		save(builder, channel, ByteOrder.nativeOrder());	// Mapped payloads are read without byte swapping
+	}
+
+	public static void save(final PipeBuilder builder, final WritableByteChannel channel, final ByteOrder order) throws IOException, NullPointerException, IllegalArgumentException {
+		if (builder == null) {
+			throw new NullPointerException("Pipe builder can't be null");
+		}
+		else if (channel == null) {
+			throw new NullPointerException("Output channel can't be null");
+		}
+		else if (order == null) {
+			throw new NullPointerException("Byte order can't be null");
+		}
+		else if (!builder.iterator().hasNext()) {
+			throw new IllegalArgumentException("Pipe builder doesn't contain any stages");
+		}
+		else {
+			final CountingChannel	out = new CountingChannel(channel);
+			final List<long[]>		payloads = new ArrayList<>();
+			final ByteBuffer		prefix = ByteBuffer.allocate(ContainerFormat.FILE_HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+			int						size = 2 * Integer.BYTES + 1 + ContainerFormat.sizeOf(builder.getPrecision().name()) + 2 * Integer.BYTES, stages = 0;
+
+			prefix.putInt(FILE_MAGIC).putShort(VERSION).putShort(order == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN_FLAG : 0).flip();
+			out.write(prefix);
+			for(PipeBuilderStage stage : builder) {
+				stages++;
+				if (stage.isMatrix()) {
+					final MatrixWrapper	matrix = stage.getMatrix();
+
+					out.align(PAGE_SIZE);	// Page-aligned payloads can be mapped directly
+					out.reset();
+					matrix.upload(out, order);
+					payloads.add(new long[] {out.position - out.count, out.count, out.crc()});
+					size += 1 + ContainerFormat.sizeOf(matrix.getMatrixClass().name()) + 1 + Integer.BYTES * matrix.getDimensions().length + 2 * Long.BYTES + Integer.BYTES;
+				}
+				else {
+					size += 1 + ContainerFormat.sizeOf(stage.getActivationType().name()) + 1 + Float.BYTES * stage.getActivationParameters().length;
+				}
+			}
+			final ByteBuffer	header = ByteBuffer.allocate(size + ContainerFormat.TRAILER_SIZE).order(ByteOrder.BIG_ENDIAN);
+			final long			headerOffset = out.position;
+			int					payload = 0;
+
+			header.putInt(HEADER_MAGIC).put((byte)(builder.isReadOnly() ? 1 : 0));
+			ContainerFormat.putString(header, builder.getPrecision().name());
+			header.putInt(builder.getParallelism()).putInt(stages);
+			for(PipeBuilderStage stage : builder) {
+				if (stage.isMatrix()) {
+					final MatrixWrapper	matrix = stage.getMatrix();
+					final long[]		item = payloads.get(payload++);
+
+					header.put(MATRIX_STAGE);
+					ContainerFormat.putString(header, matrix.getMatrixClass().name());
+					header.put((byte)matrix.getDimensions().length);
+					for(int dimension : matrix.getDimensions()) {
+						header.putInt(dimension);
+					}
+					header.putLong(item[0]).putLong(item[1]).putInt((int)item[2]);
+				}
+				else {
+					final float[]	parameters = stage.getActivationParameters();
+
+					header.put(ACTIVATION_STAGE);
+					ContainerFormat.putString(header, stage.getActivationType().name());
+					header.put((byte)parameters.length);
+					for(float parameter : parameters) {
+						header.putFloat(parameter);
+					}
+				}
+			}
+			header.flip();
+
+			final int	crc = ContainerFormat.crc(header);
+
+			header.limit(header.capacity());
+			header.position(size - Integer.BYTES);
+			header.putInt(crc).putLong(headerOffset).putInt(FILE_MAGIC).flip();
+			out.write(header);
+		}
+	}
+
+	public static PipeBuilder load(final FileChannel channel) throws IOException, NullPointerException {
+		if (channel == null) {
+			throw new NullPointerException("File channel can't be null");
+		}
+		else {
+			final Header		header = readHeader(channel);
+			final PipeBuilder	builder = PipeBuilder.newInstance();
+			final List<CloseableMatrixWrapper>	mapped = new ArrayList<>();
+
+			builder.setReadOnly(header.readOnly).setPrecision(header.precision).setParallelism(header.parallelism);
+			try {
+				for(Stage stage : header.stages) {
+					if (stage.clazz == null) {
+						builder.activate(stage.type, stage.parameters);
+					}
+					else if (header.readOnly && isMappable(stage.clazz, stage.length)) {	// Content is paged in on the first access only
+						final CloseableMatrixWrapper	matrix = MatrixWrapper.map(channel, stage.offset, header.order, MatrixClass.FLOAT_BUFFER2, stage.dimensions);
+
+						mapped.add(matrix);
+						builder.mul(matrix);
+					}
+					else {
+						channel.position(stage.offset);
+						builder.mul(MatrixWrapper.download(channel, header.order, stage.clazz, stage.dimensions));
+					}
+				}
+				return builder;
+			} catch (IllegalArgumentException exc) {
+				for(CloseableMatrixWrapper item : mapped) {
+					item.close();
+				}
+				throw new IOException("Checkpoint content is inconsistent: "+exc.getLocalizedMessage(), exc);
+			}
+		}
+	}
+
+	public static void verify(final FileChannel channel) throws IOException, NullPointerException {	// Full payload check, too long to be a part of the load
+		if (channel == null) {
+			throw new NullPointerException("File channel can't be null");
+		}
+		else {
+			final ByteBuffer	buffer = ByteBuffer.allocate(VERIFY_BUFFER_SIZE);
+			int					index = 0;
+
+			for(Stage stage : readHeader(channel).stages) {
+				if (stage.clazz != null) {
+					final CRC32C	crc = new CRC32C();
+
+					for(long position = stage.offset, end = stage.offset + stage.length; position < end; ) {
+						buffer.clear().limit((int)Math.min(buffer.capacity(), end - position));
+						while (buffer.hasRemaining()) {
+							if (channel.read(buffer, position + buffer.position()) < 0) {
+								throw new EOFException("Payload of the stage ["+index+"] is truncated");
+							}
+						}
+						buffer.flip();
+						position += buffer.remaining();
+						crc.update(buffer);
+					}
+					if ((int)crc.getValue() != stage.crc) {
+						throw new IOException("Payload of the stage ["+index+"] is corrupted (CRC mismatch)");
+					}
+				}
+				index++;
+			}
+		}
+	}
+
+	static boolean isMappable(final MatrixClass clazz, final long length) {	// Serialized content of these classes is the same as the mapped buffer
+		switch (clazz) {
+			case FLOAT_FLAT2 : case FLOAT2_ARRAY : case FLOAT_BUFFER2 :
+				return length <= Integer.MAX_VALUE;
+			default :
+				return false;
+		}
+	}
+
+	private static Header readHeader(final FileChannel channel) throws IOException {
+		final long	size = channel.size();
+
+		if (size < ContainerFormat.FILE_HEADER_SIZE + ContainerFormat.TRAILER_SIZE) {
+			throw new IOException("Checkpoint is too short ["+size+"] bytes");
+		}
+		else {
+			final ByteBuffer	prefix = readAt(channel, 0, ContainerFormat.FILE_HEADER_SIZE);
+			final ByteBuffer	trailer = readAt(channel, size - ContainerFormat.TRAILER_SIZE, ContainerFormat.TRAILER_SIZE);
+
+			if (prefix.getInt() != FILE_MAGIC) {
+				throw new IOException("Illegal checkpoint magic");
+			}
+			else if (prefix.getShort() != VERSION) {
+				throw new IOException("Unsupported checkpoint version");
+			}
+			final short	flags = prefix.getShort();
+			final long	headerOffset = trailer.getLong();
+
+			if (trailer.getInt() != FILE_MAGIC) {
+				throw new IOException("Illegal checkpoint trailer, file is probably truncated");
+			}
+			else if ((flags & ~LITTLE_ENDIAN_FLAG) != 0) {
+				throw new IOException("Unsupported checkpoint flags ["+flags+"]");
+			}
+			else if (headerOffset < ContainerFormat.FILE_HEADER_SIZE || headerOffset > size - ContainerFormat.TRAILER_SIZE - 2 * Integer.BYTES) {
+				throw new IOException("Illegal header offset ["+headerOffset+"] in the checkpoint");
+			}
+			else {
+				final ByteBuffer	content = readAt(channel, headerOffset, (int)(size - ContainerFormat.TRAILER_SIZE - headerOffset));
+				final int			crc = content.getInt(content.limit() - Integer.BYTES);
+
+				content.limit(content.limit() - Integer.BYTES);
+				if (ContainerFormat.crc(content) != crc) {
+					throw new IOException("Checkpoint header is corrupted (CRC mismatch)");
+				}
+				else if (content.getInt() != HEADER_MAGIC) {
+					throw new IOException("Illegal header magic in the checkpoint");
+				}
+				else {
+					try {
+						final boolean	readOnly = content.get() != 0;
+						final String	precision = ContainerFormat.getString(content);
+						final int		parallelism = content.getInt();
+						final Stage[]	stages = new Stage[content.getInt()];
+
+						for(int index = 0; index < stages.length; index++) {
+							final byte	kind = content.get();
+
+							if (kind == MATRIX_STAGE) {
+								final MatrixClass	clazz = MatrixClass.valueOf(ContainerFormat.getString(content));
+								final int[]			dimensions = new int[content.get()];
+
+								for(int dimension = 0; dimension < dimensions.length; dimension++) {
+									dimensions[dimension] = content.getInt();
+								}
+								final long	offset = content.getLong(), length = content.getLong();
+
+								if (offset < ContainerFormat.FILE_HEADER_SIZE || length < 0 || offset + length > headerOffset) {
+									throw new IOException("Illegal payload location of the stage ["+index+"] in the checkpoint");
+								}
+								else {
+									stages[index] = new Stage(clazz, dimensions, offset, length, content.getInt());
+								}
+							}
+							else if (kind == ACTIVATION_STAGE) {
+								final ActivationType	type = ActivationType.valueOf(ContainerFormat.getString(content));
+								final float[]			parameters = new float[content.get()];
+
+								for(int parameter = 0; parameter < parameters.length; parameter++) {
+									parameters[parameter] = content.getFloat();
+								}
+								stages[index] = new Stage(type, parameters);
+							}
+							else {
+								throw new IOException("Illegal kind ["+kind+"] of the stage ["+index+"] in the checkpoint");
+							}
+						}
+						return new Header((flags & LITTLE_ENDIAN_FLAG) != 0 ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN, readOnly, CalculationPrecision.valueOf(precision), parallelism, stages);
+					} catch (IllegalArgumentException exc) {
+						throw new IOException("Unknown item in the checkpoint header: "+exc.getLocalizedMessage(), exc);
+					} catch (BufferUnderflowException exc) {
+						throw new IOException("Checkpoint header is truncated");
+					}
+				}
+			}
+		}
+	}
+
+	private static ByteBuffer readAt(final FileChannel channel, final long position, final int size) throws IOException {
+		final ByteBuffer	buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of checkpoint at position ["+(position + buffer.position())+"]");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static class Header {
+		final ByteOrder				order;
+		final boolean				readOnly;
+		final CalculationPrecision	precision;
+		final int					parallelism;
+		final Stage[]				stages;
+
+		Header(final ByteOrder order, final boolean readOnly, final CalculationPrecision precision, final int parallelism, final Stage[] stages) {
+			this.order = order;
+			this.readOnly = readOnly;
+			this.precision = precision;
+			this.parallelism = parallelism;
+			this.stages = stages;
+		}
+	}
+
+	private static class Stage {
+		final MatrixClass		clazz;
+		final int[]				dimensions;
+		final long				offset;
+		final long				length;
+		final int				crc;
+		final ActivationType	type;
+		final float[]			parameters;
+
+		Stage(final MatrixClass clazz, final int[] dimensions, final long offset, final long length, final int crc) {
+			this.clazz = clazz;
+			this.dimensions = dimensions;
+			this.offset = offset;
+			this.length = length;
+			this.crc = crc;
+			this.type = null;
+			this.parameters = null;
+		}
+
+		Stage(final ActivationType type, final float[] parameters) {
+			this.clazz = null;
+			this.dimensions = null;
+			this.offset = 0;
+			this.length = 0;
+			this.crc = 0;
+			this.type = type;
+			this.parameters = parameters;
+		}
+	}
+
+	private static class CountingChannel implements WritableByteChannel {	// Tracks file position and CRC of the current payload
+		private static final ByteBuffer	PADDING = ByteBuffer.allocate(PAGE_SIZE);
+
+		private final WritableByteChannel	nested;
+		private final CRC32C				crc = new CRC32C();
+		private long						position = 0;
+		private long						count = 0;
+
+		CountingChannel(final WritableByteChannel nested) {
+			this.nested = nested;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return nested.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {	// Doesn't close the nested channel
+		}
+
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+			final ByteBuffer	content = src.duplicate();
+			int					written = 0;
+
+			while (src.hasRemaining()) {
+				written += nested.write(src);
+			}
+			content.limit(content.position() + written);
+			crc.update(content);
+			position += written;
+			count += written;
+			return written;
+		}
+
+		void align(final int alignment) throws IOException {
+			final int	gap = (int)((alignment - position % alignment) % alignment);
+
+			if (gap > 0) {
+				write(PADDING.duplicate().limit(gap));
+			}
+		}
+
+		void reset() {
+			crc.reset();
+			count = 0;
+		}
+
+		int crc() {
+			return (int)crc.getValue();
+		}
+	}
+}
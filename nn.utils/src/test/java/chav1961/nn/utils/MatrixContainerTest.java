@@ -0,0 +1,188 @@
+package chav1961.nn.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
+import chav1961.nn.api.interfaces.CsrContent;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+
+public class MatrixContainerTest {
+
+	@Test
+	public void roundTripTest() throws IOException {
+		final File		file = File.createTempFile("container", ".nnm");
+
+		try {
+			final MatrixWrapper	flat = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 32, 16);
+			final MatrixWrapper	dbl = MatrixWrapper.random(MatrixClass.DOUBLE_FLAT2, 2L, 5, 7);
+			final MatrixWrapper	half = MatrixWrapper.convert(flat, MatrixClass.HALF_FLAT2);
+			final MatrixWrapper	int8 = MatrixWrapper.quantize(flat, MatrixClass.INT8_ROW_FLAT2, 1.0f);
+			final MatrixWrapper	csr = MatrixWrapper.of(3, 4, new CsrContent(new int[] {0, 1, 1, 3}, new int[] {2, 0, 3}, new float[] {1, 2, 3}));
+			final MatrixWrapper	batch = MatrixWrapper.batch(2, 3, new float[] {1, 2, 3, 4, 5, 6});
+
+			try(final CloseableMatrixWrapper	buffer = (CloseableMatrixWrapper)MatrixWrapper.toOffHeap(flat)) {
+				for (ByteOrder order : new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+					try(final FileChannel			fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+						final MatrixContainerWriter	wr = new MatrixContainerWriter(fc, order, 256)) {
+
+						wr.write("flat", flat);
+						wr.write("double", dbl);
+						wr.write("half", half);
+						wr.write("int8", int8);
+						wr.write("csr", csr);
+						wr.write("batch", batch);
+						wr.write("buffer", buffer);
+						wr.write("view", MatrixWrapper.transpose(flat));
+
+						try {wr.write("flat", flat);
+							Assert.fail("Mandatory exception was not detected (duplicate name)");
+						} catch (IllegalArgumentException exc) {
+						}
+					}
+					try(final FileChannel			fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+						final MatrixContainerReader	rdr = new MatrixContainerReader(fc)) {
+
+						Assert.assertEquals(8, rdr.names().size());
+						Assert.assertTrue(rdr.contains("csr"));
+						Assert.assertFalse(rdr.contains("unknown"));
+						Assert.assertEquals(32 * 16 * Float.BYTES, rdr.getPayloadSize("flat"));
+
+						Assert.assertEquals(batch, rdr.read("batch"));	// Seek to the single matrix
+						Assert.assertEquals(flat, rdr.read("flat"));
+						Assert.assertEquals(dbl, rdr.read("double"));
+						Assert.assertEquals(half, rdr.read("half"));
+						Assert.assertEquals(int8, rdr.read("int8"));
+						Assert.assertEquals(csr, rdr.read("csr"));
+						Assert.assertEquals(MatrixWrapper.flatten(MatrixWrapper.transpose(flat)), rdr.read("view"));
+
+						try(final CloseableMatrixWrapper	loaded = (CloseableMatrixWrapper)rdr.read("buffer")) {
+							Assert.assertEquals(flat, MatrixWrapper.flatten(loaded));
+						}
+
+						try {rdr.read("unknown");
+							Assert.fail("Mandatory exception was not detected (unknown name)");
+						} catch (IllegalArgumentException exc) {
+						}
+					}
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void corruptionTest() throws IOException {
+		final File		file = File.createTempFile("container", ".nnm");
+
+		try {
+			final MatrixWrapper	first = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 32, 32);
+			final MatrixWrapper	second = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 4, 4);
+			final long			size;
+
+			try(final FileChannel			fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				final MatrixContainerWriter	wr = new MatrixContainerWriter(fc, ByteOrder.nativeOrder(), 1024)) {
+
+				wr.write("first", first);
+				wr.write("second", second);
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				final ByteBuffer	buffer = ByteBuffer.allocate(1);
+
+				size = fc.size();
+				fc.read(buffer, 2000);
+				buffer.put(0, (byte)(buffer.get(0) ^ 0x55)).rewind();
+				fc.write(buffer, 2000);		// Damage content of the second chunk of the first matrix
+			}
+			try(final FileChannel			fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				final MatrixContainerReader	rdr = new MatrixContainerReader(fc)) {
+
+				Assert.assertEquals(second, rdr.read("second"));
+				try {rdr.read("first");
+					Assert.fail("Mandatory exception was not detected (corrupted chunk)");
+				} catch (IOException exc) {
+					Assert.assertTrue(exc.getMessage().contains("CRC"));
+				}
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				fc.truncate(size - 1);
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				try {new MatrixContainerReader(fc);
+					Assert.fail("Mandatory exception was not detected (truncated file)");
+				} catch (IOException exc) {
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void compressedTest() throws IOException {
+		final File		file = File.createTempFile("container", ".nnm");
+
+		try {
+			final float[]		content = new float[100 * 16];
+
+			for(int index = 0; index < content.length; index++) {
+				content[index] = (index / 16) * 0.25f;
+			}
+			final MatrixWrapper	flat = MatrixWrapper.of(100, 16, content);
+			final MatrixWrapper	half = MatrixWrapper.convert(flat, MatrixClass.HALF_FLAT2);
+			final MatrixWrapper	batch = MatrixWrapper.batch(4, 2, 3, new float[24]);
+			final MatrixWrapper	dbl = MatrixWrapper.random(MatrixClass.DOUBLE_ARRAY, 3L, 10);
+
+			try(final FileChannel			fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+				final MatrixContainerWriter	wr = new MatrixContainerWriter(fc)) {
+
+				wr.writeCompressed("flat", flat, 7);
+				wr.writeCompressed("half", half);
+				wr.writeCompressed("batch", batch, 3);
+				wr.writeCompressed("double", dbl);
+				wr.write("plain", flat);
+
+				try {wr.writeCompressed("int8", MatrixWrapper.quantize(flat, MatrixClass.INT8_ROW_FLAT2, 1.0f));
+					Assert.fail("Mandatory exception was not detected (unsupported class)");
+				} catch (IllegalArgumentException exc) {
+				}
+				try {wr.writeCompressed("zero", flat, 0);
+					Assert.fail("Mandatory exception was not detected (illegal 3-rd argument)");
+				} catch (IllegalArgumentException exc) {
+				}
+			}
+			try(final FileChannel			fc = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				final MatrixContainerReader	rdr = new MatrixContainerReader(fc)) {
+
+				Assert.assertEquals(flat, rdr.read("flat"));
+				Assert.assertEquals(half, rdr.read("half"));
+				Assert.assertEquals(batch, rdr.read("batch"));
+				Assert.assertEquals(dbl, rdr.read("double"));
+				Assert.assertEquals(MatrixWrapper.flatten(MatrixWrapper.rows(flat, 13, 58)), rdr.readRows("flat", 13, 58));
+				Assert.assertEquals(MatrixWrapper.flatten(MatrixWrapper.rows(flat, 99, 100)), rdr.readRows("flat", 99, 100));
+				Assert.assertEquals(MatrixWrapper.flatten(MatrixWrapper.rows(half, 0, 1)), rdr.readRows("half", 0, 1));
+
+				try {rdr.readRows("plain", 0, 1);
+					Assert.fail("Mandatory exception was not detected (not compressed entry)");
+				} catch (IllegalArgumentException exc) {
+				}
+				try {rdr.readRows("flat", 10, 101);
+					Assert.fail("Mandatory exception was not detected (illegal row range)");
+				} catch (IllegalArgumentException exc) {
+				}
+				Assert.assertTrue(fc.size() < 2 * rdr.getPayloadSize("flat"));	// Compressed "flat" and plain "plain" together
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -2,12 +2,19 @@ package chav1961.nn.utils;
 
 import java.io.DataOutput;
 import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
 
 import org.junit.Assert;
 import org.junit.Test;
 
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
+import chav1961.nn.api.interfaces.CsrContent;
 import chav1961.nn.api.interfaces.MatrixClass;
 import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.QuantizedContent;
 import chav1961.purelib.basic.exceptions.CalculationException;
 
 public class MatrixUtilsTest {
@@ -62,6 +69,193 @@ public class MatrixUtilsTest {
 		Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(source, matrix2, 4), 0.001);
 	}
 
+	@Test
+	public void staticFlatMultiplyTest() throws CalculationException {
+		final float[]	source = new float[] {1,2,3};
+		final float[] 	matrix = new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12};
+		
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, matrix, 0, 4, 4, 1, 1), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, matrix, 0, 4, 4, 1, 2), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, matrix, 0, 4, 4, 1, 3), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, matrix, 0, 4, 4, 1, 4), 0.001f);
+
+		final double[]	dSource = new double[] {1,2,3};
+		final double[] 	dMatrix = new double[] {1,2,3,4, 5,6,7,8, 9,10,11,12};
+		
+		Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(dSource, dMatrix, 0, 4, 4, 1, 1), 0.001);
+		Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(dSource, dMatrix, 0, 4, 4, 1, 2), 0.001);
+		Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(dSource, dMatrix, 0, 4, 4, 1, 3), 0.001);
+		Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(dSource, dMatrix, 0, 4, 4, 1, 4), 0.001);
+		
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+
+		Assert.assertEquals(MatrixWrapper.of(new float[] {38, 44, 50, 56}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(source), MatrixWrapper.of(3, 4, matrix), 2));
+		Assert.assertEquals(MatrixWrapper.of(new double[] {38, 44, 50, 56}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(dSource), MatrixWrapper.of(3, 4, dMatrix), 2));
+	}
+
+	@Test
+	public void offHeapMultiplyTest() throws CalculationException {
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+		final float[]		source = new float[] {1,2,3};
+		final double[]		dSource = new double[] {1,2,3};
+
+		try(final CloseableMatrixWrapper	matrix = MatrixWrapper.toOffHeap(MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12}));
+			final CloseableMatrixWrapper	dMatrix = MatrixWrapper.toOffHeap(MatrixWrapper.of(3, 4, new double[] {1,2,3,4, 5,6,7,8, 9,10,11,12}))) {
+			
+			Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, (FloatBuffer)matrix.getContent(), 0, 4, 4, 1, 1), 0.001f);
+			Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, (FloatBuffer)matrix.getContent(), 0, 4, 4, 1, 3), 0.001f);
+			Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(dSource, (DoubleBuffer)dMatrix.getContent(), 0, 4, 4, 1, 1), 0.001);
+			Assert.assertArrayEquals(new double[] {38, 44, 50, 56}, MatrixUtils.multiplyDoubleVectorAndMatrix(dSource, (DoubleBuffer)dMatrix.getContent(), 0, 4, 4, 1, 3), 0.001);
+
+			Assert.assertEquals(MatrixWrapper.of(new float[] {38, 44, 50, 56}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(source), matrix, 2));
+			Assert.assertEquals(MatrixWrapper.of(new double[] {38, 44, 50, 56}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(dSource), dMatrix, 2));
+		}
+	}
+
+	@Test
+	public void halfMultiplyTest() throws CalculationException {
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+		final float[]		source = new float[] {1,2,3};
+		final MatrixWrapper	matrix = MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12});
+		final MatrixWrapper	half = MatrixWrapper.convert(matrix, MatrixClass.HALF_FLAT2);
+		final MatrixWrapper	bfloat = MatrixWrapper.convert(matrix, MatrixClass.BFLOAT16_FLAT2);
+		
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, (short[])half.getContent(), MatrixClass.HALF_FLAT2, 0, 4, 4, 1, 1), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, (short[])half.getContent(), MatrixClass.HALF_FLAT2, 0, 4, 4, 1, 3), 0.001f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, (short[])bfloat.getContent(), MatrixClass.BFLOAT16_FLAT2, 0, 4, 4, 1, 2), 0.001f);
+		
+		Assert.assertEquals(MatrixWrapper.of(new float[] {38, 44, 50, 56}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(source), half, 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {38, 44, 50, 56}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(source), bfloat, 2));
+	}
+
+	@Test
+	public void viewMultiplyTest() throws CalculationException {
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+		final float[]		flat = new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12};
+		final MatrixWrapper	matrix = MatrixWrapper.of(3, 4, flat);
+		
+		Assert.assertArrayEquals(new float[] {30, 70, 110}, MatrixUtils.multiplyFloatVectorAndMatrix(new float[] {1,2,3,4}, flat, 0, 3, 1, 4, 2), 0.001f);
+		Assert.assertArrayEquals(new float[] {16, 18}, MatrixUtils.multiplyFloatVectorAndMatrix(new float[] {1,1}, flat, 5, 2, 4, 1, 2), 0.001f);
+		Assert.assertEquals(MatrixWrapper.of(new float[] {30, 70, 110}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1,2,3,4}), MatrixWrapper.transpose(matrix), 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {14, 16, 18, 20}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1,1}), MatrixWrapper.rows(matrix, 1, 3), 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {10, 16}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1,1}), MatrixWrapper.view(matrix, 0, 2, 2, 0, 2, 3), 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {28, 32}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(3, new int[] {0, 2}, new float[] {1, 3}), MatrixWrapper.columns(matrix, 0, 2), 2));
+		Assert.assertEquals(MatrixWrapper.of(new double[] {30, 70, 110}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new double[] {1,2,3,4}), MatrixWrapper.transpose(MatrixWrapper.of(3, 4, new double[] {1,2,3,4, 5,6,7,8, 9,10,11,12})), 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {30, 70, 110}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1,2,3,4}), MatrixWrapper.transpose(MatrixWrapper.convert(matrix, MatrixClass.HALF_FLAT2)), 2));
+		try(final CloseableMatrixWrapper	offHeap = MatrixWrapper.toOffHeap(matrix)) {
+			Assert.assertEquals(MatrixWrapper.of(new float[] {30, 70, 110}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1,2,3,4}), MatrixWrapper.transpose(offHeap), 2));
+		}
+	}
+
+	@Test
+	public void quantizedMultiplyTest() throws CalculationException {
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+		final float[]		source = new float[] {1,2,3};
+		final MatrixWrapper	matrix = MatrixWrapper.of(3, 4, new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12});
+		final MatrixWrapper	rows = MatrixWrapper.convert(matrix, MatrixClass.INT8_ROW_FLAT2);
+		final MatrixWrapper	columns = MatrixWrapper.convert(matrix, MatrixClass.INT8_COLUMN_FLAT2);
+		final QuantizedContent	content = rows.getContent();
+		
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, content.getValues(), content.getScales(), true, 4, 4, 1), 0.2f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, MatrixUtils.multiplyFloatVectorAndMatrix(source, content.getValues(), content.getScales(), true, 4, 4, 3), 0.2f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, (float[])mu.multiplyVectorAndMatrix(MatrixWrapper.of(source), rows, 2).getContent(), 0.2f);
+		Assert.assertArrayEquals(new float[] {38, 44, 50, 56}, (float[])mu.multiplyVectorAndMatrix(MatrixWrapper.of(source), columns, 2).getContent(), 0.2f);
+	}
+
+	@Test
+	public void sparseMultiplyTest() throws CalculationException {
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+		final int[]			indices = new int[] {0, 2};
+		final float[]		values = new float[] {1, 3};
+		final float[]		flat = new float[] {1,2,3,4, 5,6,7,8, 9,10,11,12};
+		final MatrixWrapper	sparse = MatrixWrapper.of(3, indices, values);
+		
+		Assert.assertArrayEquals(new float[] {28, 32, 36, 40}, MatrixUtils.multiplySparseVectorAndMatrix(indices, values, flat, 0, 4, 4, 1, 1), 0.001f);
+		Assert.assertArrayEquals(new float[] {28, 32, 36, 40}, MatrixUtils.multiplySparseVectorAndMatrix(indices, values, flat, 0, 4, 4, 1, 3), 0.001f);
+		Assert.assertArrayEquals(new float[] {0, 0, 0, 0}, MatrixUtils.multiplySparseVectorAndMatrix(new int[0], new float[0], flat, 0, 4, 4, 1, 3), 0.001f);
+		
+		Assert.assertEquals(MatrixWrapper.of(new float[] {28, 32, 36, 40}), mu.multiplyVectorAndMatrix(sparse, MatrixWrapper.of(3, 4, flat), 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {28, 32, 36, 40}), mu.multiplyVectorAndMatrix(sparse, MatrixWrapper.convert(MatrixWrapper.of(3, 4, flat), MatrixClass.FLOAT2_ARRAY), 2));
+		try(final CloseableMatrixWrapper	offHeap = MatrixWrapper.toOffHeap(MatrixWrapper.of(3, 4, flat))) {
+			Assert.assertEquals(MatrixWrapper.of(new float[] {28, 32, 36, 40}), mu.multiplyVectorAndMatrix(sparse, offHeap, 2));
+		}
+	}
+
+	@Test
+	public void csrMultiplyTest() throws CalculationException {
+		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
+		final float[]		flat = new float[] {1,0,0,2, 0,0,0,0, 0,3,0,4};
+		final MatrixWrapper	csr = MatrixWrapper.convert(MatrixWrapper.of(3, 4, flat), MatrixClass.FLOAT_CSR2);
+		final CsrContent	content = csr.getContent();
+		
+		Assert.assertArrayEquals(new int[] {0, 3}, MatrixUtils.splitRows(content.getRowPointers(), 1));
+		Assert.assertArrayEquals(new int[] {0, 1, 3}, MatrixUtils.splitRows(content.getRowPointers(), 2));
+		Assert.assertArrayEquals(new int[] {0, 0}, MatrixUtils.splitRows(new int[] {0}, 4));
+		
+		for(int parallelism = 1; parallelism <= 4; parallelism++) {
+			Assert.assertArrayEquals(new float[] {1, 9, 0, 14}, MatrixUtils.multiplyFloatVectorAndMatrix(new float[] {1, 2, 3}, content.getRowPointers(), content.getColumnIndices(), content.getValues(), 4, parallelism), 0.001f);
+			Assert.assertArrayEquals(new float[] {9, 0, 22}, MatrixUtils.multiplyFloatMatrixAndVector(content.getRowPointers(), content.getColumnIndices(), content.getValues(), new float[] {1, 2, 3, 4}, parallelism), 0.001f);
+			Assert.assertArrayEquals(new float[] {9, 10, 0, 0, 25, 28}, MatrixUtils.multiplyFloatMatrixAndMatrix(content.getRowPointers(), content.getColumnIndices(), content.getValues(), new float[] {1,2, 3,4, 5,6, 4,4}, 2, parallelism), 0.001f);
+		}
+		
+		Assert.assertEquals(MatrixWrapper.of(new float[] {1, 9, 0, 14}), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1, 2, 3}), csr, 2));
+		Assert.assertEquals(mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1, 2, 3}), MatrixWrapper.of(3, 4, flat), 2), mu.multiplyVectorAndMatrix(MatrixWrapper.of(new float[] {1, 2, 3}), csr, 2));
+		Assert.assertEquals(MatrixWrapper.of(new float[] {9, 0, 22}), mu.multiplyMatrixAndVector(csr, MatrixWrapper.of(new float[] {1, 2, 3, 4}), 2));
+		Assert.assertEquals(MatrixWrapper.of(3, 2, new float[] {9, 10, 0, 0, 25, 28}), mu.multiplyMatrixAndMatrix(csr, MatrixWrapper.of(new float[] {1,2}, new float[] {3,4}, new float[] {5,6}, new float[] {4,4}), 2));
+		Assert.assertEquals(MatrixWrapper.of(1, 2, new float[] {5, 6}), mu.multiplyMatrixAndMatrix(MatrixWrapper.convert(MatrixWrapper.of(1, 2, new float[] {1, 0}), MatrixClass.FLOAT_CSR2), MatrixWrapper.rows(MatrixWrapper.of(4, 2, new float[] {1,2, 3,4, 5,6, 7,8}), 2, 4), 2));
+		Assert.assertEquals(MatrixWrapper.of(3, 2, new float[] {9, 10, 0, 0, 25, 28}), mu.multiplyMatrixAndMatrix(csr, MatrixWrapper.transpose(MatrixWrapper.of(2, 4, new float[] {1,3,5,4, 2,4,6,4})), 2));
+		
+		try{mu.multiplyMatrixAndVector(MatrixWrapper.of(3, 4, flat), MatrixWrapper.of(new float[] {1, 2, 3, 4}), 2);
+			Assert.fail("Mandatory exception was not detected (dense matrix)");
+		} catch (UnsupportedOperationException exc) {
+		}
+		try{mu.multiplyMatrixAndVector(csr, MatrixWrapper.of(new float[] {1, 2, 3}), 2);
+			Assert.fail("Mandatory exception was not detected (vector size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{mu.multiplyMatrixAndMatrix(csr, MatrixWrapper.of(3, 4, flat), 2);
+			Assert.fail("Mandatory exception was not detected (matrix size mismatch)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	public void precisionMultiplyTest() throws CalculationException {
+		final float[]		source = new float[100000];
+		final float[]		flat = new float[source.length];
+		final double		expected = source.length * (double)0.1f;
+
+		Arrays.fill(source, 1);
+		Arrays.fill(flat, 0.1f);
+
+		final MatrixWrapper	vector = MatrixWrapper.of(source), matrix = MatrixWrapper.of(source.length, 1, flat);
+		final float			quick = ((float[])MatrixUtils.getInstance(CalculationPrecision.QUICK).multiplyVectorAndMatrix(vector, matrix, 1).getContent())[0];
+		final float			medium = ((float[])MatrixUtils.getInstance(CalculationPrecision.MEDIUM).multiplyVectorAndMatrix(vector, matrix, 1).getContent())[0];
+		final float			precise = ((float[])MatrixUtils.getInstance(CalculationPrecision.PRECISE).multiplyVectorAndMatrix(vector, matrix, 1).getContent())[0];
+
+		Assert.assertEquals(expected, quick, 5);
+		Assert.assertEquals(expected, medium, 0.05);
+		Assert.assertEquals(expected, precise, 0.05);
+		Assert.assertTrue(Math.abs(expected - medium) < Math.abs(expected - quick));
+		Assert.assertEquals(CalculationPrecision.MEDIUM, MatrixUtils.getInstance(CalculationPrecision.MEDIUM).getPrecision());
+
+		Assert.assertEquals(expected, CalculationPrecision.MEDIUM.sum(flat, 0, flat.length), 0.01);
+		Assert.assertEquals(expected, CalculationPrecision.PRECISE.sum(flat, 0, flat.length), 0.01);
+
+		final CalculationPrecision.Accumulator	accumulator = CalculationPrecision.PRECISE.newAccumulator(new float[1], 1);
+
+		accumulator.row()[0] += 16777216f;
+		for(int index = 0; index < 64; index++) {	// Every addend is lost in float
+			accumulator.row()[0] += 1f;
+		}
+		Assert.assertEquals(16777280f, accumulator.get()[0], 0f);
+
+		try{MatrixUtils.getInstance(null);
+			Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+		} catch (NullPointerException exc) {
+		}
+	}
+
 	@Test
 	public void multiplyTest() throws CalculationException {
 		final MatrixUtils	mu = MatrixUtils.getDefaultInstance();
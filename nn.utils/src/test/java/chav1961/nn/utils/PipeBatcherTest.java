@@ -0,0 +1,130 @@
+package chav1961.nn.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.interfaces.ProgressIndicator;
+
+public class PipeBatcherTest {
+
+	@Test
+	public void batchingTest() throws InterruptedException, ExecutionException {
+		final AtomicInteger	calls = new AtomicInteger();
+		final Pipe			pipe = new DoublingPipe(calls);
+		final Map<Integer, CompletableFuture<MatrixWrapper>>	futures = new HashMap<>();	// Key is the submitted index
+
+		try(final PipeBatcher	batcher = new PipeBatcher(pipe, 8, 50, TimeUnit.MILLISECONDS)) {
+			final Thread[]		threads = new Thread[4];
+
+			for(int thread = 0; thread < threads.length; thread++) {
+				final int	start = thread * 16;
+
+				threads[thread] = new Thread(()->{
+					for(int index = start; index < start + 16; index++) {
+						final CompletableFuture<MatrixWrapper>	future = batcher.submit(MatrixWrapper.of(new float[] {index, -index}));
+
+						synchronized(futures) {
+							futures.put(index, future);
+						}
+					}
+				});
+				threads[thread].start();
+			}
+			for(Thread item : threads) {
+				item.join();
+			}
+			Assert.assertEquals(64, futures.size());
+			for(Map.Entry<Integer, CompletableFuture<MatrixWrapper>> item : futures.entrySet()) {	// Every result must reach its own request
+				final int	index = item.getKey();
+
+				Assert.assertArrayEquals(new float[] {2 * index, -2 * index}, item.getValue().get().getContent(), 0.0001f);
+			}
+
+			final PipeBatcher.Statistics	stat = batcher.getStatistics();
+
+			Assert.assertEquals(64, stat.getRequests());
+			Assert.assertEquals(stat.getBatches(), calls.get());
+			Assert.assertTrue(stat.getBatches() < 64);
+			Assert.assertTrue(stat.getFillRate() > 0 && stat.getFillRate() <= 1);
+			Assert.assertTrue(stat.getMaxQueueingDelay(TimeUnit.NANOSECONDS) >= stat.getAverageQueueingDelay(TimeUnit.NANOSECONDS));
+
+			final CompletableFuture<MatrixWrapper>	odd = batcher.submit(MatrixWrapper.of(new float[] {1, 2, 3}));
+
+			try{odd.get();
+				Assert.fail("Mandatory exception was not detected (pipe failure)");
+			} catch (ExecutionException exc) {
+				Assert.assertTrue(exc.getCause() instanceof CalculationException);
+			}
+			try{batcher.submit(null);
+				Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+			} catch (NullPointerException exc) {
+			}
+			try{batcher.submit(MatrixWrapper.of(new double[2]));
+				Assert.fail("Mandatory exception was not detected (illegal 1-st argument)");
+			} catch (IllegalArgumentException exc) {
+			}
+
+			batcher.close();
+			try{batcher.submit(MatrixWrapper.of(new float[2]));
+				Assert.fail("Mandatory exception was not detected (closed batcher)");
+			} catch (IllegalStateException exc) {
+			}
+		}
+		try{new PipeBatcher(pipe, 0, 1, TimeUnit.MILLISECONDS);
+			Assert.fail("Mandatory exception was not detected (illegal 2-nd argument)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	private static class DoublingPipe implements Pipe {
+		private final AtomicInteger	calls;
+
+		private DoublingPipe(final AtomicInteger calls) {
+			this.calls = calls;
+		}
+
+		@Override
+		public boolean isReadOnly() {
+			return true;
+		}
+
+		@Override
+		public int getParallelism() {
+			return 1;
+		}
+
+		@Override
+		public MatrixWrapper forward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+			final float[]	content = ((float[])matrix.getContent()).clone();
+
+			if (content.length != 2) {
+				throw new CalculationException("Illegal vector size");
+			}
+			for(int index = 0; index < content.length; index++) {
+				content[index] *= 2;
+			}
+			return MatrixWrapper.of(content);
+		}
+
+		@Override
+		public MatrixWrapper forwardBatch(final MatrixWrapper batch, final ProgressIndicator pi) throws CalculationException {
+			calls.incrementAndGet();
+			return Pipe.super.forwardBatch(batch, pi);
+		}
+
+		@Override
+		public MatrixWrapper backward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
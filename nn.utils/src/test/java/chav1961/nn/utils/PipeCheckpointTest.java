@@ -0,0 +1,179 @@
+package chav1961.nn.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderStage;
+
+public class PipeCheckpointTest {
+
+	@Test
+	public void roundTripTest() throws IOException {
+		final File		file = File.createTempFile("checkpoint", ".nnp");
+
+		try {
+			final MatrixWrapper	flat = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 32, 16);
+			final MatrixWrapper	half = MatrixWrapper.convert(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 16, 8), MatrixClass.HALF_FLAT2);
+			final MatrixWrapper	int8 = MatrixWrapper.quantize(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 3L, 8, 4), MatrixClass.INT8_ROW_FLAT2, 1.0f);
+
+			for (boolean readOnly : new boolean[] {true, false}) {
+				final PipeBuilder	builder = PipeBuilder.newInstance().setReadOnly(readOnly).setPrecision(CalculationPrecision.PRECISE).setParallelism(3)
+												.mul(flat).activate(ActivationType.GELU).mul(half).activate(ActivationType.LEAKY_RELU, 0.2f).mul(int8).activate(ActivationType.SOFTMAX);
+
+				try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					PipeCheckpoint.save(builder, fc);
+				}
+				try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+					PipeCheckpoint.verify(fc);
+
+					final PipeBuilder				loaded = PipeCheckpoint.load(fc);
+					final Iterator<PipeBuilderStage>	it = loaded.iterator();
+
+					Assert.assertEquals(readOnly, loaded.isReadOnly());
+					Assert.assertEquals(CalculationPrecision.PRECISE, loaded.getPrecision());
+					Assert.assertEquals(3, loaded.getParallelism());
+
+					for(PipeBuilderStage stage : builder) {
+						final PipeBuilderStage	item = it.next();
+
+						Assert.assertEquals(stage.isMatrix(), item.isMatrix());
+						if (stage.isMatrix()) {
+							if (stage.getMatrix() == flat) {	// Dense float content is mapped in the read-only pipes only
+								Assert.assertEquals(readOnly ? MatrixClass.FLOAT_BUFFER2 : MatrixClass.FLOAT_FLAT2, item.getMatrix().getMatrixClass());
+								Assert.assertEquals(flat, MatrixWrapper.flatten(item.getMatrix()));
+							}
+							else {
+								Assert.assertEquals(stage.getMatrix(), item.getMatrix());
+							}
+						}
+						else {
+							Assert.assertEquals(stage.getActivationType(), item.getActivationType());
+							Assert.assertArrayEquals(stage.getActivationParameters(), item.getActivationParameters(), 0f);
+						}
+					}
+					Assert.assertFalse(it.hasNext());
+				}
+			}
+
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				try {PipeCheckpoint.save(PipeBuilder.newInstance(), fc);
+					Assert.fail("Mandatory exception was not detected (empty builder)");
+				} catch (IllegalArgumentException exc) {
+				}
+			}
+			try {PipeCheckpoint.load(null);
+				Assert.fail("Mandatory exception was not detected (null 1-st argument)");
+			} catch (NullPointerException exc) {
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void byteOrderTest() throws IOException {
+		final File		file = File.createTempFile("checkpoint", ".nnp");
+
+		try {
+			final MatrixWrapper	flat = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 32, 16);
+
+			for (ByteOrder order : new ByteOrder[] {null, ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {	// Native order is used by default
+				for (boolean readOnly : new boolean[] {true, false}) {
+					final PipeBuilder	builder = PipeBuilder.newInstance().setReadOnly(readOnly).mul(flat).activate(ActivationType.RELU);
+
+					try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+						if (order == null) {
+							PipeCheckpoint.save(builder, fc);
+						}
+						else {
+							PipeCheckpoint.save(builder, fc, order);
+						}
+					}
+					try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+						final MatrixWrapper	loaded = PipeCheckpoint.load(fc).iterator().next().getMatrix();
+
+						Assert.assertEquals(flat, MatrixWrapper.flatten(loaded));
+						if (readOnly) {
+							Assert.assertEquals(order == null ? ByteOrder.nativeOrder() : order, ((FloatBuffer)loaded.getContent()).order());
+						}
+					}
+				}
+			}
+
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				fc.write(ByteBuffer.wrap(new byte[] {0, 2}), Integer.BYTES + Short.BYTES);
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				try {PipeCheckpoint.load(fc);
+					Assert.fail("Mandatory exception was not detected (unknown flags)");
+				} catch (IOException exc) {
+				}
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				try {PipeCheckpoint.save(PipeBuilder.newInstance().mul(flat), fc, null);
+					Assert.fail("Mandatory exception was not detected (null 3-rd argument)");
+				} catch (NullPointerException exc) {
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void corruptionTest() throws IOException {
+		final File		file = File.createTempFile("checkpoint", ".nnp");
+
+		try {
+			final PipeBuilder	builder = PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 32, 16)).activate(ActivationType.RELU);
+			final long			size;
+
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				PipeCheckpoint.save(builder, fc);
+				size = fc.size();
+				fc.write(ByteBuffer.wrap(new byte[] {0x55}), PipeCheckpoint.PAGE_SIZE + 1);	// Payload is not checked on load, only on verify
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				PipeCheckpoint.load(fc);
+				try {PipeCheckpoint.verify(fc);
+					Assert.fail("Mandatory exception was not detected (corrupted payload)");
+				} catch (IOException exc) {
+				}
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				fc.write(ByteBuffer.wrap(new byte[] {0x55}), size - 20);
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				try {PipeCheckpoint.load(fc);
+					Assert.fail("Mandatory exception was not detected (corrupted header)");
+				} catch (IOException exc) {
+				}
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+				fc.truncate(size - 1);
+			}
+			try(final FileChannel	fc = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+				try {PipeCheckpoint.load(fc);
+					Assert.fail("Mandatory exception was not detected (truncated file)");
+				} catch (IOException exc) {
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+}
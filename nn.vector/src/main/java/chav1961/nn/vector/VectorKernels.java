@@ -0,0 +1,203 @@
+package chav1961.nn.vector;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernels {
+	static final VectorSpecies<Float>	SPECIES = FloatVector.SPECIES_PREFERRED;
+	static final int					LENGTH = SPECIES.length();
+	static final int					STRIP = 4 * LENGTH;	// Columns processed at once, four accumulators hide latency of the fused multiply-add
+	private static final float			GELU_SCALE = (float)Math.sqrt(2 / Math.PI);
+	private static final float			GELU_CUBIC = 0.044715f;
+
+	private VectorKernels() {
+	}
+
+	// result[sample][from..to) = source[sample] x matrix[rows x columns], matrix rows are contiguous and every strip is read once for all the samples
+	static void multiply(final float[] source, final int samples, final float[] matrix, final int matrixOffset, final int rowStride, final int rows, final int columns, final float[] result, final int from, final int to) {
+		int		column = from;
+
+		for(; column + STRIP <= to; column += STRIP) {
+			for(int sample = 0, sourceOffset = 0, resultOffset = column; sample < samples; sample++, sourceOffset += rows, resultOffset += columns) {
+				FloatVector	acc0 = FloatVector.zero(SPECIES), acc1 = acc0, acc2 = acc0, acc3 = acc0;
+
+				for(int row = 0, offset = matrixOffset + column; row < rows; row++, offset += rowStride) {
+					final float	value = source[sourceOffset + row];
+
+					if (value != 0) {	// Outputs of the RELU-like activations are sparse
+						final FloatVector	factor = FloatVector.broadcast(SPECIES, value);
+
+						acc0 = FloatVector.fromArray(SPECIES, matrix, offset).fma(factor, acc0);
+						acc1 = FloatVector.fromArray(SPECIES, matrix, offset + LENGTH).fma(factor, acc1);
+						acc2 = FloatVector.fromArray(SPECIES, matrix, offset + 2 * LENGTH).fma(factor, acc2);
+						acc3 = FloatVector.fromArray(SPECIES, matrix, offset + 3 * LENGTH).fma(factor, acc3);
+					}
+				}
+				acc0.intoArray(result, resultOffset);
+				acc1.intoArray(result, resultOffset + LENGTH);
+				acc2.intoArray(result, resultOffset + 2 * LENGTH);
+				acc3.intoArray(result, resultOffset + 3 * LENGTH);
+			}
+		}
+		for(; column + LENGTH <= to; column += LENGTH) {
+			for(int sample = 0, sourceOffset = 0, resultOffset = column; sample < samples; sample++, sourceOffset += rows, resultOffset += columns) {
+				FloatVector	acc = FloatVector.zero(SPECIES);
+
+				for(int row = 0, offset = matrixOffset + column; row < rows; row++, offset += rowStride) {
+					acc = FloatVector.fromArray(SPECIES, matrix, offset).fma(FloatVector.broadcast(SPECIES, source[sourceOffset + row]), acc);
+				}
+				acc.intoArray(result, resultOffset);
+			}
+		}
+		for(; column < to; column++) {	// Tail is shorter than vector
+			for(int sample = 0, sourceOffset = 0; sample < samples; sample++, sourceOffset += rows) {
+				float	sum = 0;
+
+				for(int row = 0, offset = matrixOffset + column; row < rows; row++, offset += rowStride) {
+					sum += source[sourceOffset + row] * matrix[offset];
+				}
+				result[sample * columns + column] = sum;
+			}
+		}
+	}
+
+	// Row-major copy of any strided view, transposed views are read with gather loads
+	static float[] toRowMajor(final float[] content, final int offset, final int rows, final int columns, final int rowStride, final int columnStride) {
+		final float[]	result = new float[rows * columns];
+
+		if (columnStride == 1) {
+			for(int row = 0; row < rows; row++) {
+				System.arraycopy(content, offset + row * rowStride, result, row * columns, columns);
+			}
+		}
+		else {
+			final int[]	indices = new int[LENGTH];
+
+			for(int index = 0; index < indices.length; index++) {
+				indices[index] = index * columnStride;
+			}
+			for(int row = 0; row < rows; row++) {
+				final int	base = offset + row * rowStride;
+				int			column = 0;
+
+				for(; column + LENGTH <= columns; column += LENGTH) {
+					FloatVector.fromArray(SPECIES, content, base + column * columnStride, indices, 0).intoArray(result, row * columns + column);
+				}
+				for(; column < columns; column++) {
+					result[row * columns + column] = content[base + column * columnStride];
+				}
+			}
+		}
+		return result;
+	}
+
+	static void activate(final ActivationType type, final float slope, final float[] source, final float[] result, final int from, final int to) {	// Element-wise activations only
+		final int	upper = from + SPECIES.loopBound(to - from);
+		int			index = from;
+
+		switch (type) {
+			case RELU		:
+				for(; index < upper; index += LENGTH) {
+					FloatVector.fromArray(SPECIES, source, index).max(0f).intoArray(result, index);
+				}
+				break;
+			case LEAKY_RELU	:
+				for(; index < upper; index += LENGTH) {
+					final FloatVector	value = FloatVector.fromArray(SPECIES, source, index);
+
+					value.blend(value.mul(slope), value.compare(VectorOperators.LT, 0f)).intoArray(result, index);
+				}
+				break;
+			case SIGMOID	:
+				for(; index < upper; index += LENGTH) {
+					FloatVector.broadcast(SPECIES, 1f).div(FloatVector.fromArray(SPECIES, source, index).neg().lanewise(VectorOperators.EXP).add(1f)).intoArray(result, index);
+				}
+				break;
+			case TANH		:
+				for(; index < upper; index += LENGTH) {
+					FloatVector.fromArray(SPECIES, source, index).lanewise(VectorOperators.TANH).intoArray(result, index);
+				}
+				break;
+			case GELU		:
+				for(; index < upper; index += LENGTH) {
+					final FloatVector	value = FloatVector.fromArray(SPECIES, source, index);
+					final FloatVector	inner = value.mul(value).mul(GELU_CUBIC).add(1f).mul(value).mul(GELU_SCALE);
+
+					inner.lanewise(VectorOperators.TANH).add(1f).mul(value).mul(0.5f).intoArray(result, index);
+				}
+				break;
+			default :
+				throw new UnsupportedOperationException("Activation type ["+type+"] is not element-wise");
+		}
+		for(; index < to; index++) {
+			result[index] = activate(type, slope, source[index]);
+		}
+	}
+
+	static void softMax(final float[] source, final float[] result, final int from, final int to, final boolean logarithmic) {	// Maximum is subtracted to keep exponents in range
+		final int	upper = from + SPECIES.loopBound(to - from);
+		FloatVector	vectorMax = FloatVector.broadcast(SPECIES, Float.NEGATIVE_INFINITY);
+		float		max = Float.NEGATIVE_INFINITY;
+
+		for(int index = from; index < upper; index += LENGTH) {
+			vectorMax = vectorMax.max(FloatVector.fromArray(SPECIES, source, index));
+		}
+		max = Math.max(max, vectorMax.reduceLanes(VectorOperators.MAX));
+		for(int index = upper; index < to; index++) {
+			max = Math.max(max, source[index]);
+		}
+		FloatVector	vectorSum = FloatVector.zero(SPECIES);
+		float		sum = 0;
+
+		for(int index = from; index < upper; index += LENGTH) {
+			final FloatVector	value = FloatVector.fromArray(SPECIES, source, index).sub(max).lanewise(VectorOperators.EXP);
+
+			if (!logarithmic) {
+				value.intoArray(result, index);
+			}
+			vectorSum = vectorSum.add(value);
+		}
+		sum = vectorSum.reduceLanes(VectorOperators.ADD);
+		for(int index = upper; index < to; index++) {
+			final float	value = (float)Math.exp(source[index] - max);
+
+			if (!logarithmic) {
+				result[index] = value;
+			}
+			sum += value;
+		}
+		if (logarithmic) {
+			final float	shift = max + (float)Math.log(sum);
+
+			for(int index = from; index < upper; index += LENGTH) {
+				FloatVector.fromArray(SPECIES, source, index).sub(shift).intoArray(result, index);
+			}
+			for(int index = upper; index < to; index++) {
+				result[index] = source[index] - shift;
+			}
+		}
+		else {
+			final float	scale = 1 / sum;
+
+			for(int index = from; index < upper; index += LENGTH) {
+				FloatVector.fromArray(SPECIES, result, index).mul(scale).intoArray(result, index);
+			}
+			for(int index = upper; index < to; index++) {
+				result[index] *= scale;
+			}
+		}
+	}
+
+	private static float activate(final ActivationType type, final float slope, final float value) {
+		switch (type) {
+			case RELU		: return Math.max(value, 0f);
+			case LEAKY_RELU	: return value > 0 ? value : slope * value;
+			case SIGMOID	: return (float)(1 / (1 + Math.exp(-value)));
+			case TANH		: return (float)Math.tanh(value);
+			case GELU		: return 0.5f * value * (1 + (float)Math.tanh(GELU_SCALE * (value + GELU_CUBIC * value * value * value)));
+			default : throw new UnsupportedOperationException("Activation type ["+type+"] is not element-wise");
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package chav1961.nn.vector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderStage;
+import chav1961.nn.api.interfaces.SparseContent;
+import chav1961.nn.api.interfaces.WorkerTeam;
+import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.interfaces.ProgressIndicator;
+
+class VectorPipe implements Pipe {	// Immutable execution plan, all the weights are row-major float arrays
+	static final float			DEFAULT_SLOPE = 0.01f;
+	static final long			PARALLEL_THRESHOLD = 1 << 16;	// Less matrices are multiplied on the caller thread only
+
+	private final boolean 		readOnly;
+	private final int			parallelism;
+	private final WorkerTeam	team;
+	private final int			inputSize;
+	private final int			outputSize;
+	private final Step[]		steps;
+	private final ThreadLocal<float[][]>	buffers;
+
+	VectorPipe(final PipeBuilder builder) {
+		final List<Step>	compiled = new ArrayList<>();
+		int					inputSize = -1, currentSize = -1;
+
+		this.readOnly = builder.isReadOnly();
+		this.parallelism = builder.getParallelism();
+		this.team = builder.getWorkerTeam();
+		for(PipeBuilderStage stage : builder) {
+			if (stage.isMatrix()) {
+				final MatrixWrapper	matrix = stage.getMatrix();
+
+				if (matrix.getMatrixClass() != MatrixClass.FLOAT_FLAT2 && matrix.getMatrixClass() != MatrixClass.FLOAT2_ARRAY) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: matrix class ["+matrix.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_FLAT2+"] and ["+MatrixClass.FLOAT2_ARRAY+"] are available");
+				}
+				else if (matrix.getDimensions().length != 2) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: matrix must be two-dimensional matrix");
+				}
+				else if (!readOnly && !isContiguous(matrix)) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: matrix class ["+matrix.getMatrixClass()+"] or view with column stride ["+matrix.getColumnStride()+"] is copied on build, it can be used in the read-only pipes only");
+				}
+				else if (currentSize >= 0 && currentSize != matrix.getDimensions()[0]) {
+					throw new IllegalArgumentException("Stage ["+stage.getStageNumber()+"]: number of rows ["+matrix.getDimensions()[0]+"] conflicts with the previous stage output size ["+currentSize+"]");
+				}
+				else {
+					if (inputSize < 0) {
+						inputSize = matrix.getDimensions()[0];
+					}
+					currentSize = matrix.getDimensions()[1];
+					compiled.add(Step.of(matrix));
+				}
+			}
+			else if (!compiled.isEmpty() && compiled.get(compiled.size() - 1).weights != null && compiled.get(compiled.size() - 1).type == null) {	// Fuse activation into the previous multiplication
+				compiled.set(compiled.size() - 1, compiled.get(compiled.size() - 1).with(stage.getActivationType(), stage.getActivationParameters()));
+			}
+			else {
+				compiled.add(new Step(null, 0, 0, 0, currentSize, stage.getActivationType(), stage.getActivationParameters()));
+			}
+		}
+		if (inputSize < 0) {
+			throw new IllegalArgumentException("Pipe builder doesn't contain any matrices");
+		}
+		else {
+			for(int index = 0; index < compiled.size(); index++) {	// Leading activations keep size of the input
+				final Step	item = compiled.get(index);
+
+				if (item.size < 0) {
+					compiled.set(index, new Step(null, 0, 0, 0, inputSize, item.type, item.parameters));
+				}
+			}
+			this.inputSize = inputSize;
+			this.outputSize = currentSize;
+			this.steps = compiled.toArray(new Step[compiled.size()]);
+			this.buffers = ThreadLocal.withInitial(()->{	// Intermediate results of the single vector calculation
+				final float[][]	result = new float[steps.length][];
+
+				for(int index = 0; index < steps.length - 1; index++) {
+					result[index] = new float[steps[index].size];
+				}
+				return result;
+			});
+		}
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	@Override
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	@Override
+	public MatrixWrapper forward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+		return forward(matrix, MatrixWrapper.of(new float[outputSize]), pi);
+	}
+
+	@Override
+	public MatrixWrapper forward(final MatrixWrapper matrix, final MatrixWrapper target, final ProgressIndicator pi) throws CalculationException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to process can't be null");
+		}
+		else if (matrix.getMatrixClass() != MatrixClass.FLOAT_ARRAY && matrix.getMatrixClass() != MatrixClass.FLOAT_SPARSE) {
+			throw new IllegalArgumentException("Matrix class ["+matrix.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_ARRAY+"] and ["+MatrixClass.FLOAT_SPARSE+"] are available");
+		}
+		else if (matrix.getDimensions()[0] != inputSize) {
+			throw new IllegalArgumentException("Matrix size ["+matrix.getDimensions()[0]+"] differs from pipe input size ["+inputSize+"]");
+		}
+		else if (target == null) {
+			throw new NullPointerException("Target matrix can't be null");
+		}
+		else if (target.getMatrixClass() != MatrixClass.FLOAT_ARRAY || target.getDimensions()[0] != outputSize) {
+			throw new IllegalArgumentException("Target matrix class ["+target.getMatrixClass()+"] or size ["+target.getDimensions()[0]+"] differs from awaited ["+MatrixClass.FLOAT_ARRAY+"] and ["+outputSize+"]");
+		}
+		else if (target.getContent() == matrix.getContent()) {
+			throw new IllegalArgumentException("Target matrix can't share content with the matrix to process");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else {
+			final float[][]	stages = buffers.get();
+			float[]			current = matrix.getMatrixClass() == MatrixClass.FLOAT_SPARSE ? toDense(matrix, new float[inputSize]) : matrix.getContent();
+
+			pi.start("Forward calculation", steps.length);
+			for(int index = 0; index < steps.length; index++) {
+				current = process(steps[index], current, 1, index == steps.length - 1 ? target.getContent() : stages[index]);
+				pi.processed(index + 1);
+			}
+			pi.end();
+			return target;
+		}
+	}
+
+	@Override
+	public MatrixWrapper forwardBatch(final MatrixWrapper batch, final ProgressIndicator pi) throws CalculationException {
+		if (batch == null) {
+			throw new NullPointerException("Batch to process can't be null");
+		}
+		else if (batch.getMatrixClass() != MatrixClass.FLOAT_BATCH2) {
+			throw new IllegalArgumentException("Matrix class ["+batch.getMatrixClass()+"] is not supported, only ["+MatrixClass.FLOAT_BATCH2+"] is available");
+		}
+		else if (batch.getDimensions()[1] != inputSize) {
+			throw new IllegalArgumentException("Batch sample size ["+batch.getDimensions()[1]+"] differs from pipe input size ["+inputSize+"]");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else {
+			final int	batchSize = batch.getDimensions()[0];
+			float[]		current = batch.getContent();
+
+			pi.start("Forward batch calculation", steps.length);
+			for(int index = 0; index < steps.length; index++) {
+				current = process(steps[index], current, batchSize, new float[batchSize * steps[index].size]);
+				pi.processed(index + 1);
+			}
+			pi.end();
+			return MatrixWrapper.batch(batchSize, outputSize, current);
+		}
+	}
+
+	@Override
+	public MatrixWrapper backward(final MatrixWrapper matrix, final ProgressIndicator pi) throws CalculationException {
+		if (matrix == null) {
+			throw new NullPointerException("Matrix to process can't be null");
+		}
+		else if (pi == null) {
+			throw new NullPointerException("Progress indicator can't be null");
+		}
+		else if (isReadOnly()) {
+			throw new IllegalStateException("Attempt to call this method on read-only pipe");
+		}
+		else {
+			throw new UnsupportedOperationException("Backward calculation is not supported by vector pipes yet");
+		}
+	}
+
+	private float[] process(final Step step, final float[] current, final int samples, final float[] output) throws CalculationException {
+		if (step.weights != null) {	// Element-wise activation is applied to every column range just after the multiplication
+			final int[]	ranges = splitColumns(step.size, (long)samples * step.rows * step.size >= PARALLEL_THRESHOLD ? team.getSize() : 1);
+
+			team.execute(ranges.length - 1, (part)->{
+				VectorKernels.multiply(current, samples, step.weights, step.offset, step.rowStride, step.rows, step.size, output, ranges[part], ranges[part + 1]);
+				if (step.type != null && step.type.isElementWise()) {
+					for(int sample = 0, base = 0; sample < samples; sample++, base += step.size) {
+						VectorKernels.activate(step.type, step.slope, output, output, base + ranges[part], base + ranges[part + 1]);
+					}
+				}
+			});
+			if (step.type != null && !step.type.isElementWise()) {
+				softMax(step.type, output, output, samples, step.size);
+			}
+		}
+		else if (step.type.isElementWise()) {
+			VectorKernels.activate(step.type, step.slope, current, output, 0, samples * step.size);
+		}
+		else {
+			softMax(step.type, current, output, samples, step.size);
+		}
+		return output;
+	}
+
+	private static void softMax(final ActivationType type, final float[] source, final float[] result, final int samples, final int size) {
+		for(int sample = 0, from = 0; sample < samples; sample++, from += size) {
+			VectorKernels.softMax(source, result, from, from + size, type == ActivationType.LOG_SOFTMAX);
+		}
+	}
+
+	private static int[] splitColumns(final int columns, final int parts) {	// Every range except the last one is aligned to the vector strip
+		final int	strips = (columns + VectorKernels.STRIP - 1) / VectorKernels.STRIP, count = Math.max(1, Math.min(parts, strips));
+		final int[]	result = new int[count + 1];
+
+		for(int index = 1; index < count; index++) {
+			result[index] = (int)((long)strips * index / count) * VectorKernels.STRIP;
+		}
+		result[count] = columns;
+		return result;
+	}
+
+	private static boolean isContiguous(final MatrixWrapper matrix) {
+		return matrix.getMatrixClass() == MatrixClass.FLOAT_FLAT2 && matrix.getColumnStride() == 1;
+	}
+
+	private static float[] toDense(final MatrixWrapper matrix, final float[] result) {
+		final SparseContent	content = matrix.getContent();
+
+		for(int index = 0; index < content.size(); index++) {
+			result[content.getIndices()[index]] = content.getValues()[index];
+		}
+		return result;
+	}
+
+	private static class Step {
+		final float[]			weights;
+		final int				offset;
+		final int				rowStride;
+		final int				rows;
+		final int				size;
+		final ActivationType	type;
+		final float[]			parameters;
+		final float				slope;
+
+		private Step(final float[] weights, final int offset, final int rowStride, final int rows, final int size, final ActivationType type, final float[] parameters) {
+			this.weights = weights;
+			this.offset = offset;
+			this.rowStride = rowStride;
+			this.rows = rows;
+			this.size = size;
+			this.type = type;
+			this.parameters = parameters;
+			this.slope = type == ActivationType.LEAKY_RELU && parameters != null && parameters.length > 0 ? parameters[0] : DEFAULT_SLOPE;
+		}
+
+		private Step with(final ActivationType type, final float[] parameters) {
+			return new Step(weights, offset, rowStride, rows, size, type, parameters);
+		}
+
+		private static Step of(final MatrixWrapper matrix) {	// Contiguous rows are used as is, another layouts are copied once
+			final int	rows = matrix.getDimensions()[0], columns = matrix.getDimensions()[1];
+
+			if (isContiguous(matrix)) {
+				return new Step(matrix.getContent(), matrix.getOffset(), matrix.getRowStride(), rows, columns, null, null);
+			}
+			else if (matrix.getMatrixClass() == MatrixClass.FLOAT2_ARRAY) {
+				final float[][]	content = matrix.getContent();
+				final float[]	result = new float[rows * columns];
+
+				for(int row = 0; row < rows; row++) {
+					System.arraycopy(content[row], 0, result, row * columns, columns);
+				}
+				return new Step(result, 0, columns, rows, columns, null, null);
+			}
+			else {
+				return new Step(VectorKernels.toRowMajor(matrix.getContent(), matrix.getOffset(), rows, columns, matrix.getRowStride(), matrix.getColumnStride()), 0, columns, rows, columns, null, null);
+			}
+		}
+	}
+}
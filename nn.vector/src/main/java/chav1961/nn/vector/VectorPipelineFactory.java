@@ -0,0 +1,66 @@
+package chav1961.nn.vector;
+
+import java.net.URI;
+import java.util.EnumSet;
+
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderFactory;
+import chav1961.nn.api.interfaces.PipeCapabilities;
+import chav1961.purelib.basic.URIUtils;
+import chav1961.purelib.basic.Utils;
+import chav1961.purelib.basic.exceptions.EnvironmentException;
+
+public class VectorPipelineFactory implements PipeBuilderFactory {
+	private static final URI	RESOURCE = URI.create(PipeBuilderFactory.SCHEMA+":vector");
+	private static final PipeCapabilities	CAPABILITIES = new PipeCapabilities(EnumSet.of(MatrixClass.FLOAT2_ARRAY, MatrixClass.FLOAT_FLAT2), EnumSet.of(CalculationPrecision.QUICK), true, Integer.MAX_VALUE);
+
+	public VectorPipelineFactory() {
+	}
+	
+	@Override
+	public URI getFactoryURI() {
+		return RESOURCE;
+	}
+
+	@Override
+	public PipeCapabilities getCapabilities() {	// Lanes are summed in any order, so only quick precision is available. Copied layouts are checked on build, they are available for read-only pipes only
+		return CAPABILITIES;
+	}
+
+	@Override
+	public boolean canServe(final URI resource) throws NullPointerException {
+		if (resource == null) {
+			throw new NullPointerException("Resource to test can't be null");
+		}
+		else {
+			return URIUtils.canServeURI(resource, RESOURCE);
+		}
+	}
+
+	@Override
+	public Pipe newInstance(final URI resource) throws EnvironmentException, NullPointerException, IllegalArgumentException {
+		throw new UnsupportedOperationException("Don't use this method, use newInstance(URI,Object...) instead");
+	}
+	
+	@Override
+	public Pipe newInstance(final URI resource, final Object... parameters) throws EnvironmentException, NullPointerException, IllegalArgumentException {
+		if (resource == null) {
+			throw new NullPointerException("Resource to test can't be null");
+		}
+		else if (!canServe(resource)) {
+			throw new IllegalArgumentException("Resource ["+resource+"] can't be servied with this provider");
+		}
+		else if (parameters == null || parameters.length != 1 || Utils.checkArrayContent4Nulls(parameters) >= 0) {
+			throw new IllegalArgumentException("Parameters nust contain exactly one non-null value");
+		}
+		else if (!(parameters[0] instanceof PipeBuilder)) {
+			throw new IllegalArgumentException("Parameter must be PipeBuilder instance");
+		}
+		else {
+			return new VectorPipe((PipeBuilder)parameters[0]);
+		}
+	}
+}
@@ -0,0 +1 @@
+package chav1961.nn.vector;
\ No newline at end of file
@@ -0,0 +1,9 @@
+module nn.vector {
+	requires transitive chav1961.purelib;
+	requires java.base;
+	requires nn.api;
+	requires jdk.incubator.vector;
+	
+	provides chav1961.nn.api.interfaces.PipeBuilderFactory with 
+		chav1961.nn.vector.VectorPipelineFactory;
+}
@@ -0,0 +1,60 @@
+package chav1961.nn.vector;
+
+import java.net.URI;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderFactory;
+import chav1961.purelib.basic.exceptions.CalculationException;
+
+// Ordinal and vector backends on the same pipes. Usage: java --add-modules jdk.incubator.vector VectorBenchmark [<seconds>]
+public class VectorBenchmark {
+	private static final URI	VECTOR = URI.create(PipeBuilderFactory.SCHEMA+":vector");
+	private static final int	BATCH_SIZE = 32;
+
+	public static void main(final String[] args) throws CalculationException {
+		final int	seconds = args.length > 0 ? Integer.parseInt(args[0]) : 2;
+
+		System.out.println("Vector species: "+VectorKernels.SPECIES);
+		System.out.println("pipe\tordinal calls/s\tvector calls/s\tspeedup");
+		run("gemv 512x256+softmax", PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 512, 256)).activate(ActivationType.SOFTMAX), false, seconds);
+		run("gemv 1024x1024+gelu", PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 2L, 1024, 1024)).activate(ActivationType.GELU), false, seconds);
+		run("gemv transposed 512x512+tanh", PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.transpose(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 3L, 512, 512))).activate(ActivationType.TANH), false, seconds);
+		run("mlp 784-256-10 relu", PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 4L, 784, 256)).activate(ActivationType.RELU).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 5L, 256, 10)).activate(ActivationType.LOG_SOFTMAX), false, seconds);
+		run("gemm "+BATCH_SIZE+"x784-256-10 relu", PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 4L, 784, 256)).activate(ActivationType.RELU).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 5L, 256, 10)).activate(ActivationType.LOG_SOFTMAX), true, seconds);
+	}
+
+	private static void run(final String name, final PipeBuilder builder, final boolean batch, final int seconds) throws CalculationException {
+		final int			inputSize = builder.iterator().next().getMatrix().getDimensions()[0];
+		final MatrixWrapper	source = batch ? MatrixWrapper.random(MatrixClass.FLOAT_BATCH2, 6L, BATCH_SIZE, inputSize) : MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, 6L, inputSize);
+		final double		ordinal = measure(builder.build(PipeBuilderFactory.DEFAULT_FACTORY), source, batch, seconds);
+		final double		vector = measure(builder.build(VECTOR), source, batch, seconds);
+
+		System.out.println(String.format("%s\t%.0f\t%.0f\t%.2f", name, ordinal, vector, vector / ordinal));
+	}
+
+	private static double measure(final Pipe pipe, final MatrixWrapper source, final boolean batch, final int seconds) throws CalculationException {
+		for(int index = 0; index < 200; index++) {	// Warm up
+			call(pipe, source, batch);
+		}
+		final long	start = System.nanoTime(), end = start + seconds * 1_000_000_000L;
+		long		calls = 0;
+
+		for(; System.nanoTime() < end; calls++) {
+			call(pipe, source, batch);
+		}
+		return calls * 1e9 / (System.nanoTime() - start);
+	}
+
+	private static void call(final Pipe pipe, final MatrixWrapper source, final boolean batch) throws CalculationException {
+		if (batch) {
+			pipe.forwardBatch(source);
+		}
+		else {
+			pipe.forward(source);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package chav1961.nn.vector;
+
+import java.net.URI;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import chav1961.nn.api.interfaces.ActivationType;
+import chav1961.nn.api.interfaces.CalculationPrecision;
+import chav1961.nn.api.interfaces.Distribution;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.Pipe;
+import chav1961.nn.api.interfaces.PipeBuilder;
+import chav1961.nn.api.interfaces.PipeBuilderFactory;
+import chav1961.purelib.basic.exceptions.CalculationException;
+import chav1961.purelib.basic.exceptions.EnvironmentException;
+
+public class VectorPipeTest {
+	private static final URI	VECTOR = URI.create(PipeBuilderFactory.SCHEMA+":vector");
+
+	@Test
+	public void kernelsTest() {
+		final float[]	source = new float[] {1,2,3};
+		final float[]	matrix = new float[] {1,2,3, 4,5,6, 7,8,9};
+		final float[]	result = new float[3];
+		
+		VectorKernels.multiply(source, 1, matrix, 0, 3, 3, 3, result, 0, 3);
+		Assert.assertArrayEquals(new float[] {30, 36, 42}, result, 0.001f);
+		Assert.assertArrayEquals(new float[] {1,4,7, 2,5,8, 3,6,9}, VectorKernels.toRowMajor(matrix, 0, 3, 3, 1, 3), 0f);
+		
+		final float[]	wide = new float[101], transposed = new float[101 * 3];
+		
+		for(int index = 0; index < wide.length; index++) {
+			wide[index] = index - 50;
+			transposed[index * 3 + 1] = index;
+		}
+		Assert.assertEquals(transposed.length / 3, VectorKernels.toRowMajor(transposed, 1, 1, 101, 0, 3).length);
+		Assert.assertEquals(100f, VectorKernels.toRowMajor(transposed, 1, 1, 101, 0, 3)[100], 0f);
+		
+		final float[]	softMax = new float[wide.length];
+		float			sum = 0;
+		
+		VectorKernels.softMax(wide, softMax, 0, wide.length, false);
+		for(float item : softMax) {
+			sum += item;
+		}
+		Assert.assertEquals(1f, sum, 0.001f);
+		VectorKernels.softMax(wide, softMax, 0, wide.length, true);
+		Assert.assertEquals(Math.log(Math.exp(50) / sum(wide)), softMax[100], 0.001f);
+		
+		VectorKernels.activate(ActivationType.RELU, 0, wide, softMax, 0, wide.length);
+		Assert.assertEquals(0f, softMax[0], 0f);
+		Assert.assertEquals(50f, softMax[100], 0f);
+		VectorKernels.activate(ActivationType.LEAKY_RELU, 0.1f, wide, softMax, 0, wide.length);
+		Assert.assertEquals(-5f, softMax[0], 0.0001f);
+		
+		final float[]	symmetric = new float[Math.max(wide.length, 2 * VectorKernels.LENGTH + 3)];	// Both vector body and scalar tail are checked
+		
+		for(int index = 0; index < symmetric.length; index++) {
+			symmetric[index] = 8f * index / (symmetric.length - 1) - 4f;
+		}
+		for(ActivationType type : new ActivationType[] {ActivationType.SIGMOID, ActivationType.TANH, ActivationType.GELU}) {
+			final float[]	activated = new float[symmetric.length];
+			
+			VectorKernels.activate(type, 0, symmetric, activated, 0, symmetric.length);
+			for(int index = 0; index < symmetric.length; index++) {
+				Assert.assertEquals("Activation ["+type+"], value ["+symmetric[index]+"]", reference(type, symmetric[index]), activated[index], 0.0001f);
+			}
+		}
+		
+		try{VectorKernels.activate(ActivationType.SOFTMAX, 0, wide, softMax, 0, wide.length);
+			Assert.fail("Mandatory exception was not detected (non-element-wise activation)");
+		} catch (UnsupportedOperationException exc) {
+		}
+	}
+
+	@Test
+	public void compatibilityTest() throws CalculationException {
+		final MatrixWrapper	flat = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.UNIFORM_SYMMETRIC, 1L, 1, 37, 133);
+		final MatrixWrapper	array = MatrixWrapper.convert(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.UNIFORM_SYMMETRIC, 2L, 1, 133, 70), MatrixClass.FLOAT2_ARRAY);
+		final MatrixWrapper	transposed = MatrixWrapper.transpose(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.UNIFORM_SYMMETRIC, 3L, 1, 11, 70));
+		final MatrixWrapper	source = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, Distribution.UNIFORM_SYMMETRIC, 4L, 1, 37);
+
+		for(ActivationType type : ActivationType.values()) {
+			final PipeBuilder	builder = PipeBuilder.newInstance().setReadOnly(true).activate(ActivationType.TANH).mul(flat).activate(type).mul(array).activate(ActivationType.GELU).mul(transposed).activate(type);
+
+			assertClose("Activation ["+type+"]", builder.build(PipeBuilderFactory.DEFAULT_FACTORY).forward(source).getContent(), builder.build(VECTOR).forward(source).getContent());
+			assertClose("Activation ["+type+"], 3 threads", builder.build(PipeBuilderFactory.DEFAULT_FACTORY).forward(source).getContent(), builder.setParallelism(3).build(VECTOR).forward(source).getContent());
+		}
+		final PipeBuilder	builder = PipeBuilder.newInstance().setReadOnly(true).mul(flat).activate(ActivationType.LEAKY_RELU, 0.2f).mul(array).activate(ActivationType.LOG_SOFTMAX);
+		final MatrixWrapper	batch = MatrixWrapper.batch(source, MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, Distribution.UNIFORM_SYMMETRIC, 5L, 1, 37), MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, Distribution.UNIFORM_SYMMETRIC, 6L, 1, 37));
+		final MatrixWrapper	sparse = MatrixWrapper.of(37, new int[] {3, 30}, new float[] {1f, -2f});
+		final PipeBuilder	large = PipeBuilder.newInstance().setParallelism(3).mul(MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, Distribution.UNIFORM_SYMMETRIC, 7L, 1, 256, 300)).activate(ActivationType.RELU);	// Columns are split between the threads
+		final MatrixWrapper	largeSource = MatrixWrapper.random(MatrixClass.FLOAT_ARRAY, Distribution.UNIFORM_SYMMETRIC, 8L, 1, 256);
+		
+		assertClose("Batch", builder.build(PipeBuilderFactory.DEFAULT_FACTORY).forwardBatch(batch).getContent(), builder.build(VECTOR).forwardBatch(batch).getContent());
+		assertClose("Large", large.build(PipeBuilderFactory.DEFAULT_FACTORY).forward(largeSource).getContent(), large.build(VECTOR).forward(largeSource).getContent());
+		assertClose("Sparse", builder.build(PipeBuilderFactory.DEFAULT_FACTORY).forward(sparse).getContent(), builder.build(VECTOR).forward(sparse).getContent());
+	}
+
+	@Test
+	public void factoryTest() throws CalculationException, EnvironmentException {
+		final VectorPipelineFactory	factory = new VectorPipelineFactory();
+		final MatrixWrapper			flat = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, 1L, 8, 4);
+		final Pipe					pipe = PipeBuilder.newInstance().mul(flat).build(VECTOR);
+		
+		Assert.assertTrue(factory.canServe(VECTOR));
+		Assert.assertFalse(factory.canServe(PipeBuilderFactory.DEFAULT_FACTORY));
+		Assert.assertTrue(factory.getCapabilities().supports(PipeBuilder.newInstance().mul(flat)));
+		Assert.assertFalse(factory.getCapabilities().supports(PipeBuilder.newInstance().mul(flat).setPrecision(CalculationPrecision.PRECISE)));
+		Assert.assertFalse(factory.getCapabilities().supports(PipeBuilder.newInstance().setReadOnly(true).mul(MatrixWrapper.convert(flat, MatrixClass.HALF_FLAT2))));
+		Assert.assertFalse(pipe.isReadOnly());
+		
+		try{pipe.backward(MatrixWrapper.of(new float[4]));
+			Assert.fail("Mandatory exception was not detected (backward is not supported)");
+		} catch (UnsupportedOperationException exc) {
+		}
+		try{PipeBuilder.newInstance().setReadOnly(true).mul(flat).build(VECTOR).backward(MatrixWrapper.of(new float[4]));
+			Assert.fail("Mandatory exception was not detected (read-only pipe)");
+		} catch (IllegalStateException exc) {
+		}
+		try{new VectorPipe(PipeBuilder.newInstance().mul(MatrixWrapper.transpose(flat)));
+			Assert.fail("Mandatory exception was not detected (copied layout in writable pipe)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{pipe.forward(MatrixWrapper.of(new float[7]));
+			Assert.fail("Mandatory exception was not detected (wrong vector size)");
+		} catch (IllegalArgumentException exc) {
+		}
+		try{factory.newInstance(PipeBuilderFactory.DEFAULT_FACTORY, PipeBuilder.newInstance().mul(flat));
+			Assert.fail("Mandatory exception was not detected (foreign URI)");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	private static void assertClose(final String message, final float[] awaited, final float[] calculated) {	// Lanes are summed in another order than the ordinal backend does
+		Assert.assertEquals(message, awaited.length, calculated.length);
+		for(int index = 0; index < awaited.length; index++) {
+			Assert.assertEquals(message+", index ["+index+"]", awaited[index], calculated[index], 0.0001f * Math.max(1, Math.abs(awaited[index])));
+		}
+	}
+
+	private static float reference(final ActivationType type, final float value) {
+		switch (type) {
+			case SIGMOID	: return (float)(1 / (1 + Math.exp(-value)));
+			case TANH		: return (float)Math.tanh(value);
+			case GELU		: return (float)(0.5 * value * (1 + Math.tanh(Math.sqrt(2 / Math.PI) * (value + 0.044715 * value * value * value))));
+			default : throw new UnsupportedOperationException("Activation type ["+type+"] is not supported");
+		}
+	}
+
+	private static double sum(final float[] content) {
+		double	result = 0;
+		
+		for(float item : content) {
+			result += Math.exp(item);
+		}
+		return result;
+	}
+}
@@ -1,12 +1,20 @@
 package chav1961.nn.w2v;
 
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 import java.util.function.Function;
 
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
 import chav1961.nn.api.interfaces.FloatPredicate;
+import chav1961.nn.api.interfaces.MatrixClass;
 import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.SparseContent;
 import chav1961.nn.api.interfaces.Word;
+import chav1961.nn.utils.MatrixContainerReader;
 import chav1961.nn.utils.MatrixUtils;
 import chav1961.purelib.basic.AndOrTree;
 import chav1961.purelib.basic.DottedVersion;
@@ -14,8 +22,9 @@ import chav1961.purelib.basic.Utils;
 import chav1961.purelib.basic.exceptions.CalculationException;
 import chav1961.purelib.basic.interfaces.SyntaxTreeInterface;
 
-public class W2VSearcher {
+public class W2VSearcher implements AutoCloseable {
 	private static final int	VECTOR_MAGIC = 0x16061A01; 
+	private static final String[]	VECTOR_ENTRIES = {"vectors.0", "vectors.1"};
 
 	private final DottedVersion	version = new DottedVersion("1.0");
 	private final SyntaxTreeInterface<Word[]>	currentVocab = new AndOrTree<>(1, 1);
@@ -36,56 +45,94 @@ public class W2VSearcher {
 			throw new NullPointerException("Data input can't be null");
 		}
 		else {
-			final int	magic = in.readInt(), endMagic;
+			checkHeader(in);
 			
-			if (magic != VECTOR_MAGIC) {
-				throw new IllegalArgumentException("Illegal magic ["+magic+"] in the data input, must be ["+VECTOR_MAGIC+"]");
-			}
-			else {
-				final DottedVersion	currentVersion = new DottedVersion(in.readUTF());
+			final MatrixWrapper[]	matrices = new MatrixWrapper[2];
+			
+			for(int index = 0; index < matrices.length; index++) {
+				final int		rowSize = in.readInt(), colSize = in.readInt();
 				
-				if (!currentVersion.equals(version)) {
-					throw new IllegalArgumentException("Unsupported version ["+version+"] in the data input");
-				}
-				else {
-					final int		rowSize1 = in.readInt(), colSize1 = in.readInt();
-					final float[][]	matrix1 = new float[rowSize1][];
-					
-					for(int y = 0; y < rowSize1; y++) {
-						final float[]	line = new float[colSize1];
-						
-						for(int x = 0; x < colSize1; x++) {
-							line[x] = in.readFloat();
-						}
-						matrix1[y] = line;
-					}
-					final int		rowSize2 = in.readInt(), colSize2 = in.readInt();
-					final float[][]	matrix2 = new float[rowSize1][];
+				matrices[index] = MatrixWrapper.download(in, MatrixClass.FLOAT_FLAT2, rowSize, colSize);
+			}
+			checkEndMagic(in.readInt());
+			setVectors(new VectorStore(matrices[0], matrices[1]));
+		}
+	}
+
+	public void downloadVectors(final FileChannel channel) throws IOException {
+		if (channel == null) {
+			throw new NullPointerException("File channel can't be null");
+		}
+		else {
+			final DataInput			in = new DataInputStream(Channels.newInputStream(channel));
+			final MatrixWrapper[]	matrices = new MatrixWrapper[2];
+			
+			checkHeader(in);
+			try {
+				for(int index = 0; index < matrices.length; index++) {
+					final int		rowSize = in.readInt(), colSize = in.readInt();
+					final long		position = channel.position();
 					
-					for(int y = 0; y < rowSize2; y++) {
-						final float[]	line = new float[colSize2];
-						
-						for(int x = 0; x < colSize2; x++) {
-							line[x] = in.readFloat();
-						}
-						matrix2[y] = line;
-					}
-					if ((endMagic = in.readInt()) != VECTOR_MAGIC) {
-						throw new IllegalArgumentException("Illegal magic ["+endMagic+"] in the end of the data input, must be ["+VECTOR_MAGIC+"]");
+					matrices[index] = MatrixWrapper.map(channel, position, MatrixClass.FLOAT_BUFFER2, rowSize, colSize);
+					channel.position(position + MatrixWrapper.sizeOf(MatrixClass.FLOAT_BUFFER2, rowSize, colSize));
+				}
+				checkEndMagic(in.readInt());
+			} catch (IOException | RuntimeException exc) {
+				release(matrices);
+				throw exc;
+			}
+			setVectors(new VectorStore(matrices[0], matrices[1]));
+		}
+	}
+	
+	public void downloadVectors(final MatrixContainerReader reader) throws IOException {
+		if (reader == null) {
+			throw new NullPointerException("Container reader can't be null");
+		}
+		else {
+			final MatrixWrapper[]	matrices = new MatrixWrapper[VECTOR_ENTRIES.length];
+			
+			try {
+				for(int index = 0; index < matrices.length; index++) {
+					if (!reader.contains(VECTOR_ENTRIES[index])) {
+						throw new IOException("Container doesn't contain ["+VECTOR_ENTRIES[index]+"] matrix");
 					}
 					else {
-						this.vectors = new VectorStore(rowSize1, colSize1, matrix1, rowSize2, colSize2, matrix2);
+						matrices[index] = reader.read(VECTOR_ENTRIES[index]);
 					}
 				}
+			} catch (IOException | RuntimeException exc) {
+				release(matrices);
+				throw exc;
 			}
+			setVectors(new VectorStore(matrices[0], matrices[1]));
 		}
 	}
 	
+	@Override
+	public void close() {
+		setVectors(null);
+	}
+	
 	public float[] encode(final Word... window) throws CalculationException {
 		return encode((w)->w, window);
 	}
 	
 	public float[] encode(final Function<Word, Word> resolver, final Word... window) throws CalculationException {
+		final SparseContent	content = encodeSparse(resolver, window).getContent();
+		final float[]		vector = new float[getCurrentVocab().size()];
+		
+		for(int index : content.getIndices()) {
+			vector[index] = 1.0f;
+		}
+		return vector;
+	}
+
+	public MatrixWrapper encodeSparse(final Word... window) throws CalculationException {
+		return encodeSparse((w)->w, window);
+	}
+	
+	public MatrixWrapper encodeSparse(final Function<Word, Word> resolver, final Word... window) throws CalculationException {
 		if (resolver == null) {
 			throw new NullPointerException("Resolver can't be null"); 
 		}
@@ -97,7 +144,8 @@ public class W2VSearcher {
 		}
 		else {
 			final SyntaxTreeInterface<Word[]>	vocab = getCurrentVocab();
-			final float[]	vector = new float[vocab.size()];
+			final int[]		indices = new int[window.length];
+			int				count = 0;
 			
 			for(Word item : window) {
 				long	id = vocab.seekNameI(item.getWord());
@@ -109,9 +157,19 @@ public class W2VSearcher {
 						throw new IllegalArgumentException("Word ["+item.toString()+"] is not resolved anywhere"); 
 					}
 				}
-				vector[minId(vocab.getCargo(id))] = 1.0f;
+				indices[count++] = minId(vocab.getCargo(id));
 			}
-			return vector;
+			Arrays.sort(indices);
+			count = 0;
+			for(int index = 0; index < indices.length; index++) {	// Remove duplicates, the same word in the window is marked once
+				if (count == 0 || indices[count-1] != indices[index]) {
+					indices[count++] = indices[index];
+				}
+			}
+			final float[]	values = new float[count];
+			
+			Arrays.fill(values, 1.0f);
+			return MatrixWrapper.of(vocab.size(), Arrays.copyOf(indices, count), values);
 		}
 	}
 
@@ -151,23 +209,32 @@ public class W2VSearcher {
 	}
 	
 	public float[] bow(final float[] map) throws CalculationException {
+		if (map == null) {
+			throw new NullPointerException("Map to process can't be null"); 
+		}
+		else {
+			return bow(MatrixWrapper.of(map));
+		}
+	}
+
+	public float[] bow(final MatrixWrapper map) throws CalculationException {
 		if (map == null) {
 			throw new NullPointerException("Map to process can't be null"); 
 		}
 		else if (getCurrentVocab() == null || vectors == null) {
 			throw new IllegalStateException("Either vocabulary or vectors was not loaded yet. Invocation rejected"); 
 		}
-		else if (vectors.rowSize1 != map.length) {
-			throw new IllegalStateException("Map length ["+map.length+"] is not correnspoding with the first matrix row count ["+vectors.rowSize1+"]"); 
+		else if (vectors.matrix1.getDimensions()[0] != map.getDimensions()[0]) {
+			throw new IllegalStateException("Map length ["+map.getDimensions()[0]+"] is not correnspoding with the first matrix row count ["+vectors.matrix1.getDimensions()[0]+"]"); 
 		}
 		else {
 			final MatrixWrapper	step1 = MatrixUtils.getDefaultInstance().multiplyVectorAndMatrix(
-										MatrixWrapper.of(map), 
-										MatrixWrapper.of(vectors.matrix1)
+										map, 
+										vectors.matrix1
 									);
 			final MatrixWrapper	step2 = MatrixUtils.getDefaultInstance().multiplyVectorAndMatrix(
 										step1, 
-										MatrixWrapper.of(vectors.matrix2)
+										vectors.matrix2
 									);
 			
 			return step2.getContent();
@@ -178,6 +245,44 @@ public class W2VSearcher {
 		return null;
 	}
 
+	private void checkHeader(final DataInput in) throws IOException {
+		final int	magic = in.readInt();
+		
+		if (magic != VECTOR_MAGIC) {
+			throw new IllegalArgumentException("Illegal magic ["+magic+"] in the data input, must be ["+VECTOR_MAGIC+"]");
+		}
+		else {
+			final DottedVersion	currentVersion = new DottedVersion(in.readUTF());
+			
+			if (!currentVersion.equals(version)) {
+				throw new IllegalArgumentException("Unsupported version ["+version+"] in the data input");
+			}
+		}
+	}
+
+	private static void checkEndMagic(final int endMagic) {
+		if (endMagic != VECTOR_MAGIC) {
+			throw new IllegalArgumentException("Illegal magic ["+endMagic+"] in the end of the data input, must be ["+VECTOR_MAGIC+"]");
+		}
+	}
+	
+	private void setVectors(final VectorStore vectors) {
+		final VectorStore	old = this.vectors;
+		
+		this.vectors = vectors;
+		if (old != null && old != vectors) {
+			release(old.matrix1, old.matrix2);
+		}
+	}
+	
+	private static void release(final MatrixWrapper... matrices) {
+		for(MatrixWrapper item : matrices) {
+			if (item instanceof CloseableMatrixWrapper) {
+				((CloseableMatrixWrapper)item).close();
+			}
+		}
+	}
+	
 	private static int minId(final Word[] cargo) {
 		int	min = cargo[0].seqId();
 		
@@ -189,19 +294,11 @@ public class W2VSearcher {
 
 	
 	private static class VectorStore {
-		final int		rowSize1;
-		final int		colSize1;
-		final float[][]	matrix1;
-		final int		rowSize2;
-		final int		colSize2;
-		final float[][]	matrix2;
+		final MatrixWrapper	matrix1;
+		final MatrixWrapper	matrix2;
 		
-		VectorStore(final int rowSize1, final int colSize1, final float[][] matrix1, final int rowSize2, final int colSize2, final float[][] matrix2) {
-			this.rowSize1 = rowSize1;
-			this.colSize1 = colSize1;
+		VectorStore(final MatrixWrapper matrix1, final MatrixWrapper matrix2) {
 			this.matrix1 = matrix1;
-			this.rowSize2 = rowSize2;
-			this.colSize2 = colSize2;
 			this.matrix2 = matrix2;
 		}
 	}
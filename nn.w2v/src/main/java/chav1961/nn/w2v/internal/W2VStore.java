@@ -1,21 +1,30 @@
 package chav1961.nn.w2v.internal;
 
 import java.io.DataInput;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.util.function.Function;
 
+import chav1961.nn.api.interfaces.CloseableMatrixWrapper;
 import chav1961.nn.api.interfaces.FloatPredicate;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
+import chav1961.nn.api.interfaces.SparseContent;
 import chav1961.nn.api.interfaces.Word;
+import chav1961.nn.utils.MatrixContainerReader;
 import chav1961.purelib.basic.AndOrTree;
 import chav1961.purelib.basic.LongIdMap;
 import chav1961.purelib.basic.Utils;
 import chav1961.purelib.basic.exceptions.CalculationException;
 import chav1961.purelib.basic.interfaces.SyntaxTreeInterface;
 
-public class W2VStore {
+public class W2VStore implements AutoCloseable {
+	protected static final String[]			VECTOR_ENTRIES = {"vectors.0", "vectors.1"};
 	private static final FloatPredicate		USUAL_FILTER = (x)->x > 0.95f;
 	
-	private float[][][]						vectors;
+	private MatrixWrapper[]					vectors;
 	private SyntaxTreeInterface<Word[]>		words;
 	private SyntaxTreeInterface<WordRef>	currentWords = new AndOrTree<>();
 	private LongIdMap<WordRef>				currentIds = new LongIdMap<>(WordRef.class);
@@ -48,30 +57,94 @@ public class W2VStore {
 	}
 
 	public void downloadVectors(final DataInput in) throws IOException {
+		downloadVectors(in, false);
+	}
+
+	public void downloadVectors(final DataInput in, final boolean offHeap) throws IOException {
 		if (in == null) {
 			throw new NullPointerException("Data input can't be null");
 		}
 		else {
 			final int	vocabSize = in.readInt(), vectorSize = in.readInt();
 			
-			if (getVocabSize() != vocabSize) {
+			if (getCurrentVocab().size() != vocabSize) {
 				throw new IllegalStateException("Vocabulary size in the input ["+vocabSize+"] differ from current vocabulary size ["+getCurrentVocab().size()+"]"); 
 			}
 			else {
-				final float[][][]	vectors = new float[2][vocabSize][vectorSize];
+				final MatrixClass		clazz = offHeap ? MatrixClass.FLOAT_BUFFER2 : MatrixClass.FLOAT_FLAT2;
+				final MatrixWrapper[]	vectors = new MatrixWrapper[2];
 				
-				for(float[][] matrix : vectors) {
-					for(float[] line : matrix) {
-						for(int index = 0, maxIndex = line.length; index < maxIndex; index++) {
-							line[index] = in.readFloat();
-						}
+				try {
+					for(int index = 0; index < vectors.length; index++) {
+						vectors[index] = MatrixWrapper.download(in, clazz, vocabSize, vectorSize);
 					}
+				} catch (IOException | RuntimeException exc) {
+					release(vectors);
+					throw exc;
 				}
 				setVectors(vectors);
 			}
 		}
 	}
 	
+	public void downloadVectors(final FileChannel channel) throws IOException {
+		if (channel == null) {
+			throw new NullPointerException("File channel can't be null");
+		}
+		else {
+			final DataInput	in = new DataInputStream(Channels.newInputStream(channel));
+			final int		vocabSize = in.readInt(), vectorSize = in.readInt();
+			
+			if (getCurrentVocab().size() != vocabSize) {
+				throw new IllegalStateException("Vocabulary size in the input ["+vocabSize+"] differ from current vocabulary size ["+getCurrentVocab().size()+"]"); 
+			}
+			else {
+				final MatrixWrapper[]	vectors = new MatrixWrapper[2];
+				final long				size = MatrixWrapper.sizeOf(MatrixClass.FLOAT_BUFFER2, vocabSize, vectorSize);
+				
+				try {
+					for(int index = 0; index < vectors.length; index++) {
+						final long	position = channel.position();
+						
+						vectors[index] = MatrixWrapper.map(channel, position, MatrixClass.FLOAT_BUFFER2, vocabSize, vectorSize);
+						channel.position(position + size);
+					}
+				} catch (IOException | RuntimeException exc) {
+					release(vectors);
+					throw exc;
+				}
+				setVectors(vectors);
+			}
+		}
+	}
+	
+	public void downloadVectors(final MatrixContainerReader reader) throws IOException {
+		if (reader == null) {
+			throw new NullPointerException("Container reader can't be null");
+		}
+		else {
+			final MatrixWrapper[]	vectors = new MatrixWrapper[VECTOR_ENTRIES.length];
+			
+			try {
+				for(int index = 0; index < vectors.length; index++) {
+					if (!reader.contains(VECTOR_ENTRIES[index])) {
+						throw new IOException("Container doesn't contain ["+VECTOR_ENTRIES[index]+"] matrix");
+					}
+					else {
+						vectors[index] = reader.read(VECTOR_ENTRIES[index]);
+						if (vectors[index].getDimensions()[0] != getCurrentVocab().size()) {
+							throw new IllegalStateException("Vocabulary size in the input ["+vectors[index].getDimensions()[0]+"] differ from current vocabulary size ["+getCurrentVocab().size()+"]"); 
+						}
+					}
+				}
+			} catch (IOException | RuntimeException exc) {
+				release(vectors);
+				throw exc;
+			}
+			setVectors(vectors);
+		}
+	}
+	
 	public float[] encode(final Word... window) throws CalculationException {
 		if (window == null || window.length == 0 ||  Utils.checkArrayContent4Nulls(window) >= 0) {
 			throw new IllegalArgumentException("Word window is null, empty or contains nulls inside");
@@ -124,13 +197,34 @@ public class W2VStore {
 		else {
 			Utils.fillArray(source, 0f);
 
+			for (int index : ((SparseContent)encodeSparse(resolver, window).getContent()).getIndices()) {
+				source[index] = 1f;
+			}
+		}
+	}
+
+	public MatrixWrapper encodeSparse(final Word... window) throws CalculationException {
+		return encodeSparse((x)->x, window);
+	}
+	
+	public MatrixWrapper encodeSparse(final Function<Word, Word> resolver, final Word... window) throws CalculationException {
+		if (resolver == null) {
+			throw new NullPointerException("Resolver can't be null"); 
+		}
+		else if (window == null || window.length == 0 ||  Utils.checkArrayContent4Nulls(window) >= 0) {
+			throw new IllegalArgumentException("Word window is null, empty or contains nulls inside");
+		}
+		else {
+			boolean	marked = false;
+			
 			for (Word item : window) {
 				final Word	w = resolver.apply(item);
 				
 				if (w.id() <= 0) {
-					source[0] = 1f;
+					marked = true;
 				}
 			}
+			return marked ? MatrixWrapper.of(getVocabSize(), new int[] {0}, new float[] {1f}) : MatrixWrapper.of(getVocabSize(), new int[0], new float[0]);
 		}
 	}
 	
@@ -214,20 +308,30 @@ public class W2VStore {
 		}
 	}
 	
+	@Override
+	public void close() {
+		setVectors(null);
+	}
+	
 	protected int getVectorsSize() {
-		return vectors != null ? vectors[0][0].length : 0;
+		return vectors != null ? vectors[0].getDimensions()[1] : 0;
 	}
 
 	protected int getVocabSize() {
-		return vectors != null ? vectors[0].length : 0;
+		return vectors != null ? vectors[0].getDimensions()[0] : 0;
 	}
 	
-	protected float[][][] getVectors() {
+	protected MatrixWrapper[] getVectors() {
 		return vectors;
 	}
 	
-	protected void setVectors(final float[][][] vectors) {
+	protected void setVectors(final MatrixWrapper[] vectors) {
+		final MatrixWrapper[]	old = this.vectors;
 		
+		this.vectors = vectors;
+		if (old != null && old != vectors) {
+			release(old);
+		}
 	}
 
 	protected SyntaxTreeInterface<Word[]> getVocab() {
@@ -268,6 +372,14 @@ public class W2VStore {
 		}
 	}
 	
+	private static void release(final MatrixWrapper[] vectors) {
+		for(MatrixWrapper item : vectors) {
+			if (item instanceof CloseableMatrixWrapper) {
+				((CloseableMatrixWrapper)item).close();
+			}
+		}
+	}
+	
 	protected static class WordRef {
 		public final int	id;
 		public final long	cargoRef;
@@ -3,19 +3,28 @@ package chav1961.nn.w2v.trainer;
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.SplittableRandom;
 import java.util.function.DoubleSupplier;
 
+import chav1961.nn.api.interfaces.Distribution;
+import chav1961.nn.api.interfaces.MatrixClass;
+import chav1961.nn.api.interfaces.MatrixWrapper;
 import chav1961.nn.api.interfaces.Word;
 import chav1961.nn.api.interfaces.WordForm;
+import chav1961.nn.utils.MatrixContainerWriter;
 import chav1961.nn.w2v.internal.W2VStore;
 import chav1961.purelib.basic.AndOrTree;
 import chav1961.purelib.basic.CharUtils;
 import chav1961.purelib.basic.LineByLineProcessor;
 import chav1961.purelib.basic.exceptions.CalculationException;
 import chav1961.purelib.basic.exceptions.SyntaxException;
+import chav1961.purelib.basic.interfaces.DoubleSequence;
 import chav1961.purelib.basic.interfaces.SyntaxTreeInterface;
 
 public class W2VMutableStore extends W2VStore {
@@ -30,7 +39,28 @@ public class W2VMutableStore extends W2VStore {
 			throw new IllegalArgumentException("Vector size ["+vectorSize+"] must be greater than 0");
 		}
 		else {
-			prepareVectors(vectorSize, getCurrentVocab().size(), ()->Math.random());
+			prepareVectors(vectorSize, getCurrentVocab().size(), Distribution.UNIFORM, System.nanoTime());
+		}
+	}
+	
+	public void prepareVectors(final int vectorSize, final int vocabularySize, final Distribution distribution, final long seed) throws CalculationException {
+		if (vectorSize <= 0) {
+			throw new IllegalArgumentException("Vector size ["+vectorSize+"] must be greater than 0");
+		}
+		else if (vocabularySize <= 0) {
+			throw new IllegalArgumentException("Vocabulary size ["+vocabularySize+"] must be greater than 0");
+		}
+		else if (distribution == null) {
+			throw new NullPointerException("Distribution can't be null");
+		}
+		else {
+			final SplittableRandom	seeds = new SplittableRandom(seed);
+			final MatrixWrapper[]	temp = new MatrixWrapper[2];
+			
+			for(int index = 0; index < temp.length; index++) {
+				temp[index] = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, distribution, seeds.nextLong(), Runtime.getRuntime().availableProcessors(), vocabularySize, vectorSize);
+			}
+			setVectors(temp);
 		}
 	}
 	
@@ -45,15 +75,18 @@ public class W2VMutableStore extends W2VStore {
 			throw new NullPointerException("Source can't be null");
 		}
 		else {
-			final float[][][]	temp = new float[2][vocabularySize][vectorSize];
+			final DoubleSequence	seq = new DoubleSequence() {
+										@Override
+										public double next() {
+											return source.getAsDouble();
+										}
+									};
+			final MatrixWrapper[]	temp = new MatrixWrapper[2];
 			
-			for(float[][] matrix : temp) {
-				for(float[] line : matrix) {
-					for(int index = 0, maxIndex = temp.length; index < maxIndex; index++) {
-						line[index] = (float) source.getAsDouble();
-					}
-				}
+			for(int index = 0; index < temp.length; index++) {
+				temp[index] = MatrixWrapper.random(MatrixClass.FLOAT_FLAT2, seq, vocabularySize, vectorSize);
 			}
+			setVectors(temp);
 		}
 	}
 	
@@ -156,16 +189,46 @@ public class W2VMutableStore extends W2VStore {
 			throw new IllegalStateException("There are no prepared vectors to upload yet");
 		}
 		else {
-			final float[][][]	temp = getVectors();
-			
 			out.writeInt(getVocabSize());
 			out.writeInt(getVectorsSize());
-			for(float[][] matrix : temp) {
-				for(float[] line : matrix) {
-					for(float item : line) {
-						out.writeFloat(item);
-					}
-				}
+			for(MatrixWrapper matrix : getVectors()) {
+				matrix.upload(out);
+			}
+		}
+	}
+
+	public void uploadVectors(final WritableByteChannel out) throws IOException {
+		if (out == null) {
+			throw new NullPointerException("Output channel can't be null");
+		}
+		else if (getVectors() == null) {
+			throw new IllegalStateException("There are no prepared vectors to upload yet");
+		}
+		else {
+			final ByteBuffer	header = ByteBuffer.allocate(2 * Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+			
+			header.putInt(getVocabSize()).putInt(getVectorsSize()).flip();
+			while (header.hasRemaining()) {
+				out.write(header);
+			}
+			for(MatrixWrapper matrix : getVectors()) {
+				matrix.upload(out, ByteOrder.BIG_ENDIAN);
+			}
+		}
+	}
+
+	public void uploadVectors(final MatrixContainerWriter writer) throws IOException {
+		if (writer == null) {
+			throw new NullPointerException("Container writer can't be null");
+		}
+		else if (getVectors() == null) {
+			throw new IllegalStateException("There are no prepared vectors to upload yet");
+		}
+		else {
+			final MatrixWrapper[]	vectors = getVectors();
+			
+			for(int index = 0; index < vectors.length; index++) {
+				writer.write(VECTOR_ENTRIES[index], vectors[index]);
 			}
 		}
 	}